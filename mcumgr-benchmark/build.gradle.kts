@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Nordic Semiconductor ASA, 2021-present
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+// JMH benchmarks of the SMP hot paths. Run with:
+//   ./gradlew :mcumgr-benchmark:jmh
+// Add -Pjmh.includes=<regex> to run only the matching benchmarks.
+//
+// The library modules are Android libraries, which can't be consumed by a JVM module.
+// Instead, their sources are compiled here for the JVM, with the Android SDK stubs on the
+// classpath. The benchmarks do not touch any Android API.
+// This module is not published.
+
+import org.jetbrains.kotlin.gradle.dsl.JvmTarget
+
+plugins {
+    alias(libs.plugins.kotlin.jvm)
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Only the SMP session is taken from mcumgr-ble, the rest depends on the BLE library.
+val bleSources by tasks.registering(Sync::class) {
+    from("../mcumgr-ble/src/main/java") {
+        include("no/nordicsemi/android/mcumgr/ble/callback/SmpProtocolSession.kt")
+        include("no/nordicsemi/android/mcumgr/ble/callback/SmpTransaction.kt")
+        include("no/nordicsemi/android/mcumgr/ble/util/TimeoutWheel.kt")
+    }
+    into(layout.buildDirectory.dir("generated/sources/mcumgr-ble"))
+}
+
+sourceSets {
+    main {
+        java.srcDir("../mcumgr-core/src/main/java")
+        kotlin.srcDir("../mcumgr-core/src/main/java")
+        kotlin.srcDir(bleSources)
+    }
+    named("jmh") {
+        // The simulated device used by SendPathBenchmark.
+        kotlin.srcDir("../mcumgr-sim/src/main/java")
+        // Test images used by McuMgrImageBenchmark.
+        resources.srcDir("../mcumgr-core/src/test/resources")
+    }
+}
+
+kotlin {
+    compilerOptions {
+        jvmTarget = JvmTarget.JVM_11
+    }
+    // Allow benchmarks to access internal members of the library.
+    target.compilations.named("jmh") {
+        associateWith(target.compilations.getByName("main"))
+    }
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    // Report allocation rate of each benchmark.
+    profilers.add("gc")
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "JSON"
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.add(it) }
+}
+
+dependencies {
+    compileOnly(libs.android.stubs) { isTransitive = false }
+    jmh(libs.android.stubs) { isTransitive = false }
+
+    implementation(libs.annotations)
+    implementation(libs.slf4j)
+    implementation(libs.kotlinx.coroutines.core)
+    implementation(libs.fasterxml.cbor)
+    implementation(libs.fasterxml.core)
+    implementation(libs.fasterxml.databind)
+
+    // Generates CBOR decoders, the same as in mcumgr-core.
+    annotationProcessor(project(":mcumgr-codegen"))
+}
@@ -0,0 +1,51 @@
+package no.nordicsemi.android.mcumgr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+
+/**
+ * Measures building request packets from a payload map, as done by
+ * {@link McuManager#send(int, int, Map, long, Class)} for every command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class McuManagerBenchmark {
+
+    /** Size of the "data" parameter, 0 for a request without data. */
+    @Param({"0", "128", "2048"})
+    public int dataSize;
+
+    @Param({"BLE", "COAP_BLE"})
+    public McuMgrScheme scheme;
+
+    private Map<String, Object> payload;
+
+    @Setup
+    public void setup() {
+        payload = new HashMap<>();
+        if (dataSize > 0) {
+            payload.put("data", new byte[dataSize]);
+            payload.put("off", 65536);
+        } else {
+            payload.put("d", "Hello!");
+        }
+    }
+
+    @Benchmark
+    public byte[] buildPacket() throws McuMgrException {
+        return McuManager.buildPacket(scheme, McuManager.OP_WRITE, 0, 1, 42, 1, payload);
+    }
+}
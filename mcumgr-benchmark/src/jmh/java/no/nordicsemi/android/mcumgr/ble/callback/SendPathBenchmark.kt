@@ -0,0 +1,103 @@
+package no.nordicsemi.android.mcumgr.ble.callback
+
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.sim.SimulatedDevice
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the latency of echo requests sent to a [SimulatedDevice] through
+ * [SmpProtocolSession], using the two send paths of McuMgrBleTransport.
+ *
+ * The BLE request queue is modelled by a single thread executor, which executes writes and
+ * receives responses, like the handler of the transport. [queued] enqueues a connect request
+ * before each send, as the transport did for every request: the request is sent only when
+ * the connect request reaches the head of the queue, and its write is queued behind the
+ * connect requests of the following requests. [direct] sends the request immediately, as the
+ * transport does when the device is connected and ready.
+ *
+ * The result is the time until all of [window] requests, sent at once, are answered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class SendPathBenchmark {
+
+    @Param("1", "4", "16")
+    @JvmField
+    var window: Int = 0
+
+    private lateinit var queue: ExecutorService
+    private lateinit var session: SmpProtocolSession
+    private val device = SimulatedDevice()
+    private val responses = Semaphore(0)
+
+    /** One packet per request in flight, as the session writes the sequence number to it. */
+    private lateinit var packets: Array<ByteArray>
+
+    private val transaction = object : SmpTransaction {
+        override fun send(data: ByteArray) {
+            // The write is executed by the request queue, the device responds immediately.
+            queue.execute {
+                device.handle(data)?.let { session.receive(it) }
+            }
+        }
+
+        override fun onResponse(data: ByteArray, length: Int, reused: Boolean) {
+            responses.release()
+        }
+
+        override fun onFailure(e: Throwable) {
+            responses.release()
+        }
+    }
+
+    @Setup
+    fun setup() {
+        queue = Executors.newSingleThreadExecutor()
+        session = SmpProtocolSession()
+        packets = Array(window) {
+            McuManager.buildPacket(McuMgrScheme.BLE, 2, 0, 0, 0, 0, mapOf("d" to "Hello"))
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        session.close(Exception("Benchmark finished"))
+        queue.shutdown()
+    }
+
+    @Benchmark
+    fun queued() {
+        for (packet in packets) {
+            // The connect request completes immediately, as the device is connected,
+            // and its completion callback is posted to the handler.
+            queue.execute {
+                queue.execute {
+                    session.send(packet, SmpProtocolSession.TIMEOUT, transaction)
+                }
+            }
+        }
+        responses.acquire(window)
+    }
+
+    @Benchmark
+    fun direct() {
+        for (packet in packets) {
+            session.send(packet, SmpProtocolSession.TIMEOUT, transaction)
+        }
+        responses.acquire(window)
+    }
+}
@@ -0,0 +1,69 @@
+package no.nordicsemi.android.mcumgr.ble.callback
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OperationsPerInvocation
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+
+private const val WINDOW = 32
+
+/**
+ * Measures the throughput of [SmpProtocolSession] with [WINDOW] requests in flight.
+ *
+ * Each request is answered immediately by a loopback transaction, so the result shows
+ * the overhead of the session itself: sequence numbers, the transaction table and
+ * the timeout of each request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class SmpProtocolSessionBenchmark {
+    private lateinit var session: SmpProtocolSession
+    private val responses = Semaphore(0)
+
+    /** One packet per request in flight, as the session writes the sequence number to it. */
+    private val packets = Array(WINDOW) {
+        McuMgrHeader.build(1, 2, 0, 0, 0, 0, 0)
+    }
+
+    private val loopback = object : SmpTransaction {
+        override fun send(data: ByteArray) {
+            session.receive(data)
+        }
+
+        override fun onResponse(data: ByteArray, length: Int, reused: Boolean) {
+            responses.release()
+        }
+
+        override fun onFailure(e: Throwable) {
+            responses.release()
+        }
+    }
+
+    @Setup
+    fun setup() {
+        session = SmpProtocolSession()
+    }
+
+    @TearDown
+    fun tearDown() {
+        session.close(Exception("Benchmark finished"))
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    fun sendAndReceive() {
+        for (packet in packets) {
+            session.send(packet, SmpProtocolSession.TIMEOUT, loopback)
+        }
+        responses.acquire(WINDOW)
+    }
+}
@@ -0,0 +1,79 @@
+package no.nordicsemi.android.mcumgr.ble.util
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.util.concurrent.TimeUnit
+import kotlin.coroutines.EmptyCoroutineContext
+
+private const val TIMEOUT: Long = 2_500
+
+/**
+ * Compares timeouts of a window of requests tracked by [TimeoutWheel] with a coroutine
+ * per request, as SmpProtocolSession used before.
+ *
+ * Each invocation arms the timeouts of all requests in the window and cancels them,
+ * as if the responses were received.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class TimeoutWheelBenchmark {
+
+    @Param("1", "2", "4", "8", "16")
+    @JvmField
+    var window: Int = 0
+
+    private lateinit var scope: CoroutineScope
+    private lateinit var jobs: Array<Job?>
+    private val wheel = TimeoutWheel(256, 50)
+    private var sequenceNumber = 0
+
+    @Setup
+    fun setup() {
+        scope = CoroutineScope(EmptyCoroutineContext)
+        jobs = arrayOfNulls(window)
+    }
+
+    @TearDown
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    @Benchmark
+    fun coroutinePerRequest() {
+        for (i in 0 until window) {
+            jobs[i] = scope.launch { delay(TIMEOUT) }
+        }
+        for (i in 0 until window) {
+            jobs[i]?.cancel()
+            jobs[i] = null
+        }
+    }
+
+    @Benchmark
+    fun timeoutWheel() {
+        val now = System.nanoTime() / 1_000_000
+        val first = sequenceNumber
+        for (i in 0 until window) {
+            wheel.arm((first + i) and 0xFF, TIMEOUT, now)
+        }
+        for (i in 0 until window) {
+            wheel.cancel((first + i) and 0xFF)
+        }
+        sequenceNumber = (first + window) and 0xFF
+        // The timer tick of the session.
+        wheel.advance(now) {}
+    }
+}
@@ -0,0 +1,52 @@
+package no.nordicsemi.android.mcumgr.image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+
+/**
+ * Measures parsing of McuBoot images, done for every image before an upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class McuMgrImageBenchmark {
+
+    @Param({"slinky-no-prot-tlv.img", "slinky-prot-tlv.img"})
+    public String image;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream(image)) {
+            if (stream == null) {
+                throw new IOException(image + " not found");
+            }
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int len;
+            while ((len = stream.read(buffer)) != -1) {
+                os.write(buffer, 0, len);
+            }
+            data = os.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public McuMgrImage fromBytes() throws McuMgrException {
+        return McuMgrImage.fromBytes(data);
+    }
+}
@@ -0,0 +1,91 @@
+package no.nordicsemi.android.mcumgr.response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.mcumgr.McuManager;
+import no.nordicsemi.android.mcumgr.McuMgrHeader;
+import no.nordicsemi.android.mcumgr.McuMgrScheme;
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageStateResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse;
+
+/**
+ * Measures decoding of received packets.
+ * <p>
+ * Upload responses are received for every chunk of an upload and are decoded by
+ * {@link TransferResponseDecoder}. Other responses use the generated decoders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class McuMgrResponseBenchmark {
+    private final static int OP_WRITE_RSP = 3;
+
+    private byte[] uploadResponse;
+    private byte[] stateResponse;
+
+    @Setup
+    public void setup() throws McuMgrException {
+        final Map<String, Object> upload = new HashMap<>();
+        upload.put("rc", 0);
+        upload.put("off", 123456);
+        uploadResponse = McuManager.buildPacket(McuMgrScheme.BLE, OP_WRITE_RSP, 0, 1, 42, 1, upload);
+
+        final Map<String, Object> state = new HashMap<>();
+        state.put("images", Arrays.asList(slot(0, true), slot(1, false)));
+        state.put("splitStatus", 0);
+        stateResponse = McuManager.buildPacket(McuMgrScheme.BLE, OP_WRITE_RSP, 0, 1, 42, 0, state);
+    }
+
+    private static Map<String, Object> slot(int slot, boolean active) {
+        final Map<String, Object> image = new HashMap<>();
+        image.put("slot", slot);
+        image.put("version", "1.2.3");
+        image.put("hash", new byte[32]);
+        image.put("bootable", true);
+        image.put("pending", false);
+        image.put("confirmed", active);
+        image.put("active", active);
+        image.put("permanent", false);
+        return image;
+    }
+
+    @Benchmark
+    public McuMgrImageUploadResponse buildResponse_upload() throws IOException {
+        return McuMgrResponse.buildResponse(McuMgrScheme.BLE, uploadResponse, McuMgrImageUploadResponse.class);
+    }
+
+    /**
+     * The fast path used for upload responses, without the response setup.
+     */
+    @Benchmark
+    public McuMgrImageUploadResponse decodeTransferResponse() {
+        return TransferResponseDecoder.decode(uploadResponse, McuMgrHeader.HEADER_LENGTH,
+                uploadResponse.length - McuMgrHeader.HEADER_LENGTH, McuMgrImageUploadResponse.class);
+    }
+
+    @Benchmark
+    public McuMgrImageStateResponse buildResponse_imageState() throws IOException {
+        return McuMgrResponse.buildResponse(McuMgrScheme.BLE, stateResponse, McuMgrImageStateResponse.class);
+    }
+
+    /**
+     * Called for every received notification to check whether the packet is complete.
+     */
+    @Benchmark
+    public int getExpectedLength() throws IOException {
+        return McuMgrResponse.getExpectedLength(McuMgrScheme.BLE, uploadResponse);
+    }
+}
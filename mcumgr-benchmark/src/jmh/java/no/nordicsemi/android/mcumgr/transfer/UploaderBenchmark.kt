@@ -0,0 +1,102 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures preparing a single upload request: finding the chunk size and encoding the request
+ * with the chunk copied into it, which is done for every packet of an upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class UploaderBenchmark {
+
+    @Param("BLE", "COAP_BLE")
+    @JvmField
+    var scheme: McuMgrScheme = McuMgrScheme.BLE
+
+    @Param("252", "498", "2048")
+    @JvmField
+    var mtu: Int = 0
+
+    private lateinit var uploader: ImageUploader
+    private val data = ByteArray(512 * 1024) { it.toByte() }
+    private lateinit var offsets: IntArray
+    private var index = 0
+
+    @Setup
+    fun setup() {
+        val manager = ImageManager(NoopTransport(scheme))
+        manager.setUploadMtu(mtu)
+        uploader = ImageUploader(manager, data, 0, memoryAlignment = 4)
+        // Calculate the SHA-256 for the first chunk once, as the uploader does.
+        uploader.preparePacket(uploader.newChunk(0))
+        // Offsets of all chunks, as they would be sent.
+        val list = mutableListOf<Int>()
+        var chunk = uploader.newChunk(0)
+        while (true) {
+            list.add(chunk.offset)
+            if (chunk.isLast) break
+            chunk = uploader.newChunk(chunk.end)
+        }
+        offsets = list.toIntArray()
+    }
+
+    @Benchmark
+    fun getMaxChunkSize(): Int = uploader.getMaxChunkSize(nextOffset())
+
+    @Benchmark
+    fun newChunk(): Any = uploader.newChunk(nextOffset())
+
+    @Benchmark
+    fun prepareChunk(): Any {
+        val chunk = uploader.newChunk(nextOffset())
+        return if (scheme.isCoap) {
+            uploader.prepareWrite(chunk)
+        } else {
+            uploader.preparePacket(chunk)
+        }
+    }
+
+    /**
+     * Returns the offsets of following chunks, wrapping around at the end of the data.
+     */
+    private fun nextOffset(): Int {
+        val offset = offsets[index]
+        index = if (index + 1 == offsets.size) 0 else index + 1
+        return offset
+    }
+
+    private class NoopTransport(private val scheme: McuMgrScheme) : McuMgrTransport {
+        override fun getScheme(): McuMgrScheme = scheme
+
+        override fun <T : McuMgrResponse> send(payload: ByteArray, timeout: Long, responseType: Class<T>): T =
+            throw McuMgrException("Not supported")
+
+        override fun <T : McuMgrResponse> send(
+            payload: ByteArray,
+            timeout: Long,
+            responseType: Class<T>,
+            callback: McuMgrCallback<T>
+        ) = callback.onError(McuMgrException("Not supported"))
+
+        override fun connect(callback: McuMgrTransport.ConnectionCallback?) {}
+        override fun release() {}
+        override fun addObserver(observer: McuMgrTransport.ConnectionObserver) {}
+        override fun removeObserver(observer: McuMgrTransport.ConnectionObserver) {}
+    }
+}
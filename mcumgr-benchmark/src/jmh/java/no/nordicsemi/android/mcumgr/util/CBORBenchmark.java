@@ -0,0 +1,79 @@
+package no.nordicsemi.android.mcumgr.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse;
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrTaskStatResponse;
+
+/**
+ * Measures CBOR encoding of request payloads and decoding of response payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CBORBenchmark {
+    private Map<String, Object> request;
+    private byte[] echo;
+    private byte[] tasks;
+
+    @Setup
+    public void setup() throws IOException {
+        request = new HashMap<>();
+        request.put("off", 65536);
+        request.put("data", new byte[256]);
+
+        final Map<String, Object> response = new HashMap<>();
+        response.put("r", "Hello!");
+        echo = CBOR.toBytes(response);
+
+        final Map<String, Object> taskMap = new HashMap<>();
+        for (int i = 0; i < 8; i++) {
+            final Map<String, Object> task = new HashMap<>();
+            task.put("prio", i);
+            task.put("tid", i);
+            task.put("state", 1);
+            task.put("stkuse", 100);
+            task.put("stksiz", 1024);
+            task.put("cswcnt", 1000 * i);
+            task.put("runtime", 12345);
+            taskMap.put("task" + i, task);
+        }
+        final Map<String, Object> stat = new HashMap<>();
+        stat.put("tasks", taskMap);
+        tasks = CBOR.toBytes(stat);
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws IOException {
+        return CBOR.toBytes(request);
+    }
+
+    @Benchmark
+    public McuMgrEchoResponse toObject_echo() throws IOException {
+        return CBOR.toObject(echo, McuMgrEchoResponse.class);
+    }
+
+    @Benchmark
+    public McuMgrTaskStatResponse toObject_taskStat() throws IOException {
+        return CBOR.toObject(tasks, McuMgrTaskStatResponse.class);
+    }
+
+    /**
+     * Generic decoding of the same payload into maps using Jackson, for comparison.
+     */
+    @Benchmark
+    public Map<String, Object> toObjectMap_taskStat() throws IOException {
+        return CBOR.toObjectMap(tasks);
+    }
+}
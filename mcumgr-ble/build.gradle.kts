@@ -63,4 +63,5 @@ dependencies {
 
     // Test
     testImplementation(libs.kotlin.test)
+    testImplementation(project(":mcumgr-sim"))
 }
@@ -0,0 +1,115 @@
+package no.nordicsemi.android.mcumgr.ble;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Parameters of the BLE link in effect, reported by {@link McuMgrBleTransport} to
+ * {@link Observer}s each time they change. This allows correlating the transfer speed
+ * with the link.
+ * <p>
+ * Values which are not known are 0. The connection interval, latency and supervision timeout
+ * are reported by Android 8 and newer when a connection priority is requested by the link
+ * policy; the PHY is reported by Android 8 and newer when connected and when changed by
+ * the link policy.
+ */
+public final class LinkParameters {
+
+    /** Parameters of a link which is not connected. */
+    @NonNull
+    public static final LinkParameters UNKNOWN =
+            new LinkParameters(-1, 0, 0, 0, 0, 0, false);
+
+    /** The last connection priority requested, or -1 if none was requested. */
+    public final int connectionPriority;
+    /** The connection interval, in units of 1.25 ms. */
+    public final int interval;
+    /** The peripheral latency, in number of connection events. */
+    public final int latency;
+    /** The supervision timeout, in units of 10 ms. */
+    public final int supervisionTimeout;
+    /** The PHY used for sending, one of PhyCallback.PHY_LE_* values. */
+    public final int txPhy;
+    /** The PHY used for receiving, one of PhyCallback.PHY_LE_* values. */
+    public final int rxPhy;
+    /** Whether an upload or a download is in progress. */
+    public final boolean transferActive;
+
+    public LinkParameters(final int connectionPriority,
+                          final int interval,
+                          final int latency,
+                          final int supervisionTimeout,
+                          final int txPhy,
+                          final int rxPhy,
+                          final boolean transferActive) {
+        this.connectionPriority = connectionPriority;
+        this.interval = interval;
+        this.latency = latency;
+        this.supervisionTimeout = supervisionTimeout;
+        this.txPhy = txPhy;
+        this.rxPhy = rxPhy;
+        this.transferActive = transferActive;
+    }
+
+    /**
+     * Returns the connection interval in milliseconds.
+     *
+     * @return The connection interval, or 0 if not known.
+     */
+    public double getIntervalMillis() {
+        return interval * 1.25;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LinkParameters)) return false;
+        final LinkParameters that = (LinkParameters) o;
+        return connectionPriority == that.connectionPriority
+                && interval == that.interval
+                && latency == that.latency
+                && supervisionTimeout == that.supervisionTimeout
+                && txPhy == that.txPhy
+                && rxPhy == that.rxPhy
+                && transferActive == that.transferActive;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = connectionPriority;
+        result = 31 * result + interval;
+        result = 31 * result + latency;
+        result = 31 * result + supervisionTimeout;
+        result = 31 * result + txPhy;
+        result = 31 * result + rxPhy;
+        result = 31 * result + (transferActive ? 1 : 0);
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LinkParameters{" +
+                "priority=" + connectionPriority +
+                ", interval=" + getIntervalMillis() + "ms" +
+                ", latency=" + latency +
+                ", timeout=" + (supervisionTimeout * 10) + "ms" +
+                ", txPhy=" + txPhy +
+                ", rxPhy=" + rxPhy +
+                ", transferActive=" + transferActive +
+                '}';
+    }
+
+    /**
+     * An observer of the link parameters.
+     *
+     * @see McuMgrBleTransport#addLinkParametersObserver(Observer)
+     */
+    public interface Observer {
+        /**
+         * Called on the callback thread when the link parameters have changed.
+         *
+         * @param parameters the current parameters.
+         */
+        void onLinkParametersChanged(@NonNull LinkParameters parameters);
+    }
+}
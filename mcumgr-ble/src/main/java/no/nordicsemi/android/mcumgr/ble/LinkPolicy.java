@@ -0,0 +1,130 @@
+package no.nordicsemi.android.mcumgr.ble;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+import no.nordicsemi.android.ble.ConnectionPriorityRequest;
+import no.nordicsemi.android.ble.PhyRequest;
+import no.nordicsemi.android.ble.annotation.ConnectionPriority;
+
+/**
+ * Link parameters requested by {@link McuMgrBleTransport} during uploads and downloads.
+ * <p>
+ * When a transfer starts, the transport requests the {@link #transferPriority} and the
+ * {@link #preferredPhy}. When no transfer has been active for {@link #idleTimeout}
+ * milliseconds, the {@link #idlePriority} is requested. The PHY is not changed back, as LE 2M
+ * uses less energy per byte than LE 1M.
+ * <p>
+ * If the phone or the device rejects a request, the link is used as it is and the request
+ * is not repeated until the device reconnects.
+ *
+ * @see McuMgrBleTransport#setLinkPolicy(LinkPolicy)
+ */
+public final class LinkPolicy {
+
+    /** Value of {@link #preferredPhy} meaning that the PHY should not be changed. */
+    public static final int PHY_UNCHANGED = 0;
+
+    /**
+     * The default policy: high priority and LE 2M PHY during transfers,
+     * balanced priority after 5 seconds without a transfer.
+     */
+    @NonNull
+    public static final LinkPolicy DEFAULT = new Builder().build();
+
+    /** The connection priority requested when a transfer starts. */
+    @ConnectionPriority
+    public final int transferPriority;
+
+    /** The connection priority requested after {@link #idleTimeout}. */
+    @ConnectionPriority
+    public final int idlePriority;
+
+    /**
+     * The preferred PHY mask requested when a transfer starts, in both directions,
+     * or {@link #PHY_UNCHANGED}.
+     */
+    public final int preferredPhy;
+
+    /** Time without a transfer after which {@link #idlePriority} is requested, in milliseconds. */
+    public final long idleTimeout;
+
+    private LinkPolicy(final int transferPriority,
+                       final int idlePriority,
+                       final int preferredPhy,
+                       final long idleTimeout) {
+        this.transferPriority = transferPriority;
+        this.idlePriority = idlePriority;
+        this.preferredPhy = preferredPhy;
+        this.idleTimeout = idleTimeout;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LinkPolicy{" +
+                "transferPriority=" + transferPriority +
+                ", idlePriority=" + idlePriority +
+                ", preferredPhy=" + preferredPhy +
+                ", idleTimeout=" + idleTimeout +
+                '}';
+    }
+
+    public static class Builder {
+        private int transferPriority = ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH;
+        private int idlePriority = ConnectionPriorityRequest.CONNECTION_PRIORITY_BALANCED;
+        private int preferredPhy = PhyRequest.PHY_LE_2M_MASK;
+        private long idleTimeout = 5000;
+
+        public Builder() {}
+
+        /**
+         * Sets the connection priority requested when a transfer starts.
+         * Defaults to {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_HIGH}.
+         */
+        @NonNull
+        public Builder setTransferPriority(@ConnectionPriority final int priority) {
+            this.transferPriority = priority;
+            return this;
+        }
+
+        /**
+         * Sets the connection priority requested after the idle timeout.
+         * Defaults to {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_BALANCED}, which is
+         * the priority used by Android after connection. Use
+         * {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_LOW_POWER} to save more power,
+         * at the cost of slower responses to other commands.
+         */
+        @NonNull
+        public Builder setIdlePriority(@ConnectionPriority final int priority) {
+            this.idlePriority = priority;
+            return this;
+        }
+
+        /**
+         * Sets the preferred PHY mask requested when a transfer starts.
+         * Defaults to {@link PhyRequest#PHY_LE_2M_MASK}. Use {@link #PHY_UNCHANGED} to keep
+         * the current PHY.
+         */
+        @NonNull
+        public Builder setPreferredPhy(final int phyMask) {
+            this.preferredPhy = phyMask;
+            return this;
+        }
+
+        /**
+         * Sets the time without a transfer after which the idle priority is requested.
+         * Defaults to 5000 ms.
+         */
+        @NonNull
+        public Builder setIdleTimeout(@IntRange(from = 0) final long idleTimeout) {
+            this.idleTimeout = Math.max(0, idleTimeout);
+            return this;
+        }
+
+        @NonNull
+        public LinkPolicy build() {
+            return new LinkPolicy(transferPriority, idlePriority, preferredPhy, idleTimeout);
+        }
+    }
+}
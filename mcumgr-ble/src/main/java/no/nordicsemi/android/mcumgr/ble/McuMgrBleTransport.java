@@ -15,6 +15,7 @@ import android.bluetooth.BluetoothGattService;
 import android.content.Context;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.util.Log;
 
@@ -29,11 +30,12 @@ import java.lang.reflect.Method;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import no.nordicsemi.android.ble.BleManager;
+import no.nordicsemi.android.ble.PhyRequest;
 import no.nordicsemi.android.ble.annotation.ConnectionPriority;
 import no.nordicsemi.android.ble.callback.FailCallback;
-import no.nordicsemi.android.ble.data.DataMerger;
 import no.nordicsemi.android.ble.error.GattError;
 import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrHeader;
@@ -41,12 +43,16 @@ import no.nordicsemi.android.mcumgr.McuMgrScheme;
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.ble.callback.SmpMerger;
 import no.nordicsemi.android.mcumgr.ble.callback.SmpProtocolSession;
+import no.nordicsemi.android.mcumgr.ble.callback.SmpReassembler;
 import no.nordicsemi.android.mcumgr.ble.callback.SmpTransaction;
+import no.nordicsemi.android.mcumgr.ble.callback.SmpWritePacker;
 import no.nordicsemi.android.mcumgr.ble.callback.TransactionTimeoutException;
 import no.nordicsemi.android.mcumgr.ble.exception.McuMgrBluetoothDisabledException;
 import no.nordicsemi.android.mcumgr.ble.exception.McuMgrDisconnectedException;
 import no.nordicsemi.android.mcumgr.ble.exception.McuMgrNotSupportedException;
+import no.nordicsemi.android.mcumgr.ble.util.LinkPolicyController;
 import no.nordicsemi.android.mcumgr.ble.util.ResultCondition;
+import no.nordicsemi.android.mcumgr.capture.PacketCapture;
 import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -98,8 +104,9 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
 
     /**
      * Simple Management Protocol write characteristic.
+     * Volatile, as requests are written on the calling threads, see {@link #write(byte[])}.
      */
-    private BluetoothGattCharacteristic mSmpCharacteristicWrite;
+    private volatile BluetoothGattCharacteristic mSmpCharacteristicWrite;
 
     /**
      * Simple Management Protocol notify characteristic.
@@ -112,9 +119,10 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
     private final BluetoothDevice mDevice;
 
     /**
-     * An instance of a merger used to merge SMP packets that are split into multiple BLE packets.
+     * Reassembles SMP packets that are split into multiple BLE packets.
+     * The size of its buffers is set to the SMP buffer size of the device, when known.
      */
-    private final DataMerger mSMPMerger = new SmpMerger();
+    private final SmpReassembler mSmpReassembler = new SmpReassembler(495);
 
     /**
      * The maximum packet length supported by the target device.
@@ -123,7 +131,97 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
      * Packets longer than MTU, but shorter than this value will be split.
      * Splitting packets must be supported by SMP Server on the target device.
      */
-    private int mMaxPacketLength;
+    private volatile int mMaxPacketLength;
+
+    /**
+     * The SMP buffer size and count of the target device, as read from McuMgr parameters,
+     * or 0 if not known.
+     */
+    private volatile int mSmpBufferSize, mSmpBufferCount;
+
+    /**
+     * Flag indicating whether SMP packets sent in a burst should be packed into single writes.
+     * Call {@link #setWritePackingEnabled(boolean)} to change.
+     * Volatile, as it is read on the calling threads, see {@link #write(byte[])}.
+     */
+    private volatile boolean mWritePackingEnabled;
+
+    /**
+     * Flag indicating whether responses to upload and download commands reassembled from
+     * multiple notifications keep their bytes.
+     * Call {@link #setTransferResponseBytesKept(boolean)} to change.
+     */
+    private volatile boolean mTransferResponseBytesKept = true;
+
+    /**
+     * Packs queued SMP packets into writes. Accessed only on the handler thread.
+     */
+    private final SmpWritePacker mWritePacker = new SmpWritePacker();
+
+    /**
+     * Flag set when a packed write is in the request queue. Packets sent meanwhile
+     * are packed into the next write, sent when this one completes.
+     */
+    private boolean mPackedWriteQueued;
+
+    /**
+     * Applies the link policy during transfers and tracks the link parameters.
+     * Accessed only on the handler thread.
+     */
+    private final LinkPolicyController mLinkPolicyController =
+            new LinkPolicyController(new LinkPolicyController.Link() {
+                @Override
+                public void requestConnectionPriority(final int priority) {
+                    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+                        mLinkPolicyController.onConnectionPriorityRejected();
+                        return;
+                    }
+                    McuMgrBleTransport.super.requestConnectionPriority(priority)
+                            .with((device, interval, latency, timeout) ->
+                                    mLinkPolicyController.onConnectionParametersChanged(interval, latency, timeout))
+                            .fail((device, status) -> mLinkPolicyController.onConnectionPriorityRejected())
+                            .enqueue();
+                }
+
+                @Override
+                public void requestPreferredPhy(final int phyMask) {
+                    setPreferredPhy(phyMask, phyMask, PhyRequest.PHY_OPTION_NO_PREFERRED)
+                            .with((device, txPhy, rxPhy) -> mLinkPolicyController.onPhyChanged(txPhy, rxPhy))
+                            .fail((device, status) -> mLinkPolicyController.onPhyRejected())
+                            .enqueue();
+                }
+
+                @Override
+                public void postDelayed(@NonNull final Runnable action, final long delayMillis) {
+                    mHandler.postDelayed(action, delayMillis);
+                }
+
+                @Override
+                public void removeCallbacks(@NonNull final Runnable action) {
+                    mHandler.removeCallbacks(action);
+                }
+
+                @Override
+                public void onLinkParametersChanged(@NonNull final LinkParameters parameters) {
+                    mLinkParameters = parameters;
+                    if (getMinLogPriority() <= Log.INFO) {
+                        log(Log.INFO, "Link parameters: " + parameters);
+                    }
+                    runOnCallbackExecutor(() -> notifyLinkParametersChanged(parameters));
+                }
+            });
+
+    /**
+     * The link policy set using {@link #setLinkPolicy(LinkPolicy)}.
+     */
+    @Nullable
+    private volatile LinkPolicy mLinkPolicy = LinkPolicy.DEFAULT;
+
+    /**
+     * The link parameters in effect, as last reported by {@link #mLinkPolicyController}.
+     */
+    @NonNull
+    private volatile LinkParameters mLinkParameters = LinkParameters.UNKNOWN;
 
     /**
      * The initial MTU size to be requested upon connection.
@@ -136,37 +234,79 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
      */
     private boolean mLoggingEnabled;
 
+    /**
+     * Optional capture of sent and received SMP packets.
+     * Call {@link #setPacketCapture(PacketCapture)} to set.
+     */
+    @Nullable
+    private volatile PacketCapture mPacketCapture;
+
     /**
      * The protocol layer session allows for asynchronous requests and responses
      * by using the sequence number to match transactions.
      * The session object is set when the device connects and the SMP service is
      * initialized. When the device disconnects, the protocol session is closed
      * and this variable is set to null.
+     * <p>
+     * The field is written on the handler thread and read by the fast send path on the
+     * caller's thread, so it has to be volatile.
      */
-    private SmpProtocolSession mSmpProtocol;
+    private volatile SmpProtocolSession mSmpProtocol;
 
     /**
      * The handler used to initialize {@link BleManager} and
      * {@link SmpProtocolSession}. The protocol session will call callbacks on
-     * the handler.
+     * the handler. As the {@link BleManager} calls back on the same handler,
+     * requests are sent and responses are delivered without posting them again.
      */
     private final Handler mHandler;
 
+    /**
+     * The executor on which {@link McuMgrCallback}s, except {@link McuMgrCallback.Direct} ones,
+     * and observers are called, or null to call them on the {@link #mHandler} thread.
+     */
+    @Nullable
+    private volatile Executor mCallbackExecutor;
+
     /**
      * The UUID configuration. This object allows for using custom UUIDs.
      */
     private final UuidConfig mUUIDConfig;
 
+    /**
+     * The thread shared by transports which were not given a handler.
+     */
+    private static HandlerThread sTransportThread;
+
     /**
      * Construct a McuMgrBleTransport object.
      * <p>
-     * Uses the main thread for callbacks.
+     * The {@link BleManager}, notifications and decoding of responses run on a background thread,
+     * shared by all transports created without a handler. Callbacks are called on the main thread,
+     * see {@link #setCallbackExecutor(Executor)}.
      *
      * @param context the context used to connect to the device.
      * @param device  the device to connect to and communicate with.
      */
     public McuMgrBleTransport(@NonNull Context context, @NonNull BluetoothDevice device) {
-        this(context, device, new Handler(Looper.getMainLooper()), new DefaultMcuMgrUuidConfig());
+        this(context, device, new Handler(Looper.getMainLooper())::post);
+    }
+
+    /**
+     * Construct a McuMgrBleTransport object with an executor for callbacks.
+     * <p>
+     * The {@link BleManager}, notifications and decoding of responses run on a background thread,
+     * shared by all transports created without a handler.
+     *
+     * @param context          the context used to connect to the device.
+     * @param device           the device to connect to and communicate with.
+     * @param callbackExecutor the executor to call {@link McuMgrCallback}s and observers on.
+     */
+    public McuMgrBleTransport(@NonNull Context context,
+                              @NonNull BluetoothDevice device,
+                              @NonNull Executor callbackExecutor) {
+        this(context, device, new Handler(getTransportLooper()), new DefaultMcuMgrUuidConfig());
+        mCallbackExecutor = callbackExecutor;
     }
 
     /**
@@ -202,6 +342,15 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         mUUIDConfig = uuidConfig;
     }
 
+    @NonNull
+    private static synchronized Looper getTransportLooper() {
+        if (sTransportThread == null) {
+            sTransportThread = new HandlerThread("McuMgrBleTransport");
+            sTransportThread.start();
+        }
+        return sTransportThread.getLooper();
+    }
+
     /**
      * Returns the device set in the constructor.
      *
@@ -248,6 +397,28 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         return mMaxPacketLength;
     }
 
+    /**
+     * Returns the number of SMP buffers of the device, read from McuMgr parameters after
+     * connection. This is used to choose the upload window, if not set explicitly.
+     *
+     * @return The number of SMP buffers, or 0 if not known.
+     */
+    @Override
+    public int getSmpBufferCount() {
+        return mSmpBufferCount;
+    }
+
+    /**
+     * Returns the size of the SMP buffers of the device, read from McuMgr parameters after
+     * connection.
+     *
+     * @return The size of SMP buffers, in bytes, or 0 if not known.
+     */
+    @Override
+    public int getSmpBufferSize() {
+        return mSmpBufferSize;
+    }
+
     /**
      * Sets the initial MTU size to be requested upon connection.
      * <p>
@@ -279,6 +450,173 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         setMaxPacketLength(maxLength);
     }
 
+    /**
+     * Enables packing of multiple SMP packets into a single write.
+     * <p>
+     * By default, each SMP packet is sent in its own write, even if it is much shorter than MTU.
+     * When enabled, packets sent while the previous write is still queued, for example a burst
+     * of short requests, are packed together into a single write of up to MTU-3 bytes, which
+     * saves connection events. Packed writes never exceed the SMP buffer size, nor contain more
+     * packets than the SMP buffer count of the device, so packing is used only when the
+     * McuMgr parameters were read from the device after connection, and the device has
+     * at least 2 buffers.
+     * <p>
+     * This must be supported by the SMP server on the device, which must split a write
+     * into packets using the length from each header.
+     *
+     * @param enabled true to enable packing, false to disable (default).
+     */
+    public void setWritePackingEnabled(boolean enabled) {
+        mWritePackingEnabled = enabled;
+    }
+
+    /**
+     * Returns whether packing of multiple SMP packets into a single write is enabled.
+     *
+     * @return True, if enabled using {@link #setWritePackingEnabled(boolean)}.
+     */
+    public boolean isWritePackingEnabled() {
+        return mWritePackingEnabled;
+    }
+
+    /**
+     * Sets whether responses to upload and download commands keep the bytes of the packet.
+     * <p>
+     * Responses longer than a single notification are reassembled in pooled buffers. By default,
+     * the response keeps a copy of the packet, returned by {@link McuMgrResponse#getBytes()}.
+     * When set to false, transfer responses reassembled in a pooled buffer are decoded directly
+     * from it and keep only the decoded fields, which saves a copy of every such response.
+     * Their {@link McuMgrResponse#getBytes()} and {@link McuMgrResponse#getPayload()} return
+     * null. Other responses always keep their bytes.
+     *
+     * @param kept false to decode transfer responses without keeping their bytes,
+     *             true to keep them (default).
+     */
+    public void setTransferResponseBytesKept(boolean kept) {
+        mTransferResponseBytesKept = kept;
+    }
+
+    /**
+     * Returns whether responses to upload and download commands keep the bytes of the packet.
+     *
+     * @return False, if disabled using {@link #setTransferResponseBytesKept(boolean)}.
+     */
+    public boolean isTransferResponseBytesKept() {
+        return mTransferResponseBytesKept;
+    }
+
+    //*******************************************************************************************
+    // Callbacks
+    //*******************************************************************************************
+
+    /**
+     * Sets the executor on which {@link McuMgrCallback}s, connection callbacks and observers
+     * are called. Responses are always decoded on the transport thread, before being handed
+     * over to the executor.
+     * <p>
+     * Callbacks implementing {@link McuMgrCallback.Direct}, for example those used by uploads
+     * and synchronous requests, are called directly on the transport thread.
+     *
+     * @param executor the executor, or null to call callbacks on the transport thread, that is
+     *                 the thread of the handler given in the constructor, or the background
+     *                 thread if none was given.
+     */
+    public void setCallbackExecutor(@Nullable final Executor executor) {
+        mCallbackExecutor = executor;
+    }
+
+    /**
+     * Returns the executor on which callbacks are called.
+     *
+     * @return The executor, or null if callbacks are called on the transport thread.
+     */
+    @Nullable
+    public Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    /**
+     * Runs the action on the callback executor, if set, or on the handler thread.
+     */
+    private void runOnCallbackExecutor(@NonNull final Runnable action) {
+        final Executor executor = mCallbackExecutor;
+        if (executor != null) {
+            executor.execute(action);
+        } else {
+            runOnCallbackThread(action);
+        }
+    }
+
+    /**
+     * Returns a callback calling the given one on the callback executor, if set.
+     */
+    @NonNull
+    private <T extends McuMgrResponse> McuMgrCallback<T> onCallbackExecutor(@NonNull final McuMgrCallback<T> callback) {
+        final Executor executor = mCallbackExecutor;
+        if (executor == null || callback instanceof McuMgrCallback.Direct) {
+            return callback;
+        }
+        return new McuMgrCallback<>() {
+            @Override
+            public void onResponse(@NonNull final T response) {
+                executor.execute(() -> callback.onResponse(response));
+            }
+
+            @Override
+            public void onError(@NonNull final McuMgrException error) {
+                executor.execute(() -> callback.onError(error));
+            }
+        };
+    }
+
+    //*******************************************************************************************
+    // Link policy
+    //*******************************************************************************************
+
+    /**
+     * Sets the link parameters requested during uploads and downloads.
+     * <p>
+     * By default, {@link LinkPolicy#DEFAULT} is used: high connection priority and LE 2M PHY
+     * are requested when a transfer starts, and balanced priority is requested 5 seconds after
+     * the last transfer has finished. The change applies from the next transfer.
+     *
+     * @param policy the policy, or null to leave the link parameters as they are.
+     */
+    public void setLinkPolicy(@Nullable final LinkPolicy policy) {
+        mLinkPolicy = policy;
+        mHandler.post(() -> mLinkPolicyController.setPolicy(policy));
+    }
+
+    /**
+     * Returns the link policy set using {@link #setLinkPolicy(LinkPolicy)}.
+     *
+     * @return The link policy, or null if disabled.
+     */
+    @Nullable
+    public LinkPolicy getLinkPolicy() {
+        return mLinkPolicy;
+    }
+
+    /**
+     * Returns the parameters of the link in effect.
+     *
+     * @return The link parameters, {@link LinkParameters#UNKNOWN} when not connected.
+     */
+    @NonNull
+    public LinkParameters getLinkParameters() {
+        return mLinkParameters;
+    }
+
+    @Override
+    public void onTransferStarted() {
+        mHandler.post(mLinkPolicyController::onTransferStarted);
+    }
+
+    @Override
+    public void onTransferFinished() {
+        mHandler.post(mLinkPolicyController::onTransferFinished);
+    }
+
     //*******************************************************************************************
     // Logging
     //*******************************************************************************************
@@ -292,6 +630,30 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         mLoggingEnabled = enabled;
     }
 
+    /**
+     * Sets a capture which will record all sent and received SMP packets.
+     * <p>
+     * Recording is much cheaper than logging packets with {@link #setLoggingEnabled(boolean)},
+     * as packets are not parsed, and may be left enabled. The capture can be saved using
+     * {@link PacketCapture#writeTo(java.io.OutputStream)} and decoded offline using
+     * {@link no.nordicsemi.android.mcumgr.capture.CaptureDecoder}.
+     *
+     * @param capture the capture, or null to stop recording.
+     */
+    public void setPacketCapture(@Nullable PacketCapture capture) {
+        mPacketCapture = capture;
+    }
+
+    /**
+     * Returns the capture set using {@link #setPacketCapture(PacketCapture)}.
+     *
+     * @return The capture, or null if not set.
+     */
+    @Nullable
+    public PacketCapture getPacketCapture() {
+        return mPacketCapture;
+    }
+
     @Override
     public int getMinLogPriority() {
         return mLoggingEnabled ? super.getMinLogPriority() : Log.WARN;
@@ -341,7 +703,8 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
                                              @NonNull final Class<T> responseType)
             throws McuMgrException {
         final ResultCondition<T> condition = new ResultCondition<>(false);
-        send(payload, timeout, responseType, new McuMgrCallback<>() {
+        // The result is handed over to the waiting thread, no need to use the callback executor.
+        sendInternal(payload, timeout, responseType, new McuMgrCallback<>() {
             @Override
             public void onResponse(@NonNull T response) {
                 condition.open(response);
@@ -360,6 +723,21 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
                                                 final long timeout,
                                                 @NonNull final Class<T> responseType,
                                                 @NonNull final McuMgrCallback<T> callback) {
+        sendInternal(payload, timeout, responseType, onCallbackExecutor(callback));
+    }
+
+    private <T extends McuMgrResponse> void sendInternal(@NonNull final byte[] payload,
+                                                         final long timeout,
+                                                         @NonNull final Class<T> responseType,
+                                                         @NonNull final McuMgrCallback<T> callback) {
+        // Fast path: when the device is connected and the SMP service is initialized,
+        // the request is sent directly to the SMP session. Otherwise, a connect request is
+        // enqueued, which would delay every request until all queued operations complete.
+        final SmpProtocolSession session = mSmpProtocol;
+        if (session != null && isReady()) {
+            send(session, payload, timeout, responseType, callback);
+            return;
+        }
 
         // If device is not connected, connect.
         // If the device was already connected, the completion callback will be called immediately.
@@ -367,71 +745,9 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         connect(mDevice)
                 .done(device -> {
                     if (!wasConnected) {
-                        notifyConnected();
-                    }
-
-                    // Ensure the MTU is sufficient. Packets longer than MTU, but shorter
-                    // then few MTU lengths can be split automatically.
-                    if (mMaxPacketLength < payload.length) {
-                        callback.onError(new InsufficientMtuException(payload.length, mMaxPacketLength));
-                        return;
+                        runOnCallbackExecutor(this::notifyConnected);
                     }
-
-                    // Send a new transaction to the protocol layer
-                    final SmpProtocolSession session = mSmpProtocol;
-                    session.send(payload, timeout, new SmpTransaction() {
-                        @Override
-                        public void send(@NonNull byte[] data) {
-                            if (getMinLogPriority() <= Log.INFO) {
-                                try {
-                                    log(Log.INFO, "Sending (" + payload.length + " bytes) "
-                                            + McuMgrHeader.fromBytes(payload) + " CBOR "
-                                            + CBOR.toString(payload, McuMgrHeader.HEADER_LENGTH));
-                                } catch (Exception e) {
-                                    // Ignore
-                                }
-                            }
-
-                            // As the write is done without response, it will finish successfully
-                            // even if the device is unreachable. There is no need to catch any
-                            // failures. In the device gets disconnected, the SMP protocol
-                            // session will be closed and all requests will be cancelled.
-
-                            // Note: waitForNotification is not uses, as the library supports
-                            //       asynchronous writes, that is can send multiple requests
-                            //       before receiving a notification and will match responses
-                            //       to the callbacks based on the Sequence number in each packet.
-                            writeCharacteristic(mSmpCharacteristicWrite, payload,
-                                    BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE)
-                                    .split()
-                                    .enqueue();
-                        }
-
-                        @Override
-                        public void onResponse(@NonNull byte[] data) {
-                            try {
-                                T response = McuMgrResponse.buildResponse(McuMgrScheme.BLE, data, responseType);
-                                if (response.isSuccess()) {
-                                    callback.onResponse(response);
-                                } else {
-                                    callback.onError(new McuMgrErrorException(response));
-                                }
-                            } catch (final Exception e) {
-                                callback.onError(new McuMgrException(e));
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(@NonNull Throwable e) {
-                            if (e instanceof McuMgrException) {
-                                callback.onError((McuMgrException) e);
-                            } else if (e instanceof TransactionTimeoutException) {
-                                callback.onError(new McuMgrTimeoutException(e));
-                            } else {
-                                callback.onError(new McuMgrException(e));
-                            }
-                        }
-                    });
+                    send(mSmpProtocol, payload, timeout, responseType, callback);
                 }).fail((device, status) -> {
                     switch (status) {
                         // This could be thrown only if the manager was requested to connect for
@@ -468,27 +784,116 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         .enqueue();
     }
 
+    /**
+     * Sends the request using the SMP session. This method may be called on any thread.
+     * The session is in direct mode, so the request is captured, logged and written on
+     * the calling thread. Responses are delivered on the handler thread.
+     */
+    private <T extends McuMgrResponse> void send(@Nullable final SmpProtocolSession session,
+                                                 @NonNull final byte[] payload,
+                                                 final long timeout,
+                                                 @NonNull final Class<T> responseType,
+                                                 @NonNull final McuMgrCallback<T> callback) {
+        if (session == null) {
+            runOnCallbackThread(() -> callback.onError(new McuMgrDisconnectedException()));
+            return;
+        }
+        // Ensure the MTU is sufficient. Packets longer than MTU, but shorter
+        // then few MTU lengths can be split automatically.
+        final int maxPacketLength = mMaxPacketLength;
+        if (maxPacketLength < payload.length) {
+            runOnCallbackThread(() -> callback.onError(new InsufficientMtuException(payload.length, maxPacketLength)));
+            return;
+        }
+
+        // Send a new transaction to the protocol layer
+        final SmpTransaction transaction = new SmpTransaction() {
+            @Override
+            public void send(@NonNull byte[] data) {
+                final PacketCapture capture = mPacketCapture;
+                if (capture != null) {
+                    capture.record(PacketCapture.OUTGOING, payload);
+                }
+                if (getMinLogPriority() <= Log.INFO) {
+                    try {
+                        log(Log.INFO, "Sending (" + payload.length + " bytes) "
+                                + McuMgrHeader.fromBytes(payload) + " CBOR "
+                                + CBOR.toString(payload, McuMgrHeader.HEADER_LENGTH));
+                    } catch (Exception e) {
+                        // Ignore
+                    }
+                }
+
+                // As the write is done without response, it will finish successfully
+                // even if the device is unreachable. There is no need to catch any
+                // failures. In the device gets disconnected, the SMP protocol
+                // session will be closed and all requests will be cancelled.
+
+                // Note: waitForNotification is not uses, as the library supports
+                //       asynchronous writes, that is can send multiple requests
+                //       before receiving a notification and will match responses
+                //       to the callbacks based on the Sequence number in each packet.
+                write(payload);
+            }
+
+            @Override
+            public void onResponse(@NonNull byte[] data, int length, boolean reused) {
+                try {
+                    // A pooled buffer is reused by the reassembler when this method returns.
+                    // Unless allowed, the response copies the packet to keep its bytes.
+                    T response = reused && !mTransferResponseBytesKept
+                            ? McuMgrResponse.buildResponseFromReusedBuffer(McuMgrScheme.BLE, data, length, responseType)
+                            : McuMgrResponse.buildResponse(McuMgrScheme.BLE, data, length, responseType);
+                    if (response.isSuccess()) {
+                        callback.onResponse(response);
+                    } else {
+                        callback.onError(new McuMgrErrorException(response));
+                    }
+                } catch (final Exception e) {
+                    callback.onError(new McuMgrException(e));
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable e) {
+                if (e instanceof McuMgrException) {
+                    callback.onError((McuMgrException) e);
+                } else if (e instanceof TransactionTimeoutException) {
+                    callback.onError(new McuMgrTimeoutException(e));
+                } else {
+                    callback.onError(new McuMgrException(e));
+                }
+            }
+        };
+        try {
+            session.send(payload, timeout, transaction);
+        } catch (final IllegalStateException e) {
+            // The session was closed after the check in the fast path.
+            runOnCallbackThread(() -> callback.onError(new McuMgrDisconnectedException()));
+        }
+    }
+
     @Override
     public void connect(@Nullable final ConnectionCallback callback) {
         if (isConnected()) {
             if (callback != null) {
-                callback.onConnected();
+                runOnCallbackExecutor(callback::onConnected);
             }
             return;
         }
         connect(mDevice)
                 .retry(3, 500)
-                .done(device -> {
+                .done(device -> runOnCallbackExecutor(() -> {
                     notifyConnected();
-                    if (callback == null) {
-                        return;
+                    if (callback != null) {
+                        callback.onConnected();
                     }
-                    callback.onConnected();
-                })
+                }))
                 .fail((device, status) -> {
                     if (callback == null) {
                         return;
                     }
+                    final McuMgrException error;
                     switch (status) {
                         // This could be thrown only if the manager was requested to connect for
                         // a second time and to a different device than the one that's already
@@ -499,26 +904,28 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
                         case FailCallback.REASON_REQUEST_FAILED:
                         case FailCallback.REASON_DEVICE_DISCONNECTED:
                         case FailCallback.REASON_CANCELLED: {
-                            callback.onError(new McuMgrDisconnectedException());
+                            error = new McuMgrDisconnectedException();
                             break;
                         }
                         case FailCallback.REASON_DEVICE_NOT_SUPPORTED: {
-                            callback.onError(new McuMgrNotSupportedException());
+                            error = new McuMgrNotSupportedException();
                             break;
                         }
-                        case FailCallback.REASON_TIMEOUT: {                            // Called after receiving error 133 after 30 seconds.
-                            callback.onError(new McuMgrTimeoutException());
+                        case FailCallback.REASON_TIMEOUT: {
+                            // Called after receiving error 133 after 30 seconds.
+                            error = new McuMgrTimeoutException();
                             break;
                         }
                         case FailCallback.REASON_BLUETOOTH_DISABLED: {
-                            callback.onError(new McuMgrBluetoothDisabledException());
+                            error = new McuMgrBluetoothDisabledException();
                             break;
                         }
                         default: {
-                            callback.onError(new McuMgrException(GattError.parseConnectionError(status)));
+                            error = new McuMgrException(GattError.parseConnectionError(status));
                             break;
                         }
                     }
+                    runOnCallbackExecutor(() -> callback.onError(error));
                 })
                 .enqueue();
     }
@@ -541,7 +948,8 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
      * - Interval: 100 - 125 ms, latency: 2, supervision timeout: 20 sec.</li>
      * </ol>
      * Calling this method with priority {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH} may
-     * improve file transfer speed.
+     * improve file transfer speed. By default this is done automatically during transfers,
+     * see {@link #setLinkPolicy(LinkPolicy)}, which may override the priority requested here.
      * <p>
      * Similarly to {@link #send(byte[], long, Class)}, this method will connect automatically
      * to the device if not connected.
@@ -662,7 +1070,7 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
     // called.
     @Override
     protected final void initialize() {
-        mSmpProtocol = new SmpProtocolSession(mHandler);
+        mSmpProtocol = new SmpProtocolSession(mHandler, true);
 
         // Request as high MTU as possible. As SMP protocol is fairly slow, requires a
         // notification for each packet sent, make sure the packets are as big as possible.
@@ -715,6 +1123,9 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
                                 log(Log.INFO, "SMP reassembly supported with buffer size: " + response.bufSize + " bytes and count: " + response.bufCount);
                             }
                             mMaxPacketLength = response.bufSize;
+                            mSmpBufferSize = response.bufSize;
+                            mSmpBufferCount = response.bufCount;
+                            mSmpReassembler.setBufferSize(response.bufSize);
                         } catch (final Exception e) {
                             // Ignore
                         }
@@ -723,31 +1134,91 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
                 .enqueue();
 
         // Registered as a callback for all notifications from the SMP characteristic.
-        // Forwards the merged data packets to the protocol layer to be matched to a request.
+        // Forwards the reassembled packets to the protocol layer to be matched to a request.
+        // The session is in direct mode, so the packet is decoded on this thread, before the
+        // reassembler reuses a pooled buffer.
+        mSmpReassembler.reset();
         setNotificationCallback(mSmpCharacteristicNotify)
-                .merge(mSMPMerger)
                 .with((device, data) -> {
-                    final SmpProtocolSession session = mSmpProtocol;
                     final byte[] bytes = data.getValue();
-                    if (bytes == null || session == null) {
-                        return;
+                    if (bytes != null && mSmpProtocol != null) {
+                        mSmpReassembler.accept(bytes, this::onFrame);
                     }
-                    if (getMinLogPriority() <= Log.INFO) {
-                        try {
-                            log(Log.INFO, "Received "
-                                    + McuMgrHeader.fromBytes(bytes) + " CBOR "
-                                    + CBOR.toString(bytes, McuMgrHeader.HEADER_LENGTH));
-                        } catch (Exception e) {
-                            // Ignore
-                        }
-                    }
-                    session.receive(bytes);
                 });
 
+        // Read the PHY and apply the link policy, if a transfer is pending.
+        readPhy()
+                .with((device, txPhy, rxPhy) -> mLinkPolicyController.onPhyChanged(txPhy, rxPhy))
+                .enqueue();
+        mLinkPolicyController.onConnected();
+
         // Initialize additional services.
         initializeAdditionalServices();
     }
 
+    /**
+     * Writes the SMP packet, or adds it to the next packed write.
+     * May be called on any thread, the packer is used only on the handler thread.
+     */
+    private void write(@NonNull final byte[] payload) {
+        if (!mWritePackingEnabled || mSmpBufferCount < 2) {
+            writeCharacteristic(mSmpCharacteristicWrite, payload,
+                    BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE)
+                    .split()
+                    .enqueue();
+            return;
+        }
+        if (Looper.myLooper() != mHandler.getLooper()) {
+            mHandler.post(() -> pack(payload));
+            return;
+        }
+        pack(payload);
+    }
+
+    private void pack(@NonNull final byte[] payload) {
+        mWritePacker.add(payload);
+        if (!mPackedWriteQueued) {
+            writePacked();
+        }
+    }
+
+    private void writePacked() {
+        mWritePacker.setMaxLength(Math.min(getMtu() - 3, mSmpBufferSize));
+        mWritePacker.setMaxFrames(mSmpBufferCount);
+        final byte[] data = mWritePacker.poll();
+        mPackedWriteQueued = data != null;
+        if (data == null) {
+            return;
+        }
+        // Packets longer than MTU-3 are written alone and split as before.
+        writeCharacteristic(mSmpCharacteristicWrite, data,
+                BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE)
+                .split()
+                .then(device -> writePacked())
+                .enqueue();
+    }
+
+    private void onFrame(@NonNull final byte[] frame, final int length, final boolean pooled) {
+        final SmpProtocolSession session = mSmpProtocol;
+        if (session == null) {
+            return;
+        }
+        final PacketCapture capture = mPacketCapture;
+        if (capture != null) {
+            capture.record(PacketCapture.INCOMING, frame, 0, length);
+        }
+        if (getMinLogPriority() <= Log.INFO) {
+            try {
+                log(Log.INFO, "Received "
+                        + McuMgrHeader.fromBytes(frame) + " CBOR "
+                        + CBOR.toTree(frame, McuMgrHeader.HEADER_LENGTH, length - McuMgrHeader.HEADER_LENGTH));
+            } catch (Exception e) {
+                // Ignore
+            }
+        }
+        session.receive(frame, length, pooled);
+    }
+
     // Called when the device has disconnected. This method nulls the services and
     // characteristic variables.
     @Override
@@ -759,8 +1230,13 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         mSmpCharacteristicWrite = null;
         mSmpCharacteristicNotify = null;
         mMaxPacketLength = 0;
+        mSmpBufferSize = 0;
+        mSmpBufferCount = 0;
+        mWritePacker.clear();
+        mPackedWriteQueued = false;
+        mLinkPolicyController.onDisconnected();
         onAdditionalServicesInvalidated();
-        runOnCallbackThread(this::notifyDisconnected);
+        runOnCallbackExecutor(this::notifyDisconnected);
     }
 
     //*******************************************************************************************
@@ -791,6 +1267,33 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         }
     }
 
+    private final List<LinkParameters.Observer> mLinkParametersObservers = new LinkedList<>();
+
+    /**
+     * Adds an observer notified when the link parameters change.
+     *
+     * @param observer the observer.
+     * @see #getLinkParameters()
+     */
+    public synchronized void addLinkParametersObserver(@NonNull final LinkParameters.Observer observer) {
+        mLinkParametersObservers.add(observer);
+    }
+
+    /**
+     * Removes the observer added using {@link #addLinkParametersObserver(LinkParameters.Observer)}.
+     *
+     * @param observer the observer.
+     */
+    public synchronized void removeLinkParametersObserver(@NonNull final LinkParameters.Observer observer) {
+        mLinkParametersObservers.remove(observer);
+    }
+
+    private synchronized void notifyLinkParametersChanged(@NonNull final LinkParameters parameters) {
+        for (LinkParameters.Observer o : mLinkParametersObservers) {
+            o.onLinkParametersChanged(parameters);
+        }
+    }
+
     //*******************************************************************************************
     // An Android hack to allow sending and receiving on the same characteristic.
     // The characteristic is cloned, and data sent and received do not share the same value,
@@ -1,170 +1,229 @@
 package no.nordicsemi.android.mcumgr.ble.callback
 
 import android.os.Handler
-import kotlinx.coroutines.CoroutineExceptionHandler
 import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancel
 import kotlinx.coroutines.channels.Channel
-import kotlinx.coroutines.channels.consumeEach
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.sync.Mutex
-import kotlinx.coroutines.sync.withLock
 import no.nordicsemi.android.mcumgr.McuMgrHeader
-import no.nordicsemi.android.mcumgr.ble.util.RotatingCounter
+import no.nordicsemi.android.mcumgr.ble.util.TimeoutWheel
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.atomic.AtomicReferenceArray
 import kotlin.coroutines.EmptyCoroutineContext
 
 private const val SMP_SEQ_NUM_MAX = 255
-
+private const val TIMEOUT_TICK: Long = 50 // ms
+
+/**
+ * Matches SMP responses to requests using the Sequence Number from the header.
+ *
+ * Outstanding transactions are kept in an atomic slot array indexed by the sequence number.
+ * A response is matched by clearing its slot, without any locking, and is delivered
+ * on the thread calling [receive].
+ *
+ * @param handler the handler to post callbacks to. Timeouts and the failures on [close]
+ * are always posted to the handler, if set, as they happen on other threads.
+ * @param direct if true, [SmpTransaction.send] and [SmpTransaction.onResponse] are called
+ * directly on the thread calling [send] and [receive]. [send] may then be called on any thread,
+ * so [SmpTransaction.send] must be thread safe. Use it when [receive] is called on the [handler]
+ * thread already. If false, both are posted to the handler.
+ */
 internal class SmpProtocolSession(
-    private val handler: Handler? = null
+    private val handler: Handler? = null,
+    private val direct: Boolean = true,
 ) {
     internal companion object {
         const val TIMEOUT: Long = 30_000
     }
 
-    private data class Outgoing(val data: ByteArray,
-                                val timeout: Long,
-                                val transaction: SmpTransaction) {
-        override fun equals(other: Any?): Boolean {
-            if (this === other) return true
-            if (javaClass != other?.javaClass) return false
-
-            other as Outgoing
-
-            if (!data.contentEquals(other.data)) return false
-
-            return true
-        }
+    private val scope = CoroutineScope(EmptyCoroutineContext)
+    private val sequenceCounter = AtomicInteger()
+    private val transactions = AtomicReferenceArray<SmpTransaction?>(SMP_SEQ_NUM_MAX + 1)
+    /** Number of non-empty slots in [transactions]. */
+    private val outstanding = AtomicInteger()
+    /** The exception the session was closed with, or null, if open. */
+    private val closed = AtomicReference<Exception?>()
 
-        override fun hashCode(): Int {
-            return data.contentHashCode()
+    /**
+     * Timeouts of all outstanding transactions.
+     *
+     * The wheel, and setting a slot, are guarded by the wheel's monitor. Clearing a slot
+     * does not take the lock, so a timeout of a transaction which has received a response
+     * stays armed. When it expires, the slot is empty, or its timeout would have been rearmed.
+     */
+    private val timeouts = TimeoutWheel(SMP_SEQ_NUM_MAX + 1, TIMEOUT_TICK)
+    /** Resumes the timer when a transaction is added while there was none. */
+    private val timerWakeUp = Channel<Unit>(Channel.CONFLATED)
+    // Expired transactions are collected under the lock and failed after releasing it.
+    private val expired: Array<SmpTransaction?> = arrayOfNulls(SMP_SEQ_NUM_MAX + 1)
+    private val expiredIds = IntArray(SMP_SEQ_NUM_MAX + 1)
+    private var expiredCount = 0
+    private val onExpired: (Int) -> Unit = { id ->
+        val transaction = transactions.getAndSet(id, null)
+        if (transaction != null) {
+            outstanding.decrementAndGet()
+            expired[expiredCount] = transaction
+            expiredIds[expiredCount++] = id
         }
     }
 
-    private val scope = CoroutineScope(EmptyCoroutineContext)
-    private val txChannel: Channel<Outgoing> = Channel(SMP_SEQ_NUM_MAX + 1)
-    private val rxChannel: Channel<ByteArray> = Channel(SMP_SEQ_NUM_MAX + 1)
-    private val sequenceCounter = RotatingCounter(SMP_SEQ_NUM_MAX)
-    private val transactions: Array<Pair<SmpTransaction, Job>?> = arrayOfNulls(SMP_SEQ_NUM_MAX + 1)
-    private val transactionsMutex = Mutex()
-
     /**
-     * Launches the main coroutine and channel consumers.
+     * Launches the timer.
      */
     init {
-        scope.launch(
-            // When the session is closed, fail all remaining transactions.
-            // Exception is propagated from close through the channels.
-            CoroutineExceptionHandler { _, throwable ->
-                transactions.forEach {
-                    it?.second?.cancel()
-                    it?.first?.onFailure(throwable)
-                }
-            }
-        ) {
-            // Launch the reader and writer
-            launch { reader() }
-            launch { writer() }
-        }
+        scope.launch { timer() }
     }
 
+    /**
+     * Assigns the next sequence number to the request and sends it using
+     * [SmpTransaction.send]. An outstanding transaction with the same sequence
+     * number fails with [TransactionOverwriteException].
+     *
+     * @throws IllegalStateException if the session has been closed.
+     */
     fun send(data: ByteArray, timeout: Long, transaction: SmpTransaction) {
-        check(txChannel.trySend(Outgoing(data, timeout, transaction)).isSuccess) {
-            "Cannot send request, transmit channel buffer is full."
+        check(closed.get() == null) { "Cannot send request, the session is closed." }
+
+        // Set sequence number in outgoing data
+        val sequenceNumber = sequenceCounter.getAndIncrement() and SMP_SEQ_NUM_MAX
+        data.setSequenceNumber(sequenceNumber)
+
+        // Add transaction to store and arm its timeout.
+        val oldTransaction = synchronized(timeouts) {
+            timeouts.arm(sequenceNumber, timeout, now())
+            val old = transactions.getAndSet(sequenceNumber, transaction)
+            if (old == null && outstanding.getAndIncrement() == 0) {
+                timerWakeUp.trySend(Unit)
+            }
+            old
+        }
+        // Fail an existing transaction on overwrite
+        oldTransaction?.post { onFailure(TransactionOverwriteException(sequenceNumber)) }
+
+        // The session may have been closed after the check above. In that case,
+        // the transaction may have been added after all were failed.
+        closed.get()?.let { e ->
+            take(sequenceNumber, transaction)?.post { onFailure(e) }
+            return
         }
+
+        // Send the transaction
+        transaction.dispatch { send(data) }
     }
 
-    fun receive(data: ByteArray) {
-        check(rxChannel.trySend(data).isSuccess) {
-            "Cannot receive response, receive channel buffer is full."
+    /**
+     * Matches the response to a transaction and calls [SmpTransaction.onResponse].
+     * Responses which do not match any outstanding transaction are ignored.
+     *
+     * @param data the buffer with the response, starting at index 0. In direct mode,
+     * the buffer is passed on as is. Otherwise, the response is copied before posting it
+     * to the handler.
+     * @param length the length of the response in the buffer.
+     * @param reused whether the buffer is reused by the caller when this method returns.
+     */
+    fun receive(data: ByteArray, length: Int = data.size, reused: Boolean = false) {
+        if (length < McuMgrHeader.HEADER_LENGTH) {
+            return
+        }
+        // Get the transaction from the store and clear the entry. The timeout is left
+        // armed, see timeouts.
+        val sequenceNumber = data.getSequenceNumber()
+        val transaction = transactions.getAndSet(sequenceNumber, null) ?: return
+        outstanding.decrementAndGet()
+        when {
+            direct || handler == null -> transaction.onResponse(data, length, reused)
+            else -> {
+                val response = data.copyOf(length)
+                handler.post { transaction.onResponse(response, length, false) }
+            }
         }
     }
 
+    /**
+     * Closes the session and fails all outstanding transactions with given exception.
+     */
     fun close(e: Exception) {
-        txChannel.close(e)
-        rxChannel.close(e)
+        if (!closed.compareAndSet(null, e)) {
+            return
+        }
+        scope.cancel()
+        for (i in 0..SMP_SEQ_NUM_MAX) {
+            transactions.getAndSet(i, null)?.let { transaction ->
+                outstanding.decrementAndGet()
+                transaction.post { onFailure(e) }
+            }
+        }
     }
 
     /**
-     * Consumes messages off the tx channel until the channel is closed.
+     * Fails transactions which timed out, until the session is closed.
+     * The timer is suspended while there are no outstanding transactions.
      */
-    private suspend fun writer() {
-        txChannel.consumeEach { outgoing ->
-            // Set sequence number in outgoing data
-            val sequenceNumber = sequenceCounter.getAndRotate()
-            outgoing.data.setSequenceNumber(sequenceNumber)
-
-            val job = scope.launch {
-                delay(outgoing.timeout)
-                val transaction = getAndSetTransaction(sequenceNumber, null)
-                transaction?.first?.onFailure(handler, TransactionTimeoutException(sequenceNumber))
+    private suspend fun timer() {
+        while (true) {
+            val idle = synchronized(timeouts) {
+                // Slots are set only under the lock, so no transaction can be added
+                // meanwhile. All remaining timeouts belong to completed transactions.
+                (outstanding.get() == 0).also { idle ->
+                    if (idle) timeouts.clear()
+                }
             }
+            if (idle) {
+                timerWakeUp.receive()
+            }
+            delay(timeouts.tickMillis)
 
-            // Add transaction to store. Fail an existing transaction on overwrite
-            val oldTransaction = getAndSetTransaction(sequenceNumber, outgoing.transaction to job)
-            oldTransaction?.second?.cancel()
-            oldTransaction?.first?.onFailure(handler, TransactionOverwriteException(sequenceNumber))
-
-            // Send the transaction and launch timeout coroutine
-            outgoing.transaction.send(handler, outgoing.data)
+            val count = synchronized(timeouts) {
+                expiredCount = 0
+                timeouts.advance(now(), onExpired)
+                expiredCount
+            }
+            for (i in 0 until count) {
+                val transaction = expired[i]!!
+                val id = expiredIds[i]
+                expired[i] = null
+                transaction.post { onFailure(TransactionTimeoutException(id)) }
+            }
         }
     }
 
     /**
-     * Consumes messages of the rx channel until the channel is closed.
+     * Removes the transaction from given slot, if it's still there.
      */
-    private suspend fun reader() {
-        rxChannel.consumeEach { data ->
-            // Parse header to get sequence number
-            val sequenceNumber = data.getSequenceNumber()
-
-            // Get the transaction from the store, clear the entry, and call
-            // the callback
-            val transaction = getAndSetTransaction(sequenceNumber, null)
-            transaction?.second?.cancel()
-            transaction?.first?.onResponse(handler, data)
+    private fun take(sequenceNumber: Int, transaction: SmpTransaction): SmpTransaction? {
+        if (!transactions.compareAndSet(sequenceNumber, transaction, null)) {
+            return null
         }
+        outstanding.decrementAndGet()
+        return transaction
     }
 
-    private suspend fun getAndSetTransaction(
-        id: Int,
-        transaction: Pair<SmpTransaction, Job>?,
-    ): Pair<SmpTransaction, Job>? = transactionsMutex.withLock {
-        val oldTransaction = transactions[id]
-        transactions[id] = transaction
-        return oldTransaction
-    }
-
-    private fun ByteArray.setSequenceNumber(value: Int) {
-        this[6] = (value and 0xff).toByte()
+    /** Calls the action directly in direct mode, otherwise posts it to the handler. */
+    private inline fun SmpTransaction.dispatch(crossinline action: SmpTransaction.() -> Unit) {
+        when {
+            direct || handler == null -> action()
+            else -> handler.post { action() }
+        }
     }
 
-    private fun ByteArray.getSequenceNumber(): Int {
-        if (size < McuMgrHeader.HEADER_LENGTH) {
-            throw IllegalArgumentException("Failed to parse mcumgr header from bytes; too short - length=$size")
+    /** Posts the action to the handler, if set, as it's called from a different thread. */
+    private inline fun SmpTransaction.post(crossinline action: SmpTransaction.() -> Unit) {
+        when (handler) {
+            null -> action()
+            else -> handler.post { action() }
         }
-        return this[6].toInt() and 0xFF
     }
-}
 
-private fun SmpTransaction.send(handler: Handler?, data: ByteArray) {
-    when (handler) {
-        null -> send(data)
-        else -> handler.post { send(data) }
-    }
-}
+    private fun now(): Long = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
 
-private fun SmpTransaction.onResponse(handler: Handler?, data: ByteArray) {
-    when (handler) {
-        null -> onResponse(data)
-        else -> handler.post { onResponse(data) }
+    private fun ByteArray.setSequenceNumber(value: Int) {
+        this[6] = (value and 0xff).toByte()
     }
-}
 
-private fun SmpTransaction.onFailure(handler: Handler?, e: Throwable) {
-    when (handler) {
-        null -> onFailure(e)
-        else -> handler.post { onFailure(e) }
+    private fun ByteArray.getSequenceNumber(): Int {
+        return this[6].toInt() and 0xFF
     }
 }
@@ -0,0 +1,111 @@
+package no.nordicsemi.android.mcumgr.ble.callback
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.ble.util.ByteArrayPool
+
+/**
+ * In theory, the packet length is 16-bit long, but in practice, it should not exceed
+ * 2475 bytes minus 8-byte header. Longer frames are considered invalid.
+ */
+private const val MAX_FRAME_LENGTH = 2500
+
+/**
+ * Reassembles SMP frames from notifications, without copying where possible.
+ *
+ * The length of the frame is read from the header in the first notification. A frame received
+ * in a single notification is passed on as is. Longer frames are assembled in a buffer taken
+ * from a pool of arrays of [bufferSize] bytes, which should be set to the SMP buffer size of
+ * the device. Such a buffer goes back to the pool when the consumer returns, so the consumer
+ * must not keep it, see
+ * [McuMgrResponse.buildResponseFromReusedBuffer][no.nordicsemi.android.mcumgr.response.McuMgrResponse.buildResponseFromReusedBuffer].
+ *
+ * This class is not thread safe, notifications must be given from a single thread.
+ */
+internal class SmpReassembler(bufferSize: Int) {
+
+    fun interface FrameConsumer {
+        /**
+         * Called with a complete frame, occupying the first [length] bytes of [frame].
+         * If [pooled] is true, the array is reused after this method returns. Otherwise,
+         * the consumer may keep it.
+         */
+        fun onFrame(frame: ByteArray, length: Int, pooled: Boolean)
+    }
+
+    private val pool = ByteArrayPool(bufferSize, capacity = 2)
+
+    /** The frame being assembled, or null if waiting for the first notification of a frame. */
+    private var frame: ByteArray? = null
+    /** Whether the [frame] buffer was taken from the pool. */
+    private var pooled = false
+    private var expectedLength = 0
+    private var receivedLength = 0
+
+    /** Size of the reassembly buffers. Frames longer than that are assembled in new arrays. */
+    var bufferSize: Int
+        get() = pool.bufferSize
+        set(value) {
+            pool.bufferSize = value
+        }
+
+    /**
+     * Adds the notification to the current frame, and calls the consumer if it is complete.
+     * Invalid frames are dropped. If the notification does not fit into the current frame,
+     * the frame is dropped and the notification starts a new one.
+     */
+    fun accept(notification: ByteArray, consumer: FrameConsumer) {
+        val current = frame
+        if (current == null) {
+            start(notification, consumer)
+            return
+        }
+        if (receivedLength + notification.size > expectedLength) {
+            // Fragments were lost, or the frame is corrupt. The notification is likely
+            // the beginning of the next frame.
+            reset()
+            start(notification, consumer)
+            return
+        }
+        System.arraycopy(notification, 0, current, receivedLength, notification.size)
+        receivedLength += notification.size
+        if (receivedLength == expectedLength) {
+            frame = null
+            try {
+                consumer.onFrame(current, expectedLength, pooled)
+            } finally {
+                if (pooled) pool.recycle(current)
+            }
+        }
+    }
+
+    /**
+     * Drops the incomplete frame, if any.
+     */
+    fun reset() {
+        frame?.let { if (pooled) pool.recycle(it) }
+        frame = null
+    }
+
+    private fun start(notification: ByteArray, consumer: FrameConsumer) {
+        if (notification.size < McuMgrHeader.HEADER_LENGTH) {
+            return
+        }
+        // Read the LEN field from the header.
+        val length = McuMgrHeader.HEADER_LENGTH +
+                ((notification[2].toInt() and 0xFF) shl 8 or (notification[3].toInt() and 0xFF))
+        if (length > MAX_FRAME_LENGTH) {
+            return
+        }
+        if (notification.size >= length) {
+            // Single notification frame, no need to copy.
+            consumer.onFrame(notification, length, false)
+            return
+        }
+        pooled = length <= pool.bufferSize
+        val buffer = if (pooled) pool.acquire() else ByteArray(length)
+        System.arraycopy(notification, 0, buffer, 0, notification.size)
+        frame = buffer
+        expectedLength = length
+        receivedLength = notification.size
+    }
+}
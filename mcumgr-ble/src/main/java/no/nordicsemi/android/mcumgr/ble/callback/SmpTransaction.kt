@@ -21,7 +21,17 @@ class TransactionOverwriteException internal constructor(
 }
 
 internal interface SmpTransaction {
+    /**
+     * Sends the request. In direct mode, it is called on the thread calling
+     * [SmpProtocolSession.send], which may be any thread.
+     */
     fun send(data: ByteArray)
-    fun onResponse(data: ByteArray)
+
+    /**
+     * Called with the response, occupying the first [length] bytes of [data].
+     * If [reused] is true, the array is reused after this method returns. Otherwise,
+     * the response may keep it.
+     */
+    fun onResponse(data: ByteArray, length: Int, reused: Boolean)
     fun onFailure(e: Throwable)
 }
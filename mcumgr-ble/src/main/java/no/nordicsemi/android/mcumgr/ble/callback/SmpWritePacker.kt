@@ -0,0 +1,64 @@
+package no.nordicsemi.android.mcumgr.ble.callback
+
+/**
+ * Packs queued SMP frames into writes.
+ *
+ * Consecutive frames are packed into a single write of at most [maxLength] bytes, containing
+ * at most [maxFrames] frames. The device must split such writes into frames using the length
+ * from each header, and must have a buffer for each frame, so [maxLength] should not exceed
+ * the ATT payload nor the SMP buffer size, and [maxFrames] should not exceed the SMP buffer
+ * count of the device. Frames never span writes, so a frame longer than [maxLength] is
+ * returned as is, to be split as a single frame.
+ *
+ * This class is not thread safe, frames must be added and polled from a single thread.
+ */
+internal class SmpWritePacker {
+    private val frames = ArrayDeque<ByteArray>()
+
+    /** The maximum length of a packed write. */
+    var maxLength = 0
+
+    /** The maximum number of frames in a packed write. */
+    var maxFrames = 1
+
+    val isEmpty: Boolean
+        get() = frames.isEmpty()
+
+    fun add(frame: ByteArray) {
+        frames.addLast(frame)
+    }
+
+    /**
+     * Removes the next frames and returns the data of the next write,
+     * or null if there are no frames.
+     */
+    fun poll(): ByteArray? {
+        val first = frames.removeFirstOrNull() ?: return null
+        var length = first.size
+        var count = 1
+        while (count < maxFrames && count <= frames.size && length + frames[count - 1].size <= maxLength) {
+            length += frames[count - 1].size
+            count++
+        }
+        if (count == 1) {
+            // Nothing to pack with, no need to copy.
+            return first
+        }
+        val write = ByteArray(length)
+        System.arraycopy(first, 0, write, 0, first.size)
+        var offset = first.size
+        repeat(count - 1) {
+            val frame = frames.removeFirst()
+            System.arraycopy(frame, 0, write, offset, frame.size)
+            offset += frame.size
+        }
+        return write
+    }
+
+    /**
+     * Drops all queued frames.
+     */
+    fun clear() {
+        frames.clear()
+    }
+}
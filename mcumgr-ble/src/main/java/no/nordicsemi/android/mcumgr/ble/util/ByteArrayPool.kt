@@ -0,0 +1,48 @@
+package no.nordicsemi.android.mcumgr.ble.util
+
+/**
+ * A pool of up to [capacity] byte arrays of the same size.
+ *
+ * [acquire] returns a free array from the pool, or a new one. Arrays given back using [recycle]
+ * are reused, unless the pool is full, or they have a different size. Changing [bufferSize]
+ * drops all free arrays.
+ *
+ * This class is thread safe.
+ */
+internal class ByteArrayPool(
+    bufferSize: Int,
+    private val capacity: Int = 4,
+) {
+    private val free = arrayOfNulls<ByteArray>(capacity)
+    private var count = 0
+
+    /** Size of arrays in the pool. */
+    @get:Synchronized
+    @set:Synchronized
+    var bufferSize: Int = bufferSize
+        set(value) {
+            if (field != value) {
+                field = value
+                free.fill(null, 0, count)
+                count = 0
+            }
+        }
+
+    @Synchronized
+    fun acquire(): ByteArray {
+        if (count == 0) {
+            return ByteArray(bufferSize)
+        }
+        val array = free[--count]!!
+        free[count] = null
+        return array
+    }
+
+    @Synchronized
+    fun recycle(array: ByteArray) {
+        if (array.size != bufferSize || count == capacity) {
+            return
+        }
+        free[count++] = array
+    }
+}
@@ -0,0 +1,174 @@
+package no.nordicsemi.android.mcumgr.ble.util
+
+import no.nordicsemi.android.mcumgr.ble.LinkParameters
+import no.nordicsemi.android.mcumgr.ble.LinkPolicy
+
+/**
+ * Applies a [LinkPolicy] to a BLE link, based on the number of active transfers,
+ * and tracks the [LinkParameters] in effect.
+ *
+ * The link is boosted when a transfer starts, or when the device connects while a transfer is
+ * active, and restored when no transfer has been active for [LinkPolicy.idleTimeout].
+ * A request rejected by the phone or the device is not repeated until the device reconnects.
+ *
+ * This class is not thread safe, all methods must be called on the same thread,
+ * on which the [Link] schedules delayed actions.
+ */
+internal class LinkPolicyController(private val link: Link) {
+
+    interface Link {
+        /** Requests the given connection priority. */
+        fun requestConnectionPriority(priority: Int)
+        /** Requests the given preferred PHY mask, in both directions. */
+        fun requestPreferredPhy(phyMask: Int)
+        /** Runs the action after the given delay. */
+        fun postDelayed(action: Runnable, delayMillis: Long)
+        /** Cancels the action posted with [postDelayed]. */
+        fun removeCallbacks(action: Runnable)
+        /** Called when the link parameters have changed. */
+        fun onLinkParametersChanged(parameters: LinkParameters)
+    }
+
+    /** The policy, or null to leave the link as it is. Applies from the next transfer. */
+    var policy: LinkPolicy? = LinkPolicy.DEFAULT
+
+    /** The parameters in effect. */
+    var parameters: LinkParameters = LinkParameters.UNKNOWN
+        private set
+
+    private var transfers = 0
+    private var connected = false
+    /** The policy applied when the link was boosted, or null when not boosted. */
+    private var boostedWith: LinkPolicy? = null
+    private var priorityRejected = false
+    private var phyRejected = false
+    /** The PHY mask requested, until the result is reported. */
+    private var requestedPhy = 0
+
+    private var connectionPriority = -1
+    private var interval = 0
+    private var latency = 0
+    private var supervisionTimeout = 0
+    private var txPhy = 0
+    private var rxPhy = 0
+
+    private val restore = Runnable { restore() }
+
+    val isTransferActive: Boolean
+        get() = transfers > 0
+
+    fun onConnected() {
+        connected = true
+        if (transfers > 0) {
+            boost()
+            update()
+        }
+    }
+
+    fun onDisconnected() {
+        link.removeCallbacks(restore)
+        connected = false
+        boostedWith = null
+        priorityRejected = false
+        phyRejected = false
+        requestedPhy = 0
+        connectionPriority = -1
+        interval = 0
+        latency = 0
+        supervisionTimeout = 0
+        txPhy = 0
+        rxPhy = 0
+        update()
+    }
+
+    fun onTransferStarted() {
+        if (transfers++ == 0) {
+            link.removeCallbacks(restore)
+            // If the previous transfer finished recently, the link is still boosted.
+            if (connected && boostedWith == null) {
+                boost()
+            }
+            update()
+        }
+    }
+
+    fun onTransferFinished() {
+        if (transfers == 0) {
+            return
+        }
+        if (--transfers == 0) {
+            boostedWith?.let { link.postDelayed(restore, it.idleTimeout) }
+            update()
+        }
+    }
+
+    fun onConnectionPriorityRejected() {
+        priorityRejected = true
+    }
+
+    fun onConnectionParametersChanged(interval: Int, latency: Int, supervisionTimeout: Int) {
+        this.interval = interval
+        this.latency = latency
+        this.supervisionTimeout = supervisionTimeout
+        update()
+    }
+
+    /**
+     * Called with the PHY in use, after a request or when read.
+     * PHY values are 1 for LE 1M, 2 for LE 2M and 3 for LE Coded.
+     */
+    fun onPhyChanged(txPhy: Int, rxPhy: Int) {
+        if (requestedPhy != 0) {
+            // The PHY in a direction is in the mask if the bit number PHY - 1 is set.
+            if (requestedPhy and (1 shl (txPhy - 1)) == 0 && requestedPhy and (1 shl (rxPhy - 1)) == 0) {
+                phyRejected = true
+            }
+            requestedPhy = 0
+        }
+        this.txPhy = txPhy
+        this.rxPhy = rxPhy
+        update()
+    }
+
+    fun onPhyRejected() {
+        requestedPhy = 0
+        phyRejected = true
+    }
+
+    private fun boost() {
+        val policy = policy ?: return
+        boostedWith = policy
+        if (!priorityRejected) {
+            requestPriority(policy.transferPriority)
+        }
+        if (!phyRejected && policy.preferredPhy != LinkPolicy.PHY_UNCHANGED) {
+            requestedPhy = policy.preferredPhy
+            link.requestPreferredPhy(policy.preferredPhy)
+        }
+    }
+
+    private fun restore() {
+        val policy = boostedWith ?: return
+        boostedWith = null
+        if (connected && !priorityRejected) {
+            requestPriority(policy.idlePriority)
+            update()
+        }
+    }
+
+    private fun requestPriority(priority: Int) {
+        connectionPriority = priority
+        link.requestConnectionPriority(priority)
+    }
+
+    private fun update() {
+        val parameters = LinkParameters(
+            connectionPriority, interval, latency, supervisionTimeout,
+            txPhy, rxPhy, transfers > 0
+        )
+        if (parameters != this.parameters) {
+            this.parameters = parameters
+            link.onLinkParametersChanged(parameters)
+        }
+    }
+}
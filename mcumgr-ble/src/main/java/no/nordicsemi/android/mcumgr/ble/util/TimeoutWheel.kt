@@ -0,0 +1,133 @@
+package no.nordicsemi.android.mcumgr.ble.util
+
+private const val NONE = -1
+
+/**
+ * Hashed timer wheel tracking timeouts of up to [capacity] transactions, identified by numbers
+ * from 0 to capacity - 1.
+ *
+ * Each timeout is put into one of [wheelSize] buckets, selected by the tick at which it expires.
+ * Arming and cancelling a timeout is O(1). [advance] should be called every [tickMillis]
+ * and visits only the buckets of the ticks that passed since the previous call. A timeout
+ * never expires early, and expires at most one tick late. Timeouts longer than a full turn
+ * of the wheel stay in their bucket until their tick comes.
+ *
+ * This class is not thread safe.
+ */
+internal class TimeoutWheel(
+    capacity: Int,
+    val tickMillis: Long,
+    private val wheelSize: Int = 512,
+) {
+    private val mask = wheelSize - 1
+    private val buckets = IntArray(wheelSize) { NONE }
+    private val next = IntArray(capacity) { NONE }
+    private val previous = IntArray(capacity) { NONE }
+    /** The tick at which the timeout expires, or [NONE] if not armed. */
+    private val deadlines = LongArray(capacity) { NONE.toLong() }
+    /** The last tick checked for expired timeouts. */
+    private var tick = 0L
+
+    /** Number of armed timeouts. */
+    var size = 0
+        private set
+
+    val isEmpty: Boolean
+        get() = size == 0
+
+    init {
+        require(wheelSize > 0 && wheelSize and mask == 0) { "Wheel size must be a power of 2" }
+        require(tickMillis > 0) { "Tick must be positive" }
+    }
+
+    /**
+     * Arms the timeout with given ID, replacing the previous one, if armed.
+     *
+     * @param id the transaction ID.
+     * @param timeoutMillis the timeout in milliseconds.
+     * @param now the current time in milliseconds, from a monotonic clock.
+     */
+    fun arm(id: Int, timeoutMillis: Long, now: Long) {
+        cancel(id)
+        if (size == 0) {
+            // Skip the idle ticks, there's nothing to expire.
+            tick = maxOf(tick, now / tickMillis)
+        }
+        // Round up, so that the timeout does not expire early.
+        val deadline = maxOf(tick + 1, (now + timeoutMillis + tickMillis - 1) / tickMillis)
+        val bucket = (deadline and mask.toLong()).toInt()
+        deadlines[id] = deadline
+        previous[id] = NONE
+        next[id] = buckets[bucket]
+        if (buckets[bucket] != NONE) {
+            previous[buckets[bucket]] = id
+        }
+        buckets[bucket] = id
+        size++
+    }
+
+    /**
+     * Cancels the timeout with given ID.
+     *
+     * @return True, if the timeout was armed.
+     */
+    fun cancel(id: Int): Boolean {
+        val deadline = deadlines[id]
+        if (deadline == NONE.toLong()) {
+            return false
+        }
+        val prev = previous[id]
+        val nxt = next[id]
+        if (prev == NONE) {
+            buckets[(deadline and mask.toLong()).toInt()] = nxt
+        } else {
+            next[prev] = nxt
+        }
+        if (nxt != NONE) {
+            previous[nxt] = prev
+        }
+        deadlines[id] = NONE.toLong()
+        size--
+        return true
+    }
+
+    /**
+     * Cancels all timeouts.
+     */
+    fun clear() {
+        if (size == 0) {
+            return
+        }
+        buckets.fill(NONE)
+        deadlines.fill(NONE.toLong())
+        size = 0
+    }
+
+    /**
+     * Removes all timeouts which have expired by [now] and calls [onExpired] with their IDs.
+     *
+     * @param now the current time in milliseconds, from the same clock as used in [arm].
+     */
+    fun advance(now: Long, onExpired: (Int) -> Unit) {
+        val target = now / tickMillis
+        if (target <= tick) {
+            return
+        }
+        // After a full turn all buckets have been visited.
+        val last = minOf(target, tick + wheelSize)
+        var t = tick + 1
+        while (t <= last && size > 0) {
+            var id = buckets[(t and mask.toLong()).toInt()]
+            while (id != NONE) {
+                val nxt = next[id]
+                if (deadlines[id] <= target) {
+                    cancel(id)
+                    onExpired(id)
+                }
+                id = nxt
+            }
+            t++
+        }
+        tick = target
+    }
+}
@@ -0,0 +1,199 @@
+package no.nordicsemi.android.mcumgr.ble
+
+import no.nordicsemi.android.ble.ConnectionPriorityRequest.CONNECTION_PRIORITY_BALANCED
+import no.nordicsemi.android.ble.ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH
+import no.nordicsemi.android.ble.ConnectionPriorityRequest.CONNECTION_PRIORITY_LOW_POWER
+import no.nordicsemi.android.ble.PhyRequest.PHY_LE_2M_MASK
+import no.nordicsemi.android.mcumgr.ble.util.LinkPolicyController
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class LinkPolicyControllerTest {
+
+    /** A link recording requests, with a manually advanced clock. */
+    private class TestLink : LinkPolicyController.Link {
+        val requests = mutableListOf<String>()
+        val parameters = mutableListOf<LinkParameters>()
+        private val scheduled = mutableMapOf<Runnable, Long>()
+        private var now = 0L
+
+        override fun requestConnectionPriority(priority: Int) {
+            requests.add("priority $priority")
+        }
+
+        override fun requestPreferredPhy(phyMask: Int) {
+            requests.add("phy $phyMask")
+        }
+
+        override fun postDelayed(action: Runnable, delayMillis: Long) {
+            scheduled[action] = now + delayMillis
+        }
+
+        override fun removeCallbacks(action: Runnable) {
+            scheduled.remove(action)
+        }
+
+        override fun onLinkParametersChanged(parameters: LinkParameters) {
+            this.parameters.add(parameters)
+        }
+
+        fun advance(millis: Long) {
+            now += millis
+            scheduled.filterValues { it <= now }.keys.forEach {
+                scheduled.remove(it)
+                it.run()
+            }
+        }
+    }
+
+    private val link = TestLink()
+    private val controller = LinkPolicyController(link)
+
+    @Test
+    fun `link is boosted during transfer and restored when idle`() {
+        controller.onConnected()
+        controller.onTransferStarted()
+        assertEquals(listOf("priority $CONNECTION_PRIORITY_HIGH", "phy $PHY_LE_2M_MASK"), link.requests)
+        assertTrue(controller.parameters.transferActive)
+
+        controller.onTransferFinished()
+        assertFalse(controller.parameters.transferActive)
+        link.advance(4_999)
+        assertEquals(2, link.requests.size)
+        link.advance(1)
+        assertEquals("priority $CONNECTION_PRIORITY_BALANCED", link.requests.last())
+        assertEquals(CONNECTION_PRIORITY_BALANCED, controller.parameters.connectionPriority)
+    }
+
+    @Test
+    fun `transfer started before idle timeout keeps the link boosted`() {
+        controller.onConnected()
+        controller.onTransferStarted()
+        controller.onTransferFinished()
+        link.advance(1_000)
+        controller.onTransferStarted()
+        link.advance(10_000)
+
+        // Requested once, and not restored.
+        assertEquals(2, link.requests.size)
+        controller.onTransferFinished()
+        link.advance(5_000)
+        assertEquals(3, link.requests.size)
+    }
+
+    @Test
+    fun `overlapping transfers are counted`() {
+        controller.onConnected()
+        controller.onTransferStarted()
+        controller.onTransferStarted()
+        controller.onTransferFinished()
+        link.advance(10_000)
+        assertTrue(controller.isTransferActive)
+        assertEquals(2, link.requests.size)
+
+        controller.onTransferFinished()
+        // Unbalanced calls are ignored.
+        controller.onTransferFinished()
+        link.advance(5_000)
+        assertFalse(controller.isTransferActive)
+        assertEquals(3, link.requests.size)
+    }
+
+    @Test
+    fun `link is boosted when device connects during transfer`() {
+        controller.onTransferStarted()
+        assertTrue(link.requests.isEmpty())
+
+        controller.onConnected()
+        assertEquals(listOf("priority $CONNECTION_PRIORITY_HIGH", "phy $PHY_LE_2M_MASK"), link.requests)
+    }
+
+    @Test
+    fun `rejected PHY is not requested again until reconnection`() {
+        controller.onConnected()
+        controller.onTransferStarted()
+        // The device kept LE 1M.
+        controller.onPhyChanged(1, 1)
+        controller.onTransferFinished()
+        link.advance(5_000)
+        controller.onTransferStarted()
+        assertEquals(1, link.requests.count { it.startsWith("phy") })
+
+        controller.onTransferFinished()
+        controller.onDisconnected()
+        controller.onConnected()
+        controller.onTransferStarted()
+        assertEquals(2, link.requests.count { it.startsWith("phy") })
+    }
+
+    @Test
+    fun `accepted PHY is reported`() {
+        controller.onConnected()
+        controller.onTransferStarted()
+        controller.onPhyChanged(2, 2)
+        controller.onConnectionParametersChanged(9, 0, 500)
+
+        val parameters = controller.parameters
+        assertEquals(2, parameters.txPhy)
+        assertEquals(2, parameters.rxPhy)
+        assertEquals(11.25, parameters.intervalMillis)
+        assertEquals(parameters, link.parameters.last())
+    }
+
+    @Test
+    fun `rejected priority is not requested again`() {
+        controller.onConnected()
+        controller.onTransferStarted()
+        controller.onConnectionPriorityRejected()
+        controller.onPhyRejected()
+        controller.onTransferFinished()
+        link.advance(5_000)
+
+        assertEquals(2, link.requests.size)
+    }
+
+    @Test
+    fun `disconnection cancels restoring`() {
+        controller.onConnected()
+        controller.onTransferStarted()
+        controller.onTransferFinished()
+        controller.onDisconnected()
+        link.advance(5_000)
+
+        assertEquals(2, link.requests.size)
+        assertEquals(LinkParameters.UNKNOWN, controller.parameters)
+    }
+
+    @Test
+    fun `custom policy is applied from next transfer`() {
+        controller.policy = LinkPolicy.Builder()
+            .setPreferredPhy(LinkPolicy.PHY_UNCHANGED)
+            .setIdlePriority(CONNECTION_PRIORITY_LOW_POWER)
+            .setIdleTimeout(100)
+            .build()
+        controller.onConnected()
+        controller.onTransferStarted()
+        controller.onTransferFinished()
+        link.advance(100)
+
+        assertEquals(
+            listOf("priority $CONNECTION_PRIORITY_HIGH", "priority $CONNECTION_PRIORITY_LOW_POWER"),
+            link.requests
+        )
+    }
+
+    @Test
+    fun `no policy leaves the link as it is`() {
+        controller.policy = null
+        controller.onConnected()
+        controller.onTransferStarted()
+        controller.onTransferFinished()
+        link.advance(10_000)
+
+        assertTrue(link.requests.isEmpty())
+        // Parameters are still tracked.
+        assertFalse(link.parameters.isEmpty())
+    }
+}
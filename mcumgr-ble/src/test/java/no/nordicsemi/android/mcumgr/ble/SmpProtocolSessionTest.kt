@@ -10,13 +10,17 @@ import no.nordicsemi.android.mcumgr.McuMgrHeader
 import no.nordicsemi.android.mcumgr.McuMgrScheme
 import no.nordicsemi.android.mcumgr.ble.callback.SmpProtocolSession
 import no.nordicsemi.android.mcumgr.ble.callback.SmpTransaction
+import no.nordicsemi.android.mcumgr.ble.callback.TransactionOverwriteException
 import no.nordicsemi.android.mcumgr.ble.callback.TransactionTimeoutException
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse
 import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
 import no.nordicsemi.android.mcumgr.util.CBOR
 import org.junit.Test
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.concurrent.thread
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
+import kotlin.test.assertNotEquals
 
 class SmpProtocolSessionTest {
 
@@ -24,10 +28,11 @@ class SmpProtocolSessionTest {
 
     private abstract class TestTransaction : SmpTransaction {
 
-        val result = Channel<ByteArray>(Channel.RENDEZVOUS)
+        // The response may be received before the test starts waiting for it.
+        val result = Channel<ByteArray>(Channel.UNLIMITED)
 
-        override fun onResponse(data: ByteArray) {
-            result.trySend(data)
+        override fun onResponse(data: ByteArray, length: Int, reused: Boolean) {
+            result.trySend(data.copyOf(length))
         }
 
         override fun onFailure(e: Throwable) {
@@ -142,27 +147,70 @@ class SmpProtocolSessionTest {
     }
 
     @Test
-    fun `send overflows transmit buffer`() = runBlocking {
-        val echo = "Hello!"
-        val request = newEchoRequest(echo)
-        val transaction = object : TestTransaction() {
+    fun `send overwrites transaction with the same sequence number`() = runBlocking {
+        val request = newEchoRequest("Hello!")
+        val first = object : TestTransaction() {
+            override fun send(data: ByteArray) {}
+        }
+        session.send(request, 40_000, first)
+        repeat(255) {
+            session.send(newEchoRequest("Hello!"), 40_000, object : TestTransaction() {
+                override fun send(data: ByteArray) {}
+            })
+        }
+        // The sequence number rolls over to the one of the first transaction.
+        session.send(newEchoRequest("Hello!"), 40_000, echoTransaction)
+        assertFailsWith(TransactionOverwriteException::class) {
+            first.result.receive()
+        }
+        assertEquals(0, McuMgrHeader.fromBytes(echoTransaction.result.receive()).sequenceNum)
+    }
+
+    @Test
+    fun `response is delivered on the receiving thread`() {
+        val receivingThread = AtomicReference<Thread>()
+        val transaction = object : SmpTransaction {
             override fun send(data: ByteArray) {
-                runBlocking { delay (10000) }
+                thread { session.receive(data) }
             }
-        }
-        // First request is consumed which blocks the channel, remaining 256
-        // fills the channel buffer to capacity
-        repeat(257) {
-            launch {
-                session.send(request, 40_000, transaction)
+
+            override fun onResponse(data: ByteArray, length: Int, reused: Boolean) {
+                receivingThread.set(Thread.currentThread())
             }
+
+            override fun onFailure(e: Throwable) {}
         }
-        launch {
-            assertFailsWith(IllegalStateException::class) {
-                session.send(request, 40_000, transaction)
+        val sender = Thread.currentThread()
+        session.send(newEchoRequest("Hello!"), 40_000, transaction)
+        while (receivingThread.get() == null) {
+            Thread.yield()
+        }
+        assertNotEquals(sender, receivingThread.get())
+    }
+
+    @Test
+    fun `request is sent on the calling thread`() {
+        val sendingThread = AtomicReference<Thread>()
+        val transaction = object : SmpTransaction {
+            override fun send(data: ByteArray) {
+                sendingThread.set(Thread.currentThread())
             }
+
+            override fun onResponse(data: ByteArray, length: Int, reused: Boolean) {}
+
+            override fun onFailure(e: Throwable) {}
+        }
+        val caller = thread { session.send(newEchoRequest("Hello!"), 40_000, transaction) }
+        caller.join()
+        assertEquals(caller, sendingThread.get())
+    }
+
+    @Test
+    fun `send after close fails`() {
+        session.close(DeviceDisconnectedException())
+        assertFailsWith(IllegalStateException::class) {
+            session.send(newEchoRequest("Hello!"), 40_000, echoTransaction)
         }
-        Unit
     }
 }
 
@@ -0,0 +1,163 @@
+package no.nordicsemi.android.mcumgr.ble
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.ble.callback.SmpReassembler
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse
+import org.junit.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class SmpReassemblerTest {
+
+    private val reassembler = SmpReassembler(256)
+    private val frames = mutableListOf<ByteArray>()
+    private val buffers = mutableListOf<ByteArray>()
+    private val pooled = mutableListOf<Boolean>()
+
+    private val consumer = SmpReassembler.FrameConsumer { frame, length, isPooled ->
+        buffers.add(frame)
+        frames.add(frame.copyOf(length))
+        pooled.add(isPooled)
+    }
+
+    @Test
+    fun `single notification frame is not copied`() {
+        val frame = newFrame(20)
+        reassembler.accept(frame, consumer)
+        assertEquals(1, frames.size)
+        assertSame(frame, buffers[0])
+        assertFalse(pooled[0])
+    }
+
+    @Test
+    fun `fragmented frame is reassembled`() {
+        val frame = newFrame(200)
+        frame.fragments(64).forEach { reassembler.accept(it, consumer) }
+        assertEquals(1, frames.size)
+        assertContentEquals(frame, frames[0])
+    }
+
+    @Test
+    fun `reassembly buffer is reused`() {
+        repeat(3) {
+            newFrame(200).fragments(64).forEach { reassembler.accept(it, consumer) }
+        }
+        assertEquals(3, frames.size)
+        assertTrue(pooled.all { it })
+        assertEquals(256, buffers[0].size)
+        assertSame(buffers[0], buffers[1])
+        assertSame(buffers[0], buffers[2])
+    }
+
+    @Test
+    fun `response to a frame filling the buffer is not overwritten by the next frame`() {
+        val responses = mutableListOf<McuMgrEchoResponse>()
+        val consumer = SmpReassembler.FrameConsumer { frame, length, _ ->
+            responses.add(McuMgrResponse.buildResponseFromReusedBuffer(McuMgrScheme.BLE, frame, length, McuMgrEchoResponse::class.java))
+        }
+        val first = newEchoFrame('a')
+        val second = newEchoFrame('b')
+        assertEquals(reassembler.bufferSize, first.size)
+
+        first.fragments(64).forEach { reassembler.accept(it, consumer) }
+        second.fragments(64).forEach { reassembler.accept(it, consumer) }
+
+        assertEquals(2, responses.size)
+        assertContentEquals(first, responses[0].bytes)
+        assertContentEquals(first.copyOfRange(McuMgrHeader.HEADER_LENGTH, first.size), responses[0].payload)
+        assertContentEquals(second, responses[1].bytes)
+    }
+
+    @Test
+    fun `upload responses are decoded from the reassembly buffer`() {
+        val responses = mutableListOf<McuMgrImageUploadResponse>()
+        val consumer = SmpReassembler.FrameConsumer { frame, length, _ ->
+            buffers.add(frame)
+            responses.add(McuMgrResponse.buildResponseFromReusedBuffer(McuMgrScheme.BLE, frame, length, McuMgrImageUploadResponse::class.java))
+        }
+        newUploadFrame(512, sequenceNumber = 1).fragments(10).forEach { reassembler.accept(it, consumer) }
+        newUploadFrame(1024, sequenceNumber = 2).fragments(10).forEach { reassembler.accept(it, consumer) }
+
+        assertSame(buffers[0], buffers[1])
+        assertEquals(512, responses[0].off)
+        assertEquals(1, responses[0].header!!.sequenceNum)
+        assertEquals(1024, responses[1].off)
+        // The response does not keep the pooled buffer, but prints the decoded fields.
+        assertNull(responses[0].bytes)
+        assertNull(responses[0].payload)
+        assertEquals("{\"off\":512}", responses[0].toString())
+    }
+
+    @Test
+    fun `frame longer than the buffer is reassembled`() {
+        val frame = newFrame(600)
+        frame.fragments(244).forEach { reassembler.accept(it, consumer) }
+        assertContentEquals(frame, frames.single())
+        assertFalse(pooled.single())
+    }
+
+    @Test
+    fun `overflowing frame is dropped`() {
+        val frame = newFrame(100)
+        val fragments = frame.fragments(64)
+        reassembler.accept(fragments[0], consumer)
+        // Too long to be a fragment of the frame, nor the beginning of a valid one.
+        reassembler.accept(ByteArray(64) { 0x7F }, consumer)
+        assertTrue(frames.isEmpty())
+
+        // The next frame is received correctly.
+        reassembler.accept(newFrame(10), consumer)
+        assertEquals(1, frames.size)
+    }
+
+    @Test
+    fun `frame after a lost tail fragment is reassembled`() {
+        val lost = newFrame(200).fragments(64)
+        lost.dropLast(1).forEach { reassembler.accept(it, consumer) }
+        val next = newFrame(100)
+        next.fragments(64).forEach { reassembler.accept(it, consumer) }
+        assertContentEquals(next, frames.single())
+    }
+
+    @Test
+    fun `invalid header is ignored`() {
+        reassembler.accept(ByteArray(4), consumer)
+        val tooLong = newFrame(10).also { it[2] = 0x7F }
+        reassembler.accept(tooLong, consumer)
+        assertTrue(frames.isEmpty())
+    }
+}
+
+private fun newFrame(payloadLength: Int): ByteArray {
+    val frame = ByteArray(McuMgrHeader.HEADER_LENGTH + payloadLength) { it.toByte() }
+    frame[2] = (payloadLength shr 8).toByte()
+    frame[3] = payloadLength.toByte()
+    return frame
+}
+
+/** Returns an upload response frame: {"off": offset}. */
+private fun newUploadFrame(offset: Int, sequenceNumber: Int): ByteArray {
+    val payload = byteArrayOf(0xA1.toByte(), 0x63, 'o'.code.toByte(), 'f'.code.toByte(), 'f'.code.toByte(),
+        0x19, (offset shr 8).toByte(), offset.toByte())
+    val header = byteArrayOf(3, 0, 0, payload.size.toByte(), 0, 1, sequenceNumber.toByte(), 1)
+    return header + payload
+}
+
+/** Returns an echo response frame of 256 bytes, with a string of the given character. */
+private fun newEchoFrame(c: Char): ByteArray {
+    // {"r": text(243)}: map(1), text(1) "r", text header with 1-byte length, text.
+    val payload = byteArrayOf(0xA1.toByte(), 0x61, 'r'.code.toByte(), 0x78, 243.toByte()) +
+            ByteArray(243) { c.code.toByte() }
+    val header = byteArrayOf(3, 0, 0, payload.size.toByte(), 0, 0, 1, 0)
+    return header + payload
+}
+
+private fun ByteArray.fragments(size: Int): List<ByteArray> =
+    (indices step size).map { copyOfRange(it, minOf(it + size, this.size)) }
@@ -0,0 +1,119 @@
+package no.nordicsemi.android.mcumgr.ble
+
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.ble.callback.SmpWritePacker
+import no.nordicsemi.android.mcumgr.sim.SimulatedBleReassembler
+import no.nordicsemi.android.mcumgr.sim.SimulatedDevice
+import org.junit.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class SmpWritePackerTest {
+
+    private val packer = SmpWritePacker().apply {
+        maxLength = 495
+        maxFrames = 4
+    }
+
+    /** Returns all writes, splitting packets longer than [SmpWritePacker.maxLength]. */
+    private fun SmpWritePacker.writes(): List<ByteArray> {
+        val writes = mutableListOf<ByteArray>()
+        while (true) {
+            val write = poll() ?: break
+            write.toList().chunked(maxLength).forEach { writes.add(it.toByteArray()) }
+        }
+        return writes
+    }
+
+    @Test
+    fun `short frames are packed into a single write`() {
+        val frames = (0 until 3).map { echo(it, "Hello") }
+        frames.forEach { packer.add(it) }
+
+        val write = packer.poll()!!
+        assertContentEquals(frames.reduce(ByteArray::plus), write)
+        assertNull(packer.poll())
+        assertTrue(packer.isEmpty)
+    }
+
+    @Test
+    fun `packed write does not exceed the maximum length`() {
+        packer.maxFrames = 100
+        val frames = (0 until 20).map { echo(it, "x".repeat(80)) }
+        frames.forEach { packer.add(it) }
+
+        val writes = packer.writes()
+        assertTrue(writes.size > 1)
+        writes.forEach { assertTrue(it.size <= 495) }
+        assertContentEquals(frames.reduce(ByteArray::plus), writes.reduce(ByteArray::plus))
+    }
+
+    @Test
+    fun `packed write does not exceed the buffer count`() {
+        repeat(10) { packer.add(echo(it, "Hello")) }
+
+        val writes = generateSequence { packer.poll() }.toList()
+        assertEquals(3, writes.size)
+    }
+
+    @Test
+    fun `single frame is not copied`() {
+        val frame = echo(0, "Hello")
+        packer.add(frame)
+        assertSame(frame, packer.poll())
+    }
+
+    @Test
+    fun `long frame is written alone`() {
+        val short = echo(0, "Hello")
+        val long = echo(1, "x".repeat(1000))
+        packer.add(short)
+        packer.add(long)
+        packer.add(echo(2, "Hello"))
+
+        assertSame(short, packer.poll())
+        assertSame(long, packer.poll())
+    }
+
+    @Test
+    fun `device splits packed writes into requests`() {
+        val device = SimulatedDevice(bufferSize = 2048, bufferCount = 4)
+        val reassembler = SimulatedBleReassembler(device)
+        // A burst of short requests, with a long one in the middle.
+        val frames = (0 until 30).map { echo(it, if (it == 10) "x".repeat(1500) else "Hello $it") }
+        frames.forEach { packer.add(it) }
+
+        val writes = packer.writes()
+        assertTrue(writes.size < frames.size)
+        val responses = writes.flatMap { reassembler.accept(it) }.map { device.handle(it)!! }
+
+        assertEquals(0, reassembler.droppedCount)
+        assertEquals(frames.size, device.requestCount)
+        // Responses come in order, for every request.
+        assertEquals((0 until 30).toList(), responses.map { it[6].toInt() and 0xFF })
+    }
+
+    @Test
+    fun `device drops no packets with its advertised buffer limits`() {
+        val device = SimulatedDevice(bufferSize = 128, bufferCount = 2)
+        val reassembler = SimulatedBleReassembler(device)
+        packer.maxLength = minOf(495, device.bufferSize)
+        packer.maxFrames = device.bufferCount
+        val frames = (0 until 20).map { echo(it, "Hello $it") }
+        frames.forEach { packer.add(it) }
+
+        val writes = packer.writes()
+        val requests = writes.flatMap { reassembler.accept(it) }
+
+        assertEquals(10, writes.size)
+        assertEquals(0, reassembler.droppedCount)
+        frames.zip(requests).forEach { (expected, actual) -> assertContentEquals(expected, actual) }
+    }
+
+    private fun echo(sequenceNumber: Int, text: String): ByteArray =
+        McuManager.buildPacket(McuMgrScheme.BLE, 2, 0, 0, sequenceNumber, 0, mapOf("d" to text))
+}
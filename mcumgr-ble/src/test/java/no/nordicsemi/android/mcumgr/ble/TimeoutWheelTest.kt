@@ -0,0 +1,83 @@
+package no.nordicsemi.android.mcumgr.ble
+
+import no.nordicsemi.android.mcumgr.ble.util.TimeoutWheel
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TimeoutWheelTest {
+
+    private val wheel = TimeoutWheel(256, 50, wheelSize = 16)
+    private val expired = mutableListOf<Int>()
+
+    private fun advance(now: Long) = wheel.advance(now) { expired.add(it) }
+
+    @Test
+    fun `timeout expires after the deadline`() {
+        wheel.arm(1, 120, 1_000)
+        advance(1_100)
+        assertTrue(expired.isEmpty())
+        advance(1_119)
+        assertTrue(expired.isEmpty())
+        advance(1_150)
+        assertEquals(listOf(1), expired)
+        assertTrue(wheel.isEmpty)
+    }
+
+    @Test
+    fun `cancelled timeout does not expire`() {
+        wheel.arm(1, 100, 0)
+        wheel.arm(2, 100, 0)
+        wheel.arm(3, 100, 0)
+        assertTrue(wheel.cancel(2))
+        assertFalse(wheel.cancel(2))
+        advance(1_000)
+        assertEquals(setOf(1, 3), expired.toSet())
+    }
+
+    @Test
+    fun `timeout longer than the wheel expires on time`() {
+        // The wheel turns every 800 ms.
+        wheel.arm(7, 2_500, 0)
+        for (now in 0L..2_450L step 50) {
+            advance(now)
+        }
+        assertTrue(expired.isEmpty())
+        advance(2_500)
+        assertEquals(listOf(7), expired)
+    }
+
+    @Test
+    fun `rearming replaces the timeout`() {
+        wheel.arm(5, 100, 0)
+        wheel.arm(5, 1_000, 0)
+        assertEquals(1, wheel.size)
+        advance(500)
+        assertTrue(expired.isEmpty())
+        advance(1_000)
+        assertEquals(listOf(5), expired)
+    }
+
+    @Test
+    fun `cleared timeouts do not expire`() {
+        wheel.arm(1, 100, 0)
+        wheel.arm(2, 200, 0)
+        wheel.clear()
+        assertTrue(wheel.isEmpty)
+        assertFalse(wheel.cancel(1))
+        wheel.arm(3, 100, 0)
+        advance(1_000)
+        assertEquals(listOf(3), expired)
+    }
+
+    @Test
+    fun `late tick expires all timeouts`() {
+        for (id in 0 until 256) {
+            wheel.arm(id, 100L + id * 10, 0)
+        }
+        advance(10_000)
+        assertEquals(256, expired.size)
+        assertTrue(wheel.isEmpty)
+    }
+}
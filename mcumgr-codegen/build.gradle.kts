@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) Nordic Semiconductor ASA, 2021-present
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+// Annotation processor generating CBOR decoders for McuMgr responses.
+// It is used only when building mcumgr-core and is not published.
+plugins {
+    `java-library`
+}
+
+java {
+    // Keep the same bytecode level as the Android modules.
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
@@ -0,0 +1,739 @@
+package no.nordicsemi.android.mcumgr.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates CBOR decoders for classes annotated with
+ * {@code no.nordicsemi.android.mcumgr.decoder.GenerateDecoder}.
+ * <p>
+ * For each annotated class, and for each class of a nested object, a {@code <Class>_CborDecoder}
+ * is generated in the same package. The decoders read fields directly from the Jackson parser
+ * and assign them without reflection. All decoders of annotated classes are registered in
+ * {@code no.nordicsemi.android.mcumgr.decoder.GeneratedDecoders}.
+ * <p>
+ * The processor follows the default Jackson rules for finding properties. Classes using features
+ * that the processor does not replicate, like setters, custom deserializers or creators with
+ * parameters, are skipped with a note and are decoded using Jackson.
+ */
+public class DecoderProcessor extends AbstractProcessor {
+    private final static String ANNOTATION = "no.nordicsemi.android.mcumgr.decoder.GenerateDecoder";
+    private final static String DECODER_PACKAGE = "no.nordicsemi.android.mcumgr.decoder";
+    private final static String REGISTRY = "GeneratedDecoders";
+    private final static String SUFFIX = "_CborDecoder";
+
+    private final static String SUPPORT = DECODER_PACKAGE + ".DecoderSupport";
+    private final static String JACKSON = "com.fasterxml.jackson.";
+    private final static String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+    private final static String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+    private final static String JSON_IGNORE_PROPERTIES = "com.fasterxml.jackson.annotation.JsonIgnoreProperties";
+    private final static String JSON_CREATOR = "com.fasterxml.jackson.annotation.JsonCreator";
+    private final static String JSON_VALUE = "com.fasterxml.jackson.annotation.JsonValue";
+
+    /**
+     * Thrown when a class can't be decoded by a generated decoder.
+     */
+    private static class UnsupportedException extends Exception {
+        UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A property of a class.
+     */
+    private static class Property {
+        final String name;
+        final VariableElement field;
+        final String read;
+
+        Property(String name, VariableElement field, String read) {
+            this.name = name;
+            this.field = field;
+            this.read = read;
+        }
+    }
+
+    /**
+     * A class for which a decoder is generated.
+     */
+    private static class Bean {
+        final TypeElement type;
+        final List<Property> properties = new ArrayList<>();
+        final Set<String> ignored = new LinkedHashSet<>();
+        boolean ignoreUnknown;
+
+        Bean(TypeElement type) {
+            this.type = type;
+        }
+    }
+
+    /** Classes analyzed so far. A null value means the class is being analyzed. */
+    private final Map<String, Bean> mBeans = new HashMap<>();
+    /** Decoders already written. */
+    private final Set<String> mWritten = new LinkedHashSet<>();
+    private boolean mRegistryWritten;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation == null || roundEnv.processingOver()) {
+            return false;
+        }
+        final Map<TypeElement, Bean> roots = new LinkedHashMap<>();
+        for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@GenerateDecoder can only be used on classes");
+                continue;
+            }
+            final TypeElement type = (TypeElement) element;
+            final Set<String> analyzed = new HashSet<>(mBeans.keySet());
+            try {
+                if (!isPublic(type)) {
+                    throw new UnsupportedException("the class is not public");
+                }
+                roots.put(type, analyze(type, packageOf(type)));
+            } catch (final UnsupportedException e) {
+                // Forget classes analyzed for this one, they may depend on it.
+                mBeans.keySet().retainAll(analyzed);
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "No CBOR decoder generated for " + type.getQualifiedName() +
+                        ", Jackson will be used: " + e.getMessage(), type);
+            }
+        }
+        if (roots.isEmpty()) {
+            return false;
+        }
+        for (final Map.Entry<TypeElement, Bean> root : roots.entrySet()) {
+            writeDecoders(root.getKey(), root.getValue());
+        }
+        if (!mRegistryWritten) {
+            mRegistryWritten = true;
+            writeRegistry(roots.keySet());
+        } else {
+            error(roots.keySet().iterator().next(),
+                    "@GenerateDecoder classes must not be generated by other processors");
+        }
+        return false;
+    }
+
+    // Analysis
+
+    private Bean analyze(TypeElement type, String fromPackage) throws UnsupportedException {
+        final String name = type.getQualifiedName().toString();
+        if (mBeans.containsKey(name)) {
+            // The value is null if the class is being analyzed (recursive structure).
+            return mBeans.get(name);
+        }
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedException(name + " is not a concrete class");
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            throw new UnsupportedException(name + " is an inner class");
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            throw new UnsupportedException(name + " is generic");
+        }
+        if (!isAccessible(type, fromPackage)) {
+            throw new UnsupportedException(name + " is not accessible");
+        }
+        mBeans.put(name, null);
+
+        final Bean bean = new Bean(type);
+        final String pkg = packageOf(type);
+        checkConstructor(type, pkg);
+
+        final Map<String, Property> properties = new LinkedHashMap<>();
+        // Superclasses first, so that the properties are in declaration order.
+        final List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement t = type; t != null; t = superclassOf(t)) {
+            hierarchy.add(0, t);
+        }
+        for (final TypeElement t : hierarchy) {
+            if (!t.getTypeParameters().isEmpty()) {
+                throw new UnsupportedException(t.getQualifiedName() + " is generic");
+            }
+            checkClassAnnotations(t, bean);
+            checkMethods(t);
+            for (final VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                final Property property = analyzeField(field, pkg, bean);
+                if (property == null) {
+                    continue;
+                }
+                if (properties.put(property.name, property) != null) {
+                    throw new UnsupportedException("duplicate property \"" + property.name + "\"");
+                }
+            }
+        }
+        for (final String ignored : bean.ignored) {
+            if (properties.containsKey(ignored)) {
+                throw new UnsupportedException("property \"" + ignored + "\" is both used and ignored");
+            }
+        }
+        bean.properties.addAll(properties.values());
+        checkCollectionGetters(hierarchy, properties.keySet());
+        mBeans.put(name, bean);
+        return bean;
+    }
+
+    private void checkConstructor(TypeElement type, String pkg) throws UnsupportedException {
+        boolean found = false;
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                found = isAccessibleMember(constructor, pkg);
+            } else if (hasAnnotation(constructor, JSON_CREATOR)) {
+                throw new UnsupportedException("@JsonCreator with parameters is not supported");
+            }
+        }
+        if (!found) {
+            throw new UnsupportedException("no accessible no-argument constructor");
+        }
+    }
+
+    private void checkClassAnnotations(TypeElement type, Bean bean) throws UnsupportedException {
+        for (final AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            final String name = annotationName(mirror);
+            if (!name.startsWith(JACKSON)) {
+                continue;
+            }
+            if (!name.equals(JSON_IGNORE_PROPERTIES)) {
+                throw new UnsupportedException("@" + simpleName(name) + " is not supported");
+            }
+            for (final Map.Entry<? extends ExecutableElement, ? extends javax.lang.model.element.AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                final String key = entry.getKey().getSimpleName().toString();
+                if (key.equals("ignoreUnknown")) {
+                    bean.ignoreUnknown |= (Boolean) entry.getValue().getValue();
+                } else if (key.equals("value")) {
+                    for (final Object value : (List<?>) entry.getValue().getValue()) {
+                        bean.ignored.add((String) ((javax.lang.model.element.AnnotationValue) value).getValue());
+                    }
+                } else {
+                    throw new UnsupportedException("@JsonIgnoreProperties(" + key + ") is not supported");
+                }
+            }
+        }
+    }
+
+    private void checkMethods(TypeElement type) throws UnsupportedException {
+        for (final ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.STATIC)) {
+                if (hasAnnotation(method, JSON_CREATOR)) {
+                    throw new UnsupportedException("@JsonCreator factory methods are not supported");
+                }
+                continue;
+            }
+            final boolean ignored = hasAnnotation(method, JSON_IGNORE);
+            for (final AnnotationMirror mirror : method.getAnnotationMirrors()) {
+                final String name = annotationName(mirror);
+                if (name.startsWith(JACKSON) && !name.equals(JSON_IGNORE) && !name.equals(JSON_VALUE)) {
+                    throw new UnsupportedException("@" + simpleName(name) + " on " +
+                            method.getSimpleName() + "() is not supported");
+                }
+            }
+            // Jackson detects setters of any visibility.
+            final String methodName = method.getSimpleName().toString();
+            if (!ignored && method.getParameters().size() == 1 && methodName.length() > 3 &&
+                    methodName.startsWith("set") && Character.isUpperCase(methodName.charAt(3))) {
+                throw new UnsupportedException("setter " + methodName + "() is not supported");
+            }
+        }
+    }
+
+    /**
+     * Jackson uses public getters returning collections or maps as setters, if no field
+     * or setter exists for such property.
+     */
+    private void checkCollectionGetters(List<TypeElement> hierarchy, Set<String> properties)
+            throws UnsupportedException {
+        final TypeMirror collection = erasure("java.util.Collection");
+        final TypeMirror map = erasure("java.util.Map");
+        for (final TypeElement t : hierarchy) {
+            for (final ExecutableElement method : ElementFilter.methodsIn(t.getEnclosedElements())) {
+                final String name = method.getSimpleName().toString();
+                if (!method.getModifiers().contains(Modifier.PUBLIC) ||
+                        method.getModifiers().contains(Modifier.STATIC) ||
+                        !method.getParameters().isEmpty() ||
+                        name.length() <= 3 || !name.startsWith("get") ||
+                        hasAnnotation(method, JSON_IGNORE)) {
+                    continue;
+                }
+                final TypeMirror returnType = processingEnv.getTypeUtils().erasure(method.getReturnType());
+                if (!isAssignable(returnType, collection) && !isAssignable(returnType, map)) {
+                    continue;
+                }
+                final String property = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+                if (!properties.contains(property)) {
+                    throw new UnsupportedException("getter " + name + "() would be used as a setter");
+                }
+            }
+        }
+    }
+
+    private Property analyzeField(VariableElement field, String pkg, Bean bean) throws UnsupportedException {
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC)) {
+            return null;
+        }
+        String propertyName = null;
+        boolean annotated = false;
+        for (final AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            final String name = annotationName(mirror);
+            if (name.equals(JSON_IGNORE)) {
+                if (isIgnoreEnabled(mirror)) {
+                    bean.ignored.add(field.getSimpleName().toString());
+                    return null;
+                }
+            } else if (name.equals(JSON_PROPERTY)) {
+                annotated = true;
+                for (final Map.Entry<? extends ExecutableElement, ? extends javax.lang.model.element.AnnotationValue> entry
+                        : mirror.getElementValues().entrySet()) {
+                    if (!entry.getKey().getSimpleName().contentEquals("value")) {
+                        throw new UnsupportedException("@JsonProperty(" + entry.getKey().getSimpleName() +
+                                ") on " + field.getSimpleName() + " is not supported");
+                    }
+                    propertyName = (String) entry.getValue().getValue();
+                }
+            } else if (name.startsWith(JACKSON)) {
+                throw new UnsupportedException("@" + simpleName(name) + " on " +
+                        field.getSimpleName() + " is not supported");
+            }
+        }
+        if (!annotated) {
+            // Jackson detects only public fields by default.
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                return null;
+            }
+        } else if (modifiers.contains(Modifier.TRANSIENT)) {
+            throw new UnsupportedException("transient field " + field.getSimpleName() + " is not supported");
+        }
+        if (propertyName == null || propertyName.isEmpty()) {
+            propertyName = field.getSimpleName().toString();
+        }
+        if (modifiers.contains(Modifier.FINAL)) {
+            throw new UnsupportedException("final field " + field.getSimpleName() + " is not supported");
+        }
+        if (!isAccessibleMember(field, pkg)) {
+            throw new UnsupportedException("field " + field.getSimpleName() + " is not accessible");
+        }
+        return new Property(propertyName, field, read(field.asType(), pkg, "parser"));
+    }
+
+    // Types
+
+    /**
+     * Returns an expression reading a value of the given type using the parser
+     * in the given variable.
+     */
+    private String read(TypeMirror type, String pkg, String parser) throws UnsupportedException {
+        switch (type.getKind()) {
+            case INT:
+                return SUPPORT + ".readInt(" + parser + ")";
+            case LONG:
+                return SUPPORT + ".readLong(" + parser + ")";
+            case BOOLEAN:
+                return SUPPORT + ".readBoolean(" + parser + ")";
+            case DOUBLE:
+                return SUPPORT + ".readDouble(" + parser + ")";
+            case ARRAY: {
+                final TypeMirror component = ((ArrayType) type).getComponentType();
+                switch (component.getKind()) {
+                    case BYTE:
+                        return SUPPORT + ".readBytes(" + parser + ")";
+                    case INT:
+                        return SUPPORT + ".readIntArray(" + parser + ")";
+                    case LONG:
+                        return SUPPORT + ".readLongArray(" + parser + ")";
+                    case DECLARED:
+                        if (!((DeclaredType) component).getTypeArguments().isEmpty()) {
+                            break;
+                        }
+                        return SUPPORT + ".readArray(" + parser + ", " +
+                                decoder(component, pkg, parser) + ", " + erasure(component) + "[]::new)";
+                    default:
+                        break;
+                }
+                break;
+            }
+            case DECLARED: {
+                final DeclaredType declared = (DeclaredType) type;
+                final TypeElement element = (TypeElement) declared.asElement();
+                final List<? extends TypeMirror> arguments = declared.getTypeArguments();
+                final String name = element.getQualifiedName().toString();
+                if (name.equals("java.util.List") && arguments.size() == 1) {
+                    return SUPPORT + ".readList(" + parser + ", " +
+                            decoder(elementType(arguments.get(0)), pkg, parser) + ")";
+                }
+                if (name.equals("java.util.Map") && arguments.size() == 2 && isString(arguments.get(0))) {
+                    return SUPPORT + ".readMap(" + parser + ", " +
+                            decoder(elementType(arguments.get(1)), pkg, parser) + ")";
+                }
+                if (element.getKind() == ElementKind.ENUM && arguments.isEmpty()) {
+                    return readEnum(element, pkg, parser);
+                }
+                return decoder(type, pkg, parser) + ".decode(" + parser + ")";
+            }
+            default:
+                break;
+        }
+        throw new UnsupportedException("type " + type + " is not supported");
+    }
+
+    /**
+     * Returns an expression evaluating to a Decoder of the given type. If a lambda is needed,
+     * its parameter is named after the variable of the enclosing parser, to avoid shadowing.
+     */
+    private String decoder(TypeMirror type, String pkg, String parser) throws UnsupportedException {
+        if (type.getKind() == TypeKind.DECLARED) {
+            final DeclaredType declared = (DeclaredType) type;
+            final TypeElement element = (TypeElement) declared.asElement();
+            final String name = element.getQualifiedName().toString();
+            switch (name) {
+                case "java.lang.Integer":
+                    return SUPPORT + ".INTEGER";
+                case "java.lang.Long":
+                    return SUPPORT + ".LONG";
+                case "java.lang.Boolean":
+                    return SUPPORT + ".BOOLEAN";
+                case "java.lang.Double":
+                    return SUPPORT + ".DOUBLE";
+                case "java.lang.String":
+                    return SUPPORT + ".STRING";
+                case "java.util.List":
+                case "java.util.Map":
+                    break;
+                default:
+                    if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.") ||
+                            !declared.getTypeArguments().isEmpty()) {
+                        throw new UnsupportedException("type " + type + " is not supported");
+                    }
+                    if (element.getKind() != ElementKind.ENUM) {
+                        analyze(element, pkg);
+                        return decoderName(element) + ".INSTANCE";
+                    }
+                    break;
+            }
+        }
+        final String p = parser + "_";
+        return p + " -> " + read(type, pkg, p);
+    }
+
+    /**
+     * Enums are supported only if they define a static {@code @JsonCreator} method taking
+     * an int or a String, as is the case for all enums used in responses.
+     */
+    private String readEnum(TypeElement element, String pkg, String parser) throws UnsupportedException {
+        for (final ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.STATIC) || !hasAnnotation(method, JSON_CREATOR)) {
+                continue;
+            }
+            if (method.getParameters().size() != 1 || !isAccessibleMember(method, pkg) ||
+                    !isAccessible(element, pkg)) {
+                break;
+            }
+            final TypeMirror parameter = method.getParameters().get(0).asType();
+            final String read;
+            if (parameter.getKind() == TypeKind.INT) {
+                read = SUPPORT + ".readInt(" + parser + ")";
+            } else if (isString(parameter)) {
+                read = SUPPORT + ".readString(" + parser + ")";
+            } else {
+                break;
+            }
+            return parser + ".currentToken() == com.fasterxml.jackson.core.JsonToken.VALUE_NULL ? null : " +
+                    element.getQualifiedName() + "." + method.getSimpleName() + "(" + read + ")";
+        }
+        throw new UnsupportedException("enum " + element.getQualifiedName() +
+                " has no accessible static @JsonCreator method");
+    }
+
+    private TypeMirror elementType(TypeMirror argument) throws UnsupportedException {
+        if (argument.getKind() == TypeKind.WILDCARD) {
+            throw new UnsupportedException("wildcard types are not supported");
+        }
+        return argument;
+    }
+
+    // Writing
+
+    private void writeDecoders(TypeElement root, Bean bean) {
+        final List<Bean> pending = new ArrayList<>();
+        pending.add(bean);
+        // Write the decoder of the root and of all nested classes.
+        while (!pending.isEmpty()) {
+            final Bean next = pending.remove(0);
+            final String name = next.type.getQualifiedName().toString();
+            if (!mWritten.add(name)) {
+                continue;
+            }
+            writeDecoder(next, root);
+            for (final Property property : next.properties) {
+                collectBeans(property.field.asType(), pending);
+            }
+        }
+    }
+
+    private void collectBeans(TypeMirror type, List<Bean> pending) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            collectBeans(((ArrayType) type).getComponentType(), pending);
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            final DeclaredType declared = (DeclaredType) type;
+            for (final TypeMirror argument : declared.getTypeArguments()) {
+                collectBeans(argument, pending);
+            }
+            final Bean bean = mBeans.get(((TypeElement) declared.asElement()).getQualifiedName().toString());
+            if (bean != null) {
+                pending.add(bean);
+            }
+        }
+    }
+
+    private void writeDecoder(Bean bean, TypeElement origin) {
+        final String pkg = packageOf(bean.type);
+        final String simpleName = decoderSimpleName(bean.type);
+        final String typeName = bean.type.getQualifiedName().toString();
+        final StringBuilder out = new StringBuilder();
+        if (!pkg.isEmpty()) {
+            out.append("package ").append(pkg).append(";\n\n");
+        }
+        out.append("/**\n")
+           .append(" * CBOR decoder for {@link ").append(typeName).append("}.\n")
+           .append(" * <p>\n")
+           .append(" * Generated by ").append(DecoderProcessor.class.getName()).append(". Do not edit.\n")
+           .append(" */\n")
+           .append("public final class ").append(simpleName)
+           .append(" implements ").append(DECODER_PACKAGE).append(".Decoder<").append(typeName).append("> {\n")
+           .append("    public static final ").append(simpleName).append(" INSTANCE = new ")
+           .append(simpleName).append("();\n\n")
+           .append("    private ").append(simpleName).append("() {\n")
+           .append("    }\n\n")
+           .append("    @Override\n")
+           .append("    public ").append(typeName)
+           .append(" decode(com.fasterxml.jackson.core.JsonParser parser) throws java.io.IOException {\n")
+           .append("        if (!").append(SUPPORT).append(".beginObject(parser)) {\n")
+           .append("            return null;\n")
+           .append("        }\n")
+           .append("        final ").append(typeName).append(" value = new ").append(typeName).append("();\n")
+           .append("        String name;\n")
+           .append("        while ((name = ").append(SUPPORT).append(".nextField(parser)) != null) {\n")
+           .append("            switch (name) {\n");
+        for (final Property property : bean.properties) {
+            out.append("                case \"").append(escape(property.name)).append("\":\n")
+               .append("                    value.").append(property.field.getSimpleName())
+               .append(" = ").append(property.read).append(";\n")
+               .append("                    break;\n");
+        }
+        for (final String ignored : bean.ignored) {
+            out.append("                case \"").append(escape(ignored)).append("\":\n")
+               .append("                    parser.skipChildren();\n")
+               .append("                    break;\n");
+        }
+        out.append("                default:\n")
+           .append("                    ").append(SUPPORT).append(".skipField(parser, ")
+           .append(bean.ignoreUnknown).append(");\n")
+           .append("                    break;\n")
+           .append("            }\n")
+           .append("        }\n")
+           .append("        return value;\n")
+           .append("    }\n")
+           .append("}\n");
+        write(pkg.isEmpty() ? simpleName : pkg + "." + simpleName, out, origin, bean.type);
+    }
+
+    private void writeRegistry(Set<TypeElement> roots) {
+        final StringBuilder out = new StringBuilder();
+        out.append("package ").append(DECODER_PACKAGE).append(";\n\n")
+           .append("/**\n")
+           .append(" * Registers generated CBOR decoders.\n")
+           .append(" * <p>\n")
+           .append(" * Generated by ").append(DecoderProcessor.class.getName()).append(". Do not edit.\n")
+           .append(" */\n")
+           .append("public final class ").append(REGISTRY).append(" implements Decoders.Registry {\n\n")
+           .append("    @Override\n")
+           .append("    public void register(java.util.Map<Class<?>, Decoder<?>> decoders) {\n");
+        final List<TypeElement> sorted = new ArrayList<>(roots);
+        sorted.sort((a, b) -> a.getQualifiedName().toString().compareTo(b.getQualifiedName().toString()));
+        for (final TypeElement root : sorted) {
+            out.append("        decoders.put(").append(root.getQualifiedName()).append(".class, ")
+               .append(decoderName(root)).append(".INSTANCE);\n");
+        }
+        out.append("    }\n")
+           .append("}\n");
+        write(DECODER_PACKAGE + "." + REGISTRY, out, roots.toArray(new Element[0]));
+    }
+
+    private void write(String name, CharSequence content, Element... origins) {
+        try (Writer writer = processingEnv.getFiler().createSourceFile(name, origins).openWriter()) {
+            writer.append(content);
+        } catch (final IOException e) {
+            error(origins[0], "Failed to write " + name + ": " + e.getMessage());
+        }
+    }
+
+    // Helpers
+
+    private String decoderName(TypeElement type) {
+        final String pkg = packageOf(type);
+        return pkg.isEmpty() ? decoderSimpleName(type) : pkg + "." + decoderSimpleName(type);
+    }
+
+    /**
+     * Returns the name of the decoder class, e.g. "Outer_Inner_CborDecoder" for a nested class.
+     */
+    private String decoderSimpleName(TypeElement type) {
+        final StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            name.insert(0, e.getSimpleName() + "_");
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    private String packageOf(Element element) {
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(element);
+        return pkg.getQualifiedName().toString();
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        final TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        final TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        if (element.getQualifiedName().contentEquals("java.lang.Object")) {
+            return null;
+        }
+        return element;
+    }
+
+    private boolean isPublic(TypeElement type) {
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (!e.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the type can be used from a class in the given package.
+     */
+    private boolean isAccessible(TypeElement type, String pkg) {
+        if (isPublic(type)) {
+            return true;
+        }
+        if (!packageOf(type).equals(pkg)) {
+            return false;
+        }
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the member can be used from a class in the given package,
+     * which is not a subclass of the declaring class.
+     */
+    private boolean isAccessibleMember(Element member, String pkg) {
+        final Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return packageOf(member).equals(pkg);
+    }
+
+    private boolean isString(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED &&
+                ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals("java.lang.String");
+    }
+
+    private TypeMirror erasure(String name) {
+        return processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement(name).asType());
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private boolean isAssignable(TypeMirror type, TypeMirror to) {
+        return processingEnv.getTypeUtils().isAssignable(type, to);
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationName(mirror).equals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIgnoreEnabled(AnnotationMirror mirror) {
+        for (final Map.Entry<? extends ExecutableElement, ? extends javax.lang.model.element.AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                return (Boolean) entry.getValue().getValue();
+            }
+        }
+        return true;
+    }
+
+    private static String annotationName(AnnotationMirror mirror) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
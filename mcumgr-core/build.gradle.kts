@@ -67,6 +67,10 @@ dependencies {
     //noinspection NewerVersionAvailable
     implementation(libs.fasterxml.databind)
 
+    // Generates CBOR decoders for classes annotated with @GenerateDecoder.
+    annotationProcessor(project(":mcumgr-codegen"))
+
     // Test
     testImplementation(libs.kotlin.test)
+    testImplementation(project(":mcumgr-sim"))
 }
\ No newline at end of file
@@ -38,3 +38,6 @@
 
 # SLF4J
 -dontwarn org.slf4j.impl.StaticLoggerBinder
+
+# Generated CBOR decoders are registered by a class loaded by name.
+-keep class no.nordicsemi.android.mcumgr.decoder.GeneratedDecoders { <init>(); }
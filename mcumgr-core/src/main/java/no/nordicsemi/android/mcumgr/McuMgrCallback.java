@@ -30,4 +30,14 @@ public interface McuMgrCallback<T extends McuMgrResponse> {
      * @param error the error.
      */
     void onError(@NotNull McuMgrException error);
+
+    /**
+     * Marks a callback which may be called on any thread.
+     * <p>
+     * Transports delivering callbacks on a callback executor, for example on the UI thread,
+     * call such callbacks directly on the thread on which the response was received and decoded.
+     * This is used by callbacks which only hand the result over to another thread, like those
+     * of synchronous requests and of uploads.
+     */
+    interface Direct {}
 }
@@ -137,4 +137,46 @@ public interface McuMgrTransport {
      * @param observer the observer.
      */
     void removeObserver(@NotNull ConnectionObserver observer);
+
+    /**
+     * Returns the number of SMP buffers of the connected device, as reported in McuMgr
+     * parameters (see {@link no.nordicsemi.android.mcumgr.managers.DefaultManager#params()}).
+     * <p>
+     * Transports reading the parameters when connected should override this method.
+     * The value is used to choose the upload window when it is not set explicitly.
+     *
+     * @return The number of SMP buffers, or 0 if not known.
+     */
+    default int getSmpBufferCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the size of the SMP buffers of the connected device, in bytes, as reported in
+     * McuMgr parameters (see {@link no.nordicsemi.android.mcumgr.managers.DefaultManager#params()}).
+     *
+     * @return The size of SMP buffers, or 0 if not known.
+     */
+    default int getSmpBufferSize() {
+        return 0;
+    }
+
+    /**
+     * Called when an upload or a download starts sending requests using this transport.
+     * Each call is followed by a call to {@link #onTransferFinished()}, and transfers may overlap.
+     * <p>
+     * Transports may override this method to adjust the link for throughput, for example by
+     * requesting a shorter connection interval. The method may be called from any thread.
+     */
+    default void onTransferStarted() {
+        // Empty default implementation.
+    }
+
+    /**
+     * Called when an upload or a download started with {@link #onTransferStarted()} has
+     * completed, failed or was cancelled. The method may be called from any thread.
+     */
+    default void onTransferFinished() {
+        // Empty default implementation.
+    }
 }
@@ -0,0 +1,202 @@
+package no.nordicsemi.android.mcumgr.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader;
+import no.nordicsemi.android.mcumgr.util.ByteUtil;
+import no.nordicsemi.android.mcumgr.util.CBOR;
+
+/**
+ * Reads capture files written by {@link PacketCapture#writeTo(java.io.OutputStream)} and renders
+ * the recorded packets as text or JSON.
+ * <p>
+ * Decoding is done offline, so capturing packets does not cost more than copying them.
+ */
+@SuppressWarnings("unused")
+public class CaptureDecoder {
+    /** The first bytes of a capture file: "SMPCAP". */
+    final static byte[] MAGIC = { 0x53, 0x4D, 0x50, 0x43, 0x41, 0x50 };
+    /** The version of the capture file format. */
+    final static int VERSION = 1;
+
+    /**
+     * The content of a capture file.
+     */
+    public static class Capture {
+        /** The wall clock time, in milliseconds, when the capture was saved. */
+        public final long wallClockMillis;
+        /** The {@link System#nanoTime()} taken at the same moment as {@link #wallClockMillis}. */
+        public final long nanoTime;
+        /** Recorded packets, from oldest to newest. */
+        @NotNull
+        public final List<PacketCapture.Frame> frames;
+
+        public Capture(long wallClockMillis, long nanoTime, @NotNull List<PacketCapture.Frame> frames) {
+            this.wallClockMillis = wallClockMillis;
+            this.nanoTime = nanoTime;
+            this.frames = frames;
+        }
+
+        /**
+         * Converts the timestamp of a frame to wall clock time.
+         *
+         * @param frame the frame.
+         * @return The time in milliseconds since epoch when the frame was recorded.
+         */
+        public long getTimeMillis(@NotNull PacketCapture.Frame frame) {
+            return wallClockMillis - (nanoTime - frame.timestamp) / 1_000_000;
+        }
+    }
+
+    private CaptureDecoder() {
+        // Empty private constructor.
+    }
+
+    /**
+     * Reads a capture file.
+     * <p>
+     * The stream is not closed.
+     *
+     * @param input the input stream.
+     * @return The capture.
+     * @throws IOException when the stream could not be read or is not a capture file.
+     */
+    @NotNull
+    public static Capture read(@NotNull InputStream input) throws IOException {
+        final DataInputStream stream = new DataInputStream(input);
+        final byte[] magic = new byte[MAGIC.length];
+        stream.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a capture file");
+        }
+        final int version = stream.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported capture file version: " + version);
+        }
+        final long wallClockMillis = stream.readLong();
+        final long nanoTime = stream.readLong();
+        final int count = stream.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of frames: " + count);
+        }
+        final List<PacketCapture.Frame> frames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int direction = stream.readUnsignedByte();
+            final long timestamp = stream.readLong();
+            final int length = stream.readUnsignedShort();
+            final byte[] data = new byte[stream.readUnsignedShort()];
+            stream.readFully(data);
+            frames.add(new PacketCapture.Frame(direction, timestamp, length, data));
+        }
+        return new Capture(wallClockMillis, nanoTime, frames);
+    }
+
+    /**
+     * Renders the capture as text, one packet per line. Each line contains the time relative to
+     * the first packet, the direction, the header and the payload decoded as CBOR, or as hex if
+     * the payload was truncated or could not be decoded.
+     *
+     * @param capture the capture.
+     * @param output  the output.
+     * @throws IOException when writing to the output failed.
+     */
+    public static void toText(@NotNull Capture capture, @NotNull Appendable output) throws IOException {
+        final long start = capture.frames.isEmpty() ? 0 : capture.frames.get(0).timestamp;
+        for (final PacketCapture.Frame frame : capture.frames) {
+            output.append(String.format("%12.3f ms ", (frame.timestamp - start) / 1_000_000.0))
+                    .append(frame.direction == PacketCapture.OUTGOING ? "-> " : "<- ")
+                    .append(String.valueOf(frame.length)).append(" bytes");
+            final McuMgrHeader header = parseHeader(frame);
+            if (header != null) {
+                output.append(' ').append(header.toString());
+            }
+            final String payload = decodePayload(frame);
+            if (payload != null) {
+                output.append(" CBOR ").append(payload);
+            } else if (frame.data.length > McuMgrHeader.HEADER_LENGTH) {
+                output.append(frame.isTruncated() ? " (truncated) " : " ")
+                        .append(ByteUtil.byteArrayToHex(frame.data, McuMgrHeader.HEADER_LENGTH,
+                                frame.data.length - McuMgrHeader.HEADER_LENGTH, "%02X"));
+            }
+            output.append('\n');
+        }
+    }
+
+    /**
+     * Renders the capture as a JSON array. Each packet is rendered as an object with
+     * "time" (milliseconds since epoch), "timestamp" (nanoseconds), "direction" ("tx" or "rx"),
+     * "length", "truncated", "header" and either "payload" (decoded CBOR) or "data" (hex).
+     *
+     * @param capture the capture.
+     * @param output  the output.
+     * @throws IOException when writing to the output failed.
+     */
+    public static void toJson(@NotNull Capture capture, @NotNull Appendable output) throws IOException {
+        output.append('[');
+        boolean first = true;
+        for (final PacketCapture.Frame frame : capture.frames) {
+            if (!first) {
+                output.append(',');
+            }
+            first = false;
+            output.append("{\"time\":").append(String.valueOf(capture.getTimeMillis(frame)))
+                    .append(",\"timestamp\":").append(String.valueOf(frame.timestamp))
+                    .append(",\"direction\":\"").append(frame.direction == PacketCapture.OUTGOING ? "tx" : "rx")
+                    .append("\",\"length\":").append(String.valueOf(frame.length))
+                    .append(",\"truncated\":").append(String.valueOf(frame.isTruncated()));
+            final McuMgrHeader header = parseHeader(frame);
+            if (header != null) {
+                output.append(",\"header\":{\"version\":").append(String.valueOf(header.getVersion()))
+                        .append(",\"op\":").append(String.valueOf(header.getOp()))
+                        .append(",\"flags\":").append(String.valueOf(header.getFlags()))
+                        .append(",\"len\":").append(String.valueOf(header.getLen()))
+                        .append(",\"group\":").append(String.valueOf(header.getGroupId()))
+                        .append(",\"seq\":").append(String.valueOf(header.getSequenceNum()))
+                        .append(",\"id\":").append(String.valueOf(header.getCommandId()))
+                        .append('}');
+            }
+            final String payload = decodePayload(frame);
+            if (payload != null) {
+                output.append(",\"payload\":").append(payload);
+            } else if (frame.data.length > McuMgrHeader.HEADER_LENGTH) {
+                output.append(",\"data\":\"")
+                        .append(ByteUtil.byteArrayToHex(frame.data, McuMgrHeader.HEADER_LENGTH,
+                                frame.data.length - McuMgrHeader.HEADER_LENGTH, "%02X"))
+                        .append('"');
+            }
+            output.append('}');
+        }
+        output.append(']');
+    }
+
+    @Nullable
+    private static McuMgrHeader parseHeader(@NotNull PacketCapture.Frame frame) {
+        if (frame.data.length < McuMgrHeader.HEADER_LENGTH) {
+            return null;
+        }
+        return McuMgrHeader.fromBytes(frame.data);
+    }
+
+    /**
+     * Decodes the payload of a complete frame as CBOR and returns its JSON representation.
+     */
+    @Nullable
+    private static String decodePayload(@NotNull PacketCapture.Frame frame) {
+        if (frame.isTruncated() || frame.data.length <= McuMgrHeader.HEADER_LENGTH) {
+            return null;
+        }
+        try {
+            return CBOR.toString(frame.data, McuMgrHeader.HEADER_LENGTH);
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+}
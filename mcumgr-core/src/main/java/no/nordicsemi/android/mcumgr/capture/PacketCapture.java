@@ -0,0 +1,259 @@
+package no.nordicsemi.android.mcumgr.capture;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring buffer recording raw SMP packets sent and received by a transport.
+ * <p>
+ * Recording a packet does not allocate, lock, or parse the packet. It copies up to
+ * {@link #getSnapLength()} bytes into a preallocated slot, together with the direction and a
+ * {@link System#nanoTime()} timestamp. When the buffer is full, the oldest packets are
+ * overwritten. This makes it cheap enough to be enabled permanently, unlike logging every packet
+ * using {@link no.nordicsemi.android.mcumgr.util.CBOR#toString(byte[])}.
+ * <p>
+ * The content can be saved using {@link #writeTo(OutputStream)} and decoded later using
+ * {@link CaptureDecoder}.
+ * <p>
+ * The capture may be used from multiple threads. A packet which is being overwritten while
+ * {@link #snapshot()} is taken is skipped. Android does not provide memory fences before
+ * API 33, so the slots are invalidated and validated using atomic read-modify-write operations,
+ * which order the plain accesses to the slot.
+ */
+@SuppressWarnings("unused")
+public class PacketCapture {
+    /** The packet was sent to the device. */
+    public final static int OUTGOING = 0;
+    /** The packet was received from the device. */
+    public final static int INCOMING = 1;
+
+    /** The default number of packets held in the buffer. */
+    public final static int DEFAULT_CAPACITY = 512;
+    /** The default number of bytes recorded from each packet. */
+    public final static int DEFAULT_SNAP_LENGTH = 128;
+
+    /**
+     * A single recorded packet.
+     */
+    public static class Frame {
+        /** Either {@link #OUTGOING} or {@link #INCOMING}. */
+        public final int direction;
+        /** The time of recording, in {@link System#nanoTime()} time base. */
+        public final long timestamp;
+        /** The length of the original packet. */
+        public final int length;
+        /** Recorded bytes, at most snap length long. */
+        public final byte @NotNull [] data;
+
+        public Frame(int direction, long timestamp, int length, byte @NotNull [] data) {
+            this.direction = direction;
+            this.timestamp = timestamp;
+            this.length = length;
+            this.data = data;
+        }
+
+        /**
+         * Returns whether the packet was recorded only partially.
+         *
+         * @return True, if the packet was longer than the snap length; false otherwise.
+         */
+        public boolean isTruncated() {
+            return data.length < length;
+        }
+    }
+
+    private final int mMask;
+    private final int mSnapLength;
+
+    /** Sequence number of the next recorded packet. */
+    private final AtomicLong mNext = new AtomicLong();
+    /** Sequence number of the packet held in each slot, or -1 when the slot is being written. */
+    private final AtomicLongArray mSequences;
+    private final long[] mTimestamps;
+    private final int[] mLengths;
+    private final byte[] mDirections;
+    private final byte[][] mFrames;
+
+    /**
+     * Creates a capture with {@link #DEFAULT_CAPACITY} slots, recording up to
+     * {@link #DEFAULT_SNAP_LENGTH} bytes of each packet.
+     */
+    public PacketCapture() {
+        this(DEFAULT_CAPACITY, DEFAULT_SNAP_LENGTH);
+    }
+
+    /**
+     * Creates a capture.
+     *
+     * @param capacity   the number of packets held, rounded up to a power of 2.
+     * @param snapLength the maximum number of bytes recorded from each packet. The SMP header
+     *                   is 8 bytes long.
+     */
+    public PacketCapture(int capacity, int snapLength) {
+        if (capacity <= 0 || capacity > 1 << 20 || snapLength <= 0 || snapLength > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid capacity or snap length");
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mMask = size - 1;
+        mSnapLength = snapLength;
+        mSequences = new AtomicLongArray(size);
+        mTimestamps = new long[size];
+        mLengths = new int[size];
+        mDirections = new byte[size];
+        mFrames = new byte[size][snapLength];
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, -1);
+        }
+    }
+
+    /**
+     * Returns the number of packets that the buffer can hold.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Returns the maximum number of bytes recorded from each packet.
+     *
+     * @return The snap length.
+     */
+    public int getSnapLength() {
+        return mSnapLength;
+    }
+
+    /**
+     * Records the packet.
+     *
+     * @param direction either {@link #OUTGOING} or {@link #INCOMING}.
+     * @param packet    the packet.
+     */
+    public void record(int direction, byte @NotNull [] packet) {
+        record(direction, packet, 0, packet.length);
+    }
+
+    /**
+     * Records a packet from the given part of the array.
+     *
+     * @param direction either {@link #OUTGOING} or {@link #INCOMING}.
+     * @param buffer    the buffer with the packet.
+     * @param offset    the offset of the packet in the buffer.
+     * @param length    the length of the packet.
+     */
+    public void record(int direction, byte @NotNull [] buffer, int offset, int length) {
+        final long timestamp = System.nanoTime();
+        final long sequence = mNext.getAndIncrement();
+        final int slot = (int) (sequence & mMask);
+
+        // Invalidate the slot before writing it. Unlike set(), getAndSet() has the effects
+        // of a volatile read, so the writes below can't be reordered before it.
+        mSequences.getAndSet(slot, -1);
+        mTimestamps[slot] = timestamp;
+        mLengths[slot] = length;
+        mDirections[slot] = (byte) direction;
+        System.arraycopy(buffer, offset, mFrames[slot], 0, Math.min(length, mSnapLength));
+        mSequences.set(slot, sequence);
+    }
+
+    /**
+     * Returns the total number of packets recorded, including those already overwritten.
+     *
+     * @return The number of recorded packets.
+     */
+    public long getRecordedCount() {
+        return mNext.get();
+    }
+
+    /**
+     * Removes all recorded packets.
+     * This should not be called while packets are being recorded.
+     */
+    public void clear() {
+        for (int i = 0; i <= mMask; i++) {
+            mSequences.set(i, -1);
+        }
+    }
+
+    /**
+     * Returns a copy of packets currently held in the buffer, from oldest to newest.
+     *
+     * @return The list of frames.
+     */
+    @NotNull
+    public List<Frame> snapshot() {
+        final long end = mNext.get();
+        final long start = Math.max(0, end - getCapacity());
+        final List<Frame> frames = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            final int slot = (int) (sequence & mMask);
+            if (mSequences.get(slot) != sequence) {
+                continue;
+            }
+            final long timestamp = mTimestamps[slot];
+            final int length = mLengths[slot];
+            final int direction = mDirections[slot];
+            final byte[] data = new byte[Math.min(length, mSnapLength)];
+            System.arraycopy(mFrames[slot], 0, data, 0, data.length);
+            // Skip the frame if it was overwritten while being copied. Unlike get(),
+            // compareAndSet() has the effects of a volatile write, so the reads above
+            // can't be reordered after it.
+            if (!mSequences.compareAndSet(slot, sequence, sequence)) {
+                continue;
+            }
+            frames.add(new Frame(direction, timestamp, length, data));
+        }
+        return frames;
+    }
+
+    /**
+     * Writes the packets currently held in the buffer to the given stream using the capture
+     * file format, which can be read using {@link CaptureDecoder#read(java.io.InputStream)}.
+     * <p>
+     * The stream is not closed.
+     *
+     * @param output the output stream.
+     * @throws IOException when writing to the stream failed.
+     */
+    public void writeTo(@NotNull OutputStream output) throws IOException {
+        writeTo(output, snapshot());
+    }
+
+    /**
+     * Writes the given frames to the stream using the capture file format.
+     * <p>
+     * The file starts with the {@link CaptureDecoder#MAGIC} bytes, a format version, and a
+     * pair of wall clock time in milliseconds and {@link System#nanoTime()} taken at the same
+     * moment, which allows converting frame timestamps to dates. Each frame is stored as
+     * direction (1 byte), timestamp (8 bytes), original length (2 bytes), recorded length
+     * (2 bytes) and the recorded bytes.
+     *
+     * @param output the output stream.
+     * @param frames the frames to write.
+     * @throws IOException when writing to the stream failed.
+     */
+    static void writeTo(@NotNull OutputStream output, @NotNull List<Frame> frames) throws IOException {
+        final DataOutputStream stream = new DataOutputStream(output);
+        stream.write(CaptureDecoder.MAGIC);
+        stream.writeByte(CaptureDecoder.VERSION);
+        stream.writeLong(System.currentTimeMillis());
+        stream.writeLong(System.nanoTime());
+        stream.writeInt(frames.size());
+        for (final Frame frame : frames) {
+            stream.writeByte(frame.direction);
+            stream.writeLong(frame.timestamp);
+            stream.writeShort(Math.min(frame.length, 0xFFFF));
+            stream.writeShort(frame.data.length);
+            stream.write(frame.data);
+        }
+        stream.flush();
+    }
+}
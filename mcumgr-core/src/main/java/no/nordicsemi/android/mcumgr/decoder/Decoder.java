@@ -0,0 +1,33 @@
+package no.nordicsemi.android.mcumgr.decoder;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * A decoder reads a value of type T from a CBOR parser.
+ * <p>
+ * Decoders for classes annotated with {@link GenerateDecoder} are generated at compile time.
+ *
+ * @param <T> the type of the decoded value.
+ */
+public interface Decoder<T> {
+
+    /**
+     * Decodes a value starting at the current token of the parser. When the method returns,
+     * the current token of the parser is the last token of the value.
+     * <p>
+     * The decoder throws an exception whenever it finds a token it can't handle. In such case
+     * the value should be decoded again using Jackson, which either handles it, or reports
+     * the error.
+     *
+     * @param parser the parser.
+     * @return The decoded value.
+     * @throws IOException when the value could not be decoded.
+     */
+    @Nullable
+    T decode(@NotNull JsonParser parser) throws IOException;
+}
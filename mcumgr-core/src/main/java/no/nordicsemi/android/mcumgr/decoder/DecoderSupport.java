@@ -0,0 +1,243 @@
+package no.nordicsemi.android.mcumgr.decoder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Helper methods used by generated decoders.
+ * <p>
+ * Each method reads a value starting at the current token of the parser. Only tokens which
+ * Jackson would map to the same value without coercion are accepted. For any other token
+ * a {@link DecoderException} is thrown, so that the value is decoded again using Jackson.
+ */
+@SuppressWarnings("unused")
+public final class DecoderSupport {
+
+    /**
+     * Thrown when the generated decoder can't decode the value.
+     */
+    public static class DecoderException extends IOException {
+        public DecoderException(@NotNull String message) {
+            super(message);
+        }
+    }
+
+    public final static Decoder<Integer> INTEGER = parser ->
+            parser.currentToken() == JsonToken.VALUE_NULL ? null : readInt(parser);
+    public final static Decoder<Long> LONG = parser ->
+            parser.currentToken() == JsonToken.VALUE_NULL ? null : readLong(parser);
+    public final static Decoder<Boolean> BOOLEAN = parser ->
+            parser.currentToken() == JsonToken.VALUE_NULL ? null : readBoolean(parser);
+    public final static Decoder<Double> DOUBLE = parser ->
+            parser.currentToken() == JsonToken.VALUE_NULL ? null : readDouble(parser);
+    public final static Decoder<String> STRING = DecoderSupport::readString;
+    public final static Decoder<byte[]> BYTES = DecoderSupport::readBytes;
+
+    private DecoderSupport() {
+        // Empty private constructor.
+    }
+
+    @NotNull
+    private static DecoderException unexpected(@NotNull JsonParser parser) {
+        return new DecoderException("Unexpected token: " + parser.currentToken());
+    }
+
+    /**
+     * Checks if the current token is the start of an object.
+     *
+     * @param parser the parser.
+     * @return True, if the current token is {@link JsonToken#START_OBJECT}; false, if it is
+     * {@link JsonToken#VALUE_NULL}.
+     * @throws DecoderException for any other token.
+     */
+    public static boolean beginObject(@NotNull JsonParser parser) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return true;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        throw unexpected(parser);
+    }
+
+    /**
+     * Moves to the next field of an object and returns its name. After this method returns a
+     * name, the current token is the value of the field.
+     *
+     * @param parser the parser.
+     * @return The name of the field, or null, if the end of the object was reached.
+     * @throws IOException when the data could not be parsed.
+     */
+    @Nullable
+    public static String nextField(@NotNull JsonParser parser) throws IOException {
+        final String name = parser.nextFieldName();
+        if (name == null) {
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw unexpected(parser);
+            }
+            return null;
+        }
+        parser.nextToken();
+        return name;
+    }
+
+    /**
+     * Skips the value of a field not present in the decoded class.
+     *
+     * @param parser        the parser.
+     * @param ignoreUnknown whether the class ignores unknown properties.
+     * @throws IOException when the field can't be ignored or the data could not be parsed.
+     */
+    public static void skipField(@NotNull JsonParser parser, boolean ignoreUnknown) throws IOException {
+        if (!ignoreUnknown) {
+            throw new DecoderException("Unknown property: " + parser.currentName());
+        }
+        parser.skipChildren();
+    }
+
+    public static int readInt(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT ||
+                parser.getNumberType() != JsonParser.NumberType.INT) {
+            throw unexpected(parser);
+        }
+        return parser.getIntValue();
+    }
+
+    public static long readLong(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT ||
+                parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+            throw unexpected(parser);
+        }
+        return parser.getLongValue();
+    }
+
+    public static boolean readBoolean(@NotNull JsonParser parser) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_TRUE) {
+            return true;
+        }
+        if (token == JsonToken.VALUE_FALSE) {
+            return false;
+        }
+        throw unexpected(parser);
+    }
+
+    public static double readDouble(@NotNull JsonParser parser) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+            throw unexpected(parser);
+        }
+        return parser.getDoubleValue();
+    }
+
+    @Nullable
+    public static String readString(@NotNull JsonParser parser) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        throw unexpected(parser);
+    }
+
+    public static byte @Nullable [] readBytes(@NotNull JsonParser parser) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+            return parser.getBinaryValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        throw unexpected(parser);
+    }
+
+    public static int @Nullable [] readIntArray(@NotNull JsonParser parser) throws IOException {
+        if (!beginArray(parser)) {
+            return null;
+        }
+        int[] array = new int[8];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+            }
+            array[size++] = readInt(parser);
+        }
+        return size == array.length ? array : Arrays.copyOf(array, size);
+    }
+
+    public static long @Nullable [] readLongArray(@NotNull JsonParser parser) throws IOException {
+        if (!beginArray(parser)) {
+            return null;
+        }
+        long[] array = new long[8];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+            }
+            array[size++] = readLong(parser);
+        }
+        return size == array.length ? array : Arrays.copyOf(array, size);
+    }
+
+    @Nullable
+    public static <T> T[] readArray(@NotNull JsonParser parser,
+                                    @NotNull Decoder<T> decoder,
+                                    @NotNull IntFunction<T[]> factory) throws IOException {
+        final List<T> list = readList(parser, decoder);
+        return list == null ? null : list.toArray(factory.apply(list.size()));
+    }
+
+    @Nullable
+    public static <T> List<T> readList(@NotNull JsonParser parser,
+                                       @NotNull Decoder<T> decoder) throws IOException {
+        if (!beginArray(parser)) {
+            return null;
+        }
+        final List<T> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            list.add(decoder.decode(parser));
+        }
+        return list;
+    }
+
+    @Nullable
+    public static <T> Map<String, T> readMap(@NotNull JsonParser parser,
+                                             @NotNull Decoder<T> decoder) throws IOException {
+        if (!beginObject(parser)) {
+            return null;
+        }
+        final Map<String, T> map = new LinkedHashMap<>();
+        String name;
+        while ((name = nextField(parser)) != null) {
+            map.put(name, decoder.decode(parser));
+        }
+        return map;
+    }
+
+    private static boolean beginArray(@NotNull JsonParser parser) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            return true;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        throw unexpected(parser);
+    }
+}
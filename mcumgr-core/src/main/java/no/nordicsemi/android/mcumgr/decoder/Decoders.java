@@ -0,0 +1,65 @@
+package no.nordicsemi.android.mcumgr.decoder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds decoders generated for classes annotated with {@link GenerateDecoder}.
+ * <p>
+ * The decoders are registered by the {@code GeneratedDecoders} class, generated by
+ * the <i>mcumgr-codegen</i> annotation processor. If the class was not generated, no decoders
+ * are available and all types are decoded using Jackson.
+ */
+public final class Decoders {
+    private final static String REGISTRY = "no.nordicsemi.android.mcumgr.decoder.GeneratedDecoders";
+
+    /**
+     * Implemented by the generated registry.
+     */
+    public interface Registry {
+        /**
+         * Adds all generated decoders to the given map.
+         *
+         * @param decoders the map of decoders, by decoded type.
+         */
+        void register(@NotNull Map<Class<?>, Decoder<?>> decoders);
+    }
+
+    private final static Map<Class<?>, Decoder<?>> sDecoders = load();
+
+    private Decoders() {
+        // Empty private constructor.
+    }
+
+    @NotNull
+    private static Map<Class<?>, Decoder<?>> load() {
+        try {
+            final Registry registry = (Registry) Class.forName(REGISTRY)
+                    .getDeclaredConstructor()
+                    .newInstance();
+            final Map<Class<?>, Decoder<?>> decoders = new HashMap<>();
+            registry.register(decoders);
+            return decoders;
+        } catch (final Exception e) {
+            // The annotation processor was not used.
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Returns the generated decoder for the given type.
+     *
+     * @param type the type.
+     * @param <T>  the type.
+     * @return The decoder, or null, if no decoder was generated for exactly this type.
+     */
+    @Nullable
+    public static <T> Decoder<T> get(@NotNull Class<T> type) {
+        //noinspection unchecked
+        return (Decoder<T>) sDecoders.get(type);
+    }
+}
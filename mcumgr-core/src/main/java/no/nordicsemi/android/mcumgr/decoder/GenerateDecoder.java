@@ -0,0 +1,25 @@
+package no.nordicsemi.android.mcumgr.decoder;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a response class for which a CBOR {@link Decoder} should be generated at compile time
+ * by the <i>mcumgr-codegen</i> annotation processor.
+ * <p>
+ * The generated decoder reads the fields of the class, and of its superclasses, directly from
+ * the CBOR parser, without using reflection. Fields are matched the same way as Jackson does by
+ * default: fields annotated with {@code @JsonProperty} and public fields, excluding those
+ * annotated with {@code @JsonIgnore}. Classes of nested objects do not need to be annotated.
+ * <p>
+ * If a class uses a feature not supported by the processor, no decoder is generated and
+ * Jackson is used instead. The processor reports a note in such case.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateDecoder {
+}
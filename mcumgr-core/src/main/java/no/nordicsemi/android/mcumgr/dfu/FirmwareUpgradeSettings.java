@@ -1,27 +1,149 @@
 package no.nordicsemi.android.mcumgr.dfu;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
+import no.nordicsemi.android.mcumgr.transfer.UploadSessionStore;
+
 public class FirmwareUpgradeSettings {
 
+    /**
+     * Value of {@link #windowCapacity} and {@link #memoryAlignment} meaning that the value
+     * should be chosen automatically, based on the SMP buffers of the device.
+     */
+    public static final int AUTO = 0;
+
+    /**
+     * Memory alignment used with automatic window upload. NCS 1.8 and older discard unaligned
+     * data when window upload is used; 4 matches the flash write block of nRF52 and nRF53 and
+     * costs at most 3 bytes per chunk.
+     */
+    private static final int AUTO_MEMORY_ALIGNMENT = 4;
+
     /**
      * The upload window capacity for faster image uploads. A capacity greater than 1 will enable
      * using the faster window upload implementation.
+     * <p>
+     * {@link #AUTO} by default, see {@link #getWindowCapacity(McuMgrTransport)}.
      */
     public final int windowCapacity;
 
     /**
      * Memory alignment. Value 1 disables memory alignment.
+     * <p>
+     * {@link #AUTO} by default, see {@link #getMemoryAlignment(McuMgrTransport)}.
      */
     public final int memoryAlignment;
 
+    /**
+     * Whether the number of packets sent without awaiting a response adapts to the link,
+     * up to the window capacity. False by default.
+     */
+    public final boolean adaptiveWindow;
+
+    /**
+     * The number of times an upload is resumed after a transport error, like a disconnection.
+     * 0 by default.
+     */
+    public final int resumeAttempts;
+
+    /**
+     * Keeps the progress of uploads, so that an interrupted upload can be resumed, also by
+     * another process. Null by default.
+     */
+    @Nullable
+    public final UploadSessionStore sessionStore;
+
     protected FirmwareUpgradeSettings(final int windowCapacity,
                                       final int memoryAlignment) {
+        this(windowCapacity, memoryAlignment, false);
+    }
+
+    protected FirmwareUpgradeSettings(final int windowCapacity,
+                                      final int memoryAlignment,
+                                      final boolean adaptiveWindow) {
+        this(windowCapacity, memoryAlignment, adaptiveWindow, 0, null);
+    }
+
+    protected FirmwareUpgradeSettings(final int windowCapacity,
+                                      final int memoryAlignment,
+                                      final boolean adaptiveWindow,
+                                      final int resumeAttempts,
+                                      @Nullable final UploadSessionStore sessionStore) {
         this.windowCapacity = windowCapacity;
         this.memoryAlignment = memoryAlignment;
+        this.adaptiveWindow = adaptiveWindow;
+        this.resumeAttempts = resumeAttempts;
+        this.sessionStore = sessionStore;
+    }
+
+    /**
+     * Returns the window capacity to use with the given transport.
+     * <p>
+     * If the capacity was not set explicitly, it is derived from the SMP buffer count reported
+     * by the transport. One buffer is left for responses, as in Zephyr. If the buffer count
+     * is not known, the window upload is not used.
+     *
+     * @param transport the transport used for the upload.
+     * @return The window capacity, 1 or more.
+     */
+    public int getWindowCapacity(@NotNull final McuMgrTransport transport) {
+        return resolveWindowCapacity(windowCapacity, transport);
+    }
+
+    /**
+     * Returns the memory alignment to use with the given transport.
+     * <p>
+     * If the alignment was not set explicitly, 4 is used with window upload, and 1 otherwise.
+     *
+     * @param transport the transport used for the upload.
+     * @return The memory alignment, 1 or more.
+     */
+    public int getMemoryAlignment(@NotNull final McuMgrTransport transport) {
+        return resolveMemoryAlignment(memoryAlignment, getWindowCapacity(transport));
+    }
+
+    /**
+     * Returns the given window capacity, or, if it is {@link #AUTO}, the one derived from
+     * the SMP buffer count reported by the transport.
+     *
+     * @param windowCapacity the window capacity, or {@link #AUTO}.
+     * @param transport      the transport used for the upload.
+     * @return The window capacity, 1 or more.
+     * @see #getWindowCapacity(McuMgrTransport)
+     */
+    public static int resolveWindowCapacity(final int windowCapacity,
+                                            @NotNull final McuMgrTransport transport) {
+        if (windowCapacity != AUTO) {
+            return windowCapacity;
+        }
+        return Math.max(1, transport.getSmpBufferCount() - 1);
+    }
+
+    /**
+     * Returns the given memory alignment, or, if it is {@link #AUTO}, the one used with
+     * the given window capacity.
+     *
+     * @param memoryAlignment the memory alignment, or {@link #AUTO}.
+     * @param windowCapacity  the resolved window capacity.
+     * @return The memory alignment, 1 or more.
+     * @see #getMemoryAlignment(McuMgrTransport)
+     */
+    public static int resolveMemoryAlignment(final int memoryAlignment, final int windowCapacity) {
+        if (memoryAlignment != AUTO) {
+            return memoryAlignment;
+        }
+        return windowCapacity > 1 ? AUTO_MEMORY_ALIGNMENT : 1;
     }
 
     public static class Builder {
-        protected int windowCapacity = 1;
-        protected int memoryAlignment = 1;
+        protected int windowCapacity = AUTO;
+        protected int memoryAlignment = AUTO;
+        protected boolean adaptiveWindow = false;
+        protected int resumeAttempts = 0;
+        @Nullable
+        protected UploadSessionStore sessionStore = null;
 
         public Builder() {}
 
@@ -30,12 +152,15 @@ public class FirmwareUpgradeSettings {
          * <p>
          * On Zephyr this is equal to MCUMGR_TRANSPORT_NETBUF_COUNT - 1 value, where
          * one buffer (if more then 1) is used for responses.
+         * <p>
+         * By default, or when set to {@link #AUTO}, the capacity is derived from the buffer count
+         * read by the transport from the device, if supported.
          * @param windowCapacity number of windows that can be sent in parallel.
          * @see <a href="https://github.com/zephyrproject-rtos/zephyr/blob/19f645edd40b38e54f505135beced1919fdc7715/subsys/mgmt/mcumgr/transport/Kconfig#L32">MCUMGR_TRANSPORT_NETBUF_COUNT</a>
          * @return The builder.
          */
         public FirmwareUpgradeSettings.Builder setWindowCapacity(final int windowCapacity) {
-            this.windowCapacity = Math.max(1, windowCapacity);
+            this.windowCapacity = windowCapacity == AUTO ? AUTO : Math.max(1, windowCapacity);
             return this;
         }
 
@@ -44,11 +169,61 @@ public class FirmwareUpgradeSettings {
          * Some devices require the chunks to be word or 16-byte aligned to be saved.
          * <p>
          * Value 1 disables alignment and chunks will be sent as big as possible.
+         * By default, or when set to {@link #AUTO}, 4 is used with window upload.
          * @param alignment device memory alignment.
          * @return The builder.
          */
         public FirmwareUpgradeSettings.Builder setMemoryAlignment(final int alignment) {
-            this.memoryAlignment = Math.max(1, alignment);
+            this.memoryAlignment = alignment == AUTO ? AUTO : Math.max(1, alignment);
+            return this;
+        }
+
+        /**
+         * Enables the adaptive window.
+         * <p>
+         * With a fixed window, the number of packets set with {@link #setWindowCapacity(int)}
+         * is sent without awaiting responses. On a noisy link, packets lost with a large window
+         * cost timeouts and retransmissions. The adaptive window starts with 1 packet, grows
+         * when packets are acknowledged and is halved when a packet is lost, never exceeding
+         * the window capacity.
+         * @param adaptive true to adapt the window to the link, defaults to false.
+         * @return The builder.
+         */
+        public FirmwareUpgradeSettings.Builder setAdaptiveWindow(final boolean adaptive) {
+            this.adaptiveWindow = adaptive;
+            return this;
+        }
+
+        /**
+         * Sets the number of times an upload is resumed after a transport error, like
+         * a disconnection or a timeout.
+         * <p>
+         * Before resuming, the transport is reconnected. Images continue from the offset
+         * reported by the device. Other uploads continue from the last offset confirmed by the
+         * device, if a session store is set, and from the beginning otherwise.
+         * @param attempts the number of attempts, defaults to 0.
+         * @return The builder.
+         * @see #setSessionStore(UploadSessionStore)
+         */
+        public FirmwareUpgradeSettings.Builder setResumeAttempts(final int attempts) {
+            this.resumeAttempts = Math.max(0, attempts);
+            return this;
+        }
+
+        /**
+         * Sets the store keeping the progress of uploads.
+         * <p>
+         * The progress is saved as the device confirms the data. An upload of the same data to
+         * the same target, for example after the app was restarted, continues from the saved
+         * offset instead of sending all data again. Sessions are identified by the target only,
+         * so a separate store should be used for each device.
+         * @param store the store, for example a
+         *              {@link no.nordicsemi.android.mcumgr.transfer.FileUploadSessionStore},
+         *              or null to disable, which is the default.
+         * @return The builder.
+         */
+        public FirmwareUpgradeSettings.Builder setSessionStore(@Nullable final UploadSessionStore store) {
+            this.sessionStore = store;
             return this;
         }
 
@@ -57,7 +232,8 @@ public class FirmwareUpgradeSettings {
          * @return Settings.
          */
         public FirmwareUpgradeSettings build() {
-            return new FirmwareUpgradeSettings(windowCapacity, memoryAlignment);
+            return new FirmwareUpgradeSettings(windowCapacity, memoryAlignment, adaptiveWindow,
+                    resumeAttempts, sessionStore);
         }
     }
 }
@@ -12,6 +12,7 @@ import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.ImageSet;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.TargetImage;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.transfer.UploadSessionStore;
 
 /**
  * Manages a McuManager firmware upgrade. Once initialized, <b>this object can only perform a single
@@ -115,8 +116,11 @@ public class FirmwareUpgradeManager implements FirmwareUpgradeController {
         private Settings(final int estimatedSwapTime,
                          final int windowCapacity,
                          final int memoryAlignment,
+                         final boolean adaptiveWindow,
+                         final int resumeAttempts,
+                         @Nullable final UploadSessionStore sessionStore,
                          final boolean eraseAppSettings) {
-            super(windowCapacity, memoryAlignment);
+            super(windowCapacity, memoryAlignment, adaptiveWindow, resumeAttempts, sessionStore);
             this.estimatedSwapTime = estimatedSwapTime;
             this.eraseAppSettings = eraseAppSettings;
         }
@@ -177,13 +181,32 @@ public class FirmwareUpgradeManager implements FirmwareUpgradeController {
                 return this;
             }
 
+            @Override
+            public Builder setAdaptiveWindow(boolean adaptive) {
+                super.setAdaptiveWindow(adaptive);
+                return this;
+            }
+
+            @Override
+            public Builder setResumeAttempts(int attempts) {
+                super.setResumeAttempts(attempts);
+                return this;
+            }
+
+            @Override
+            public Builder setSessionStore(@Nullable UploadSessionStore store) {
+                super.setSessionStore(store);
+                return this;
+            }
+
             /**
              * Builds the settings object.
              * @return Settings.
              */
             @Override
             public Settings build() {
-                return new Settings(estimatedSwapTime, windowCapacity, memoryAlignment, eraseAppSettings);
+                return new Settings(estimatedSwapTime, windowCapacity, memoryAlignment, adaptiveWindow,
+                        resumeAttempts, sessionStore, eraseAppSettings);
             }
         }
     }
@@ -10,6 +10,7 @@ import java.util.List;
 
 import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImage;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.transfer.UploadSource;
 
 /**
  * Represents a set of images to be sent to the device using teh Image group (manager).
@@ -101,6 +102,17 @@ public class ImageSet {
         return this;
     }
 
+    /**
+     * Adds an image read from the given source. Only the header and the TLV trailer of the image
+     * are read here, see {@link TargetImage#TargetImage(int, int, UploadSource)}.
+     * @param image the source of the image, sent to the secondary slot of the default core.
+     */
+    @NotNull
+    public ImageSet add(@NotNull UploadSource image) throws McuMgrException {
+        images.add(new TargetImage(image));
+        return this;
+    }
+
     @NotNull
     public ImageSet add(Pair<Integer, byte[]> image) throws McuMgrException {
         images.add(new TargetImage(image.first, image.second));
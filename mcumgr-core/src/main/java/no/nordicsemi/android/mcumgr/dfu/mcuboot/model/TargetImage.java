@@ -1,11 +1,16 @@
 package no.nordicsemi.android.mcumgr.dfu.mcuboot.model;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
 
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.image.ImageWithHash;
 import no.nordicsemi.android.mcumgr.image.McuMgrImage;
 import no.nordicsemi.android.mcumgr.image.SUITImage;
+import no.nordicsemi.android.mcumgr.transfer.ByteArrayUploadSource;
+import no.nordicsemi.android.mcumgr.transfer.UploadSource;
 
 /** @noinspection unused*/
 public class TargetImage {
@@ -26,12 +31,25 @@ public class TargetImage {
      */
     public final int slot;
     /**
-     * The image.
+     * The image, or null if the target was created from an {@link UploadSource}.
      * <p>
      * Currently only MCUboot images are supported. Valid images contain a header with a MAGIC
      * number and a version number.
+     *
+     * @deprecated Use {@link #source}, {@link #getHash()} and {@link #needsConfirmation()} instead.
      */
+    @Deprecated
+    @Nullable
     public final ImageWithHash image;
+    /**
+     * The source of the image.
+     */
+    @NotNull
+    public final UploadSource source;
+
+    private final byte @NotNull [] hash;
+    private final boolean needsConfirmation;
+    private final boolean suit;
 
     /**
      * This constructor creates a basic image target. It will be sent to the secondary slot (slot = 1)
@@ -95,5 +113,88 @@ public class TargetImage {
             }
         }
         this.image = tmp;
+        this.source = new ByteArrayUploadSource(data);
+        this.hash = tmp.getHash();
+        this.needsConfirmation = tmp.needsConfirmation();
+        this.suit = tmp instanceof SUITImage;
+    }
+
+    /**
+     * This constructor creates an image target read from the given source. The image will be
+     * sent to the secondary slot (slot = 1) of the default core (image index = 0).
+     * @param source the source of the signed binary to be sent.
+     * @throws McuMgrException when the image does not have a valid mcu header
+     * @see #TargetImage(int, int, UploadSource)
+     */
+    public TargetImage(@NotNull UploadSource source) throws McuMgrException {
+        this(0, SLOT_SECONDARY, source);
+    }
+
+    /**
+     * This constructor creates an image target read from the given source, targeting specified
+     * core (image index). The image will be sent to the secondary slot (slot = 1) for that core.
+     * @param imageIndex an index of the core (0 is the main (app) core, 1 is secondary (network) core, etc.
+     * @param source the source of the signed binary to be sent.
+     * @throws McuMgrException when the image does not have a valid mcu header
+     * @see #TargetImage(int, int, UploadSource)
+     */
+    public TargetImage(int imageIndex, @NotNull UploadSource source) throws McuMgrException {
+        this(imageIndex, SLOT_SECONDARY, source);
+    }
+
+    /**
+     * This constructor creates an image target read from the given source, for example
+     * a {@link no.nordicsemi.android.mcumgr.transfer.MappedFileUploadSource MappedFileUploadSource}.
+     * <p>
+     * Only the header and the TLV trailer of an MCUboot image are read to obtain the hash, the
+     * image itself is read when it is uploaded. A SUIT envelope is read and parsed, and released
+     * afterwards.
+     * @param imageIndex an index of the core (0 is the main (app) core, 1 is secondary (network) core, etc.
+     * @param slot 0 for a primary slot and 1 for a secondary slot.
+     * @param source the source of the signed binary to be sent.
+     * @throws McuMgrException when the image does not have a valid mcu header, or could not be read
+     */
+    public TargetImage(int imageIndex, int slot, @NotNull UploadSource source) throws McuMgrException {
+        this.imageIndex = imageIndex;
+        this.slot = slot;
+        this.image = null;
+        this.source = source;
+        byte[] tmp;
+        boolean suit = false;
+        try {
+            tmp = McuMgrImage.getHash(source);
+        } catch (McuMgrException e) {
+            try {
+                final byte[] data = new byte[source.getSize()];
+                source.read(0, data, 0, data.length);
+                tmp = SUITImage.getHash(data);
+                suit = true;
+            } catch (IOException e2) {
+                throw new McuMgrException("Reading the image failed", e2);
+            } catch (McuMgrException e2) {
+                throw new McuMgrException("The image does not have a valid mcu header");
+            }
+        }
+        this.hash = tmp;
+        this.needsConfirmation = !suit;
+        this.suit = suit;
+    }
+
+    /** Returns the hash of the image. */
+    public byte @NotNull [] getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns true if the image needs confirmation to be applied.
+     * @see ImageWithHash#needsConfirmation()
+     */
+    public boolean needsConfirmation() {
+        return needsConfirmation;
+    }
+
+    /** Returns true if the image is a SUIT envelope. */
+    public boolean isSuit() {
+        return suit;
     }
 }
@@ -1,6 +1,7 @@
 package no.nordicsemi.android.mcumgr.dfu.mcuboot.task;
 
 import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 
 import org.jetbrains.annotations.NotNull;
@@ -81,7 +82,10 @@ class Reset extends FirmwareUpgradeTask {
 
 				if (remainingTime > 0) {
 					LOG.trace("Waiting remaining {} ms for the swap operation to complete", remainingTime);
-					new Handler().postDelayed(complete, remainingTime);
+					// Observers may be called on a thread without a Looper, depending on the transport.
+					final Looper looper = Looper.myLooper();
+					new Handler(looper != null ? looper : Looper.getMainLooper())
+							.postDelayed(complete, remainingTime);
 				} else {
 					complete.run();
 				}
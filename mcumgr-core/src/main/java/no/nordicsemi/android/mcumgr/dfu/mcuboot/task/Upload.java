@@ -1,18 +1,26 @@
 package no.nordicsemi.android.mcumgr.dfu.mcuboot.task;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Settings;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.State;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.managers.ImageManager;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
+import no.nordicsemi.android.mcumgr.transfer.ByteArrayUploadSource;
 import no.nordicsemi.android.mcumgr.transfer.ImageUploader;
 import no.nordicsemi.android.mcumgr.transfer.TransferController;
 import no.nordicsemi.android.mcumgr.transfer.UploadCallback;
+import no.nordicsemi.android.mcumgr.transfer.UploadSource;
+import no.nordicsemi.android.mcumgr.util.DigestCache;
 
 class Upload extends FirmwareUpgradeTask {
-	private final byte[] data;
+	@NotNull
+	private final UploadSource source;
+	/** The data, if the source is a whole byte array, null otherwise. */
+	private final byte @Nullable [] data;
 	private final int image;
 
 	/**
@@ -20,9 +28,15 @@ class Upload extends FirmwareUpgradeTask {
 	 */
 	private TransferController mUploadController;
 
-	Upload(final byte @NotNull [] data, final int image) {
-		this.data = data;
+	Upload(final @NotNull UploadSource source, final int image) {
+		this.source = source;
+		this.data = wholeArrayOf(source);
 		this.image = image;
+		// The digest is sent in the first packet. Compute it while other tasks are performed.
+		// The digest of other sources is computed by the ImageUploader when created.
+		if (data != null) {
+			DigestCache.prefetch(data);
+		}
 	}
 
 	@Override
@@ -67,19 +81,36 @@ class Upload extends FirmwareUpgradeTask {
 		};
 
 		final Settings settings = performer.getSettings();
-		final ImageManager manager = new ImageManager(performer.getTransport());
-		if (settings.windowCapacity > 1) {
-			mUploadController =	new ImageUploader(
+		final McuMgrTransport transport = performer.getTransport();
+		final ImageManager manager = new ImageManager(transport);
+		final int windowCapacity = settings.getWindowCapacity(transport);
+		// Only the ImageUploader supports window upload, resuming and reading from a source.
+		if (data == null || windowCapacity > 1 || settings.resumeAttempts > 0 || settings.sessionStore != null) {
+			final ImageUploader uploader = new ImageUploader(
 					manager,
-					data, image,
-					settings.windowCapacity,
-					settings.memoryAlignment
-			).uploadAsync(callback);
+					source, image,
+					windowCapacity,
+					settings.getMemoryAlignment(transport)
+			);
+			uploader.setAdaptiveWindow(settings.adaptiveWindow);
+			uploader.setResumeAttempts(settings.resumeAttempts);
+			uploader.setSessionStore(settings.sessionStore);
+			mUploadController = uploader.uploadAsync(callback);
 		} else {
 			mUploadController = manager.imageUpload(data, image, callback);
 		}
 	}
 
+	private static byte @Nullable [] wholeArrayOf(@NotNull final UploadSource source) {
+		if (source instanceof ByteArrayUploadSource) {
+			final ByteArrayUploadSource array = (ByteArrayUploadSource) source;
+			if (array.getDataOffset() == 0 && array.getSize() == array.getData().length) {
+				return array.getData();
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public void pause() {
 		mUploadController.pause();
@@ -17,8 +17,6 @@ import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.TargetImage;
 import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImage;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
-import no.nordicsemi.android.mcumgr.image.ImageWithHash;
-import no.nordicsemi.android.mcumgr.image.SUITImage;
 import no.nordicsemi.android.mcumgr.managers.DefaultManager;
 import no.nordicsemi.android.mcumgr.managers.ImageManager;
 import no.nordicsemi.android.mcumgr.response.dflt.McuMgrBootloaderInfoResponse;
@@ -148,8 +146,7 @@ class Validate extends FirmwareUpgradeTask {
 						if (slot.active) {
 							// Check if any of the images has the same hash as the image on the active slot.
 							for (final TargetImage image : images.getImages()) {
-								final ImageWithHash mcuMgrImage = image.image;
-								if (slot.image == image.imageIndex && Arrays.equals(slot.hash, mcuMgrImage.getHash())) {
+								if (slot.image == image.imageIndex && Arrays.equals(slot.hash, image.getHash())) {
 									// The image was found on an active slot, which means that core
 									// does not need to be updated.
 									images.removeImagesWithImageIndex(image.imageIndex);
@@ -172,7 +169,6 @@ class Validate extends FirmwareUpgradeTask {
 				// For each image that is to be sent, check if the same image has already been sent.
 				for (final TargetImage image : images.getImages()) {
 					final int imageIndex = image.imageIndex;
-					final ImageWithHash mcuMgrImage = image.image;
 
 					// The following flags will be updated based on the received slot information.
 					boolean found = false;     // An image with the same hash was found on the device
@@ -188,7 +184,7 @@ class Validate extends FirmwareUpgradeTask {
 
 						// If the same image was found in any of the slots, the upload will not be
 						// required. The image may need testing or confirming, or may already be running.
-						if (Arrays.equals(slot.hash, mcuMgrImage.getHash())) {
+						if (Arrays.equals(slot.hash, image.getHash())) {
 							found = true;
 							pending = slot.pending;
 							permanent = slot.permanent;
@@ -198,7 +194,7 @@ class Validate extends FirmwareUpgradeTask {
 							// If the image has been found on its target slot and it's confirmed,
 							// we just need to restart the device in order for it to be swapped back to
 							// primary slot.
-							if (mcuMgrImage.needsConfirmation() && confirmed && slot.slot == image.slot && !noSwap) {
+							if (image.needsConfirmation() && confirmed && slot.slot == image.slot && !noSwap) {
 								resetRequired = true;
 							}
 							break;
@@ -285,14 +281,14 @@ class Validate extends FirmwareUpgradeTask {
 						continue;
 					}
 					if (!found) {
-						performer.enqueue(new Upload(mcuMgrImage.getData(), imageIndex));
-						if (mcuMgrImage.needsConfirmation() && (!allowRevert || mode == Mode.NONE)) {
+						performer.enqueue(new Upload(image.source, imageIndex));
+						if (image.needsConfirmation() && (!allowRevert || mode == Mode.NONE)) {
 							resetRequired = true;
 						}
 					}
-					if (!mcuMgrImage.needsConfirmation()) {
+					if (!image.needsConfirmation()) {
 						// Since nRF Connect SDK v.2.8 the SUIT image requires no confirmation.
-						if (mcuMgrImage instanceof SUITImage) {
+						if (image.isSuit()) {
 							performer.enqueue(new Confirm());
 						}
 						continue;
@@ -304,7 +300,7 @@ class Validate extends FirmwareUpgradeTask {
 								// confirmed (another image is under test), and isn't the currently
 								// running image, send test command and update the flag.
 								if (!pending && !confirmed && !active) {
-									performer.enqueue(new Test(mcuMgrImage.getHash()));
+									performer.enqueue(new Test(image.getHash()));
 									pending = true;
 								}
 								// If the image is pending, reset is required.
@@ -312,7 +308,7 @@ class Validate extends FirmwareUpgradeTask {
 									resetRequired = true;
 								}
 								if (!permanent && !confirmed) {
-									performer.enqueue(new ConfirmAfterReset(mcuMgrImage.getHash()));
+									performer.enqueue(new ConfirmAfterReset(image.getHash()));
 								}
 								break;
 							}
@@ -321,7 +317,7 @@ class Validate extends FirmwareUpgradeTask {
 								// confirmed (another image is under test), and isn't the currently
 								// running image, send test command and update the flag.
 								if (!pending && !confirmed && !active) {
-									performer.enqueue(new Test(mcuMgrImage.getHash()));
+									performer.enqueue(new Test(image.getHash()));
 									pending = true;
 								}
 								// If the image is pending, reset is required.
@@ -333,7 +329,7 @@ class Validate extends FirmwareUpgradeTask {
 							case CONFIRM_ONLY: {
 								// If the firmware is not confirmed yet, confirm t.
 								if (!permanent && !confirmed) {
-									performer.enqueue(new Confirm(mcuMgrImage.getHash()));
+									performer.enqueue(new Confirm(image.getHash()));
 									permanent = true;
 								}
 								if (permanent) {
@@ -349,7 +345,7 @@ class Validate extends FirmwareUpgradeTask {
 				final List<CacheImage> cacheImages = images.getCacheImages();
 				if (cacheImages != null) {
 					for (final CacheImage cacheImage : cacheImages) {
-						performer.enqueue(new Upload(cacheImage.image, cacheImage.partitionId));
+						performer.enqueue(new Upload(cacheImage.source, cacheImage.partitionId));
 					}
 				}
 
@@ -1,6 +1,11 @@
 package no.nordicsemi.android.mcumgr.dfu.suit.model;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import no.nordicsemi.android.mcumgr.image.suit.SUITEnvelope;
+import no.nordicsemi.android.mcumgr.transfer.ByteArrayUploadSource;
+import no.nordicsemi.android.mcumgr.transfer.UploadSource;
 
 /** @noinspection unused*/
 public class CacheImage {
@@ -9,9 +14,18 @@ public class CacheImage {
     public final int partitionId;
 
     /**
-     * The image.
+     * The image, or null if the cache image was created from an {@link UploadSource}.
+     *
+     * @deprecated Use {@link #source} instead.
+     */
+    @Deprecated
+    public final byte @Nullable [] image;
+
+    /**
+     * The source of the image.
      */
-    public final byte @NotNull [] image;
+    @NotNull
+    public final UploadSource source;
 
     /**
      * A wrapper for a partition cache raw image and the ID of the partition.
@@ -22,5 +36,30 @@ public class CacheImage {
     public CacheImage(int partition, byte @NotNull [] data) {
         this.partitionId = partition;
         this.image = data;
+        this.source = new ByteArrayUploadSource(data);
+    }
+
+    /**
+     * A wrapper for a partition cache raw image read from the given source, and the ID of
+     * the partition.
+     *
+     * @param partition the partition ID.
+     * @param source the source of the signed binary to be sent.
+     */
+    public CacheImage(int partition, @NotNull UploadSource source) {
+        this.partitionId = partition;
+        this.image = null;
+        this.source = source;
+    }
+
+    /**
+     * A wrapper for an integrated payload of a SUIT envelope, sent to the given partition
+     * without copying it out of the envelope.
+     *
+     * @param partition the partition ID.
+     * @param payload the integrated payload, see {@link SUITEnvelope#getIntegratedPayload(String)}.
+     */
+    public CacheImage(int partition, @NotNull SUITEnvelope.Section payload) {
+        this(partition, payload.asUploadSource());
     }
 }
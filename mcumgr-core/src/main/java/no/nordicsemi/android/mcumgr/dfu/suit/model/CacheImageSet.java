@@ -7,6 +7,8 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.List;
 
+import no.nordicsemi.android.mcumgr.image.suit.SUITEnvelope;
+
 /** @noinspection unused*/
 public class CacheImageSet {
     @NotNull
@@ -45,6 +47,18 @@ public class CacheImageSet {
         return this;
     }
 
+    /**
+     * Adds an integrated payload of a SUIT envelope, to be sent to the given partition
+     * without copying it out of the envelope.
+     * @param partition the partition ID.
+     * @param payload the integrated payload.
+     * @return The image set.
+     */
+    public CacheImageSet add(int partition, SUITEnvelope.Section payload) {
+        images.add(new CacheImage(partition, payload));
+        return this;
+    }
+
     public CacheImageSet add(Pair<Integer, byte[]> image) {
         images.add(new CacheImage(image.first, image.second));
         return this;
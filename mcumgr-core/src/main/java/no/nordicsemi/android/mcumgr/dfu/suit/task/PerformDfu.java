@@ -60,7 +60,7 @@ public class PerformDfu extends SUITUpgradeTask {
 		if (cacheImages != null) {
 			final List<CacheImage> images = cacheImages.getImages();
 			for (CacheImage image : images) {
-				performer.enqueue(new UploadCache(image.partitionId, image.image));
+				performer.enqueue(new UploadCache(image.partitionId, image.source));
 			}
 			// After the cache images are uploaded, begin the deferred install.
 			performer.enqueue(new BeginInstall());
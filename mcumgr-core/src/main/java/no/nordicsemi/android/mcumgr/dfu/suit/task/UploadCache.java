@@ -5,6 +5,7 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradePerformer;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -13,11 +14,13 @@ import no.nordicsemi.android.mcumgr.task.TaskManager;
 import no.nordicsemi.android.mcumgr.transfer.CacheUploader;
 import no.nordicsemi.android.mcumgr.transfer.TransferController;
 import no.nordicsemi.android.mcumgr.transfer.UploadCallback;
+import no.nordicsemi.android.mcumgr.transfer.UploadSource;
 
 class UploadCache extends SUITUpgradeTask {
     private final static Logger LOG = LoggerFactory.getLogger(UploadCache.class);
 
-    private final byte @NotNull [] data;
+    @NotNull
+    private final UploadSource source;
     private final int targetId;
     private boolean canceled = false;
 
@@ -28,10 +31,10 @@ class UploadCache extends SUITUpgradeTask {
 
     public UploadCache(
             final int targetId,
-            final byte @NotNull [] data
+            final @NotNull UploadSource source
     ) {
         this.targetId = targetId;
-        this.data = data;
+        this.source = source;
     }
 
     @Override
@@ -83,16 +86,21 @@ class UploadCache extends SUITUpgradeTask {
             return;
         }
 
-        LOG.info("Uploading cache image with target partition ID: {} ({} bytes)", targetId, data.length);
+        LOG.info("Uploading cache image with target partition ID: {} ({} bytes)", targetId, source.getSize());
         final SUITUpgradePerformer.Settings settings = performer.getSettings();
-        final SUITManager manager = new SUITManager(performer.getTransport());
-        mUploadController =	new CacheUploader(
+        final McuMgrTransport transport = performer.getTransport();
+        final SUITManager manager = new SUITManager(transport);
+        final CacheUploader uploader = new CacheUploader(
                 manager,
                 targetId,
-                data,
-                settings.settings.windowCapacity,
-                settings.settings.memoryAlignment
-        ).uploadAsync(callback);
+                source,
+                settings.settings.getWindowCapacity(transport),
+                settings.settings.getMemoryAlignment(transport)
+        );
+        uploader.setAdaptiveWindow(settings.settings.adaptiveWindow);
+        uploader.setResumeAttempts(settings.settings.resumeAttempts);
+        uploader.setSessionStore(settings.settings.sessionStore);
+        mUploadController = uploader.uploadAsync(callback);
     }
 
     @Override
@@ -5,6 +5,7 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradePerformer;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -82,14 +83,19 @@ class UploadEnvelope extends SUITUpgradeTask {
 
         LOG.info("Uploading SUIT envelope of size: {}", envelope.length);
         final SUITUpgradePerformer.Settings settings = performer.getSettings();
-        final SUITManager manager = new SUITManager(performer.getTransport());
-        mUploadController =	new EnvelopeUploader(
+        final McuMgrTransport transport = performer.getTransport();
+        final SUITManager manager = new SUITManager(transport);
+        final EnvelopeUploader uploader = new EnvelopeUploader(
                 manager,
                 envelope,
-                settings.settings.windowCapacity,
-                settings.settings.memoryAlignment,
+                settings.settings.getWindowCapacity(transport),
+                settings.settings.getMemoryAlignment(transport),
                 deferInstall
-        ).uploadAsync(callback);
+        );
+        uploader.setAdaptiveWindow(settings.settings.adaptiveWindow);
+        uploader.setResumeAttempts(settings.settings.resumeAttempts);
+        uploader.setSessionStore(settings.settings.sessionStore);
+        mUploadController = uploader.uploadAsync(callback);
     }
 
     @Override
@@ -5,6 +5,7 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradePerformer;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -89,14 +90,19 @@ class UploadResource extends SUITUpgradeTask {
 
         LOG.info("Uploading resource with session ID: {} ({} bytes)", sessionId, data.length);
         final SUITUpgradePerformer.Settings settings = performer.getSettings();
-        final SUITManager manager = new SUITManager(performer.getTransport());
-        mUploadController =	new ResourceUploader(
+        final McuMgrTransport transport = performer.getTransport();
+        final SUITManager manager = new SUITManager(transport);
+        final ResourceUploader uploader = new ResourceUploader(
                 manager,
                 sessionId,
                 data,
-                settings.settings.windowCapacity,
-                settings.settings.memoryAlignment
-        ).uploadAsync(callback);
+                settings.settings.getWindowCapacity(transport),
+                settings.settings.getMemoryAlignment(transport)
+        );
+        uploader.setAdaptiveWindow(settings.settings.adaptiveWindow);
+        uploader.setResumeAttempts(settings.settings.resumeAttempts);
+        uploader.setSessionStore(settings.settings.sessionStore);
+        mUploadController = uploader.uploadAsync(callback);
     }
 
     @Override
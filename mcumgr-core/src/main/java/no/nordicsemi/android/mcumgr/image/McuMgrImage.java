@@ -10,8 +10,11 @@ package no.nordicsemi.android.mcumgr.image;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.image.tlv.McuMgrImageTlv;
+import no.nordicsemi.android.mcumgr.transfer.UploadSource;
 
 /**
  * Represents a firmware image for devices using McuBoot or the legacy Apache Mynewt bootloader.
@@ -94,6 +97,43 @@ public class McuMgrImage implements ImageWithHash {
         return fromBytes(data).getHash();
     }
 
+    /**
+     * Returns the hash of the image read from the given source.
+     * <p>
+     * Only the header and the TLV trailer are read, so the image does not have to be loaded
+     * into memory.
+     *
+     * @param source the source of the image.
+     * @return The hash of the image.
+     * @throws McuMgrException if the image is not valid or could not be read.
+     */
+    public static byte @NotNull [] getHash(@NotNull UploadSource source) throws McuMgrException {
+        final int size = source.getSize();
+        try {
+            final byte[] headerData = new byte[Math.min(size, McuMgrImageHeader.getSize())];
+            source.read(0, headerData, 0, headerData.length);
+            final McuMgrImageHeader header = McuMgrImageHeader.fromBytes(headerData);
+            final long tlvOffset = (long) header.getHdrSize() + header.getImgSize();
+            if (tlvOffset < McuMgrImageHeader.getSize() || tlvOffset >= size) {
+                throw new McuMgrException("Image TLV trailer not found");
+            }
+            final byte[] trailer = new byte[size - (int) tlvOffset];
+            source.read((int) tlvOffset, trailer, 0, trailer.length);
+
+            McuMgrImageTlv tlv = McuMgrImageTlv.fromBytes(trailer, 0, header.isLegacy());
+            if (tlv.isProtected()) {
+                tlv = McuMgrImageTlv.fromBytes(trailer, tlv.getSize(), header.isLegacy());
+            }
+            final byte[] hash = tlv.getHash();
+            if (hash == null) {
+                throw new McuMgrException("Image TLV trailer does not contain an image hash");
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new McuMgrException("Reading the image failed", e);
+        }
+    }
+
     @NotNull
     public static McuMgrImage fromBytes(byte @NotNull [] data) throws McuMgrException {
         McuMgrImageHeader header = McuMgrImageHeader.fromBytes(data);
@@ -3,23 +3,35 @@ package no.nordicsemi.android.mcumgr.image;
 import org.jetbrains.annotations.NotNull;
 
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.image.suit.SUITEnvelope;
 
 public class SUITImage implements ImageWithHash {
+    @NotNull
+    private final SUITEnvelope mEnvelope;
     private final byte @NotNull [] mHash;
-    private final byte @NotNull [] mData;
 
-    private SUITImage(byte @NotNull [] hash, byte @NotNull [] data) {
-        mHash = hash;
-        mData = data;
+    private SUITImage(@NotNull SUITEnvelope envelope) {
+        mEnvelope = envelope;
+        mHash = envelope.getDigest().toByteArray();
     }
 
     @Override
     public byte @NotNull [] getData() {
-        return mData;
+        return mEnvelope.getData();
     }
 
     /**
-     * Returns the SHA256 hash of the Root Manifest from the Envelope.
+     * Returns the parsed SUIT Envelope, which gives access to the manifest, severable members
+     * and integrated payloads without copying.
+     */
+    @NotNull
+    public SUITEnvelope getEnvelope() {
+        return mEnvelope;
+    }
+
+    /**
+     * Returns the digest of the Root Manifest from the Authentication Block of the Envelope,
+     * usually a SHA-256 hash.
      */
     @Override
     public byte @NotNull [] getHash() {
@@ -38,48 +50,14 @@ public class SUITImage implements ImageWithHash {
         return fromBytes(data).getHash();
     }
 
+    /**
+     * Parses the SUIT Envelope and returns the image.
+     *
+     * @param data the tagged SUIT Envelope.
+     * @return The image.
+     * @throws McuMgrException if the data is not a valid SUIT Envelope.
+     */
     public static SUITImage fromBytes(byte @NotNull [] data) throws McuMgrException {
-        if (data.length < 2 || data[0] != (byte) 0xD8 || data[1] != (byte) 0x6B) {
-            throw new McuMgrException("Invalid SUIT image");
-        }
-        // We could parse the SUIT Envelope here, but that would require migrating to Kotlin CBOR
-        // (jackson-dataformat-cbor doesn't support non-String keys).
-        // One day, perhaps. For now, let's do a trick.
-
-        // The Root Manifest SHA256 is embedded in the Authentication Block in SUIT Envelope,
-        // so we can just extract it.
-        // The SHA is prefixed with:
-        // 82         # array(2)
-        //   2F       # negative(15) - this is actually -16, CBOR uses weird encoding.
-        //     58 20  # bytes(32)
-        //
-        // This -16 above is the key for SHA256 algorithm-id in COSE registry:
-        // REQUIRED to implement in SUIT:
-        // cose-alg-sha-256 = -16
-        //
-        // OPTIONAL to implement in SUIT and ignored currently:
-        // cose-alg-shake128 = -18
-        // cose-alg-sha-384 = -43
-        // cose-alg-sha-512 = -44
-        // cose-alg-shake256 = -45
-        //
-        // Link to the registry: https://www.iana.org/assignments/cose/cose.xhtml#algorithms
-
-        // Let's take the 32 bytes after the prefix. Btw, this may fail if the Envelope contains some
-        // other data with the same set of bytes before the Authentication Block. But that's unlikely,
-        // and even if, not a biggie.
-        int pos = -1;
-        for (int i = 0; i < data.length - 4 + 32; i++) {
-            if (data[i] == (byte) 0x82 && data[i + 1] == (byte) 0x2F && data[i + 2] == (byte) 0x58 && data[i + 3] == (byte) 0x20) {
-                pos = i + 4;
-                break;
-            }
-        }
-        if (pos == -1) {
-            throw new McuMgrException("Invalid SUIT image");
-        }
-        byte[] hash = new byte[32];
-        System.arraycopy(data, pos, hash, 0, 32);
-        return new SUITImage(hash, data);
+        return new SUITImage(SUITEnvelope.parse(data));
     }
 }
@@ -0,0 +1,283 @@
+package no.nordicsemi.android.mcumgr.image.suit;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+
+/**
+ * A minimal CBOR reader working directly on a byte array.
+ * <p>
+ * Unlike Jackson, the reader supports integer map keys, which are used by SUIT and COSE.
+ * Byte strings are not copied; instead, {@link #readByteString()} returns their position
+ * in the array, so nested CBOR can be read in place.
+ * <p>
+ * Only definite lengths are supported for items that are read. Items with indefinite length
+ * may only be skipped.
+ */
+final class CborReader {
+    final static int MAJOR_UNSIGNED = 0;
+    final static int MAJOR_NEGATIVE = 1;
+    final static int MAJOR_BYTES = 2;
+    final static int MAJOR_TEXT = 3;
+    final static int MAJOR_ARRAY = 4;
+    final static int MAJOR_MAP = 5;
+    final static int MAJOR_TAG = 6;
+    final static int MAJOR_SIMPLE = 7;
+
+    /** Additional information value indicating an indefinite length. */
+    private final static int INDEFINITE = 31;
+    /** The "break" stop code, ending items with indefinite length. */
+    private final static int BREAK = 0xFF;
+    /** Maximum nesting of skipped items. */
+    private final static int MAX_DEPTH = 32;
+
+    private final byte @NotNull [] mData;
+    private final int mEnd;
+    private int mPosition;
+
+    /**
+     * Creates a reader of the CBOR data in the given part of the array.
+     *
+     * @param data   the array.
+     * @param offset the offset of the first data item.
+     * @param length the length of the data.
+     */
+    CborReader(byte @NotNull [] data, int offset, int length) {
+        mData = data;
+        mPosition = offset;
+        mEnd = offset + length;
+    }
+
+    int getPosition() {
+        return mPosition;
+    }
+
+    boolean hasMore() {
+        return mPosition < mEnd;
+    }
+
+    /**
+     * Returns the major type of the next data item without consuming it.
+     */
+    int peekMajorType() throws McuMgrException {
+        require(1);
+        return (mData[mPosition] & 0xFF) >>> 5;
+    }
+
+    /**
+     * Reads the tag with given number, if present.
+     *
+     * @param tag the expected tag number.
+     * @return True, if the tag was read; false, if the next item is not tagged.
+     * @throws McuMgrException if the item is tagged with a different tag.
+     */
+    boolean readTag(long tag) throws McuMgrException {
+        if (peekMajorType() != MAJOR_TAG) {
+            return false;
+        }
+        final long value = readHead(MAJOR_TAG);
+        if (value != tag) {
+            throw new McuMgrException("Unexpected tag: " + value);
+        }
+        return true;
+    }
+
+    /**
+     * Skips all tags preceding the next data item.
+     */
+    void skipTags() throws McuMgrException {
+        while (peekMajorType() == MAJOR_TAG) {
+            readHead(MAJOR_TAG);
+        }
+    }
+
+    /**
+     * Reads an integer, which may be negative.
+     */
+    long readInt() throws McuMgrException {
+        final int majorType = peekMajorType();
+        if (majorType == MAJOR_NEGATIVE) {
+            final long value = readHead(MAJOR_NEGATIVE);
+            if (value < 0) {
+                throw new McuMgrException("Integer out of range");
+            }
+            return -1 - value;
+        }
+        final long value = readHead(MAJOR_UNSIGNED);
+        if (value < 0) {
+            throw new McuMgrException("Integer out of range");
+        }
+        return value;
+    }
+
+    /**
+     * Reads the header of a byte string and skips its content.
+     *
+     * @return The offset of the content in the array. The length is equal to the difference
+     * between {@link #getPosition()} and the returned value.
+     */
+    int readByteString() throws McuMgrException {
+        final int length = readLength(MAJOR_BYTES);
+        final int offset = mPosition;
+        mPosition += length;
+        return offset;
+    }
+
+    @NotNull
+    String readTextString() throws McuMgrException {
+        final int length = readLength(MAJOR_TEXT);
+        final String text = new String(mData, mPosition, length, StandardCharsets.UTF_8);
+        mPosition += length;
+        return text;
+    }
+
+    /**
+     * Reads the header of an array.
+     *
+     * @return The number of elements.
+     */
+    int readArrayHeader() throws McuMgrException {
+        return readCount(MAJOR_ARRAY);
+    }
+
+    /**
+     * Reads the header of a map.
+     *
+     * @return The number of key-value pairs.
+     */
+    int readMapHeader() throws McuMgrException {
+        return readCount(MAJOR_MAP);
+    }
+
+    /**
+     * Skips the next data item, including all nested items.
+     */
+    void skip() throws McuMgrException {
+        skip(0);
+    }
+
+    private void skip(int depth) throws McuMgrException {
+        if (depth > MAX_DEPTH) {
+            throw new McuMgrException("Nesting too deep");
+        }
+        final int majorType = peekMajorType();
+        if ((mData[mPosition] & 0x1F) == INDEFINITE) {
+            if (majorType == MAJOR_UNSIGNED || majorType == MAJOR_NEGATIVE || majorType == MAJOR_TAG) {
+                throw new McuMgrException("Invalid CBOR");
+            }
+            mPosition++;
+            if (majorType == MAJOR_SIMPLE) {
+                // A break outside an item with indefinite length.
+                throw new McuMgrException("Unexpected break");
+            }
+            while (true) {
+                require(1);
+                if ((mData[mPosition] & 0xFF) == BREAK) {
+                    mPosition++;
+                    return;
+                }
+                skip(depth + 1);
+                if (majorType == MAJOR_MAP) {
+                    skip(depth + 1);
+                }
+            }
+        }
+        switch (majorType) {
+            case MAJOR_UNSIGNED:
+            case MAJOR_NEGATIVE:
+            case MAJOR_SIMPLE:
+                readHead(majorType);
+                break;
+            case MAJOR_BYTES:
+            case MAJOR_TEXT:
+                mPosition += readLength(majorType);
+                break;
+            case MAJOR_ARRAY: {
+                final int count = readCount(majorType);
+                for (int i = 0; i < count; i++) {
+                    skip(depth + 1);
+                }
+                break;
+            }
+            case MAJOR_MAP: {
+                final int count = readCount(majorType);
+                for (int i = 0; i < count; i++) {
+                    skip(depth + 1);
+                    skip(depth + 1);
+                }
+                break;
+            }
+            case MAJOR_TAG:
+                readHead(majorType);
+                skip(depth + 1);
+                break;
+        }
+    }
+
+    /**
+     * Reads the length of a string and checks that the content fits in the data.
+     */
+    private int readLength(int majorType) throws McuMgrException {
+        final long length = readHead(majorType);
+        if (length < 0 || length > mEnd - mPosition) {
+            throw new McuMgrException("Unexpected end of data");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Reads the number of items in an array or a map. Each item takes at least one byte,
+     * which is used to reject invalid counts before reading the items.
+     */
+    private int readCount(int majorType) throws McuMgrException {
+        final long count = readHead(majorType);
+        if (count < 0 || count > mEnd - mPosition) {
+            throw new McuMgrException("Invalid item count: " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Reads the initial byte and the argument of a data item.
+     *
+     * @param majorType the expected major type.
+     * @return The argument. Values above {@link Long#MAX_VALUE} are returned as negative.
+     * @throws McuMgrException if the major type does not match, or the length is indefinite.
+     */
+    private long readHead(int majorType) throws McuMgrException {
+        require(1);
+        final int initial = mData[mPosition] & 0xFF;
+        if (initial >>> 5 != majorType) {
+            throw new McuMgrException("Unexpected major type: " + (initial >>> 5) + ", expected: " + majorType);
+        }
+        final int info = initial & 0x1F;
+        if (info < 24) {
+            mPosition++;
+            return info;
+        }
+        final int size;
+        switch (info) {
+            case 24: size = 1; break;
+            case 25: size = 2; break;
+            case 26: size = 4; break;
+            case 27: size = 8; break;
+            default:
+                throw new McuMgrException("Unsupported additional information: " + info);
+        }
+        require(1 + size);
+        mPosition++;
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (mData[mPosition++] & 0xFF);
+        }
+        return value;
+    }
+
+    private void require(int count) throws McuMgrException {
+        if (mEnd - mPosition < count) {
+            throw new McuMgrException("Unexpected end of data");
+        }
+    }
+}
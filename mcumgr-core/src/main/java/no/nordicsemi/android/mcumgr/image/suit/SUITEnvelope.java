@@ -0,0 +1,335 @@
+package no.nordicsemi.android.mcumgr.image.suit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.response.suit.McuMgrManifestStateResponse;
+import no.nordicsemi.android.mcumgr.transfer.ByteArrayUploadSource;
+import no.nordicsemi.android.mcumgr.transfer.UploadSource;
+
+/**
+ * An index of a SUIT Envelope.
+ * <p>
+ * The envelope is parsed once, without copying. Each member of the envelope is available as
+ * a {@link Section} of the original array, so that the digest of the root manifest is obtained
+ * in constant time and integrated payloads may be used without copying.
+ * <p>
+ * The envelope is defined as follows:
+ * <pre>
+ * SUIT_Envelope_Tagged = #6.107(SUIT_Envelope)
+ * SUIT_Envelope = {
+ *   ? suit-delegation => bstr .cbor SUIT_Delegation,
+ *   suit-authentication-wrapper => bstr .cbor SUIT_Authentication,
+ *   suit-manifest => bstr .cbor SUIT_Manifest,
+ *   SUIT_Severable_Manifest_Members,
+ *   * SUIT_Integrated_Payload
+ * }
+ * SUIT_Authentication = [
+ *   bstr .cbor SUIT_Digest,
+ *   * bstr .cbor SUIT_Authentication_Block
+ * ]
+ * SUIT_Digest = [
+ *   suit-digest-algorithm-id : int,
+ *   suit-digest-bytes : bstr
+ * ]
+ * SUIT_Integrated_Payload = (tstr => bstr)
+ * </pre>
+ * See <a href="https://datatracker.ietf.org/doc/draft-ietf-suit-manifest/">draft-ietf-suit-manifest</a>.
+ */
+@SuppressWarnings("unused")
+public class SUITEnvelope {
+    /** The CBOR tag of a SUIT Envelope. */
+    public final static int TAG_ENVELOPE = 107;
+
+    public final static int SUIT_DELEGATION = 1;
+    public final static int SUIT_AUTHENTICATION_WRAPPER = 2;
+    public final static int SUIT_MANIFEST = 3;
+
+    /**
+     * A part of the envelope, given as an offset and a length in the envelope data.
+     */
+    public static final class Section {
+        private final byte @NotNull [] mData;
+        private final int mOffset;
+        private final int mLength;
+
+        private Section(byte @NotNull [] data, int offset, int length) {
+            mData = data;
+            mOffset = offset;
+            mLength = length;
+        }
+
+        /** Returns the offset of the section in {@link SUITEnvelope#getData()}. */
+        public int getOffset() {
+            return mOffset;
+        }
+
+        /** Returns the length of the section in bytes. */
+        public int getLength() {
+            return mLength;
+        }
+
+        /**
+         * Returns a read-only buffer sharing the content of the section with the envelope.
+         */
+        @NotNull
+        public ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(mData, mOffset, mLength).slice().asReadOnlyBuffer();
+        }
+
+        /**
+         * Returns an upload source reading the section from the envelope, without copying.
+         * <p>
+         * This allows sending an integrated payload to a cache partition using
+         * {@link no.nordicsemi.android.mcumgr.transfer.CacheUploader}.
+         */
+        @NotNull
+        public UploadSource asUploadSource() {
+            return new ByteArrayUploadSource(mData, mOffset, mLength);
+        }
+
+        /**
+         * Returns a copy of the content of the section.
+         */
+        public byte @NotNull [] toByteArray() {
+            return Arrays.copyOfRange(mData, mOffset, mOffset + mLength);
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return "Section(offset=" + mOffset + ", length=" + mLength + ")";
+        }
+    }
+
+    private final byte @NotNull [] mData;
+    @Nullable
+    private final Section mDelegation;
+    @NotNull
+    private final Section mAuthenticationWrapper;
+    private final int mDigestAlgorithm;
+    @NotNull
+    private final Section mDigest;
+    @NotNull
+    private final List<Section> mAuthenticationBlocks;
+    @NotNull
+    private final Section mManifest;
+    @NotNull
+    private final Map<Integer, Section> mSeverableMembers;
+    @NotNull
+    private final Map<String, Section> mIntegratedPayloads;
+
+    private SUITEnvelope(byte @NotNull [] data,
+                         @Nullable Section delegation,
+                         @NotNull Section authenticationWrapper,
+                         int digestAlgorithm,
+                         @NotNull Section digest,
+                         @NotNull List<Section> authenticationBlocks,
+                         @NotNull Section manifest,
+                         @NotNull Map<Integer, Section> severableMembers,
+                         @NotNull Map<String, Section> integratedPayloads) {
+        mData = data;
+        mDelegation = delegation;
+        mAuthenticationWrapper = authenticationWrapper;
+        mDigestAlgorithm = digestAlgorithm;
+        mDigest = digest;
+        mAuthenticationBlocks = Collections.unmodifiableList(authenticationBlocks);
+        mManifest = manifest;
+        mSeverableMembers = Collections.unmodifiableMap(severableMembers);
+        mIntegratedPayloads = Collections.unmodifiableMap(integratedPayloads);
+    }
+
+    /**
+     * Returns the whole envelope.
+     */
+    public byte @NotNull [] getData() {
+        return mData;
+    }
+
+    /**
+     * Returns the encoded SUIT_Delegation array, if present.
+     */
+    @Nullable
+    public Section getDelegation() {
+        return mDelegation;
+    }
+
+    /**
+     * Returns the encoded SUIT_Authentication array.
+     */
+    @NotNull
+    public Section getAuthenticationWrapper() {
+        return mAuthenticationWrapper;
+    }
+
+    /**
+     * Returns the COSE algorithm ID of the digest of the root manifest, e.g. -16 for SHA-256.
+     *
+     * @see McuMgrManifestStateResponse.DigestAlgorithm
+     */
+    public int getDigestAlgorithm() {
+        return mDigestAlgorithm;
+    }
+
+    /**
+     * Returns the digest of the root manifest from the authentication wrapper.
+     */
+    @NotNull
+    public Section getDigest() {
+        return mDigest;
+    }
+
+    /**
+     * Returns the encoded authentication blocks, usually COSE_Sign1 structures, signing
+     * the digest.
+     */
+    @NotNull
+    public List<Section> getAuthenticationBlocks() {
+        return mAuthenticationBlocks;
+    }
+
+    /**
+     * Returns the encoded SUIT_Manifest.
+     */
+    @NotNull
+    public Section getManifest() {
+        return mManifest;
+    }
+
+    /**
+     * Returns the severable members of the manifest, e.g. the install command sequence or
+     * the text description, by their key in the manifest.
+     */
+    @NotNull
+    public Map<Integer, Section> getSeverableMembers() {
+        return mSeverableMembers;
+    }
+
+    /**
+     * Returns the integrated payloads, by their URI, e.g. "#application".
+     */
+    @NotNull
+    public Map<String, Section> getIntegratedPayloads() {
+        return mIntegratedPayloads;
+    }
+
+    /**
+     * Returns the integrated payload with the given URI.
+     *
+     * @param uri the URI of the payload, as used in the manifest.
+     * @return The payload, or null, if the envelope does not contain it.
+     */
+    @Nullable
+    public Section getIntegratedPayload(@NotNull String uri) {
+        return mIntegratedPayloads.get(uri);
+    }
+
+    /**
+     * Parses the SUIT Envelope.
+     * <p>
+     * The content of byte strings, including the manifest and integrated payloads,
+     * is skipped, so the time does not depend on their sizes.
+     *
+     * @param data the tagged envelope.
+     * @return The envelope.
+     * @throws McuMgrException if the data is not a valid SUIT Envelope.
+     */
+    @NotNull
+    public static SUITEnvelope parse(byte @NotNull [] data) throws McuMgrException {
+        try {
+            return parse(new CborReader(data, 0, data.length), data);
+        } catch (final McuMgrException e) {
+            throw new McuMgrException("Invalid SUIT Envelope: " + e.getMessage());
+        }
+    }
+
+    @NotNull
+    private static SUITEnvelope parse(@NotNull CborReader reader,
+                                      byte @NotNull [] data) throws McuMgrException {
+        if (!reader.readTag(TAG_ENVELOPE)) {
+            throw new McuMgrException("Missing tag");
+        }
+        Section delegation = null;
+        Section authenticationWrapper = null;
+        Section manifest = null;
+        final Map<Integer, Section> severableMembers = new LinkedHashMap<>();
+        final Map<String, Section> integratedPayloads = new LinkedHashMap<>();
+
+        final int count = reader.readMapHeader();
+        for (int i = 0; i < count; i++) {
+            if (reader.peekMajorType() == CborReader.MAJOR_TEXT) {
+                final String uri = reader.readTextString();
+                integratedPayloads.put(uri, readByteString(reader, data));
+                continue;
+            }
+            final long key = reader.readInt();
+            if (key == SUIT_AUTHENTICATION_WRAPPER) {
+                authenticationWrapper = readByteString(reader, data);
+            } else if (key == SUIT_MANIFEST) {
+                manifest = readByteString(reader, data);
+            } else if (key == SUIT_DELEGATION) {
+                delegation = readByteString(reader, data);
+            } else if (key > 0 && key <= Integer.MAX_VALUE &&
+                    reader.peekMajorType() == CborReader.MAJOR_BYTES) {
+                severableMembers.put((int) key, readByteString(reader, data));
+            } else {
+                // Unknown extension.
+                reader.skip();
+            }
+        }
+        if (authenticationWrapper == null) {
+            throw new McuMgrException("Missing authentication wrapper");
+        }
+        if (manifest == null) {
+            throw new McuMgrException("Missing manifest");
+        }
+
+        // SUIT_Authentication = [ bstr .cbor SUIT_Digest, * bstr .cbor SUIT_Authentication_Block ]
+        final CborReader authentication = reader(authenticationWrapper);
+        final int blocks = authentication.readArrayHeader();
+        if (blocks < 1) {
+            throw new McuMgrException("Missing digest");
+        }
+        final Section digestWrapper = readByteString(authentication, data);
+        final List<Section> authenticationBlocks = new ArrayList<>(blocks - 1);
+        for (int i = 1; i < blocks; i++) {
+            authenticationBlocks.add(readByteString(authentication, data));
+        }
+
+        // SUIT_Digest = [ suit-digest-algorithm-id : int, suit-digest-bytes : bstr ]
+        final CborReader digestReader = reader(digestWrapper);
+        if (digestReader.readArrayHeader() < 2) {
+            throw new McuMgrException("Invalid digest");
+        }
+        final long algorithm = digestReader.readInt();
+        if (algorithm < Integer.MIN_VALUE || algorithm > Integer.MAX_VALUE) {
+            throw new McuMgrException("Invalid digest algorithm: " + algorithm);
+        }
+        final Section digest = readByteString(digestReader, data);
+
+        return new SUITEnvelope(data, delegation, authenticationWrapper,
+                (int) algorithm, digest, authenticationBlocks,
+                manifest, severableMembers, integratedPayloads);
+    }
+
+    @NotNull
+    private static Section readByteString(@NotNull CborReader reader,
+                                          byte @NotNull [] data) throws McuMgrException {
+        final int offset = reader.readByteString();
+        return new Section(data, offset, reader.getPosition() - offset);
+    }
+
+    @NotNull
+    private static CborReader reader(@NotNull Section section) {
+        return new CborReader(section.mData, section.mOffset, section.mLength);
+    }
+}
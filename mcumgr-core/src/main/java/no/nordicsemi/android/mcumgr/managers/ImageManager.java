@@ -13,8 +13,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback;
@@ -43,6 +41,7 @@ import no.nordicsemi.android.mcumgr.transfer.TransferManager;
 import no.nordicsemi.android.mcumgr.transfer.Upload;
 import no.nordicsemi.android.mcumgr.transfer.UploadCallback;
 import no.nordicsemi.android.mcumgr.util.CBOR;
+import no.nordicsemi.android.mcumgr.util.DigestCache;
 
 /**
  * Image command-group manager. This manager can read the image state of a device, test or
@@ -379,12 +378,9 @@ public class ImageManager extends TransferManager {
              * the same hash of a partially finished upload, the device will send the offset to
              * continue from.
              */
-            try {
-                MessageDigest digest = MessageDigest.getInstance("SHA-256");
-                byte[] hash = digest.digest(data);
+            final byte[] hash = DigestCache.sha256(data);
+            if (hash != null) {
                 payloadMap.put("sha", hash);
-            } catch (NoSuchAlgorithmException e) {
-                LOG.error("SHA-256 not found", e);
             }
         }
         return payloadMap;
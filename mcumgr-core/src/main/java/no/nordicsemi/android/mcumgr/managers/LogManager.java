@@ -14,7 +14,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -25,6 +24,7 @@ import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
+import no.nordicsemi.android.mcumgr.response.log.LogEntryReader;
 import no.nordicsemi.android.mcumgr.response.log.McuMgrLevelListResponse;
 import no.nordicsemi.android.mcumgr.response.log.McuMgrLogListResponse;
 import no.nordicsemi.android.mcumgr.response.log.McuMgrLogResponse;
@@ -78,16 +78,7 @@ public class LogManager extends McuManager {
                      @Nullable Long minIndex,
                      @Nullable Date minTimestamp,
                      @NotNull McuMgrCallback<McuMgrLogResponse> callback) {
-        HashMap<String, Object> payloadMap = new HashMap<>();
-        if (logName != null) {
-            payloadMap.put("log_name", logName);
-        }
-        if (minIndex != null) {
-            payloadMap.put("index", minIndex);
-            if (minTimestamp != null) {
-                payloadMap.put("ts", dateToString(minTimestamp, null));
-            }
-        }
+        HashMap<String, Object> payloadMap = buildShowPayload(logName, minIndex, minTimestamp);
         send(OP_READ, ID_READ, payloadMap, SHORT_TIMEOUT, McuMgrLogResponse.class, callback);
     }
 
@@ -114,6 +105,41 @@ public class LogManager extends McuManager {
     public McuMgrLogResponse show(@Nullable String logName, @Nullable Long minIndex,
                                   @Nullable Date minTimestamp)
             throws McuMgrException {
+        HashMap<String, Object> payloadMap = buildShowPayload(logName, minIndex, minTimestamp);
+        return send(OP_READ, ID_READ, payloadMap, SHORT_TIMEOUT, McuMgrLogResponse.class);
+    }
+
+    /**
+     * Show logs from a device and read the entries one by one (synchronous).
+     * <p>
+     * Unlike {@link #show(String, Long, Date)}, the entries are not decoded into arrays when
+     * the response is received. Instead, the returned reader decodes them one at a time, so
+     * that a response with many entries does not need to be held in memory as objects.
+     * <p>
+     * Use {@link LogEntryReader#getResponse()} to check the return code.
+     *
+     * @param logName      the name of the log to read. If null, the device will report from all logs.
+     * @param minIndex     the minimum index to pull logs from. If null, the device will read from the
+     *                     oldest log.
+     * @param minTimestamp the minimum timestamp to pull logs from. This parameter is only used if
+     *                     it and minIndex are not null.
+     * @return The reader of the response, which should be closed after use.
+     * @throws McuMgrException Transport error. See cause.
+     */
+    @NotNull
+    public LogEntryReader showEntries(@Nullable String logName, @Nullable Long minIndex,
+                                      @Nullable Date minTimestamp)
+            throws McuMgrException {
+        HashMap<String, Object> payloadMap = buildShowPayload(logName, minIndex, minTimestamp);
+        // Decoding the response as McuMgrResponse skips the logs.
+        McuMgrResponse response = send(OP_READ, ID_READ, payloadMap, SHORT_TIMEOUT, McuMgrResponse.class);
+        return LogEntryReader.of(response);
+    }
+
+    @NotNull
+    private HashMap<String, Object> buildShowPayload(@Nullable String logName,
+                                                     @Nullable Long minIndex,
+                                                     @Nullable Date minTimestamp) {
         HashMap<String, Object> payloadMap = new HashMap<>();
         if (logName != null) {
             payloadMap.put("log_name", logName);
@@ -124,7 +150,7 @@ public class LogManager extends McuManager {
                 payloadMap.put("ts", dateToString(minTimestamp, null));
             }
         }
-        return send(OP_READ, ID_READ, payloadMap, SHORT_TIMEOUT, McuMgrLogResponse.class);
+        return payloadMap;
     }
 
     /**
@@ -264,41 +290,63 @@ public class LogManager extends McuManager {
         // Loop until we run out of entries or encounter a problem
         while (true) {
             // Get the next set of entries for this log
-            McuMgrLogResponse showResponse = showNext(state);
+            LogEntryReader reader = showNextEntries(state);
             // Check for an error
-            if (showResponse == null) {
+            if (reader == null) {
                 LOG.error("Show logs resulted in an error");
                 break;
             }
-//            // Check for an index mismatch
-//            if (showResponse.next_index < state.getNextIndex())
-//                LOG.warn("Next index mismatch state.nextIndex=" + state.getNextIndex() +
-//                        ", response.nextIndex=" + showResponse.next_index);
-//                LOG.warn("Resetting log state.");
-//                state.reset();
-//                continue;
-//            }
-            // Check that the logs collected are not null or empty
-            if (showResponse.logs == null || showResponse.logs.length == 0) {
-                LOG.error("No logs returned in the response.");
-                break;
-            }
-            // Get the log result object
-            McuMgrLogResponse.LogResult log = showResponse.logs[0];
-            // If we don't have any more entries, break out of this log to the next.
-            if (log.entries == null || log.entries.length == 0) {
-                LOG.debug("No more entries left for this log.");
+            try {
+                // Check that the logs collected are not empty
+                if (!reader.nextLog()) {
+                    LOG.error("No logs returned in the response.");
+                    break;
+                }
+                // Entries are decoded one by one and added directly to the state.
+                McuMgrLogResponse.Entry entry;
+                int count = 0;
+                while ((entry = reader.nextEntry()) != null) {
+                    state.getEntries().add(entry);
+                    // Set the next index after each entry, in case a following one fails.
+                    state.setNextIndex(entry.index + 1);
+                    count++;
+                }
+                // If we don't have any more entries, break out of this log to the next.
+                if (count == 0) {
+                    LOG.debug("No more entries left for this log.");
+                    break;
+                }
+            } catch (IOException e) {
+                LOG.error("Parsing response failed", e);
                 break;
+            } finally {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
             }
-            // Get the index of the last entry in the list and set the LogState nextIndex
-            long nextIndex = log.entries[log.entries.length - 1].index + 1;
-            state.setNextIndex(nextIndex);
-            // Add entries to the list and set the next index
-            state.getEntries().addAll(Arrays.asList(log.entries));
         }
         return state;
     }
 
+    /**
+     * Get the next set of logs from a log state and return a reader of the entries (synchronous).
+     *
+     * @param state The state to get logs from.
+     * @return The reader, or null in case of an error.
+     */
+    @Nullable
+    private LogEntryReader showNextEntries(@NotNull State state) {
+        LOG.debug("Show logs: name={}, nextIndex={}", state.getName(), state.getNextIndex());
+        try {
+            return showEntries(state.getName(), state.getNextIndex(), null);
+        } catch (McuMgrException e) {
+            LOG.error("Requesting next set of logs failed", e);
+        }
+        return null;
+    }
+
     /**
      * Get the next set of logs from a log state and return the response (synchronous).
      * This method does not update the log state and only collects as many logs as can fit into
@@ -0,0 +1,50 @@
+@file:JvmName("LogEntries")
+
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.managers.LogManager
+import no.nordicsemi.android.mcumgr.response.log.McuMgrLogResponse
+
+/**
+ * Reads all entries of the given log, starting from [fromIndex], as a cold flow.
+ *
+ * The log is read using consecutive show commands. Each response is decoded one entry at
+ * a time using [LogManager.showEntries] and the entries are emitted as soon as they are decoded,
+ * so at most one entry is held in memory at a time, unless the collector keeps them.
+ * The flow completes when the device returns no more entries.
+ *
+ * The flow fails with [McuMgrErrorException] if the device returns an error, or with
+ * the exception thrown by the transport or the decoder.
+ *
+ * @param logName the name of the log to read, see [LogManager.logsList].
+ * @param fromIndex the index of the first entry to read.
+ * @return The flow of entries.
+ */
+fun LogManager.entries(logName: String, fromIndex: Long = 0): Flow<McuMgrLogResponse.Entry> = flow {
+    var nextIndex = fromIndex
+    while (true) {
+        showEntries(logName, nextIndex, null).use { reader ->
+            if (!reader.response.isSuccess) {
+                throw McuMgrErrorException(reader.response)
+            }
+            if (!reader.nextLog()) {
+                return@flow
+            }
+            var count = 0
+            while (true) {
+                val entry = reader.nextEntry() ?: break
+                nextIndex = entry.index + 1
+                count++
+                emit(entry)
+            }
+            if (count == 0) {
+                return@flow
+            }
+        }
+    }
+}.flowOn(Dispatchers.IO)
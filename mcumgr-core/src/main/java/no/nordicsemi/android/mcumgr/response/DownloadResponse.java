@@ -3,6 +3,9 @@ package no.nordicsemi.android.mcumgr.response;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
+
+@GenerateDecoder
 public class DownloadResponse extends McuMgrResponse {
     /** The offset of the {@link #data}. */
     @JsonProperty("off")
@@ -7,8 +7,11 @@
 package no.nordicsemi.android.mcumgr.response;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -21,13 +24,13 @@ import java.util.Arrays;
 import no.nordicsemi.android.mcumgr.McuMgrErrorCode;
 import no.nordicsemi.android.mcumgr.McuMgrHeader;
 import no.nordicsemi.android.mcumgr.McuMgrScheme;
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.exception.McuMgrCoapException;
-import no.nordicsemi.android.mcumgr.response.fs.McuMgrFsUploadResponse;
-import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse;
 import no.nordicsemi.android.mcumgr.util.CBOR;
 
 @SuppressWarnings("unused")
 @JsonIgnoreProperties(ignoreUnknown = true)
+@GenerateDecoder
 public class McuMgrResponse implements HasReturnCode {
 
     private final static Logger LOG = LoggerFactory.getLogger(McuMgrResponse.class);
@@ -65,16 +68,25 @@ public class McuMgrResponse implements HasReturnCode {
     private byte[] mBytes;
 
     /**
-     * The McuMgrHeader for this response
+     * The McuMgrHeader for this response. For standard schemes it is read from {@link #mBytes}
+     * on first access.
      */
     private McuMgrHeader mHeader;
 
     /**
      * McuMgr payload for this response. This does not include the McuMgr header for standard
      * schemes and does not include the CoAP header for CoAP schemes.
+     * <p>
+     * For standard schemes the payload is a view of {@link #mBytes}, starting at
+     * {@link #mPayloadOffset}. The array is copied on first access to {@link #getPayload()}.
      */
     private byte[] mPayload;
 
+    /**
+     * The offset of the payload in {@link #mBytes}, for standard schemes.
+     */
+    private int mPayloadOffset;
+
     /**
      * The CoAP Code used for CoAP schemes, formatted as ((class * 100) + detail).
      */
@@ -93,6 +105,13 @@ public class McuMgrResponse implements HasReturnCode {
     @Override
     public String toString() {
         try {
+            if (mPayload == null && mBytes == null && TransferResponseDecoder.supports(getClass())) {
+                // A transfer response decoded from a reused buffer keeps only the fields.
+                return TransferResponseDecoder.toString(this);
+            }
+            if (mPayload == null && mBytes != null) {
+                return CBOR.toString(mBytes, mPayloadOffset);
+            }
             return CBOR.toString(mPayload);
         } catch (IOException e) {
             LOG.error("Failed to parse response", e);
@@ -107,6 +126,9 @@ public class McuMgrResponse implements HasReturnCode {
      */
     @Nullable
     public McuMgrHeader getHeader() {
+        if (mHeader == null && mBytes != null && mBytes.length >= McuMgrHeader.HEADER_LENGTH) {
+            mHeader = McuMgrHeader.fromBytes(mBytes);
+        }
         return mHeader;
     }
 
@@ -156,6 +178,11 @@ public class McuMgrResponse implements HasReturnCode {
      * <p>
      * If using a CoAP scheme this method and {@link McuMgrResponse#getPayload()} will return the
      * same value.
+     * <p>
+     * Responses to upload and download commands built using
+     * {@link #buildResponseFromReusedBuffer(McuMgrScheme, byte[], int, Class)} do not keep
+     * the packet, and this method returns null for them. Transports build such responses only
+     * when explicitly allowed to.
      *
      * @return The response bytes.
      */
@@ -168,10 +195,16 @@ public class McuMgrResponse implements HasReturnCode {
      * <p>
      * If using a CoAP scheme this method and {@link McuMgrResponse#getBytes()} will return the
      * same value.
+     * <p>
+     * As {@link #getBytes()}, this method returns null for responses to upload and download
+     * commands built using {@link #buildResponseFromReusedBuffer(McuMgrScheme, byte[], int, Class)}.
      *
-     * @return The payload bytes.
+     * @return The payload bytes, or null, if the packet was not kept.
      */
     public byte @Nullable [] getPayload() {
+        if (mPayload == null && mBytes != null) {
+            mPayload = Arrays.copyOfRange(mBytes, mPayloadOffset, mBytes.length);
+        }
         return mPayload;
     }
 
@@ -189,6 +222,7 @@ public class McuMgrResponse implements HasReturnCode {
      *
      * @param code The code to set.
      */
+    @JsonIgnore
     void setCoapCode(int code) {
         mCoapCode = code;
     }
@@ -205,6 +239,31 @@ public class McuMgrResponse implements HasReturnCode {
         return mCoapCode;
     }
 
+    /**
+     * Initialize the fields for this response. The header and payload are read from the packet
+     * when requested.
+     *
+     * @param scheme        the scheme.
+     * @param bytes         packet bytes.
+     * @param payloadOffset the offset of the McuMgr CBOR payload in the packet.
+     */
+    void initFields(@NotNull McuMgrScheme scheme, byte @NotNull [] bytes, int payloadOffset) {
+        mScheme = scheme;
+        mBytes = bytes;
+        mPayloadOffset = payloadOffset;
+    }
+
+    /**
+     * Initialize the fields for this response, without keeping the packet.
+     *
+     * @param scheme the scheme.
+     * @param header McuMgrHeader.
+     */
+    void initFields(@NotNull McuMgrScheme scheme, @NotNull McuMgrHeader header) {
+        mScheme = scheme;
+        mHeader = header;
+    }
+
     /**
      * Initialize the fields for this response.
      *
@@ -237,33 +296,93 @@ public class McuMgrResponse implements HasReturnCode {
                                                              byte @NotNull [] bytes,
                                                              @NotNull Class<T> type)
             throws IOException {
+        return buildResponse(scheme, bytes, bytes.length, type);
+    }
+
+    /**
+     * Build a McuMgrResponse from a packet occupying the beginning of a buffer.
+     * <p>
+     * The payload is decoded directly from the buffer. If the packet does not fill the whole
+     * buffer, the response keeps a copy of the packet, so the buffer may be reused as soon as
+     * this method returns. Otherwise, the response keeps the buffer itself, which must not
+     * be reused.
+     *
+     * @param scheme       the transport scheme used.
+     * @param bytes        the buffer with the response packet's bytes, starting at index 0.
+     * @param packetLength the length of the packet in the buffer.
+     * @param type         the type of response to build.
+     * @param <T>          the response type to build.
+     * @return The response.
+     * @throws IOException              Error parsing response.
+     * @throws IllegalArgumentException If the scheme is CoAP.
+     */
+    @NotNull
+    public static <T extends McuMgrResponse> T buildResponse(@NotNull McuMgrScheme scheme,
+                                                             byte @NotNull [] bytes,
+                                                             int packetLength,
+                                                             @NotNull Class<T> type)
+            throws IOException {
+        return buildResponse(scheme, bytes, packetLength, type, false);
+    }
+
+    /**
+     * Build a McuMgrResponse from a packet occupying the beginning of a buffer, which the caller
+     * reuses as soon as this method returns, for example one taken from a pool.
+     * <p>
+     * The payload is decoded directly from the buffer and the response never keeps it.
+     * Responses to upload and download commands keep only the decoded fields and the header,
+     * so decoding them does not allocate a copy of the packet, and their {@link #getBytes()}
+     * and {@link #getPayload()} return null. Other responses keep a copy.
+     *
+     * @param scheme       the transport scheme used.
+     * @param bytes        the buffer with the response packet's bytes, starting at index 0.
+     * @param packetLength the length of the packet in the buffer.
+     * @param type         the type of response to build.
+     * @param <T>          the response type to build.
+     * @return The response.
+     * @throws IOException              Error parsing response.
+     * @throws IllegalArgumentException If the scheme is CoAP.
+     */
+    @NotNull
+    public static <T extends McuMgrResponse> T buildResponseFromReusedBuffer(@NotNull McuMgrScheme scheme,
+                                                                             byte @NotNull [] bytes,
+                                                                             int packetLength,
+                                                                             @NotNull Class<T> type)
+            throws IOException {
+        return buildResponse(scheme, bytes, packetLength, type, true);
+    }
+
+    @NotNull
+    private static <T extends McuMgrResponse> T buildResponse(@NotNull McuMgrScheme scheme,
+                                                              byte @NotNull [] bytes,
+                                                              int packetLength,
+                                                              @NotNull Class<T> type,
+                                                              boolean reusedBuffer)
+            throws IOException {
         if (scheme.isCoap()) {
             throw new IllegalArgumentException("Cannot use this method with a CoAP scheme");
         }
 
-        byte[] payload = Arrays.copyOfRange(bytes, McuMgrHeader.HEADER_LENGTH, bytes.length);
-        McuMgrHeader header = McuMgrHeader.fromBytes(Arrays.copyOf(bytes, McuMgrHeader.HEADER_LENGTH));
-
-        // Try decoding response for Image Manager and FS Manager UPLOAD commands really quickly.
-        Class<? extends UploadResponse> responseClass = null;
-        if (type == McuMgrImageUploadResponse.class
-                && (bytes[0] & 0b111) == 0x03                     // OP_WRITE_RSP
-                && bytes[4] == 0x00 && bytes[5] == 0x01 // GROUP_IMAGE
-                && bytes[7] == 0x01) {                  // ID_UPLOAD
-           responseClass = McuMgrImageUploadResponse.class;
-        } else if (type == McuMgrFsUploadResponse.class
-                && (bytes[0] & 0b111) == 0x03                     // OP_WRITE_RSP
-                && bytes[4] == 0x00 && bytes[5] == 0x08 // GROUP_FS
-                && bytes[7] == 0x00) {                  // ID_FILE
-            responseClass = McuMgrFsUploadResponse.class;
+        if (packetLength < McuMgrHeader.HEADER_LENGTH || packetLength > bytes.length) {
+            throw new IOException("Invalid McuMgrHeader");
         }
-        if (responseClass != null) {
+        // The header and the payload are not copied. The payload is decoded directly
+        // from the packet and the header is parsed only when requested.
+        final int offset = McuMgrHeader.HEADER_LENGTH;
+        final int length = packetLength - offset;
+
+        // Try decoding responses to upload and download commands really quickly.
+        if (TransferResponseDecoder.supports(type)) {
             try {
-                final UploadResponse response = McuMgrResponse.tryDecoding(payload, responseClass);
+                final T response = TransferResponseDecoder.decode(bytes, offset, length, type);
                 if (response != null) {
-                    response.initFields(scheme, bytes, header, payload);
-                    //noinspection unchecked
-                    return (T) response;
+                    if (reusedBuffer) {
+                        // All fields are decoded, the packet is not needed.
+                        response.initFields(scheme, McuMgrHeader.fromBytes(bytes));
+                    } else {
+                        response.initFields(scheme, packet(bytes, packetLength, false), offset);
+                    }
+                    return response;
                 }
             } catch (final Exception e) {
                 // Ignore, a CBOR parser will be used below.
@@ -280,8 +399,9 @@ public class McuMgrResponse implements HasReturnCode {
         // This was later solved by replacing the "ret" parameter with "err", keeping the same SMP
         // version number: https://github.com/zephyrproject-rtos/zephyr/pull/60984
         //
-        // As a workaround, the code below goes through the payload byte array and replaces "ret"
-        // with "err". To avoid false-positive replacements, the code checks if the payload is
+        // As a workaround, the code below looks for "ret" in the payload and, if found, decodes
+        // the payload into a tree and renames the field to "err" before mapping it to the
+        // response. To avoid false-positive replacements, the code checks if the payload is
         // shorted than 21 bytes and "ret" is followed by 0xBF (map(*)).
         //
         // There are some hidden assumptions here:
@@ -291,38 +411,48 @@ public class McuMgrResponse implements HasReturnCode {
         // 2. The map encoded as BF..FF instead of Ax. This looks to be the case in zcbor library
         //    used in Zephyr. The "BF" has to be checked to skip replacing when the "ret" field is
         //    returned from a Shell Manager and indicates an integer value.
-        if (((bytes[0] >> 3) & 0b11) == 0b01 && payload.length <= 21) {
+        if (((bytes[0] >> 3) & 0b11) == 0b01 && length <= 21) {
             final byte[] find = new byte[] { 0x63, 0x72, 0x65, 0x74, (byte) 0xBF }; // String, len: 3, "ret"
-            final byte[] replace = new byte[] { 0x63, 0x65, 0x72, 0x72, (byte) 0xBF }; // String, len: 3, "err"
-            int index = indexOf(payload, find);
-            if (index != -1) {
-                byte[] result = new byte[payload.length - find.length + replace.length];
-                System.arraycopy(payload, 0, result, 0, index);
-                System.arraycopy(replace, 0, result, index, replace.length);
-                System.arraycopy(payload, index + find.length,
-                        result, index + replace.length,
-                        payload.length - index - find.length);
-                payload = result;
+            if (indexOf(bytes, offset, packetLength, find) != -1) {
+                final JsonNode tree = CBOR.toTree(bytes, offset, length);
+                if (tree instanceof ObjectNode && tree.get("ret") instanceof ObjectNode) {
+                    final ObjectNode map = (ObjectNode) tree;
+                    map.set("err", map.remove("ret"));
+                }
+                final T response = CBOR.toObject(tree, type);
+                response.initFields(scheme, packet(bytes, packetLength, reusedBuffer), offset);
+                return response;
             }
         }
 
         // Initialize response and set fields
-        T response = CBOR.toObject(payload, type);
-        response.initFields(scheme, bytes, header, payload);
+        T response = CBOR.toObject(bytes, offset, length, type);
+        response.initFields(scheme, packet(bytes, packetLength, reusedBuffer), offset);
 
         return response;
     }
 
     /**
-     * Searches for a 'needle' in a `haystack` and returns the index of the first occurrence,
-     * or -1 if not found.
+     * Returns the packet occupying the beginning of the buffer, copying it if it is shorter
+     * than the buffer, or if the buffer is reused by the caller. Otherwise, the response keeps
+     * the buffer.
+     */
+    private static byte @NotNull [] packet(byte @NotNull [] buffer, int length, boolean reusedBuffer) {
+        return length == buffer.length && !reusedBuffer ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Searches for a 'needle' in a `haystack`, starting from the given offset, and returns
+     * the index of the first occurrence, or -1 if not found.
      *
      * @param haystack The array in which to search.
+     * @param offset The index to start searching from.
+     * @param end The index after the last byte to search in.
      * @param needle The array to search for.
      * @return The index of the first occurrence of 'needle' in 'haystack', or -1 if not found.
      */
-    private static int indexOf(byte @NotNull [] haystack, byte @NotNull [] needle) {
-        for (int i = 0; i < haystack.length - needle.length + 1; i++) {
+    private static int indexOf(byte @NotNull [] haystack, int offset, int end, byte @NotNull [] needle) {
+        for (int i = offset; i < end - needle.length + 1; i++) {
             boolean found = true;
             for (int j = 0; j < needle.length; j++) {
                 if (haystack[i + j] != needle[j]) {
@@ -403,123 +533,4 @@ public class McuMgrResponse implements HasReturnCode {
             return header.getLen() + McuMgrHeader.HEADER_LENGTH;
         }
     }
-
-    /**
-     * This method tries decoding response for Image Manager UPLOAD command really quickly, skipping
-     * using {@link CBOR#toObject(byte[], Class)}, which is very slow. For a message to be properly
-     * parsed it can be encoded as map(*) or map(2) with "rc" and "off" parameters in any order.
-     * <p>
-     * The "rc" parameter may be skipped. The "off" parameter must be present.
-     * <p>
-     * SMP 2: If a "ret" (NCS 2.4) or "err" (NCS 2.5+) parameter is present (indicating an error),
-     * this method returns null and leaves parsing to the CBOR parser.
-     *
-     * @param payload the CBOR payload as bytes.
-     * @return the decoded message, or null.
-     */
-    private static <T extends UploadResponse> UploadResponse tryDecoding(final byte @NotNull [] payload, Class<T> responseType)
-            throws IllegalAccessException, InstantiationException {
-        // The response must have "off" encoded. When the "rc" is omitted, the minimum number of bytes is 6.
-        if (payload.length < 6)
-            return null;
-
-        int offset = 0;
-
-        // The response is encoded as map(*) (0xBF), or map(2) (0xA2).
-        int firstByte = payload[offset++] & 0xFF;
-        if (firstByte != 0xBF && firstByte != 0xA2)
-            return null;
-
-        int rc = -1, off = -1;
-        int currentToken = -1; // 0 = "rc", 1 = "off"
-        while (offset < payload.length) {
-            final int type = (payload[offset] & 0xE0) >> 5;
-            final int lowerBits = payload[offset++] & 0x1F;
-
-            switch (type) {
-                case 0: { // positive int
-                    // Values 23 or lower can be read as they are.
-                    int value = -1;
-                    if (lowerBits <= 23) {
-                        value = lowerBits;
-                    } else {
-                        // This fast method supports only 8, 16 and 32-bit positive integers.
-                        switch (lowerBits - 24) {
-                            case 0: {
-                                if (payload.length > offset) {
-                                    value = payload[offset] & 0xFF;
-                                }
-                                offset += 1;
-                                break;
-                            }
-                            case 1: {
-                                if (payload.length > offset + 1) {
-                                    value = ((payload[offset] & 0xFF) << 8) | (payload[offset + 1] & 0xFF);
-                                }
-                                offset += 2;
-                                break;
-                            }
-                            case 2: {
-                                if (payload.length > offset + 3) {
-                                    value = ((payload[offset] & 0xFF) << 24) | ((payload[offset + 1] & 0xFF) << 16) | ((payload[offset + 2] & 0xFF) << 8) | (payload[offset + 3] & 0xFF);
-                                    if (value < 0) {
-                                        return null;
-                                    }
-                                }
-                                offset += 4;
-                                break;
-                            }
-                            // unsupported
-                            default: {
-                                return null;
-                            }
-                        }
-                    }
-                    if (value >= 0) {
-                        if (currentToken == 0)
-                            rc = value;
-                        else if (currentToken == 1)
-                            off = value;
-                        currentToken = -1;
-                    }
-                    break;
-                }
-                case 3: { // string
-                    // We are only looking for "rc" and "off", which have lengths 2 and 3.
-                    // The below code will return null if a longer token is found.
-                    switch (lowerBits) {
-                        case 2: {
-                            // "rc"
-                            if (payload.length > offset + 1 && payload[offset] == 0x72 && payload[offset + 1] == 0x63) {
-                                currentToken = 0;
-                            }
-                            break;
-                        }
-                        case 3: {
-                            // "off"
-                            if (payload.length > offset + 2 && payload[offset] == 0x6F && payload[offset + 1] == 0x66 && payload[offset + 2] == 0x66) {
-                                currentToken = 1;
-                            }
-                            // "err" or "ret"
-                            if (payload.length > offset + 2 && (
-                                    (payload[offset] == 0x72 && payload[offset + 1] == 0x65 && payload[offset + 2] == 0x74) ||
-                                    (payload[offset] == 0x65 && payload[offset + 1] == 0x72 && payload[offset + 2] == 0x72))) {
-                                return null;
-                            }
-                            break;
-                        }
-                        default: {
-                            return null;
-                        }
-                    }
-                    offset += lowerBits;
-                    break;
-                }
-            }
-        }
-        final UploadResponse response = responseType.newInstance();
-        if (rc >= 0) response.rc = rc;
-        if (off >= 0) response.off = off;
-        return response;
-    }
 }
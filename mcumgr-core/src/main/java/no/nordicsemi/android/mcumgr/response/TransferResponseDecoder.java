@@ -0,0 +1,409 @@
+package no.nordicsemi.android.mcumgr.response;
+
+import com.fasterxml.jackson.core.Base64Variants;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import no.nordicsemi.android.mcumgr.response.fs.McuMgrFsDownloadResponse;
+import no.nordicsemi.android.mcumgr.response.fs.McuMgrFsUploadResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrCoreLoadResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse;
+
+/**
+ * A fast decoder for responses to upload and download commands, skipping
+ * {@link no.nordicsemi.android.mcumgr.util.CBOR#toObject(byte[], Class)}, which is very slow
+ * compared to the size of those responses.
+ * <p>
+ * The decoder scans the payload once and supports only the fields of the transfer responses:
+ * "rc", "err" (or "ret"), "off", "len", "match" and "data". Each supported response type
+ * declares which of them it accepts. Unknown keys with simple values are skipped, as Jackson
+ * would ignore them.
+ * <p>
+ * The "data" field is found as a slice of the packet and copied directly into the response.
+ * <p>
+ * Whenever the payload contains anything unexpected the decoder returns null and the response
+ * should be parsed using the CBOR parser.
+ */
+final class TransferResponseDecoder {
+
+    private final static int FIELD_RC = 0;
+    private final static int FIELD_ERR = 1;
+    private final static int FIELD_OFF = 2;
+    private final static int FIELD_LEN = 3;
+    private final static int FIELD_MATCH = 4;
+    private final static int FIELD_DATA = 5;
+    private final static int FIELD_UNKNOWN = -1;
+    private final static int FIELD_INVALID = -2;
+
+    /** Keys of the supported fields, indexed by field. "ret" is an alias of "err". */
+    private final static byte[][] KEYS = {
+            ascii("rc"), ascii("err"), ascii("off"), ascii("len"), ascii("match"), ascii("data")
+    };
+    private final static byte[] KEY_RET = ascii("ret");
+    private final static byte[] KEY_GROUP = ascii("group");
+
+    private final static int UPLOAD = bit(FIELD_RC) | bit(FIELD_ERR) | bit(FIELD_OFF);
+    private final static int DOWNLOAD = UPLOAD | bit(FIELD_LEN) | bit(FIELD_DATA);
+
+    private interface Factory {
+        McuMgrResponse create();
+    }
+
+    private final static class Entry {
+        final int fields;
+        final Factory factory;
+
+        Entry(int fields, Factory factory) {
+            this.fields = fields;
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * Supported response types. Only exact types are decoded, as subclasses may add fields.
+     */
+    private final static Map<Class<?>, Entry> TYPES = new HashMap<>();
+    static {
+        TYPES.put(UploadResponse.class, new Entry(UPLOAD, UploadResponse::new));
+        TYPES.put(McuMgrImageUploadResponse.class,
+                new Entry(UPLOAD | bit(FIELD_MATCH), McuMgrImageUploadResponse::new));
+        TYPES.put(McuMgrFsUploadResponse.class, new Entry(UPLOAD, McuMgrFsUploadResponse::new));
+        TYPES.put(no.nordicsemi.android.mcumgr.response.suit.McuMgrUploadResponse.class,
+                new Entry(UPLOAD, no.nordicsemi.android.mcumgr.response.suit.McuMgrUploadResponse::new));
+        TYPES.put(DownloadResponse.class, new Entry(DOWNLOAD, DownloadResponse::new));
+        TYPES.put(McuMgrFsDownloadResponse.class, new Entry(DOWNLOAD, McuMgrFsDownloadResponse::new));
+        TYPES.put(McuMgrCoreLoadResponse.class, new Entry(DOWNLOAD, McuMgrCoreLoadResponse::new));
+    }
+
+    private TransferResponseDecoder() {
+        // Empty private constructor.
+    }
+
+    /**
+     * Returns whether the given response type may be decoded using this decoder.
+     *
+     * @param type the response type.
+     * @return True, if the type is supported; false otherwise.
+     */
+    static boolean supports(@NotNull Class<?> type) {
+        return TYPES.containsKey(type);
+    }
+
+    /**
+     * Decodes the payload into a response of the given type.
+     *
+     * @param buffer the buffer with the payload, usually the whole SMP packet.
+     * @param offset the offset of the payload in the buffer.
+     * @param length the length of the payload.
+     * @param type   the response type.
+     * @param <T>    the response type.
+     * @return The decoded response, or null, if the payload could not be decoded by this decoder.
+     */
+    @Nullable
+    static <T extends McuMgrResponse> T decode(byte @NotNull [] buffer, int offset, int length,
+                                               @NotNull Class<T> type) {
+        final Entry entry = TYPES.get(type);
+        if (entry == null || length <= 0 || offset + length > buffer.length)
+            return null;
+        return new Scanner(buffer, offset, offset + length).decode(entry, type);
+    }
+
+    /**
+     * Returns the string representation of the fields of a response of a supported type,
+     * in the format of {@link McuMgrResponse#toString()}. It is used for responses which did not
+     * keep the packet. Fields which are not sent by the device by default are omitted.
+     *
+     * @param response the response.
+     * @return The string representation of the response.
+     */
+    @NotNull
+    static String toString(@NotNull McuMgrResponse response) {
+        final StringBuilder builder = new StringBuilder("{");
+        if (response.rc != 0)
+            key(builder, "rc").append(response.rc);
+        final HasReturnCode.GroupReturnCode err = response.groupReturnCode;
+        if (err != null)
+            key(builder, "err").append("{\"group\":").append(err.group)
+                    .append(",\"rc\":").append(err.rc).append('}');
+        if (response instanceof UploadResponse) {
+            key(builder, "off").append(((UploadResponse) response).off);
+            if (response instanceof McuMgrImageUploadResponse) {
+                final Boolean match = ((McuMgrImageUploadResponse) response).match;
+                if (match != null)
+                    key(builder, "match").append(match);
+            }
+        } else if (response instanceof DownloadResponse) {
+            final DownloadResponse download = (DownloadResponse) response;
+            key(builder, "off").append(download.off);
+            if (download.len > 0)
+                key(builder, "len").append(download.len);
+            if (download.data != null)
+                key(builder, "data").append('"')
+                        .append(Base64Variants.getDefaultVariant().encode(download.data))
+                        .append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    private static StringBuilder key(@NotNull StringBuilder builder, @NotNull String key) {
+        if (builder.length() > 1)
+            builder.append(',');
+        return builder.append('"').append(key).append("\":");
+    }
+
+    /**
+     * A single-pass scanner over a CBOR map. All read methods return -1 (or null) when the
+     * data can't be decoded.
+     */
+    private final static class Scanner {
+        private final byte[] buffer;
+        private final int end;
+        private int position;
+
+        // Decoded values.
+        private int rc = -1, off = -1, len = -1;
+        private int group = -1, groupRc = -1;
+        private Boolean match;
+        private int dataOffset = -1, dataLength = -1;
+
+        Scanner(byte @NotNull [] buffer, int start, int end) {
+            this.buffer = buffer;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Nullable
+        <T extends McuMgrResponse> T decode(@NotNull Entry entry, @NotNull Class<T> type) {
+            // The response is encoded as map(*) (0xBF), or map(n) (0xA0 - 0xB7).
+            final int first = buffer[position++] & 0xFF;
+            final boolean indefinite = first == 0xBF;
+            if (!indefinite && (first & 0xE0) != 0xA0)
+                return null;
+            int pairs = indefinite ? -1 : readArgument(first);
+            if (!indefinite && pairs < 0)
+                return null;
+
+            while (indefinite || pairs-- > 0) {
+                if (position >= end)
+                    return null;
+                if (indefinite && (buffer[position] & 0xFF) == 0xFF) {
+                    position++;
+                    break;
+                }
+                final int field = readKey();
+                if (field == FIELD_INVALID)
+                    return null;
+                if (field == FIELD_UNKNOWN) {
+                    if (!skipValue())
+                        return null;
+                    continue;
+                }
+                if ((entry.fields & bit(field)) == 0 || !readValue(field))
+                    return null;
+            }
+            if (position != end)
+                return null;
+
+            //noinspection unchecked
+            final T response = (T) entry.factory.create();
+            if (rc >= 0) response.rc = rc;
+            if (group >= 0 || groupRc >= 0) {
+                final HasReturnCode.GroupReturnCode err = new HasReturnCode.GroupReturnCode();
+                if (group >= 0) err.group = group;
+                if (groupRc >= 0) err.rc = groupRc;
+                response.groupReturnCode = err;
+            }
+            if (response instanceof UploadResponse) {
+                if (off >= 0) ((UploadResponse) response).off = off;
+                if (response instanceof McuMgrImageUploadResponse)
+                    ((McuMgrImageUploadResponse) response).match = match;
+            } else if (response instanceof DownloadResponse) {
+                final DownloadResponse download = (DownloadResponse) response;
+                if (off >= 0) download.off = off;
+                if (len >= 0) download.len = len;
+                if (dataOffset >= 0)
+                    download.data = Arrays.copyOfRange(buffer, dataOffset, dataOffset + dataLength);
+            }
+            return response;
+        }
+
+        /**
+         * Reads a text key and returns the matching field, {@link #FIELD_UNKNOWN} for other keys,
+         * or {@link #FIELD_INVALID} when the key is not a text string.
+         */
+        private int readKey() {
+            final int initial = buffer[position++] & 0xFF;
+            if ((initial & 0xE0) != 0x60)
+                return FIELD_INVALID;
+            final int length = readArgument(initial);
+            if (length < 0 || position + length > end)
+                return FIELD_INVALID;
+            final int start = position;
+            position += length;
+            for (int field = 0; field < KEYS.length; field++) {
+                if (matches(KEYS[field], start, length))
+                    return field;
+            }
+            if (matches(KEY_RET, start, length))
+                return FIELD_ERR;
+            return FIELD_UNKNOWN;
+        }
+
+        private boolean readValue(int field) {
+            switch (field) {
+                case FIELD_RC:
+                    return (rc = readUnsigned()) >= 0;
+                case FIELD_OFF:
+                    return (off = readUnsigned()) >= 0;
+                case FIELD_LEN:
+                    return (len = readUnsigned()) >= 0;
+                case FIELD_MATCH: {
+                    final int value = buffer[position++] & 0xFF;
+                    if (value != 0xF4 && value != 0xF5)
+                        return false;
+                    match = value == 0xF5;
+                    return true;
+                }
+                case FIELD_DATA: {
+                    final int initial = buffer[position++] & 0xFF;
+                    if ((initial & 0xE0) != 0x40)
+                        return false;
+                    dataLength = readArgument(initial);
+                    if (dataLength < 0 || position + dataLength > end)
+                        return false;
+                    dataOffset = position;
+                    position += dataLength;
+                    return true;
+                }
+                case FIELD_ERR:
+                    return readGroupReturnCode();
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Reads the "err" map: {"group": uint, "rc": uint}.
+         */
+        private boolean readGroupReturnCode() {
+            final int first = buffer[position++] & 0xFF;
+            final boolean indefinite = first == 0xBF;
+            if (!indefinite && (first & 0xE0) != 0xA0)
+                return false;
+            int pairs = indefinite ? -1 : readArgument(first);
+            while (indefinite || pairs-- > 0) {
+                if (position >= end)
+                    return false;
+                if (indefinite && (buffer[position] & 0xFF) == 0xFF) {
+                    position++;
+                    return true;
+                }
+                final int initial = buffer[position++] & 0xFF;
+                if ((initial & 0xE0) != 0x60)
+                    return false;
+                final int length = readArgument(initial);
+                if (length < 0 || position + length > end)
+                    return false;
+                final int start = position;
+                position += length;
+                if (matches(KEY_GROUP, start, length)) {
+                    if ((group = readUnsigned()) < 0)
+                        return false;
+                } else if (matches(KEYS[FIELD_RC], start, length)) {
+                    if ((groupRc = readUnsigned()) < 0)
+                        return false;
+                } else if (!skipValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Skips a simple value: an integer, a byte or text string, a boolean or null.
+         * Nested maps and arrays are not supported.
+         */
+        private boolean skipValue() {
+            final int initial = buffer[position++] & 0xFF;
+            switch (initial & 0xE0) {
+                case 0x00: // positive int
+                case 0x20: // negative int
+                    return readArgument(initial) >= 0;
+                case 0x40: // byte string
+                case 0x60: { // text string
+                    final int length = readArgument(initial);
+                    if (length < 0 || position + length > end)
+                        return false;
+                    position += length;
+                    return true;
+                }
+                case 0xE0: // false, true, null
+                    return initial >= 0xF4 && initial <= 0xF6;
+                default:
+                    return false;
+            }
+        }
+
+        private int readUnsigned() {
+            final int initial = buffer[position++] & 0xFF;
+            if ((initial & 0xE0) != 0x00)
+                return -1;
+            return readArgument(initial);
+        }
+
+        /**
+         * Reads the argument of a data item. Only 8, 16 and 32-bit arguments are supported,
+         * and values must fit in a positive int.
+         *
+         * @return The value, or -1 if not supported.
+         */
+        private int readArgument(int initial) {
+            final int lowerBits = initial & 0x1F;
+            if (lowerBits <= 23)
+                return lowerBits;
+            switch (lowerBits) {
+                case 24:
+                    if (position + 1 > end)
+                        return -1;
+                    return buffer[position++] & 0xFF;
+                case 25:
+                    if (position + 2 > end)
+                        return -1;
+                    return ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+                case 26: {
+                    if (position + 4 > end)
+                        return -1;
+                    final int value = ((buffer[position++] & 0xFF) << 24) | ((buffer[position++] & 0xFF) << 16)
+                            | ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+                    return value < 0 ? -1 : value;
+                }
+                default:
+                    return -1;
+            }
+        }
+
+        private boolean matches(byte @NotNull [] key, int start, int length) {
+            if (key.length != length)
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (buffer[start + i] != key[i])
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static int bit(int field) {
+        return 1 << field;
+    }
+
+    private static byte @NotNull [] ascii(@NotNull String key) {
+        return key.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -3,6 +3,9 @@ package no.nordicsemi.android.mcumgr.response;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
+
+@GenerateDecoder
 public class UploadResponse extends McuMgrResponse {
     /** The offset. Number of bytes that were received. */
     @JsonProperty("off")
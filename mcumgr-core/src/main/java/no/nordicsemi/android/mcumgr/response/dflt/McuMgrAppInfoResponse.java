@@ -9,6 +9,9 @@ package no.nordicsemi.android.mcumgr.response.dflt;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
+
+@GenerateDecoder
 public class McuMgrAppInfoResponse extends McuMgrOsResponse {
     /** Text response including requested parameters. */
     @JsonProperty("output")
@@ -9,9 +9,11 @@ package no.nordicsemi.android.mcumgr.response.dflt;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.DefaultManager;
 
 /** @noinspection unused*/
+@GenerateDecoder
 public class McuMgrBootloaderInfoResponse extends McuMgrOsResponse {
     // MCUboot modes are explained here: https://docs.mcuboot.com/design.html#image-slots
 
@@ -13,7 +13,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.Map;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
+
 @SuppressWarnings("unused")
+@GenerateDecoder
 public class McuMgrMpStatResponse extends McuMgrOsResponse {
     // For Mynewt see:
     // https://github.com/apache/mynewt-core/blob/master/kernel/os/include/os/os_mempool.h
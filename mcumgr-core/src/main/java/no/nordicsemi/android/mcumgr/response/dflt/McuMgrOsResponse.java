@@ -2,9 +2,11 @@ package no.nordicsemi.android.mcumgr.response.dflt;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.DefaultManager;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
+@GenerateDecoder
 public class McuMgrOsResponse extends McuMgrResponse implements DefaultManager.Response {
 
     @JsonCreator
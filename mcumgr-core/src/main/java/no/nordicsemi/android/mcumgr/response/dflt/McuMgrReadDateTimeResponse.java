@@ -9,6 +9,9 @@ package no.nordicsemi.android.mcumgr.response.dflt;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
+
+@GenerateDecoder
 public class McuMgrReadDateTimeResponse extends McuMgrOsResponse {
     /**
      * Date & time in <code>yyyy-MM-dd'T'HH:mm:ss.SSSSSS</code> format.
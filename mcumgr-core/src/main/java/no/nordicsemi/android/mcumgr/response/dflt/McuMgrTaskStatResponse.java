@@ -12,7 +12,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.Map;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
+
 @SuppressWarnings({"PointlessBitwiseExpression", "unused"})
+@GenerateDecoder
 public class McuMgrTaskStatResponse extends McuMgrOsResponse {
     // For Zephyr see:
     // https://github.com/zephyrproject-rtos/zephyr/blob/master/kernel/include/kernel_structs.h
@@ -9,9 +9,11 @@ package no.nordicsemi.android.mcumgr.response.fs;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.FsManager;
 import no.nordicsemi.android.mcumgr.response.DownloadResponse;
 
+@GenerateDecoder
 public class McuMgrFsDownloadResponse extends DownloadResponse implements FsManager.Response {
     @JsonCreator
     public McuMgrFsDownloadResponse() {}
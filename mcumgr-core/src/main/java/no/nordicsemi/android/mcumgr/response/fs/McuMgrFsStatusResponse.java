@@ -10,9 +10,11 @@ package no.nordicsemi.android.mcumgr.response.fs;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.FsManager;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
+@GenerateDecoder
 public class McuMgrFsStatusResponse extends McuMgrResponse implements FsManager.Response {
     /** Length of file (in bytes). */
     @JsonProperty("len")
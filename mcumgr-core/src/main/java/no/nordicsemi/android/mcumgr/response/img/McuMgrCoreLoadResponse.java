@@ -24,9 +24,11 @@ package no.nordicsemi.android.mcumgr.response.img;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.ImageManager;
 import no.nordicsemi.android.mcumgr.response.DownloadResponse;
 
+@GenerateDecoder
 public class McuMgrCoreLoadResponse extends DownloadResponse implements ImageManager.Response {
     @JsonCreator
     public McuMgrCoreLoadResponse() {}
@@ -9,10 +9,12 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.ImageManager;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
 @SuppressWarnings("unused")
+@GenerateDecoder
 public class McuMgrImageStateResponse extends McuMgrResponse implements ImageManager.Response {
     // For Mynewt see:
     // https://github.com/apache/mynewt-core/blob/master/boot/split/include/split/split.h
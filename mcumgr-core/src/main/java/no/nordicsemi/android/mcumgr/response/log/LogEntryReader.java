@@ -0,0 +1,344 @@
+package no.nordicsemi.android.mcumgr.response.log;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader;
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
+import no.nordicsemi.android.mcumgr.util.CBOR;
+
+/**
+ * Reads log entries from a response to the log show command one by one, while parsing
+ * the payload.
+ * <p>
+ * Unlike {@link McuMgrLogResponse}, which holds all logs and entries of a response in arrays,
+ * the reader decodes an entry only when {@link #nextEntry()} is called, so at most one
+ * entry needs to be held in memory at a time.
+ * <pre>
+ * try (LogEntryReader reader = logManager.showEntries(name, index, null)) {
+ *     while (reader.nextLog()) {
+ *         McuMgrLogResponse.Entry entry;
+ *         while ((entry = reader.nextEntry()) != null) {
+ *             // Process the entry.
+ *         }
+ *     }
+ * }
+ * </pre>
+ * If the payload can't be read this way, the reader falls back to decoding the whole
+ * {@link McuMgrLogResponse} and continues from the same entry.
+ * <p>
+ * The reader is not thread safe.
+ */
+@SuppressWarnings("unused")
+public class LogEntryReader implements Closeable {
+    /** Before the "logs" array. */
+    private final static int STATE_INIT = 0;
+    /** Between log objects in the "logs" array. */
+    private final static int STATE_LOGS = 1;
+    /** In a log object, before or after the "entries" array. */
+    private final static int STATE_LOG = 2;
+    /** In the "entries" array. */
+    private final static int STATE_ENTRIES = 3;
+    /** After the "logs" array, or if the response has no logs. */
+    private final static int STATE_DONE = 4;
+
+    @NotNull
+    private final McuMgrResponse mResponse;
+    private final byte @NotNull [] mBuffer;
+    private final int mOffset;
+    private final int mLength;
+
+    @Nullable
+    private JsonParser mParser;
+    private int mState = STATE_INIT;
+
+    /** Index of the current log, or -1 before {@link #nextLog()} was called. */
+    private int mLogIndex = -1;
+    /** Number of entries returned from the current log. */
+    private int mEntryIndex;
+    @Nullable
+    private String mLogName;
+    private int mLogType;
+
+    /** The response decoded using Jackson, if streaming failed. */
+    @Nullable
+    private McuMgrLogResponse mFallback;
+
+    /**
+     * Creates a reader of the payload of the given response to the log show command.
+     * The response is usually decoded as {@link McuMgrResponse}, which skips the logs.
+     *
+     * @param response the response.
+     * @return The reader.
+     */
+    @NotNull
+    public static LogEntryReader of(@NotNull McuMgrResponse response) {
+        final byte[] bytes = response.getBytes();
+        if (response.getScheme() == null || response.getScheme().isCoap() || bytes == null) {
+            final byte[] payload = response.getPayload();
+            return new LogEntryReader(response, payload == null ? new byte[0] : payload,
+                    0, payload == null ? 0 : payload.length);
+        }
+        // For standard schemes the payload follows the header in the packet.
+        return new LogEntryReader(response, bytes, McuMgrHeader.HEADER_LENGTH,
+                bytes.length - McuMgrHeader.HEADER_LENGTH);
+    }
+
+    private LogEntryReader(@NotNull McuMgrResponse response,
+                           byte @NotNull [] buffer, int offset, int length) {
+        mResponse = response;
+        mBuffer = buffer;
+        mOffset = offset;
+        mLength = length;
+    }
+
+    /**
+     * Returns the response which is being read. Use it to check the return code.
+     *
+     * @return The response.
+     */
+    @NotNull
+    public McuMgrResponse getResponse() {
+        return mResponse;
+    }
+
+    /**
+     * Returns the name of the current log.
+     * <p>
+     * The name is known if it is sent before the entries, which is how it is encoded by all
+     * known implementations. Otherwise, it is available after all entries were read.
+     *
+     * @return The name, or null, if not known.
+     */
+    @Nullable
+    public String getLogName() {
+        return mLogName;
+    }
+
+    /**
+     * Returns the type of the current log, e.g. {@link McuMgrLogResponse.LogResult#LOG_TYPE_STORAGE}.
+     * See {@link #getLogName()} for limitations.
+     *
+     * @return The type.
+     */
+    public int getLogType() {
+        return mLogType;
+    }
+
+    /**
+     * Moves to the next log in the response. Remaining entries of the current log are skipped.
+     *
+     * @return True, if moved to the next log; false, if there are no more logs.
+     * @throws IOException if the payload could not be decoded.
+     */
+    public boolean nextLog() throws IOException {
+        final int target = mLogIndex + 1;
+        if (mFallback == null) {
+            try {
+                return streamNextLog();
+            } catch (final IOException | RuntimeException e) {
+                fallback(e);
+            }
+        }
+        mLogIndex = target;
+        mEntryIndex = 0;
+        final McuMgrLogResponse.LogResult[] logs = mFallback.logs;
+        if (logs == null || target >= logs.length) {
+            return false;
+        }
+        final McuMgrLogResponse.LogResult log = logs[target];
+        mLogName = log == null ? null : log.name;
+        mLogType = log == null ? 0 : log.type;
+        return true;
+    }
+
+    /**
+     * Returns the next entry of the current log.
+     *
+     * @return The entry, or null, if there are no more entries in the current log, or
+     * {@link #nextLog()} was not called.
+     * @throws IOException if the payload could not be decoded.
+     */
+    @Nullable
+    public McuMgrLogResponse.Entry nextEntry() throws IOException {
+        if (mLogIndex < 0) {
+            return null;
+        }
+        if (mFallback == null) {
+            try {
+                final McuMgrLogResponse.Entry entry = streamNextEntry();
+                if (entry != null) {
+                    mEntryIndex++;
+                }
+                return entry;
+            } catch (final IOException | RuntimeException e) {
+                fallback(e);
+            }
+        }
+        final McuMgrLogResponse.LogResult[] logs = mFallback.logs;
+        if (logs == null || mLogIndex >= logs.length || logs[mLogIndex] == null) {
+            return null;
+        }
+        final McuMgrLogResponse.Entry[] entries = logs[mLogIndex].entries;
+        if (entries == null || mEntryIndex >= entries.length) {
+            return null;
+        }
+        return entries[mEntryIndex++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        mState = STATE_DONE;
+        if (mParser != null) {
+            mParser.close();
+            mParser = null;
+        }
+    }
+
+    private boolean streamNextLog() throws IOException {
+        if (mState == STATE_INIT) {
+            findLogs();
+        }
+        // Skip the rest of the current log.
+        while (mState == STATE_ENTRIES || mState == STATE_LOG) {
+            if (mState == STATE_ENTRIES) {
+                final JsonParser parser = parser();
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw new IOException("Unexpected end of payload");
+                    }
+                    parser.skipChildren();
+                }
+                mState = STATE_LOG;
+            }
+            readLog();
+        }
+        if (mState != STATE_LOGS) {
+            return false;
+        }
+        final JsonParser parser = parser();
+        final JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            close();
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected token: " + token);
+        }
+        mLogIndex++;
+        mEntryIndex = 0;
+        mLogName = null;
+        mLogType = 0;
+        mState = STATE_LOG;
+        readLog();
+        return true;
+    }
+
+    @Nullable
+    private McuMgrLogResponse.Entry streamNextEntry() throws IOException {
+        if (mState != STATE_ENTRIES) {
+            return null;
+        }
+        final JsonParser parser = parser();
+        final JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            mState = STATE_LOG;
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected token: " + token);
+        }
+        return CBOR.toObject(parser, McuMgrLogResponse.Entry.class);
+    }
+
+    /**
+     * Moves the parser to the beginning of the "logs" array.
+     */
+    private void findLogs() throws IOException {
+        final JsonParser parser = parser();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected token: " + parser.currentToken());
+        }
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            final JsonToken token = parser.nextToken();
+            if (name.equals("logs") && token == JsonToken.START_ARRAY) {
+                mState = STATE_LOGS;
+                return;
+            }
+            parser.skipChildren();
+        }
+        close();
+    }
+
+    /**
+     * Reads fields of the current log object until the "entries" array or the end
+     * of the object.
+     */
+    private void readLog() throws IOException {
+        final JsonParser parser = parser();
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            final JsonToken token = parser.nextToken();
+            switch (name) {
+                case "name":
+                    if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NULL) {
+                        throw new IOException("Unexpected token: " + token);
+                    }
+                    mLogName = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    break;
+                case "type":
+                    if (token != JsonToken.VALUE_NUMBER_INT) {
+                        throw new IOException("Unexpected token: " + token);
+                    }
+                    mLogType = parser.getIntValue();
+                    break;
+                case "entries":
+                    if (token == JsonToken.START_ARRAY) {
+                        mState = STATE_ENTRIES;
+                        return;
+                    }
+                    // Fall through.
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new IOException("Unexpected token: " + parser.currentToken());
+        }
+        mState = STATE_LOGS;
+    }
+
+    @NotNull
+    private JsonParser parser() throws IOException {
+        if (mParser == null) {
+            mParser = CBOR.createParser(mBuffer, mOffset, mLength);
+        }
+        return mParser;
+    }
+
+    /**
+     * Decodes the whole response using Jackson. The position is kept in
+     * {@link #mLogIndex} and {@link #mEntryIndex}.
+     */
+    private void fallback(@NotNull Exception cause) throws IOException {
+        close();
+        try {
+            mFallback = CBOR.toObject(mBuffer, mOffset, mLength, McuMgrLogResponse.class);
+        } catch (final IOException e) {
+            e.addSuppressed(cause);
+            throw e;
+        }
+        if (mFallback == null) {
+            mFallback = new McuMgrLogResponse();
+        }
+    }
+}
@@ -10,8 +10,10 @@ package no.nordicsemi.android.mcumgr.response.log;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
+@GenerateDecoder
 public class McuMgrLevelListResponse extends McuMgrResponse {
     @JsonProperty("level_map")
     public String[] level_map;
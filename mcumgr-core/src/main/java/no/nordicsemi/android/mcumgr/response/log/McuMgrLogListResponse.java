@@ -9,8 +9,10 @@ package no.nordicsemi.android.mcumgr.response.log;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
+@GenerateDecoder
 public class McuMgrLogListResponse extends McuMgrResponse {
     @JsonProperty("log_list")
     public String[] log_list;
@@ -16,10 +16,12 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.nio.charset.Charset;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 import no.nordicsemi.android.mcumgr.util.ByteUtil;
 import no.nordicsemi.android.mcumgr.util.CBOR;
 
+@GenerateDecoder
 public class McuMgrLogResponse extends McuMgrResponse {
 
     @Deprecated
@@ -64,6 +66,7 @@ public class McuMgrLogResponse extends McuMgrResponse {
 
     /** @noinspection unused*/
     @JsonIgnoreProperties(ignoreUnknown = true)
+    @GenerateDecoder
     public static class Entry {
         public static final int LOG_LEVEL_DEBUG = 0;
         public static final int LOG_LEVEL_INFO = 1;
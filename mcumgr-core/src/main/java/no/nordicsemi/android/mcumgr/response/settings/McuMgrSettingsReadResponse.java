@@ -9,8 +9,10 @@ package no.nordicsemi.android.mcumgr.response.settings;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
+@GenerateDecoder
 public class McuMgrSettingsReadResponse extends McuMgrResponse {
     /**
      * Binary string of the returned data.
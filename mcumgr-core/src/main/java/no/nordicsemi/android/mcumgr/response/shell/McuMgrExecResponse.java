@@ -9,9 +9,11 @@ package no.nordicsemi.android.mcumgr.response.shell;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.ShellManager;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
+@GenerateDecoder
 public class McuMgrExecResponse extends McuMgrResponse implements ShellManager.Response {
     /** The command output. */
     @JsonProperty("o")
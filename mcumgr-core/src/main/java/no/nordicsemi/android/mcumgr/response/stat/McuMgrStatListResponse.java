@@ -9,9 +9,11 @@ package no.nordicsemi.android.mcumgr.response.stat;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.StatsManager;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
+@GenerateDecoder
 public class McuMgrStatListResponse extends McuMgrResponse implements StatsManager.Response {
     /** A list of modules. */
     @JsonProperty("stat_list")
@@ -16,10 +16,12 @@ import java.util.List;
 import java.util.Locale;
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback;
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.managers.SUITManager;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
 /** @noinspection unused*/
+@GenerateDecoder
 public class McuMgrManifestListResponse extends McuMgrResponse {
 
     @JsonIgnoreProperties(ignoreUnknown = true)
@@ -17,9 +17,11 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.UUID;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
 /** @noinspection unused*/
+@GenerateDecoder
 public class McuMgrManifestStateResponse extends McuMgrResponse {
     // Vendor UUIDs
     // https://github.com/nrfconnect/sdk-nrf/blob/6c4ccc353909f1908d6f1317779233c1db7a6d59/subsys/suit/storage/src/suit_storage_nrf54h20.c#L171
@@ -13,9 +13,11 @@ import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
 /** @noinspection unused*/
+@GenerateDecoder
 public class McuMgrPollResponse extends McuMgrResponse {
 
     /**
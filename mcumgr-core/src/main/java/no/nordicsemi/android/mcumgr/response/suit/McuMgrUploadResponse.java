@@ -8,8 +8,10 @@ package no.nordicsemi.android.mcumgr.response.suit;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 
+import no.nordicsemi.android.mcumgr.decoder.GenerateDecoder;
 import no.nordicsemi.android.mcumgr.response.UploadResponse;
 
+@GenerateDecoder
 public class McuMgrUploadResponse extends UploadResponse {
 
     @JsonCreator
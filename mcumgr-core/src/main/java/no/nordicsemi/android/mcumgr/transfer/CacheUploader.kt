@@ -1,6 +1,8 @@
 package no.nordicsemi.android.mcumgr.transfer
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.managers.SUITManager
 import no.nordicsemi.android.mcumgr.response.suit.McuMgrUploadResponse
@@ -17,19 +19,21 @@ private const val ID_CACHE_RAW_UPLOAD = 5
  *
  * @property suitManager The SUIT Manager.
  * @property partition The target partition ID.
- * @param data The resource data, as bytes.
- * @param windowCapacity Number of buffers available for sending data, defaults to 1. The more buffers
+ * @param data The resource data.
+ * @param windowCapacity Number of buffers available for sending data. The more buffers
  * are available, the more packets can be sent without awaiting notification with response, thus
- * accelerating upload process.
- * @param memoryAlignment The memory alignment of the device, defaults to 1. Some memory
- * implementations may require bytes to be aligned to a certain value before saving them.
+ * accelerating upload process. Defaults to [FirmwareUpgradeSettings.AUTO], which derives it
+ * from the SMP buffer count of the device.
+ * @param memoryAlignment The memory alignment of the device. Some memory implementations may
+ * require bytes to be aligned to a certain value before saving them. Defaults to
+ * [FirmwareUpgradeSettings.AUTO], which uses 4 with window upload and 1 otherwise.
  */
 open class CacheUploader(
     private val suitManager: SUITManager,
     private val partition: Int,
-    data: ByteArray,
-    windowCapacity: Int = 1,
-    memoryAlignment: Int = 1,
+    data: UploadSource,
+    windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+    memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
 ) : Uploader(
     data,
     windowCapacity,
@@ -37,17 +41,37 @@ open class CacheUploader(
     suitManager.mtu,
     suitManager.scheme
 ) {
+    constructor(
+        suitManager: SUITManager,
+        partition: Int,
+        data: ByteArray,
+        windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+        memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
+    ) : this(suitManager, partition, ByteArrayUploadSource(data), windowCapacity, memoryAlignment)
+
+    override val encoder = UploadPacketEncoder(suitManager.groupId, ID_CACHE_RAW_UPLOAD)
+
+    override val transport: McuMgrTransport
+        get() = suitManager.transporter
+
+    override val sessionKey: String
+        get() = "suit/cache/$partition"
+
     override fun write(requestMap: Map<String, Any>, timeout: Long, callback: (UploadResult) -> Unit) {
-        suitManager.uploadAsync(requestMap, timeout, callback)
+        suitManager.send(OP_WRITE, ID_CACHE_RAW_UPLOAD, requestMap, timeout, McuMgrUploadResponse::class.java, uploadCallback(callback))
+    }
+
+    override fun write(packet: ByteArray, timeout: Long, callback: (UploadResult) -> Unit) {
+        suitManager.send(packet, timeout, McuMgrUploadResponse::class.java, uploadCallback(callback))
     }
 
     override fun getAdditionalData(
-        data: ByteArray,
+        source: UploadSource,
         offset: Int,
-        map: MutableMap<String, Any>
+        writer: UploadRequestWriter
     ) {
         if (offset == 0) {
-            map["target_id"] = partition
+            writer.put("target_id", partition)
         }
     }
 
@@ -56,18 +80,14 @@ open class CacheUploader(
         if (offset == 0) 18 + CBOR.uintLength(partition) else 0
 }
 
-private fun SUITManager.uploadAsync(
-    requestMap: Map<String, Any>,
-    timeout: Long,
+private fun uploadCallback(
     callback: (UploadResult) -> Unit
-) = send(OP_WRITE, ID_CACHE_RAW_UPLOAD, requestMap, timeout, McuMgrUploadResponse::class.java,
-    object : McuMgrCallback<McuMgrUploadResponse> {
-        override fun onResponse(response: McuMgrUploadResponse) {
-            callback(UploadResult.Response(response, response.returnCode))
-        }
+) = object : McuMgrCallback<McuMgrUploadResponse>, McuMgrCallback.Direct {
+    override fun onResponse(response: McuMgrUploadResponse) {
+        callback(UploadResult.Response(response, response.returnCode))
+    }
 
-        override fun onError(error: McuMgrException) {
-            callback(UploadResult.Failure(error))
-        }
+    override fun onError(error: McuMgrException) {
+        callback(UploadResult.Failure(error))
     }
-)
\ No newline at end of file
+}
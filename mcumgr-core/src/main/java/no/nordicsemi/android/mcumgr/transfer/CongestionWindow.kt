@@ -0,0 +1,99 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.Channel.Factory.CONFLATED
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Bounds the number of requests in flight during an upload.
+ *
+ * A fixed window allows [capacity] requests in flight. An adaptive window starts with 1 and
+ * grows additively, by 1 for each window of requests acknowledged without a loss, up to the
+ * [capacity]. A loss, that is a timeout or an unexpected offset, halves the window. Losses of
+ * requests sent before the last decrease are part of the same event and are not counted again,
+ * as with a window of N requests a single lost chunk usually causes N - 1 unexpected offsets.
+ *
+ * [acquire] is called by a single coroutine; the other methods may be called on any thread.
+ *
+ * @param capacity the maximum number of requests in flight, usually the number of SMP buffers
+ * of the device, less one.
+ * @param adaptive whether the window adapts to losses.
+ * @param size receives the number of requests which may be in flight.
+ */
+internal class CongestionWindow(
+    private val capacity: Int,
+    private val adaptive: Boolean,
+    private val size: MutableStateFlow<Int> = MutableStateFlow(0),
+) {
+    private val released: Channel<Unit> = Channel(CONFLATED)
+
+    // The following fields are guarded by this.
+    private var window = (if (adaptive) 1 else capacity).toDouble()
+    private var inFlight = 0
+    private var sent = 0L
+    /** Losses of requests sent before this one do not decrease the window again. */
+    private var recoveryPoint = 0L
+
+    init {
+        update()
+    }
+
+    /**
+     * Suspends until a request may be sent.
+     *
+     * @return The sequence number of the request, to be passed to [onLoss].
+     */
+    suspend fun acquire(): Long {
+        while (true) {
+            synchronized(this) {
+                if (inFlight < window.toInt()) {
+                    inFlight++
+                    return sent++
+                }
+            }
+            released.receive()
+        }
+    }
+
+    /**
+     * Called when a request acquired with [acquire] has completed, or was not sent.
+     */
+    fun release() {
+        synchronized(this) {
+            inFlight = max(0, inFlight - 1)
+        }
+        released.trySend(Unit)
+    }
+
+    /**
+     * Called when a request was acknowledged with the expected offset.
+     */
+    fun onAck() {
+        if (!adaptive) return
+        synchronized(this) {
+            window = min(capacity.toDouble(), window + 1.0 / window.toInt())
+            update()
+        }
+    }
+
+    /**
+     * Called when a request, or its response, was lost.
+     *
+     * @param sequence the sequence number of the request returned by [acquire].
+     */
+    fun onLoss(sequence: Long) {
+        if (!adaptive) return
+        synchronized(this) {
+            if (sequence < recoveryPoint) return
+            recoveryPoint = sent
+            window = max(1.0, (window / 2).toInt().toDouble())
+            update()
+        }
+    }
+
+    private fun update() {
+        size.value = window.toInt()
+    }
+}
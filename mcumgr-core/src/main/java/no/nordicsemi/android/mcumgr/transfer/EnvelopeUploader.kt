@@ -1,6 +1,8 @@
 package no.nordicsemi.android.mcumgr.transfer
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.managers.SUITManager
 import no.nordicsemi.android.mcumgr.response.suit.McuMgrUploadResponse
@@ -20,18 +22,20 @@ private const val ID_ENVELOPE_UPLOAD = 2
  * should be sent using [ResourceUploader].
  *
  * @property suitManager The SUIT Manager.
- * @param envelope The candidate SUIT Envelope to be sent, as bytes.
- * @param windowCapacity Number of buffers available for sending data, defaults to 1. The more buffers
+ * @param envelope The candidate SUIT Envelope to be sent.
+ * @param windowCapacity Number of buffers available for sending data. The more buffers
  * are available, the more packets can be sent without awaiting notification with response, thus
- * accelerating upload process.
- * @param memoryAlignment The memory alignment of the device, defaults to 1. Some memory
- * implementations may require bytes to be aligned to a certain value before saving them.
+ * accelerating upload process. Defaults to [FirmwareUpgradeSettings.AUTO], which derives it
+ * from the SMP buffer count of the device.
+ * @param memoryAlignment The memory alignment of the device. Some memory implementations may
+ * require bytes to be aligned to a certain value before saving them. Defaults to
+ * [FirmwareUpgradeSettings.AUTO], which uses 4 with window upload and 1 otherwise.
  */
 open class EnvelopeUploader(
     private val suitManager: SUITManager,
-    envelope: ByteArray,
-    windowCapacity: Int = 1,
-    memoryAlignment: Int = 1,
+    envelope: UploadSource,
+    windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+    memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
     private val deferInstall: Boolean = false,
 ) : Uploader(
     envelope,
@@ -40,33 +44,49 @@ open class EnvelopeUploader(
     suitManager.mtu,
     suitManager.scheme
 ) {
+    constructor(
+        suitManager: SUITManager,
+        envelope: ByteArray,
+        windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+        memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
+        deferInstall: Boolean = false,
+    ) : this(suitManager, ByteArrayUploadSource(envelope), windowCapacity, memoryAlignment, deferInstall)
+
     override fun getAdditionalSize(offset: Int): Int =
         // "defer_install": 0x6D64656665725F696E7374616C6C + 0xF5 (true)
         if (offset == 0 && deferInstall) 15 else 0
 
-    override fun getAdditionalData(data: ByteArray, offset: Int, map: MutableMap<String, Any>) {
+    override fun getAdditionalData(source: UploadSource, offset: Int, writer: UploadRequestWriter) {
         if (offset == 0 && deferInstall) {
-            map["defer_install"] = true
+            writer.put("defer_install", true)
         }
     }
 
+    override val encoder = UploadPacketEncoder(suitManager.groupId, ID_ENVELOPE_UPLOAD)
+
+    override val transport: McuMgrTransport
+        get() = suitManager.transporter
+
+    override val sessionKey: String
+        get() = "suit/envelope"
+
     override fun write(requestMap: Map<String, Any>, timeout: Long, callback: (UploadResult) -> Unit) {
-        suitManager.uploadAsync(requestMap, timeout, callback)
+        suitManager.send(OP_WRITE, ID_ENVELOPE_UPLOAD, requestMap, timeout, McuMgrUploadResponse::class.java, uploadCallback(callback))
+    }
+
+    override fun write(packet: ByteArray, timeout: Long, callback: (UploadResult) -> Unit) {
+        suitManager.send(packet, timeout, McuMgrUploadResponse::class.java, uploadCallback(callback))
     }
 }
 
-private fun SUITManager.uploadAsync(
-    requestMap: Map<String, Any>,
-    timeout: Long,
+private fun uploadCallback(
     callback: (UploadResult) -> Unit
-) = send(OP_WRITE, ID_ENVELOPE_UPLOAD, requestMap, timeout, McuMgrUploadResponse::class.java,
-    object : McuMgrCallback<McuMgrUploadResponse> {
-        override fun onResponse(response: McuMgrUploadResponse) {
-            callback(UploadResult.Response(response, response.returnCode))
-        }
+) = object : McuMgrCallback<McuMgrUploadResponse>, McuMgrCallback.Direct {
+    override fun onResponse(response: McuMgrUploadResponse) {
+        callback(UploadResult.Response(response, response.returnCode))
+    }
 
-        override fun onError(error: McuMgrException) {
-            callback(UploadResult.Failure(error))
-        }
+    override fun onError(error: McuMgrException) {
+        callback(UploadResult.Failure(error))
     }
-)
+}
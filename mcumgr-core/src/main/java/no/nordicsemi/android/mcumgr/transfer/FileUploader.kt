@@ -1,6 +1,8 @@
 package no.nordicsemi.android.mcumgr.transfer
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.managers.FsManager
 import no.nordicsemi.android.mcumgr.response.UploadResponse
@@ -12,44 +14,60 @@ private const val ID_FILE = 0
 open class FileUploader(
     private val fsManager: FsManager,
     private val name: String,
-    data: ByteArray,
-    windowCapacity: Int = 1,
-    memoryAlignment: Int = 1,
+    source: UploadSource,
+    windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+    memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
 ) : Uploader(
-    data,
+    source,
     windowCapacity,
     memoryAlignment,
     fsManager.mtu,
     fsManager.scheme
 ) {
+    constructor(
+        fsManager: FsManager,
+        name: String,
+        data: ByteArray,
+        windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+        memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
+    ) : this(fsManager, name, ByteArrayUploadSource(data), windowCapacity, memoryAlignment)
+
+    override val encoder = UploadPacketEncoder(fsManager.groupId, ID_FILE)
+
+    override val transport: McuMgrTransport
+        get() = fsManager.transporter
+
+    override val sessionKey: String
+        get() = "fs/${name.removePrefix("/")}"
+
     override fun write(requestMap: Map<String, Any>, timeout: Long, callback: (UploadResult) -> Unit) {
-        fsManager.uploadAsync(requestMap, timeout, callback)
+        fsManager.send(OP_WRITE, ID_FILE, requestMap, timeout, UploadResponse::class.java, uploadCallback(callback))
+    }
+
+    override fun write(packet: ByteArray, timeout: Long, callback: (UploadResult) -> Unit) {
+        fsManager.send(packet, timeout, UploadResponse::class.java, uploadCallback(callback))
     }
 
     override fun getAdditionalData(
-        data: ByteArray,
+        source: UploadSource,
         offset: Int,
-        map: MutableMap<String, Any>
+        writer: UploadRequestWriter
     ) {
-        map["name"] = name
+        writer.put("name", name)
     }
 
     override fun getAdditionalSize(offset: Int): Int =
         CBOR.stringLength("name") + CBOR.stringLength(name)
 }
 
-private fun FsManager.uploadAsync(
-    requestMap: Map<String, Any>,
-    timeout: Long,
+private fun uploadCallback(
     callback: (UploadResult) -> Unit
-) = send(OP_WRITE, ID_FILE, requestMap, timeout, UploadResponse::class.java,
-    object : McuMgrCallback<UploadResponse> {
-        override fun onResponse(response: UploadResponse) {
-            callback(UploadResult.Response(response, response.returnCode))
-        }
-
-        override fun onError(error: McuMgrException) {
-            callback(UploadResult.Failure(error))
-        }
+) = object : McuMgrCallback<UploadResponse>, McuMgrCallback.Direct {
+    override fun onResponse(response: UploadResponse) {
+        callback(UploadResult.Response(response, response.returnCode))
     }
-)
+
+    override fun onError(error: McuMgrException) {
+        callback(UploadResult.Failure(error))
+    }
+}
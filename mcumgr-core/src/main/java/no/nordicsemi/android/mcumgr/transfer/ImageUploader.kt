@@ -1,13 +1,13 @@
 package no.nordicsemi.android.mcumgr.transfer
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.managers.ImageManager
 import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse
 import no.nordicsemi.android.mcumgr.util.CBOR
 import java.security.DigestException
-import java.security.MessageDigest
-import java.security.NoSuchAlgorithmException
 
 private const val OP_WRITE = 2
 private const val ID_UPLOAD = 1
@@ -32,29 +32,67 @@ fun ImageManager.windowUpload(
 
 open class ImageUploader(
     private val imageManager: ImageManager,
-    imageData: ByteArray,
+    imageSource: UploadSource,
     private val image: Int,
-    windowCapacity: Int = 1,
-    memoryAlignment: Int = 1,
+    windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+    memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
 ) : Uploader(
-    imageData,
+    imageSource,
     windowCapacity,
     memoryAlignment,
     imageManager.mtu,
     imageManager.scheme
 ) {
+    constructor(
+        imageManager: ImageManager,
+        imageData: ByteArray,
+        image: Int,
+        windowCapacity: Int = FirmwareUpgradeSettings.AUTO,
+        memoryAlignment: Int = FirmwareUpgradeSettings.AUTO,
+    ) : this(imageManager, ByteArrayUploadSource(imageData), image, windowCapacity, memoryAlignment)
+
+    /** The session identifier, obtained when the first packet is sent. */
+    private var sha: ByteArray? = null
+
+    init {
+        // Start computing the digest in the background, so that it is ready, or nearly ready,
+        // when the first packet is sent.
+        prefetchSha(imageSource)
+    }
+
+    override val encoder = UploadPacketEncoder(imageManager.groupId, ID_UPLOAD)
+
+    override val transport: McuMgrTransport
+        get() = imageManager.transporter
+
+    override val sessionKey: String
+        get() = "image/$image"
+
+    // The device resumes an upload of an image with the same SHA-256.
+    override val resumesFromDevice: Boolean
+        get() = true
+
     override fun write(requestMap: Map<String, Any>, timeout: Long, callback: (UploadResult) -> Unit) {
-        imageManager.uploadAsync(requestMap, timeout, callback)
+        imageManager.send(OP_WRITE, ID_UPLOAD, requestMap, timeout,
+            McuMgrImageUploadResponse::class.java, uploadCallback(callback))
+    }
+
+    override fun write(packet: ByteArray, timeout: Long, callback: (UploadResult) -> Unit) {
+        imageManager.send(packet, timeout,
+            McuMgrImageUploadResponse::class.java, uploadCallback(callback))
     }
 
     override fun getAdditionalData(
-        data: ByteArray,
+        source: UploadSource,
         offset: Int,
-        map: MutableMap<String, Any>
+        writer: UploadRequestWriter
     ) {
-        map.takeIf { offset == 0 }?.apply {
-            takeIf { image > 0 }?.let { put("image", image) }
-            sha(data)?.let { put("sha", it) }
+        if (offset == 0) {
+            if (image > 0) {
+                writer.put("image", image)
+            }
+            val sha = sha ?: sha(source)?.also { sha = it }
+            sha?.let { writer.put("sha", it) }
         }
     }
 
@@ -77,38 +115,35 @@ open class ImageUploader(
      * byte arrays produce a different string, but the same array returns an equal one.
      * This allows to resume uploading the previously started image in case the new and old
      * identifiers match, or start a new session if a different identifiers is sent.
+     *
+     * Since NCS 2.3 the device also verifies the received image using this digest, so it must
+     * be the SHA-256 of the whole data. It is computed once per data, see [DigestCache].
+     *
+     * Returns null only if SHA-256 is not supported. If the data could not be read, the
+     * upload fails with [McuMgrException][no.nordicsemi.android.mcumgr.exception.McuMgrException].
      */
-    private fun sha(data: ByteArray): ByteArray? {
-        return try {
-            val digest = MessageDigest.getInstance("SHA-256")
-            digest.digest(data)
-        } catch (e: NoSuchAlgorithmException) {
-            null
-        }
-    }
+    private fun sha(source: UploadSource): ByteArray? = source.sha256()
+
+    private fun prefetchSha(source: UploadSource) = source.prefetchSha256()
 }
 
-private fun ImageManager.uploadAsync(
-    requestMap: Map<String, Any>,
-    timeout: Long,
+private fun uploadCallback(
     callback: (UploadResult) -> Unit
-) = send(OP_WRITE, ID_UPLOAD, requestMap, timeout, McuMgrImageUploadResponse::class.java,
-    object : McuMgrCallback<McuMgrImageUploadResponse> {
-        override fun onResponse(response: McuMgrImageUploadResponse) {
-            // Since nRF Connect SDK (NCS) 2.3 if the first packet of a image upload contains a
-            // 32-byte SHA-256 parameter, the last packet (where reported offset is equal to the
-            // image size) will contain a "match" parameter with a flag whether the received file
-            // matches previously sent digest. This parameter is only sent in the last packet and
-            // omitted otherwise.
-            if (response.match == false) {
-                callback(UploadResult.Failure(DigestException("Image digest does not match, try again.")))
-                return
-            }
-            callback(UploadResult.Response(response, response.returnCode))
+) = object : McuMgrCallback<McuMgrImageUploadResponse>, McuMgrCallback.Direct {
+    override fun onResponse(response: McuMgrImageUploadResponse) {
+        // Since nRF Connect SDK (NCS) 2.3 if the first packet of a image upload contains a
+        // 32-byte SHA-256 parameter, the last packet (where reported offset is equal to the
+        // image size) will contain a "match" parameter with a flag whether the received file
+        // matches previously sent digest. This parameter is only sent in the last packet and
+        // omitted otherwise.
+        if (response.match == false) {
+            callback(UploadResult.Failure(DigestException("Image digest does not match, try again.")))
+            return
         }
+        callback(UploadResult.Response(response, response.returnCode))
+    }
 
-        override fun onError(error: McuMgrException) {
-            callback(UploadResult.Failure(error))
-        }
+    override fun onError(error: McuMgrException) {
+        callback(UploadResult.Failure(error))
     }
-)
+}
@@ -91,6 +91,7 @@ public class TransferManager extends McuManager {
 
             @Override
             public void run() {
+                getTransporter().onTransferStarted();
                 try {
                     // Execute the transfer callable.
                     transferCallable.call();
@@ -114,6 +115,8 @@ public class TransferManager extends McuManager {
                     } else {
                         transferCallable.getTransfer().onFailed(e);
                     }
+                } finally {
+                    getTransporter().onTransferFinished();
                 }
             }
         });
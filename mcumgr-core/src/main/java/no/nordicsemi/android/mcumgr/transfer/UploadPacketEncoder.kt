@@ -0,0 +1,296 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+
+private const val SMP_VERSION = 0b01
+private const val OP_WRITE = 2
+
+// CBOR major types, shifted to the 3 most significant bits.
+private const val MAJOR_TYPE_UINT = 0x00
+private const val MAJOR_TYPE_NINT = 0x20
+private const val MAJOR_TYPE_BYTES = 0x40
+private const val MAJOR_TYPE_TEXT = 0x60
+private const val MAJOR_TYPE_MAP = 0xA0
+private const val CBOR_FALSE = 0xF4
+private const val CBOR_TRUE = 0xF5
+
+/**
+ * Receives parameters of an upload request.
+ *
+ * Implementations either encode the parameter directly into a packet, or collect them in a map
+ * for transports using CoAP schemes.
+ */
+internal interface UploadRequestWriter {
+    fun put(key: String, value: Int)
+    fun put(key: String, value: Boolean)
+    fun put(key: String, value: String)
+    fun put(key: String, value: ByteArray)
+}
+
+/**
+ * Collects the parameters in a map, which is then serialized by
+ * [McuManager.buildPacket][no.nordicsemi.android.mcumgr.McuManager.buildPacket].
+ */
+internal class MapRequestWriter(
+    private val map: MutableMap<String, Any>
+) : UploadRequestWriter {
+    override fun put(key: String, value: Int) { map[key] = value }
+    override fun put(key: String, value: Boolean) { map[key] = value }
+    override fun put(key: String, value: String) { map[key] = value }
+    override fun put(key: String, value: ByteArray) { map[key] = value }
+}
+
+/**
+ * Encodes upload requests (image, file system and SUIT uploads) directly into SMP packets
+ * for the [BLE][no.nordicsemi.android.mcumgr.McuMgrScheme.BLE] scheme.
+ *
+ * The request map is not built. Instead, the size of the packet is calculated first, and the
+ * header, the "data", "off" and "len" parameters and any additional parameters are written into
+ * a single array of that exact size. The chunk of data is copied only once, straight from the
+ * [UploadSource] into the packet. The length field of the header is set from the number of bytes
+ * written.
+ *
+ * The encoder may be reused for consecutive packets, but is not thread safe. Each packet gets its
+ * own array, as the transport may hold it until the write is complete.
+ *
+ * @param groupId the group ID of the upload command.
+ * @param commandId the ID of the upload command.
+ */
+internal class UploadPacketEncoder(
+    private val groupId: Int,
+    private val commandId: Int,
+) {
+    internal val sizer = Sizer()
+    internal val writer = Writer()
+
+    /**
+     * Encodes an upload request.
+     *
+     * @param data the source data.
+     * @param dataOffset the offset of the chunk in [data].
+     * @param dataLength the length of the chunk.
+     * @param offset the value of the "off" parameter.
+     * @param length the value of the "len" parameter, or -1 to omit it.
+     * @param additionalData writes additional parameters. It is called twice: once to calculate
+     * the size of the packet and once to encode the parameters.
+     * @return The SMP packet.
+     */
+    inline fun encode(
+        data: UploadSource,
+        dataOffset: Int,
+        dataLength: Int,
+        offset: Int,
+        length: Int,
+        additionalData: (UploadRequestWriter) -> Unit,
+    ): ByteArray {
+        // Measure additional parameters.
+        sizer.reset()
+        additionalData(sizer)
+        val pairs = (if (length >= 0) 3 else 2) + sizer.pairs
+        require(pairs < 24) { "Too many parameters: $pairs" }
+
+        val payloadSize = 1 + // map(pairs)
+                textSize("data") + headSize(dataLength) + dataLength +
+                textSize("off") + headSize(offset) +
+                (if (length >= 0) textSize("len") + headSize(length) else 0) +
+                sizer.size
+
+        val packet = ByteArray(McuMgrHeader.HEADER_LENGTH + payloadSize)
+        writer.begin(packet, McuMgrHeader.HEADER_LENGTH)
+        writer.head(MAJOR_TYPE_MAP, pairs)
+        writer.key("data")
+        writer.bytes(data, dataOffset, dataLength)
+        writer.put("off", offset)
+        if (length >= 0) {
+            writer.put("len", length)
+        }
+        additionalData(writer)
+        writeHeader(packet, writer.end() - McuMgrHeader.HEADER_LENGTH)
+        return packet
+    }
+
+    internal fun writeHeader(packet: ByteArray, length: Int) {
+        check(McuMgrHeader.HEADER_LENGTH + length == packet.size) {
+            "Encoded ${McuMgrHeader.HEADER_LENGTH + length} bytes, expected ${packet.size}"
+        }
+        packet[0] = ((OP_WRITE and 0b111) or ((SMP_VERSION and 0b11) shl 3)).toByte()
+        packet[1] = 0 // Flags
+        packet[2] = (length ushr 8).toByte()
+        packet[3] = length.toByte()
+        packet[4] = (groupId ushr 8).toByte()
+        packet[5] = groupId.toByte()
+        packet[6] = 0 // Sequence number, set by the transport.
+        packet[7] = commandId.toByte()
+    }
+
+    /**
+     * Calculates the size of the parameters without encoding them.
+     */
+    internal class Sizer : UploadRequestWriter {
+        var pairs = 0
+            private set
+        var size = 0
+            private set
+
+        fun reset() {
+            pairs = 0
+            size = 0
+        }
+
+        override fun put(key: String, value: Int) {
+            add(key, headSize(value))
+        }
+
+        override fun put(key: String, value: Boolean) {
+            add(key, 1)
+        }
+
+        override fun put(key: String, value: String) {
+            val length = utf8Length(value)
+            add(key, headSize(length) + length)
+        }
+
+        override fun put(key: String, value: ByteArray) {
+            add(key, headSize(value.size) + value.size)
+        }
+
+        private fun add(key: String, valueSize: Int) {
+            pairs += 1
+            size += textSize(key) + valueSize
+        }
+    }
+
+    /**
+     * Writes CBOR tokens into the packet.
+     */
+    internal class Writer : UploadRequestWriter {
+        private var buffer: ByteArray = EMPTY
+        private var position = 0
+
+        fun begin(buffer: ByteArray, position: Int) {
+            this.buffer = buffer
+            this.position = position
+        }
+
+        fun end(): Int = position.also { buffer = EMPTY }
+
+        override fun put(key: String, value: Int) {
+            key(key)
+            if (value >= 0) {
+                head(MAJOR_TYPE_UINT, value)
+            } else {
+                head(MAJOR_TYPE_NINT, -1 - value)
+            }
+        }
+
+        override fun put(key: String, value: Boolean) {
+            key(key)
+            buffer[position++] = (if (value) CBOR_TRUE else CBOR_FALSE).toByte()
+        }
+
+        override fun put(key: String, value: String) {
+            key(key)
+            text(value)
+        }
+
+        override fun put(key: String, value: ByteArray) {
+            key(key)
+            bytes(value, 0, value.size)
+        }
+
+        fun key(key: String) = text(key)
+
+        fun bytes(data: ByteArray, offset: Int, length: Int) {
+            head(MAJOR_TYPE_BYTES, length)
+            System.arraycopy(data, offset, buffer, position, length)
+            position += length
+        }
+
+        fun bytes(data: UploadSource, offset: Int, length: Int) {
+            head(MAJOR_TYPE_BYTES, length)
+            data.read(offset, buffer, position, length)
+            position += length
+        }
+
+        private fun text(value: String) {
+            val length = utf8Length(value)
+            head(MAJOR_TYPE_TEXT, length)
+            if (length == value.length) {
+                // ASCII only, which is the case for all keys.
+                for (c in value) {
+                    buffer[position++] = c.code.toByte()
+                }
+            } else {
+                val bytes = value.toByteArray(Charsets.UTF_8)
+                System.arraycopy(bytes, 0, buffer, position, bytes.size)
+                position += bytes.size
+            }
+        }
+
+        fun head(majorType: Int, value: Int) {
+            when {
+                value < 24 -> {
+                    buffer[position++] = (majorType or value).toByte()
+                }
+                value <= 0xFF -> {
+                    buffer[position++] = (majorType or 24).toByte()
+                    buffer[position++] = value.toByte()
+                }
+                value <= 0xFFFF -> {
+                    buffer[position++] = (majorType or 25).toByte()
+                    buffer[position++] = (value ushr 8).toByte()
+                    buffer[position++] = value.toByte()
+                }
+                else -> {
+                    buffer[position++] = (majorType or 26).toByte()
+                    buffer[position++] = (value ushr 24).toByte()
+                    buffer[position++] = (value ushr 16).toByte()
+                    buffer[position++] = (value ushr 8).toByte()
+                    buffer[position++] = value.toByte()
+                }
+            }
+        }
+
+        private companion object {
+            val EMPTY = ByteArray(0)
+        }
+    }
+}
+
+/**
+ * Returns the size of a CBOR token head (major type and argument) for the given value.
+ * Negative values are encoded as negative integers.
+ */
+internal fun headSize(value: Int): Int {
+    val n = if (value >= 0) value else -1 - value
+    return when {
+        n < 24 -> 1
+        n <= 0xFF -> 2
+        n <= 0xFFFF -> 3
+        else -> 5
+    }
+}
+
+/**
+ * Returns the size of a CBOR text string, including the head.
+ */
+internal fun textSize(value: String): Int {
+    val length = utf8Length(value)
+    return headSize(length) + length
+}
+
+private fun utf8Length(value: String): Int {
+    var length = 0
+    var i = 0
+    while (i < value.length) {
+        val c = value[i]
+        length += when {
+            c.code < 0x80 -> 1
+            c.code < 0x800 -> 2
+            Character.isHighSurrogate(c) && i + 1 < value.length -> { i++; 4 }
+            else -> 3
+        }
+        i++
+    }
+    return length
+}
@@ -7,6 +7,14 @@ class ErrorResponseException internal constructor(
     val code: McuMgrErrorCode
 ) : IllegalStateException("Request resulted in error response $code")
 
+/**
+ * Thrown when the device rejected the first chunk of a resumed upload, which is then
+ * restarted from the beginning.
+ */
+internal class ResumeRejectedException(
+    cause: Throwable
+) : IllegalStateException("Resuming upload rejected: ${cause.message}", cause)
+
 internal sealed class UploadResult {
 
     data class Response(
@@ -0,0 +1,112 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.util.Properties
+
+/**
+ * The state of an interrupted upload, saved by an [Uploader] with an [UploadSessionStore].
+ *
+ * @property key identifies the target of the upload, for example the image number or the file
+ * name, see [Uploader.sessionKey].
+ * @property size the size of the uploaded data, in bytes.
+ * @property digest the SHA-256 of the uploaded data, as a hex string.
+ * @property offset the last offset confirmed by the device.
+ * @property mtu the MTU used to split the data into chunks.
+ * @property memoryAlignment the memory alignment of the chunks.
+ */
+data class UploadSession(
+    val key: String,
+    val size: Int,
+    val digest: String,
+    val offset: Int,
+    val mtu: Int,
+    val memoryAlignment: Int,
+)
+
+/**
+ * Keeps [UploadSession]s, so that an upload interrupted by a disconnection, or by the process
+ * being killed, can be resumed.
+ *
+ * The methods are called on [Dispatchers.IO][kotlinx.coroutines.Dispatchers.IO], not on
+ * the transport thread. Sessions are saved in the background while the upload continues.
+ */
+interface UploadSessionStore {
+
+    /** Returns the session with the given key, or null if none was saved. */
+    fun load(key: String): UploadSession?
+
+    /** Saves the session, replacing one with the same key. */
+    fun save(session: UploadSession)
+
+    /** Removes the session with the given key, if any. */
+    fun remove(key: String)
+}
+
+/**
+ * An [UploadSessionStore] keeping each session in a properties file in the given directory,
+ * for example one in `Context.getNoBackupFilesDir()`.
+ *
+ * Failures to read or write the files are logged and ignored: the upload then starts from
+ * the beginning, as it would without a store.
+ */
+class FileUploadSessionStore(private val directory: File) : UploadSessionStore {
+    private val log = LoggerFactory.getLogger("FileUploadSessionStore")
+
+    @Synchronized
+    override fun load(key: String): UploadSession? {
+        val file = fileOf(key)
+        if (!file.exists()) return null
+        return try {
+            val properties = Properties()
+            file.inputStream().use { properties.load(it) }
+            UploadSession(
+                key = properties.getProperty("key"),
+                size = properties.getProperty("size").toInt(),
+                digest = properties.getProperty("digest"),
+                offset = properties.getProperty("offset").toInt(),
+                mtu = properties.getProperty("mtu").toInt(),
+                memoryAlignment = properties.getProperty("memoryAlignment").toInt(),
+            ).takeIf { it.key == key }
+        } catch (e: Exception) {
+            // IOException, or a missing or invalid property.
+            log.warn("Invalid upload session in ${file.name}: $e")
+            null
+        }
+    }
+
+    @Synchronized
+    override fun save(session: UploadSession) {
+        val properties = Properties()
+        properties.setProperty("key", session.key)
+        properties.setProperty("size", session.size.toString())
+        properties.setProperty("digest", session.digest)
+        properties.setProperty("offset", session.offset.toString())
+        properties.setProperty("mtu", session.mtu.toString())
+        properties.setProperty("memoryAlignment", session.memoryAlignment.toString())
+
+        val file = fileOf(session.key)
+        // Write to a temporary file and rename it, so that a process killed while saving
+        // leaves the previous session.
+        val temp = File(directory, file.name + ".tmp")
+        try {
+            directory.mkdirs()
+            temp.outputStream().use { properties.store(it, null) }
+            if (!temp.renameTo(file)) {
+                throw IOException("Renaming ${temp.name} failed")
+            }
+        } catch (e: IOException) {
+            log.warn("Saving upload session ${session.key} failed: $e")
+            temp.delete()
+        }
+    }
+
+    @Synchronized
+    override fun remove(key: String) {
+        fileOf(key).delete()
+    }
+
+    private fun fileOf(key: String): File =
+        File(directory, key.replace(Regex("[^A-Za-z0-9._-]"), "_") + ".properties")
+}
@@ -0,0 +1,226 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.util.DigestCache
+import java.io.Closeable
+import java.io.EOFException
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.Buffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.security.MessageDigest
+import java.security.NoSuchAlgorithmException
+import kotlin.math.min
+
+/**
+ * The data uploaded by an [Uploader].
+ *
+ * The uploader reads each chunk at the offset it needs, straight into the packet, when the
+ * request is encoded. A chunk may be read more than once, if it has to be sent again, and
+ * chunks may be read out of order. This allows uploading large images and files without
+ * holding them on the heap.
+ *
+ * The source is closed by the owner, not by the uploader, as it may be used for more than
+ * one upload.
+ */
+interface UploadSource : Closeable {
+
+    /** The size of the data, in bytes. */
+    val size: Int
+
+    /**
+     * Reads [length] bytes at the given [offset] into the [buffer].
+     *
+     * @throws IOException if the data could not be read.
+     */
+    @Throws(IOException::class)
+    fun read(offset: Int, buffer: ByteArray, bufferOffset: Int, length: Int)
+
+    override fun close() {}
+}
+
+/**
+ * An [UploadSource] reading from a byte array, or from a range of it.
+ *
+ * A range allows uploading a part of a larger array without copying, for example an integrated
+ * payload of a SUIT envelope, see
+ * [SUITEnvelope.Section.asUploadSource][no.nordicsemi.android.mcumgr.image.suit.SUITEnvelope.Section.asUploadSource].
+ *
+ * @param length the length of the data, by default till the end of the array.
+ */
+class ByteArrayUploadSource @JvmOverloads constructor(
+    /** The array holding the data. */
+    val data: ByteArray,
+    /** The offset of the data in the array. */
+    val dataOffset: Int = 0,
+    length: Int = data.size - dataOffset,
+) : UploadSource {
+    override val size: Int = length
+
+    init {
+        require(dataOffset >= 0 && length >= 0 && dataOffset + length <= data.size) {
+            "Range $dataOffset+$length out of bounds of ${data.size} bytes"
+        }
+    }
+
+    /** Whether the source covers the whole array. */
+    internal val isWholeArray: Boolean
+        get() = dataOffset == 0 && size == data.size
+
+    override fun read(offset: Int, buffer: ByteArray, bufferOffset: Int, length: Int) {
+        System.arraycopy(data, dataOffset + offset, buffer, bufferOffset, length)
+    }
+}
+
+/**
+ * An [UploadSource] reading from a memory-mapped file.
+ *
+ * The file is mapped using [FileChannel.map]. The pages are loaded by the system when read
+ * and may be reclaimed under memory pressure, so the file does not take space on the heap.
+ * The file must not be modified during the upload.
+ *
+ * @param file the file, at most 2 GB large.
+ */
+class MappedFileUploadSource(file: File) : UploadSource {
+    private val buffer: MappedByteBuffer
+
+    init {
+        RandomAccessFile(file, "r").use { raf ->
+            val length = raf.length()
+            require(length <= Int.MAX_VALUE) { "File too large: $length bytes" }
+            // The mapping remains valid after the channel is closed.
+            buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+        }
+    }
+
+    override val size: Int = buffer.capacity()
+
+    @Synchronized
+    override fun read(offset: Int, buffer: ByteArray, bufferOffset: Int, length: Int) {
+        // Cast to Buffer, as position(int) returns a ByteBuffer only since Java 9.
+        (this.buffer as Buffer).position(offset)
+        this.buffer.get(buffer, bufferOffset, length)
+    }
+}
+
+/**
+ * An [UploadSource] reading from an input stream, for example one opened from a content URI.
+ *
+ * Chunks are usually read in order, which the stream does without seeking. To read an earlier
+ * chunk the stream is closed and opened again, and skipped to the offset.
+ *
+ * @param size the size of the data, in bytes.
+ * @param opener opens a new stream at the beginning of the data.
+ */
+class StreamUploadSource(
+    override val size: Int,
+    private val opener: Opener,
+) : UploadSource {
+
+    /** Opens a new stream at the beginning of the data. */
+    fun interface Opener {
+        @Throws(IOException::class)
+        fun open(): InputStream
+    }
+
+    private var stream: InputStream? = null
+    private var position = 0
+
+    @Synchronized
+    override fun read(offset: Int, buffer: ByteArray, bufferOffset: Int, length: Int) {
+        try {
+            val stream = seek(offset)
+            var read = 0
+            while (read < length) {
+                val n = stream.read(buffer, bufferOffset + read, length - read)
+                if (n < 0) {
+                    throw EOFException("End of stream at ${position + read}, expected $size bytes")
+                }
+                read += n
+            }
+            position += length
+        } catch (e: IOException) {
+            // The position is not known, the stream will be opened again.
+            try {
+                close()
+            } catch (_: IOException) {
+            }
+            throw e
+        }
+    }
+
+    private fun seek(offset: Int): InputStream {
+        var stream = stream
+        if (stream == null || offset < position) {
+            stream?.close()
+            stream = opener.open()
+            this.stream = stream
+            position = 0
+        }
+        while (position < offset) {
+            val skipped = stream.skip((offset - position).toLong())
+            if (skipped > 0) {
+                position += skipped.toInt()
+            } else if (stream.read() >= 0) {
+                // skip() may return 0 before the end of the stream.
+                position++
+            } else {
+                throw EOFException("End of stream at $position, expected $size bytes")
+            }
+        }
+        return stream
+    }
+
+    @Synchronized
+    override fun close() {
+        stream?.close()
+        stream = null
+        position = 0
+    }
+}
+
+/**
+ * Returns the SHA-256 of the data, computed once per data, see [DigestCache].
+ *
+ * @return The digest, or null if SHA-256 is not supported.
+ * @throws McuMgrException if the data could not be read.
+ */
+@Throws(McuMgrException::class)
+internal fun UploadSource.sha256(): ByteArray? =
+    DigestCache.sha256(digestKey) { computeSha256(this) }
+
+/**
+ * Starts computing the SHA-256 of the data in the background.
+ */
+internal fun UploadSource.prefetchSha256() =
+    DigestCache.prefetch(digestKey) { computeSha256(this) }
+
+/** Digests of byte arrays are shared by all sources of the whole array. */
+private val UploadSource.digestKey: Any
+    get() = if (this is ByteArrayUploadSource && isWholeArray) data else this
+
+private fun computeSha256(source: UploadSource): ByteArray? {
+    return try {
+        val digest = MessageDigest.getInstance("SHA-256")
+        if (source is ByteArrayUploadSource) {
+            digest.update(source.data, source.dataOffset, source.size)
+            digest.digest()
+        } else {
+            // Read the source in blocks, as it may not fit in memory.
+            val buffer = ByteArray(min(source.size, 64 * 1024))
+            var offset = 0
+            while (offset < source.size) {
+                val length = min(buffer.size, source.size - offset)
+                source.read(offset, buffer, 0, length)
+                digest.update(buffer, 0, length)
+                offset += length
+            }
+            digest.digest()
+        }
+    } catch (e: NoSuchAlgorithmException) {
+        null
+    }
+}
@@ -4,70 +4,88 @@ import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CoroutineExceptionHandler
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.DelicateCoroutinesApi
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.GlobalScope
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.channels.BufferOverflow
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.Channel.Factory.CONFLATED
 import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.launchIn
 import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.selects.select
+import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
 import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings
 import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.util.ByteUtil
 import no.nordicsemi.android.mcumgr.util.CBOR
 import org.slf4j.LoggerFactory
 import java.security.DigestException
+import kotlin.coroutines.resume
+import kotlin.math.max
 import kotlin.math.min
 
 const val MAX_CHUNK_FAILURES = 5
 
+/** The upload session is saved each time this many bytes more have been confirmed. */
+private const val SESSION_SAVE_INTERVAL = 64 * 1024
+
 data class UploadProgress(
     val offset: Int,
     val size: Int,
     val timestamp: Long = System.currentTimeMillis()
 )
 
-private data class Chunk(val data: ByteArray, val offset: Int, val isLast: Boolean) {
-    override fun toString(): String {
-        return "Chunk(offset=$offset, size=${data.size})"
-    }
-
-    override fun equals(other: Any?): Boolean {
-        if (this === other) return true
-        if (javaClass != other?.javaClass) return false
-
-        other as Chunk
-
-        if (!data.contentEquals(other.data)) return false
-        if (offset != other.offset) return false
-
-        return true
-    }
-
-    override fun hashCode(): Int {
-        var result = data.contentHashCode()
-        result = 31 * result + offset
-        return result
-    }
+/**
+ * A chunk of the uploaded data, given as a range of the [UploadSource].
+ *
+ * The bytes are not read when the chunk is created. They are read once, straight into
+ * the packet, when the request is encoded, also when the chunk is sent again.
+ */
+internal data class Chunk(val offset: Int, val length: Int, val isLast: Boolean) {
+    /** The offset of the data following this chunk. */
+    val end: Int
+        get() = offset + length
 }
 
+/**
+ * Uploads data to the device in chunks.
+ *
+ * The window capacity and memory alignment may be [FirmwareUpgradeSettings.AUTO]. They are then
+ * resolved when the upload starts, from the SMP buffer count reported by the transport, in the
+ * same way as [FirmwareUpgradeSettings.getWindowCapacity] and
+ * [FirmwareUpgradeSettings.getMemoryAlignment] do.
+ */
 abstract class Uploader(
-    private val data: ByteArray,
-    private val windowCapacity: Int,
-    private val memoryAlignment: Int,
+    private val source: UploadSource,
+    private val requestedWindowCapacity: Int,
+    private val requestedMemoryAlignment: Int,
     internal var mtu: Int,
     private val protocol: McuMgrScheme
 ) {
+    constructor(
+        data: ByteArray,
+        windowCapacity: Int,
+        memoryAlignment: Int,
+        mtu: Int,
+        protocol: McuMgrScheme
+    ) : this(ByteArrayUploadSource(data), windowCapacity, memoryAlignment, mtu, protocol)
+
     private val log = LoggerFactory.getLogger("Uploader")
 
     private val _progress: MutableSharedFlow<UploadProgress> = MutableSharedFlow(
@@ -76,12 +94,70 @@ abstract class Uploader(
         onBufferOverflow = BufferOverflow.DROP_OLDEST
     )
     private var currentOffset = 0
+    private var savedOffset = 0
 
     val progress: Flow<UploadProgress> = _progress
+
+    /** The window capacity, resolved when the upload starts. */
+    private var windowCapacity = max(1, requestedWindowCapacity)
+
+    /** The memory alignment, resolved when the upload starts. */
+    private var memoryAlignment = max(1, requestedMemoryAlignment)
+
+    private val _windowSize = MutableStateFlow(windowCapacity)
+
+    /**
+     * The number of requests which may be in flight, at most the window capacity.
+     * With [adaptiveWindow] it changes during the upload.
+     */
+    val windowSize: StateFlow<Int> = _windowSize
+
+    /**
+     * Whether the window adapts to the link, see [CongestionWindow]. Instead of keeping the
+     * window capacity of requests in flight, the window starts with 1, grows when requests are
+     * acknowledged and is halved when a request or its response is lost.
+     *
+     * Set before the upload starts. Defaults to false.
+     */
+    var adaptiveWindow: Boolean = false
+
+    /**
+     * Keeps the [UploadSession] of this upload, if the uploader has a [sessionKey].
+     *
+     * The session is saved as the device confirms the data, and when the upload fails
+     * due to a transport error. An upload of the same data to the same target, also by another
+     * process, continues from the last confirmed offset, instead of sending all data again.
+     * The session is removed when the upload completes. Sessions are identified by the target
+     * only, so use a separate store for each device.
+     *
+     * Set before the upload starts. Defaults to null, no session is kept.
+     */
+    var sessionStore: UploadSessionStore? = null
+
+    /**
+     * The number of times the upload is resumed after a transport error, like a disconnection
+     * or a timeout of a chunk sent [MAX_CHUNK_FAILURES] times. Before resuming, the uploader
+     * waits for [resumeDelay] and reconnects the transport.
+     *
+     * Set before the upload starts. Defaults to 0, the upload fails on the first error.
+     */
+    var resumeAttempts: Int = 0
+
+    /**
+     * The delay before reconnecting and resuming the upload, in milliseconds.
+     */
+    var resumeDelay: Long = 1000L
+
     private val resumed = Semaphore(1)
 
+    /**
+     * The encoder used to build upload packets for the BLE scheme.
+     */
+    internal abstract val encoder: UploadPacketEncoder
+
     /**
      * This method should send the request with given parameters.
+     * It is used for CoAP schemes.
      */
     @Throws
     internal abstract fun write(
@@ -90,28 +166,194 @@ abstract class Uploader(
         callback: (UploadResult) -> Unit
     )
 
+    /**
+     * This method should send the given SMP packet, created using the [encoder].
+     */
+    @Throws
+    internal abstract fun write(
+        packet: ByteArray,
+        timeout: Long,
+        callback: (UploadResult) -> Unit
+    )
+
+    /**
+     * The transport used by the manager, notified when the upload starts and finishes.
+     */
+    internal open val transport: McuMgrTransport?
+        get() = null
+
+    /**
+     * Identifies the target of the upload in the [sessionStore], or null if the upload
+     * cannot be resumed.
+     */
+    internal open val sessionKey: String?
+        get() = null
+
+    /**
+     * Whether the device resumes the upload on its own, when the upload is sent again from
+     * the beginning. The device then responds to the first chunk with the offset it has, and
+     * the upload continues from there.
+     *
+     * Otherwise, the upload is resumed by sending the chunk at the saved offset. If the device
+     * rejects it, for example because it has been reset, the upload starts from the beginning.
+     */
+    internal open val resumesFromDevice: Boolean
+        get() = false
+
     /**
      * Uploads the data.
      */
     @Throws
-    suspend fun upload() = coroutineScope {
+    suspend fun upload() {
+        transport?.let { transport ->
+            // The buffer count is known only when the transport is connected.
+            windowCapacity = FirmwareUpgradeSettings.resolveWindowCapacity(requestedWindowCapacity, transport)
+            memoryAlignment = FirmwareUpgradeSettings.resolveMemoryAlignment(requestedMemoryAlignment, windowCapacity)
+        }
+        transport?.onTransferStarted()
+        try {
+            uploadResuming()
+        } finally {
+            transport?.onTransferFinished()
+        }
+    }
+
+    private suspend fun uploadResuming() {
+        val store = sessionStore
+        var start = if (store != null) withContext(Dispatchers.IO) { restoreSession() } else 0
+        var attempts = 0
+        while (true) {
+            try {
+                uploadChunks(start)
+                val key = sessionKey
+                if (store != null && key != null) {
+                    withContext(Dispatchers.IO) { store.remove(key) }
+                }
+                return
+            } catch (e: Exception) {
+                if (e is ResumeRejectedException) {
+                    log.warn("Resuming upload at offset $start rejected: ${e.cause?.message}, starting from the beginning")
+                    start = 0
+                    continue
+                }
+                if (e !is McuMgrException || e is McuMgrErrorException || e is InsufficientMtuException) {
+                    throw e
+                }
+                if (store != null) {
+                    val offset = currentOffset
+                    withContext(Dispatchers.IO) { saveSession(offset) }
+                }
+                if (attempts >= resumeAttempts) {
+                    throw e
+                }
+                attempts++
+                log.warn("Upload interrupted at offset $currentOffset: ${e.message}, resuming (attempt $attempts of $resumeAttempts)")
+                delay(resumeDelay)
+                reconnect()
+                start = if (resumesFromDevice) 0 else currentOffset
+            }
+        }
+    }
+
+    /**
+     * Returns the offset to start the upload at, restored from the [sessionStore].
+     * Reading the session and computing the digest may block, so call it on [Dispatchers.IO].
+     */
+    private fun restoreSession(): Int {
+        val store = sessionStore ?: return 0
+        val key = sessionKey ?: return 0
+        val session = store.load(key) ?: return 0
+        if (session.size != source.size || session.digest != digest()) {
+            // Another data was uploaded to the target.
+            store.remove(key)
+            return 0
+        }
+        if (resumesFromDevice) {
+            return 0
+        }
+        // Resume only with the same chunking. The current MTU is kept, as the session may
+        // have been saved with a lower one, for example before the MTU exchange.
+        if (session.mtu != mtu || session.memoryAlignment != memoryAlignment) {
+            log.info("Upload session $key saved with different chunking, starting from the beginning")
+            return 0
+        }
+        log.info("Restored upload session $key at offset ${session.offset}")
+        return session.offset
+    }
+
+    /**
+     * Saves the session with the given offset. Writing the session and computing the digest
+     * may block, so call it on [Dispatchers.IO].
+     */
+    private fun saveSession(offset: Int) {
+        val store = sessionStore ?: return
+        val key = sessionKey ?: return
+        val digest = digest() ?: return
+        store.save(UploadSession(key, source.size, digest, offset, mtu, memoryAlignment))
+    }
+
+    private fun digest(): String? =
+        source.sha256()?.let { ByteUtil.byteArrayToHex(it, "%02x") }
+
+    private suspend fun reconnect() {
+        val transport = transport ?: return
+        suspendCancellableCoroutine { continuation ->
+            transport.connect(object : McuMgrTransport.ConnectionCallback {
+                override fun onConnected() = done()
+
+                // The transport connects when the next request is sent.
+                override fun onDeferred() = done()
+
+                override fun onError(t: Throwable) {
+                    // The upload will fail again and the next attempt will be made.
+                    log.warn("Reconnecting failed: ${t.message}")
+                    done()
+                }
+
+                private fun done() {
+                    if (continuation.isActive) {
+                        continuation.resume(Unit)
+                    }
+                }
+            })
+        }
+    }
+
+    private suspend fun uploadChunks(start: Int) = coroutineScope {
         // Tracks the number of failures experienced for any given chunk,
         // identified by the offset.
         val failureDirectory = mutableMapOf<Int, Int>()
         val failureDirectoryMutex = Mutex()
 
         // Bounds number of in-progress requests within window capacity.
-        val window = Semaphore(windowCapacity)
+        val window = CongestionWindow(windowCapacity, adaptiveWindow, _windowSize)
 
         val next: Channel<Chunk> = Channel(CONFLATED)
         val failures: Channel<Chunk> = Channel(CONFLATED)
         val close: Channel<Unit> = Channel(CONFLATED)
 
+        currentOffset = start
+        savedOffset = start
+
+        // Sessions are saved in the background, so that writing them does not stall the
+        // pipeline. Only the latest offset is saved.
+        val saves: Channel<Int> = Channel(CONFLATED)
+        if (sessionStore != null) {
+            launch(Dispatchers.IO) {
+                for (offset in saves) saveSession(offset)
+            }
+        }
+
         val initialTimestamp = System.currentTimeMillis()
-        next.send(newChunk(0))
+        next.send(newChunk(start))
 
         while (true) {
-            window.acquire()
+            val sequence = window.acquire()
+
+            if (sessionStore != null && currentOffset - savedOffset >= SESSION_SAVE_INTERVAL) {
+                savedOffset = currentOffset
+                saves.trySend(savedOffset)
+            }
 
             // Try acquiring resumed lock. If worked, release it immediately.
             resumed.acquire()
@@ -124,14 +366,14 @@ abstract class Uploader(
                 close.onReceive { null }
             } ?: break
 
-            val nextChunk = writeInternal(chunk, resend, this) { result ->
+            val nextChunk = writeInternal(chunk, resend, chunk.offset == start, this) { result ->
                 result.onSuccess { response ->
-                    if (!resend && response.off < chunk.offset + chunk.data.size) {
+                    if (!resend && response.off < chunk.end) {
                         // An unexpected offset means that the message was
                         // somehow lost or the device could not accept the
                         // chunk. We need to resend the chunk at the offset
                         // requested by the device.
-                        log.warn("Chunk with offset ${chunk.offset} has been lost (expected offset=${chunk.offset + chunk.data.size}, received=${response.off})")
+                        log.warn("Chunk with offset ${chunk.offset} has been lost (expected offset=${chunk.end}, received=${response.off})")
                         val fails = failureDirectoryMutex.withLock {
                             val fails = (failureDirectory[chunk.offset] ?: 0) + 1
                             failureDirectory[chunk.offset] = fails
@@ -140,21 +382,30 @@ abstract class Uploader(
                         if (fails >= MAX_CHUNK_FAILURES) {
                             throw McuMgrException("Chunk with offset ${chunk.offset} has not been acknowledged too many times")
                         }
+                        window.onLoss(sequence)
                         failures.send(newChunk(response.off))
                     } else {
+                        window.onAck()
                         // Success, update the progress.
-                        if (chunk.offset == 0 && response.off == chunk.data.size) {
-                            _progress.tryEmit(UploadProgress(0, data.size, initialTimestamp))
+                        if (chunk.offset == 0 && response.off == chunk.length) {
+                            _progress.tryEmit(UploadProgress(0, source.size, initialTimestamp))
                         }
                         if (currentOffset < response.off) {
-                            _progress.tryEmit(UploadProgress(response.off, data.size))
+                            _progress.tryEmit(UploadProgress(response.off, source.size))
                             currentOffset = response.off
                         }
-                        if (response.off == data.size) {
+                        if (response.off == source.size) {
                             close.send(Unit)
                         }
                     }
                 }.onErrorOrFailure { failure ->
+                    // The device did not accept resuming the upload. It will be restarted
+                    // from the beginning.
+                    if (start > 0 && chunk.offset == start &&
+                        (failure is ErrorResponseException || failure is McuMgrErrorException)) {
+                        throw ResumeRejectedException(failure)
+                    }
+
                     // If a non-success response was returned abort sending the file.
                     if (failure is McuMgrErrorException) {
                         throw failure
@@ -200,19 +451,21 @@ abstract class Uploader(
                     if (fails >= MAX_CHUNK_FAILURES) {
                         throw failure
                     }
+                    window.onLoss(sequence)
                     failures.send(newChunk(chunk.offset))
                 }
 
-                // Release the semaphore.
+                // Release the window.
                 window.release()
             }
 
             // Only send the next chunk if the we still have more data to upload.
-            if (nextChunk.offset < data.size) {
+            if (nextChunk.offset < source.size) {
                 next.send(nextChunk)
             }
         }
         window.release()
+        saves.close()
     }
 
     /**
@@ -235,7 +488,7 @@ abstract class Uploader(
                 )
             }.launchIn(this)
 
-            val size = data.size
+            val size = source.size
             val start = System.currentTimeMillis()
             uploadCatchMtu()
             val duration = System.currentTimeMillis() - start
@@ -300,22 +553,23 @@ abstract class Uploader(
     private suspend fun writeInternal(
         chunk: Chunk,
         resend: Boolean,
+        initial: Boolean,
         scope: CoroutineScope,
         callback: suspend (UploadResult) -> Unit
     ): Chunk {
         val resultChannel: Channel<UploadResult> = Channel(1)
-        val timeout = when {
-            // Timeout for the initial chunk is long, as the device may need to erase the flash.
-            chunk.offset == 0 -> 40_000L
-            // Also, the last chunk may take a while to process, so we give it more time as well.
-            chunk.isLast -> 20_000L
-            else -> 2_500L
-        }
-        write(prepareWrite(chunk.data, chunk.offset), timeout) { result ->
-            resultChannel.trySend(result)
+        val timeout = getTimeout(chunk)
+        if (protocol.isCoap) {
+            write(prepareWrite(chunk), timeout) { result ->
+                resultChannel.trySend(result)
+            }
+        } else {
+            write(preparePacket(chunk), timeout) { result ->
+                resultChannel.trySend(result)
+            }
         }
 
-        return if (chunk.offset == 0) {
+        return if (initial) {
             // Send the first chunk synchronously, to get the last offset.
             val result = resultChannel.receive()
             callback(result)
@@ -350,33 +604,57 @@ abstract class Uploader(
         }
     }
 
-    private fun newChunk(offset: Int): Chunk {
+    internal open fun getTimeout(chunk: Chunk): Long = when {
+        // Timeout for the initial chunk is long, as the device may need to erase the flash.
+        chunk.offset == 0 -> 40_000L
+        // Also, the last chunk may take a while to process, so we give it more time as well.
+        chunk.isLast -> 20_000L
+        else -> 2_500L
+    }
+
+    internal fun newChunk(offset: Int): Chunk {
         // SMP pipelining may require data to be aligned to some number of bytes.
         // In Zephyr, since https://github.com/zephyrproject-rtos/zephyr/pull/41959 has been merged
         // this is not required, but memory aligning here makes even older devices to work.
         val maxChunkSize = getMaxChunkSize(offset)
         val alignedSize =
-            if (offset + maxChunkSize < data.size) maxChunkSize / memoryAlignment * memoryAlignment else maxChunkSize
-        val chunkData = data.copyOfRange(offset, offset + alignedSize)
-        val isLast = offset + alignedSize >= data.size
-        return Chunk(chunkData, offset, isLast)
+            if (offset + maxChunkSize < source.size) maxChunkSize / memoryAlignment * memoryAlignment else maxChunkSize
+        val isLast = offset + alignedSize >= source.size
+        return Chunk(offset, alignedSize, isLast)
     }
 
     private fun nextChunk(chunk: Chunk): Chunk {
-        return newChunk(chunk.offset + chunk.data.size)
+        return newChunk(chunk.end)
     }
 
-    private fun prepareWrite(
-        data: ByteArray,
-        offset: Int,
+    /**
+     * Returns the request map for CoAP schemes. The map holds a copy of the chunk, as it is
+     * serialized by [McuManager.buildPacket][no.nordicsemi.android.mcumgr.McuManager.buildPacket].
+     */
+    internal fun prepareWrite(
+        chunk: Chunk,
     ): Map<String, Any> = mutableMapOf<String, Any>(
-        "data" to data,
-        "off" to offset
+        "data" to ByteArray(chunk.length).also { source.read(chunk.offset, it, 0, chunk.length) },
+        "off" to chunk.offset
     ).also {
-        if (offset == 0) {
-            it["len"] = this.data.size // NOT data.size, as data is just a chunk of this.data
+        if (chunk.offset == 0) {
+            it["len"] = source.size
         }
-        getAdditionalData(this.data, offset, it)
+        getAdditionalData(source, chunk.offset, MapRequestWriter(it))
+    }
+
+    /**
+     * Returns the SMP packet for the BLE scheme, with the chunk read straight from the source.
+     */
+    internal fun preparePacket(
+        chunk: Chunk,
+    ): ByteArray = encoder.encode(
+        source, chunk.offset, chunk.length,
+        chunk.offset,
+        // "len" is sent only in the first packet.
+        if (chunk.offset == 0) source.size else -1,
+    ) { writer ->
+        getAdditionalData(source, chunk.offset, writer)
     }
 
     /**
@@ -385,10 +663,10 @@ abstract class Uploader(
      *
      * This calculation is optimal, and takes into account the transport scheme and size of data and
      * offset since CBOR will make the integers as efficient as possible. In order to avoid an index
-     * out of bounds on the last chunk, if the calculated chunk size is greater than data.size -
+     * out of bounds on the last chunk, if the calculated chunk size is greater than source.size -
      * offset, then the latter value is returned.
      */
-    private fun getMaxChunkSize(offset: Int): Int {
+    internal fun getMaxChunkSize(offset: Int): Int {
         // The size of the header is based on the scheme. CoAP scheme is larger because there are
         // 4 additional bytes of CBOR.
         val headerSize = when (protocol) {
@@ -408,7 +686,7 @@ abstract class Uploader(
         // Size of the string "len" plus the length of the data size integer
         // "len" is sent only in the initial packet.
         val lengthSize = if (offset == 0) {
-            CBOR.stringLength("len") + CBOR.uintLength(data.size)
+            CBOR.stringLength("len") + CBOR.uintLength(source.size)
         } else {
             0
         }
@@ -427,17 +705,20 @@ abstract class Uploader(
 
         // Final data chunk size
         val maxChunkSize = mtu - combinedSize - maxDataUIntTokenSize
-        return min(maxChunkSize, data.size - offset)
+        return min(maxChunkSize, source.size - offset)
     }
 
     /**
-     * This method should add additional parameters to the map.
+     * This method should add additional parameters to the request.
      * The "data", "len" and "off" parameters are already added.
+     *
+     * For the BLE scheme this method is called twice for each packet: first to calculate the size
+     * of the packet, and then to encode it, so it should not do any expensive calculations.
      */
     internal open fun getAdditionalData(
-        data: ByteArray,
+        source: UploadSource,
         offset: Int,
-        map: MutableMap<String, Any>
+        writer: UploadRequestWriter
     ) {
         // Empty default implementation.
     }
@@ -0,0 +1,64 @@
+package no.nordicsemi.android.mcumgr.transport
+
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+
+/**
+ * Base class of transports, implementing the synchronous [send] using the asynchronous one,
+ * and keeping the connection observers.
+ */
+abstract class AbstractMcuMgrTransport : McuMgrTransport {
+
+    private val observers = CopyOnWriteArrayList<McuMgrTransport.ConnectionObserver>()
+
+    override fun <T : McuMgrResponse> send(payload: ByteArray, timeout: Long, responseType: Class<T>): T {
+        val latch = CountDownLatch(1)
+        var result: T? = null
+        var error: McuMgrException? = null
+        send(payload, timeout, responseType, object : McuMgrCallback<T> {
+            override fun onResponse(response: T) {
+                result = response
+                latch.countDown()
+            }
+
+            override fun onError(e: McuMgrException) {
+                error = e
+                latch.countDown()
+            }
+        })
+        try {
+            latch.await()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw McuMgrException(e)
+        }
+        error?.let { throw it }
+        return result!!
+    }
+
+    override fun addObserver(observer: McuMgrTransport.ConnectionObserver) {
+        observers.add(observer)
+    }
+
+    override fun removeObserver(observer: McuMgrTransport.ConnectionObserver) {
+        observers.remove(observer)
+    }
+
+    /**
+     * Notifies the observers that the device got connected.
+     */
+    protected fun notifyConnected() {
+        observers.forEach { it.onConnected() }
+    }
+
+    /**
+     * Notifies the observers that the device got disconnected.
+     */
+    protected fun notifyDisconnected() {
+        observers.forEach { it.onDisconnected() }
+    }
+}
@@ -0,0 +1,134 @@
+package no.nordicsemi.android.mcumgr.transport
+
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import java.io.IOException
+import java.util.concurrent.Executor
+
+/**
+ * Base class of transports opening a [Connection] to the device, served by threads of its own.
+ *
+ * The connection is opened by [connect], or with the first request, and closed by [release],
+ * or when it fails. Subclasses implement only the framing and the I/O of the connection,
+ * usually matching responses to requests using a [McuMgrTransactionTable].
+ *
+ * @param callbackExecutor The executor to call callbacks on, or null to call them on
+ * the threads of the connection.
+ */
+abstract class McuMgrConnectionTransport(
+    private val callbackExecutor: Executor?,
+) : AbstractMcuMgrTransport() {
+
+    /**
+     * An open connection to the device.
+     */
+    interface Connection {
+        /**
+         * Starts the threads of the connection.
+         */
+        fun start()
+
+        /**
+         * Sends the request of the transaction, and completes it when the response is
+         * received, or on failure. Called from any thread.
+         *
+         * If the connection has been closed, the transaction must fail.
+         */
+        fun enqueue(transaction: McuMgrTransaction<*>)
+
+        /**
+         * Closes the connection. When closed, the connection fails all pending transactions
+         * and calls [onClosed].
+         */
+        fun close()
+    }
+
+    private val lock = Any()
+    @Volatile
+    private var connection: Connection? = null
+
+    /**
+     * The maximum length of a request, in bytes. Longer requests fail with
+     * [InsufficientMtuException].
+     */
+    protected abstract val maxPacketLength: Int
+
+    /**
+     * Opens a new connection. Its threads are started afterwards using [Connection.start].
+     * Called with a lock held, only when no connection is open.
+     */
+    @Throws(IOException::class)
+    protected abstract fun openConnection(): Connection
+
+    override fun <T : McuMgrResponse> send(
+        payload: ByteArray,
+        timeout: Long,
+        responseType: Class<T>,
+        callback: McuMgrCallback<T>
+    ) {
+        val transaction = McuMgrTransaction(payload, timeout, scheme, responseType, callback, callbackExecutor)
+        val maxPacketLength = maxPacketLength
+        if (payload.size > maxPacketLength) {
+            transaction.onError(InsufficientMtuException(payload.size, maxPacketLength))
+            return
+        }
+        if (payload.size < McuMgrHeader.HEADER_LENGTH) {
+            transaction.onError(McuMgrException("Invalid packet"))
+            return
+        }
+        val connection = try {
+            open()
+        } catch (e: IOException) {
+            transaction.onError(McuMgrException(e))
+            return
+        }
+        connection.enqueue(transaction)
+    }
+
+    override fun connect(callback: McuMgrTransport.ConnectionCallback?) {
+        try {
+            open()
+            callback?.onConnected()
+        } catch (e: IOException) {
+            callback?.onError(e)
+        }
+    }
+
+    override fun release() {
+        synchronized(lock) {
+            connection?.close()
+        }
+    }
+
+    /**
+     * Called by the connection when it has been closed.
+     */
+    protected fun onClosed(closed: Connection) {
+        synchronized(lock) {
+            if (connection !== closed) return
+            connection = null
+        }
+        notifyDisconnected()
+    }
+
+    /**
+     * Returns the open connection, opening a new one if needed.
+     */
+    @Throws(IOException::class)
+    private fun open(): Connection {
+        connection?.let { return it }
+        val connection = synchronized(lock) {
+            connection?.let { return it }
+            openConnection().also {
+                connection = it
+                it.start()
+            }
+        }
+        notifyConnected()
+        return connection
+    }
+}
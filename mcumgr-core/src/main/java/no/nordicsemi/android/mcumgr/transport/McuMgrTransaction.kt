@@ -0,0 +1,65 @@
+package no.nordicsemi.android.mcumgr.transport
+
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import java.util.concurrent.Executor
+
+/**
+ * A request sent using a transport, with the callback to notify when its response is received,
+ * or when it fails.
+ *
+ * The transaction must be completed only once, using [onResponse] or [onError]. Transports
+ * keeping transactions in a [McuMgrTransactionTable] complete those removed from the table.
+ *
+ * @property packet The request packet. The sequence number is written into it when sent.
+ * @property timeout The timeout for receiving the response, in milliseconds.
+ * @param scheme The scheme used to build the response.
+ * @param callbackExecutor The executor to call the callback on, or null to call it on
+ * the thread completing the transaction.
+ */
+class McuMgrTransaction<T : McuMgrResponse>(
+    val packet: ByteArray,
+    val timeout: Long,
+    private val scheme: McuMgrScheme,
+    private val responseType: Class<T>,
+    private val callback: McuMgrCallback<T>,
+    private val callbackExecutor: Executor? = null,
+) {
+    /**
+     * Time, in milliseconds, at which the transaction times out, see
+     * [McuMgrTransactionTable.expire]. Set by the transport when the request is sent.
+     */
+    var deadline = Long.MAX_VALUE
+
+    /**
+     * Builds the response from the first [length] bytes of [data] and notifies the callback.
+     * The array must not be modified afterwards if it is not longer than the response.
+     */
+    fun onResponse(data: ByteArray, length: Int = data.size) {
+        val error = try {
+            val response = McuMgrResponse.buildResponse(scheme, data, length, responseType)
+            if (response.isSuccess) {
+                deliver { callback.onResponse(response) }
+                return
+            }
+            McuMgrErrorException(response)
+        } catch (e: Exception) {
+            McuMgrException(e)
+        }
+        onError(error)
+    }
+
+    fun onError(e: McuMgrException) {
+        deliver { callback.onError(e) }
+    }
+
+    private inline fun deliver(crossinline action: () -> Unit) {
+        when (callbackExecutor) {
+            null -> action()
+            else -> callbackExecutor.execute { action() }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package no.nordicsemi.android.mcumgr.transport
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Transactions waiting for a response, indexed by the sequence number of their requests,
+ * so that responses can be matched to requests while multiple requests are in flight.
+ *
+ * Sequence numbers are assigned by [add], which must be called from a single thread.
+ * The other methods may be called from any thread. Each transaction is removed from the table
+ * by exactly one of them, which completes it.
+ */
+class McuMgrTransactionTable {
+
+    companion object {
+        /** The number of SMP sequence numbers. */
+        const val SIZE = 256
+    }
+
+    private val transactions = AtomicReferenceArray<McuMgrTransaction<*>?>(SIZE)
+
+    /** Accessed only on the thread calling [add]. */
+    private var sequenceNumber = 0
+
+    /**
+     * Assigns the next sequence number to the transaction, writes it into the request and adds
+     * the transaction to the table.
+     *
+     * @return The transaction with the same sequence number which was still waiting for
+     * a response, or null. It has been failed.
+     */
+    fun add(transaction: McuMgrTransaction<*>): McuMgrTransaction<*>? {
+        val sequenceNumber = sequenceNumber
+        this.sequenceNumber = (sequenceNumber + 1) % SIZE
+        transaction.packet[6] = sequenceNumber.toByte()
+        return transactions.getAndSet(sequenceNumber, transaction)?.also {
+            it.onError(McuMgrException("Transaction $sequenceNumber has been overwritten"))
+        }
+    }
+
+    /**
+     * Completes the transaction the response in the first [length] bytes of [data] belongs to.
+     * Packets too short to have a header, or not matching any transaction, are ignored.
+     */
+    fun onResponse(data: ByteArray, length: Int = data.size) {
+        if (length < McuMgrHeader.HEADER_LENGTH) {
+            return
+        }
+        val sequenceNumber = data[6].toInt() and 0xFF
+        transactions.getAndSet(sequenceNumber, null)?.onResponse(data, length)
+    }
+
+    /**
+     * Fails the transactions which timed out at the given time, see
+     * [McuMgrTransaction.deadline].
+     *
+     * @param now The current time, in milliseconds.
+     * @param onExpired Called with each transaction which timed out, after it has been failed.
+     * @return The time to wait until the next deadline, in milliseconds, at least 1,
+     * or [Long.MAX_VALUE] if no transaction is waiting for a response.
+     */
+    fun expire(now: Long, onExpired: ((McuMgrTransaction<*>) -> Unit)? = null): Long {
+        var deadline = Long.MAX_VALUE
+        for (i in 0 until SIZE) {
+            val transaction = transactions.get(i) ?: continue
+            if (transaction.deadline > now) {
+                deadline = minOf(deadline, transaction.deadline)
+            } else if (transactions.compareAndSet(i, transaction, null)) {
+                transaction.onError(McuMgrTimeoutException())
+                onExpired?.invoke(transaction)
+            }
+        }
+        return if (deadline == Long.MAX_VALUE) Long.MAX_VALUE else maxOf(1, deadline - now)
+    }
+
+    /**
+     * Fails all transactions with the given reason.
+     */
+    fun failAll(reason: McuMgrException) {
+        for (i in 0 until SIZE) {
+            transactions.getAndSet(i, null)?.onError(reason)
+        }
+    }
+}
@@ -210,8 +210,8 @@ public class ByteUtil {
 
     @NotNull
     public static String byteArrayToHex(byte @NotNull [] a, int offset, int length, String format) {
-        StringBuilder sb = new StringBuilder(a.length * 2);
-        for (int i = offset; i < length; i++) {
+        StringBuilder sb = new StringBuilder(length * 2);
+        for (int i = offset; i < offset + length; i++) {
             sb.append(String.format(format, a[i]));
         }
         return sb.toString();
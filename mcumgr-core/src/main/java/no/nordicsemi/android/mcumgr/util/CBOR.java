@@ -6,8 +6,12 @@
 
 package no.nordicsemi.android.mcumgr.util;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
@@ -17,13 +21,36 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import no.nordicsemi.android.mcumgr.decoder.Decoder;
+import no.nordicsemi.android.mcumgr.decoder.Decoders;
 
 @SuppressWarnings("unused")
 public class CBOR {
     private final static CBORFactory sFactory = new CanonicalCBORFactory();
 
-    public static byte[] toBytes(Object obj) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
+    /**
+     * A single mapper shared by all calls.
+     * <p>
+     * An {@link ObjectMapper} is thread-safe once configured and caches serializers and
+     * deserializers for every type it has seen, so reusing it avoids repeating the introspection
+     * for each packet. Output buffers are recycled by the factory, per thread.
+     */
+    private final static ObjectMapper sMapper = createMapper();
+    private final static ObjectWriter sWriter = sMapper.writer();
+    private final static ObjectReader sTreeReader = sMapper.reader();
+    private final static ObjectReader sStringMapReader =
+            sMapper.readerFor(new TypeReference<HashMap<String, String>>() {});
+    private final static ObjectReader sObjectMapReader =
+            sMapper.readerFor(new TypeReference<HashMap<String, Object>>() {});
+
+    /** Readers for response types, created on first use. */
+    private final static Map<Class<?>, ObjectReader> sReaders = new ConcurrentHashMap<>();
+
+    @NotNull
+    private static ObjectMapper createMapper() {
+        final ObjectMapper mapper = new ObjectMapper(sFactory);
 
         // Add canonical serializer for maps. This one will be used instead
         // of the default one.
@@ -32,55 +59,153 @@ public class CBOR {
         mapper.registerModule(module);
         // TODO: Similar could be added for arrays, but they aren't used.
 
-        return mapper.writeValueAsBytes(obj);
+        return mapper;
+    }
+
+    /**
+     * Returns a cached reader for the given type.
+     */
+    @NotNull
+    private static ObjectReader readerFor(@NotNull Class<?> type) {
+        ObjectReader reader = sReaders.get(type);
+        if (reader == null) {
+            reader = sMapper.readerFor(type);
+            final ObjectReader existing = sReaders.putIfAbsent(type, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
+    public static byte[] toBytes(Object obj) throws IOException {
+        return sWriter.writeValueAsBytes(obj);
     }
 
     public static <T> T toObject(byte[] data, Class<T> type) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        return mapper.readValue(data, type);
+        return toObject(data, 0, data.length, type);
+    }
+
+    /**
+     * Decodes the part of the given array, starting at the offset, into an object of given type.
+     * This allows to decode the payload of a packet without copying it.
+     * <p>
+     * If a decoder was generated for the type, it is used instead of Jackson data binding.
+     * Jackson is used if the generated decoder fails.
+     *
+     * @param data   the buffer.
+     * @param offset the offset of the CBOR data in the buffer.
+     * @param length the length of the CBOR data.
+     * @param type   the type of the object.
+     * @return The decoded object.
+     * @throws IOException if the data could not be decoded.
+     */
+    public static <T> T toObject(byte[] data, int offset, int length, Class<T> type) throws IOException {
+        final Decoder<T> decoder = Decoders.get(type);
+        if (decoder != null) {
+            try (JsonParser parser = sFactory.createParser(data, offset, length)) {
+                if (parser.nextToken() != null) {
+                    return decoder.decode(parser);
+                }
+            } catch (final IOException | RuntimeException e) {
+                // Ignore, Jackson will either decode the value or report the error.
+            }
+        }
+        return readerFor(type).readValue(data, offset, length);
+    }
+
+    /**
+     * Decodes the part of the given array into a tree, which may be modified before mapping
+     * it to an object using {@link #toObject(JsonNode, Class)}.
+     *
+     * @param data   the buffer.
+     * @param offset the offset of the CBOR data in the buffer.
+     * @param length the length of the CBOR data.
+     * @return The root node.
+     * @throws IOException if the data could not be decoded.
+     */
+    public static JsonNode toTree(byte[] data, int offset, int length) throws IOException {
+        return sTreeReader.readTree(data, offset, length);
+    }
+
+    /**
+     * Maps the given tree into an object of given type.
+     *
+     * @param tree the tree, obtained using {@link #toTree(byte[], int, int)}.
+     * @param type the type of the object.
+     * @return The object.
+     * @throws IOException if the tree could not be mapped.
+     */
+    public static <T> T toObject(JsonNode tree, Class<T> type) throws IOException {
+        return readerFor(type).readValue(tree);
+    }
+
+    /**
+     * Creates a streaming parser over the part of the given array.
+     * <p>
+     * This allows to process large payloads one value at a time, without mapping the whole
+     * payload to objects.
+     *
+     * @param data   the buffer.
+     * @param offset the offset of the CBOR data in the buffer.
+     * @param length the length of the CBOR data.
+     * @return The parser, which should be closed after use.
+     * @throws IOException if the parser could not be created.
+     */
+    @NotNull
+    public static JsonParser createParser(byte @NotNull [] data, int offset, int length) throws IOException {
+        return sFactory.createParser(data, offset, length);
+    }
+
+    /**
+     * Decodes a value starting at the current token of the parser. When the method returns,
+     * the current token is the last token of the value.
+     * <p>
+     * If a decoder was generated for the type, it is used instead of Jackson data binding.
+     * As the parser can't be rewound, there is no fallback to Jackson if it fails.
+     *
+     * @param parser the parser obtained using {@link #createParser(byte[], int, int)}.
+     * @param type   the type of the object.
+     * @return The decoded object.
+     * @throws IOException if the data could not be decoded.
+     */
+    public static <T> T toObject(@NotNull JsonParser parser, @NotNull Class<T> type) throws IOException {
+        final Decoder<T> decoder = Decoders.get(type);
+        if (decoder != null) {
+            return decoder.decode(parser);
+        }
+        return readerFor(type).readValue(parser);
     }
 
     public static String toString(byte[] data) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        return mapper.readTree(data).toString();
+        return sTreeReader.readTree(data).toString();
     }
 
     public static String toString(byte[] data, int offset) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        return mapper.readTree(data, offset, data.length - offset).toString();
+        return sTreeReader.readTree(data, offset, data.length - offset).toString();
     }
 
     public static <T> String toString(T obj) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        return mapper.valueToTree(obj).toString();
+        return sMapper.valueToTree(obj).toString();
     }
 
     public static Map<String, String> toStringMap(byte[] data) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        TypeReference<HashMap<String, String>> typeRef =
-                new TypeReference<>() {};
         ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
-        return mapper.readValue(inputStream, typeRef);
+        return sStringMapReader.readValue(inputStream);
     }
 
     public static Map<String, Object> toObjectMap(byte[] data) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        TypeReference<HashMap<String, Object>> typeRef =
-                new TypeReference<>() {
-                };
         ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
-        return mapper.readValue(inputStream, typeRef);
+        return sObjectMapReader.readValue(inputStream);
     }
 
     public static <T> T getObject(byte @NotNull [] data, @NotNull String key, @NotNull Class<T> type) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        return mapper.convertValue(mapper.readTree(data).get(key), type);
+        return sMapper.convertValue(sTreeReader.readTree(data).get(key), type);
     }
 
     @NotNull
     public static String getString(byte @NotNull [] data, @NotNull String key) throws IOException {
-        ObjectMapper mapper = new ObjectMapper(sFactory);
-        return mapper.readTree(data).get(key).asText();
+        return sTreeReader.readTree(data).get(key).asText();
     }
 
     /**
@@ -0,0 +1,147 @@
+package no.nordicsemi.android.mcumgr.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+
+/**
+ * Computes SHA-256 digests of uploaded images once, and caches them.
+ * <p>
+ * The first packet of an image upload contains the SHA-256 of the whole image, which the device
+ * uses to resume an interrupted upload and to verify the received image. Computing it for
+ * a large image takes hundreds of milliseconds, so it is computed once per image and may be
+ * started in the background, for example while the previous image is uploaded, using
+ * {@link #prefetch(Object, Callable)}.
+ * <p>
+ * Digests are cached by identity of the data, usually the byte array with the image, for as
+ * long as the data is referenced elsewhere. The data must not be modified after the digest
+ * is requested.
+ * <p>
+ * The hash from the image TLV trailer cannot be used instead: it does not cover the trailer
+ * itself, while the device compares the digest with one of the whole received image.
+ */
+public final class DigestCache {
+    private final static Logger LOG = LoggerFactory.getLogger(DigestCache.class);
+
+    /**
+     * Digests, or tasks computing them, by data. The tasks release the data when done.
+     */
+    private static final Map<Object, FutureTask<byte[]>> CACHE = new WeakHashMap<>();
+
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "McuMgrDigest");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private DigestCache() {}
+
+    /**
+     * Returns the SHA-256 of the given data, computing it on the calling thread if it was
+     * not computed before.
+     *
+     * @param data the data.
+     * @return The digest, or null if SHA-256 is not supported.
+     */
+    public static byte @Nullable [] sha256(byte @NotNull [] data) {
+        try {
+            return sha256(data, () -> sha256Of(data));
+        } catch (final McuMgrException e) {
+            // Computing the digest of an array does not fail.
+            return null;
+        }
+    }
+
+    /**
+     * Returns the digest of the given data, computing it on the calling thread if it was
+     * not computed before. If it is being computed in the background, waits for the result.
+     *
+     * @param key    the data, or an object identifying it, like an
+     *               {@link no.nordicsemi.android.mcumgr.transfer.UploadSource}.
+     * @param digest computes the SHA-256 of the data. It may return null if SHA-256 is not
+     *               supported.
+     * @return The digest, or null if SHA-256 is not supported.
+     * @throws McuMgrException if computing the digest failed, for example when reading the data
+     *                         failed, or the thread was interrupted.
+     */
+    public static byte @Nullable [] sha256(@NotNull final Object key,
+                                           @NotNull final Callable<byte[]> digest)
+            throws McuMgrException {
+        FutureTask<byte[]> task;
+        synchronized (CACHE) {
+            task = CACHE.get(key);
+            if (task == null) {
+                task = new FutureTask<>(digest);
+                CACHE.put(key, task);
+            }
+        }
+        // If the task is still waiting in the background queue, run it here. This does nothing
+        // if the task is running or done.
+        task.run();
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new McuMgrException("Computing digest interrupted", e);
+        } catch (final ExecutionException e) {
+            // Let the next call try again.
+            synchronized (CACHE) {
+                CACHE.remove(key);
+            }
+            throw new McuMgrException("Computing digest failed", e.getCause());
+        }
+    }
+
+    /**
+     * Starts computing the SHA-256 of the given data in the background, unless it was
+     * started before.
+     *
+     * @param data the data.
+     */
+    public static void prefetch(byte @NotNull [] data) {
+        prefetch(data, () -> sha256Of(data));
+    }
+
+    /**
+     * Starts computing the digest of the given data in the background, unless it was
+     * started before.
+     *
+     * @param key    the data, or an object identifying it.
+     * @param digest computes the SHA-256 of the data.
+     */
+    public static void prefetch(@NotNull final Object key,
+                                @NotNull final Callable<byte[]> digest) {
+        final FutureTask<byte[]> task;
+        synchronized (CACHE) {
+            if (CACHE.containsKey(key)) {
+                return;
+            }
+            task = new FutureTask<>(digest);
+            CACHE.put(key, task);
+        }
+        EXECUTOR.execute(task);
+    }
+
+    private static byte @Nullable [] sha256Of(byte @NotNull [] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (final NoSuchAlgorithmException e) {
+            LOG.error("SHA-256 not found", e);
+            return null;
+        }
+    }
+}
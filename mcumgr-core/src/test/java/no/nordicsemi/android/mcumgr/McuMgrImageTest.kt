@@ -1,9 +1,15 @@
 package no.nordicsemi.android.mcumgr
 
+import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.TargetImage
 import no.nordicsemi.android.mcumgr.image.McuMgrImage
+import no.nordicsemi.android.mcumgr.transfer.ByteArrayUploadSource
+import no.nordicsemi.android.mcumgr.transfer.UploadSource
 import org.junit.Test
 import java.io.ByteArrayOutputStream
 import java.io.InputStream
+import kotlin.test.assertContentEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
 
 class McuMgrImageTest {
 
@@ -23,6 +29,34 @@ class McuMgrImageTest {
         McuMgrImage.fromBytes(imageData)
     }
 
+    @Test
+    fun `hash is read from a source without reading the image`() {
+        for (name in listOf("slinky-no-prot-tlv.img", "slinky-prot-tlv.img")) {
+            val inputStream = this::class.java.classLoader?.getResourceAsStream(name)
+                ?: throw IllegalStateException("input stream is null")
+            val imageData = toByteArray(inputStream)
+            val source = CountingSource(ByteArrayUploadSource(imageData))
+
+            val target = TargetImage(1, source)
+
+            @Suppress("DEPRECATION")
+            assertNull(target.image)
+            assertContentEquals(McuMgrImage.fromBytes(imageData).hash, target.hash)
+            assertTrue(target.needsConfirmation())
+            // Only the header and the TLV trailer were read.
+            assertTrue(source.bytesRead < 1024, "Read ${source.bytesRead} bytes")
+        }
+    }
+
+    private class CountingSource(private val source: UploadSource) : UploadSource by source {
+        var bytesRead = 0
+
+        override fun read(offset: Int, buffer: ByteArray, bufferOffset: Int, length: Int) {
+            bytesRead += length
+            source.read(offset, buffer, bufferOffset, length)
+        }
+    }
+
     private fun toByteArray(inputStream: InputStream): ByteArray {
         val os = ByteArrayOutputStream()
         val buffer = ByteArray(1024)
@@ -0,0 +1,105 @@
+package no.nordicsemi.android.mcumgr.capture
+
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import kotlin.concurrent.thread
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class PacketCaptureTest {
+
+    private fun packet(seq: Int, size: Int) = ByteArray(size) { i ->
+        when (i) {
+            0 -> 0x0A // Version 1, Op: WRITE
+            3 -> (size - 8).toByte() // Len
+            5 -> 1 // Group: IMAGE
+            6 -> seq.toByte() // Seq
+            7 -> 1 // Command: UPLOAD
+            else -> if (i >= 8) 0x55 else 0
+        }
+    }
+
+    @Test
+    fun `oldest packets are overwritten`() {
+        val capture = PacketCapture(4, 64)
+        repeat(6) { seq ->
+            capture.record(if (seq % 2 == 0) PacketCapture.OUTGOING else PacketCapture.INCOMING, packet(seq, 20))
+        }
+
+        val frames = capture.snapshot()
+        assertEquals(6, capture.recordedCount)
+        assertEquals(4, frames.size)
+        assertEquals(listOf(2, 3, 4, 5), frames.map { it.data[6].toInt() })
+        assertEquals(PacketCapture.OUTGOING, frames[0].direction)
+        assertEquals(PacketCapture.INCOMING, frames[1].direction)
+        assertTrue(frames.zipWithNext().all { (a, b) -> a.timestamp <= b.timestamp })
+    }
+
+    @Test
+    fun `snapshot taken while recording has no torn frames`() {
+        val capture = PacketCapture(4, 32)
+        // Each packet is filled with its length, so a torn frame has mixed bytes.
+        val packets = (8..32).map { size -> ByteArray(size) { size.toByte() } }
+        val recorder = thread {
+            var i = 0
+            while (!Thread.currentThread().isInterrupted) {
+                capture.record(PacketCapture.OUTGOING, packets[i++ % packets.size])
+            }
+        }
+        try {
+            repeat(10_000) {
+                capture.snapshot().forEach { frame ->
+                    assertEquals(frame.length, frame.data.size)
+                    assertTrue(frame.data.all { it.toInt() == frame.length })
+                }
+            }
+        } finally {
+            recorder.interrupt()
+            recorder.join()
+        }
+    }
+
+    @Test
+    fun `long packets are truncated`() {
+        val capture = PacketCapture(2, 16)
+        capture.record(PacketCapture.OUTGOING, packet(0, 100))
+
+        val frame = capture.snapshot().single()
+        assertEquals(100, frame.length)
+        assertEquals(16, frame.data.size)
+        assertTrue(frame.isTruncated)
+    }
+
+    @Test
+    fun `capture file round trip`() {
+        val capture = PacketCapture(8, 32)
+        capture.record(PacketCapture.OUTGOING, packet(1, 20))
+        capture.record(PacketCapture.INCOMING, packet(1, 12))
+
+        val output = ByteArrayOutputStream()
+        capture.writeTo(output)
+        val decoded = CaptureDecoder.read(ByteArrayInputStream(output.toByteArray()))
+
+        val expected = capture.snapshot()
+        assertEquals(expected.size, decoded.frames.size)
+        expected.zip(decoded.frames).forEach { (a, b) ->
+            assertEquals(a.direction, b.direction)
+            assertEquals(a.timestamp, b.timestamp)
+            assertEquals(a.length, b.length)
+            assertContentEquals(a.data, b.data)
+        }
+
+        val text = StringBuilder().also { CaptureDecoder.toText(decoded, it) }.toString()
+        assertEquals(2, text.lines().count { it.isNotEmpty() })
+        assertTrue(text.contains("-> 20 bytes"))
+        assertTrue(text.contains("<- 12 bytes"))
+
+        val json = StringBuilder().also { CaptureDecoder.toJson(decoded, it) }.toString()
+        assertTrue(json.startsWith("[{") && json.endsWith("}]"))
+        assertTrue(json.contains("\"direction\":\"rx\""))
+        assertFalse(json.contains("\"truncated\":true"))
+    }
+}
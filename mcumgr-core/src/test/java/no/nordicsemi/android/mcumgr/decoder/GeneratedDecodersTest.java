@@ -0,0 +1,126 @@
+package no.nordicsemi.android.mcumgr.decoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import no.nordicsemi.android.mcumgr.McuMgrScheme;
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrTaskStatResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageStateResponse;
+import no.nordicsemi.android.mcumgr.response.suit.McuMgrManifestListResponse;
+import no.nordicsemi.android.mcumgr.response.suit.McuMgrManifestStateResponse;
+
+/**
+ * The generated decoders work with any Jackson parser. JSON is used here for readability,
+ * except for the last test, which decodes a CBOR packet.
+ */
+public class GeneratedDecodersTest {
+    private final static JsonFactory JSON = new JsonFactory();
+
+    private static <T> T decode(Class<T> type, String json) throws IOException {
+        final Decoder<T> decoder = Decoders.get(type);
+        assertNotNull("No decoder generated for " + type, decoder);
+        try (JsonParser parser = JSON.createParser(json.replace('\'', '"'))) {
+            parser.nextToken();
+            return decoder.decode(parser);
+        }
+    }
+
+    @Test
+    public void registry_contains_only_annotated_classes() {
+        assertNotNull(Decoders.get(McuMgrResponse.class));
+        assertNotNull(Decoders.get(McuMgrImageStateResponse.class));
+        assertNull(Decoders.get(McuMgrImageStateResponse.ImageSlot.class));
+        assertNull(Decoders.get(String.class));
+    }
+
+    @Test
+    public void decode_nested_arrays() throws IOException {
+        final McuMgrImageStateResponse response = decode(McuMgrImageStateResponse.class,
+                "{'images':[{'image':0,'slot':1,'version':'1.2.3','active':true,'unknown':[1,{}]}]," +
+                "'splitStatus':2,'err':{'group':1,'rc':3}}");
+        assertEquals(2, response.splitStatus);
+        assertEquals(1, response.images.length);
+        assertEquals(1, response.images[0].slot);
+        assertEquals("1.2.3", response.images[0].version);
+        assertTrue(response.images[0].active);
+        assertFalse(response.images[0].confirmed);
+        assertNull(response.images[0].hash);
+        assertEquals(1, response.groupReturnCode.group);
+        assertEquals(3, response.groupReturnCode.rc);
+    }
+
+    @Test
+    public void decode_maps_and_lists() throws IOException {
+        final McuMgrTaskStatResponse tasks = decode(McuMgrTaskStatResponse.class,
+                "{'rc':0,'tasks':{'idle':{'prio':255,'tid':0},'main':{'prio':0,'tid':1}}}");
+        assertArrayEquals(new Object[] { "idle", "main" }, tasks.tasks.keySet().toArray());
+        assertEquals(255, tasks.tasks.get("idle").prio);
+        assertEquals(1, tasks.tasks.get("main").tid);
+
+        final McuMgrManifestListResponse manifests = decode(McuMgrManifestListResponse.class,
+                "{'manifests':[{'role':16},{'role':32}]}");
+        assertEquals(2, manifests.manifests.size());
+        assertEquals(32, manifests.manifests.get(1).role);
+    }
+
+    @Test
+    public void decode_enums_using_creator() throws IOException {
+        final McuMgrManifestStateResponse response = decode(McuMgrManifestStateResponse.class,
+                "{'role':16,'digest_algorithm':-16,'signature_check':null,'semantic_version':[1,2,3]}");
+        assertEquals(16, response.role);
+        assertEquals(McuMgrManifestStateResponse.DigestAlgorithm.SHA_256, response.digestAlgorithm);
+        assertNull(response.signatureCheck);
+        assertArrayEquals(new int[] { 1, 2, 3 }, response.semanticVersion);
+    }
+
+    @Test
+    public void unsupported_input_is_left_to_jackson() throws IOException {
+        // Jackson would coerce the string into an int.
+        try {
+            decode(McuMgrResponse.class, "{'rc':'1'}");
+            fail("Coercion is not supported");
+        } catch (final DecoderSupport.DecoderException e) {
+            // Expected.
+        }
+        // GroupReturnCode does not ignore unknown properties.
+        try {
+            decode(McuMgrResponse.class, "{'err':{'group':1,'rc':2,'other':3}}");
+            fail("Unknown property was ignored");
+        } catch (final DecoderSupport.DecoderException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void buildResponse_uses_generated_decoder() throws IOException {
+        // {"images": [{"slot": 0, "hash": h'0102', "active": true}], "splitStatus": 0}
+        final byte[] data = {(byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x2D, (byte) 0x00, (byte) 0x01, (byte) 0x00, (byte) 0x00,
+                (byte) 0xA2,
+                (byte) 0x66, 'i', 'm', 'a', 'g', 'e', 's',
+                (byte) 0x81, (byte) 0xA3,
+                (byte) 0x64, 's', 'l', 'o', 't', (byte) 0x00,
+                (byte) 0x64, 'h', 'a', 's', 'h', (byte) 0x42, (byte) 0x01, (byte) 0x02,
+                (byte) 0x66, 'a', 'c', 't', 'i', 'v', 'e', (byte) 0xF5,
+                (byte) 0x6B, 's', 'p', 'l', 'i', 't', 'S', 't', 'a', 't', 'u', 's', (byte) 0x00};
+
+        final McuMgrImageStateResponse response =
+                McuMgrResponse.buildResponse(McuMgrScheme.BLE, data, McuMgrImageStateResponse.class);
+        assertEquals(1, response.images.length);
+        assertArrayEquals(new byte[] { 1, 2 }, response.images[0].hash);
+        assertTrue(response.images[0].active);
+        assertEquals(0, response.splitStatus);
+    }
+}
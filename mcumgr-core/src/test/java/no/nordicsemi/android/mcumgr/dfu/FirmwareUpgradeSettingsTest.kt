@@ -0,0 +1,117 @@
+package no.nordicsemi.android.mcumgr.dfu
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.sim.SimulatedDevice
+import no.nordicsemi.android.mcumgr.sim.SimulatedTransport
+import no.nordicsemi.android.mcumgr.transfer.FileUploadSessionStore
+import no.nordicsemi.android.mcumgr.transfer.ImageUploader
+import org.junit.Test
+import java.io.File
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+class FirmwareUpgradeSettingsTest {
+
+    @Test
+    fun `window and alignment are automatic by default`() {
+        val settings = FirmwareUpgradeManager.Settings.Builder().build()
+        assertEquals(FirmwareUpgradeSettings.AUTO, settings.windowCapacity)
+        assertEquals(FirmwareUpgradeSettings.AUTO, settings.memoryAlignment)
+    }
+
+    @Test
+    fun `window is derived from the buffer count`() {
+        val transport = SimulatedTransport(SimulatedDevice(bufferCount = 4))
+        val settings = FirmwareUpgradeSettings.Builder().build()
+
+        // One buffer is left for responses.
+        assertEquals(3, settings.getWindowCapacity(transport))
+        assertEquals(4, settings.getMemoryAlignment(transport))
+    }
+
+    @Test
+    fun `window is not used with a single buffer`() {
+        val transport = SimulatedTransport(SimulatedDevice(bufferCount = 1))
+        val settings = FirmwareUpgradeSettings.Builder().build()
+
+        assertEquals(1, settings.getWindowCapacity(transport))
+        assertEquals(1, settings.getMemoryAlignment(transport))
+    }
+
+    @Test
+    fun `window is not used when the buffer count is not known`() {
+        val transport = MockBleMcuMgrTransport()
+        val settings = FirmwareUpgradeSettings.Builder().build()
+
+        assertEquals(0, transport.smpBufferCount)
+        assertEquals(1, settings.getWindowCapacity(transport))
+        assertEquals(1, settings.getMemoryAlignment(transport))
+    }
+
+    @Test
+    fun `explicit values are kept`() {
+        val transport = SimulatedTransport(SimulatedDevice(bufferCount = 4))
+        val settings = FirmwareUpgradeSettings.Builder()
+            .setWindowCapacity(1)
+            .setMemoryAlignment(8)
+            .build()
+
+        assertEquals(1, settings.getWindowCapacity(transport))
+        assertEquals(8, settings.getMemoryAlignment(transport))
+    }
+
+    @Test
+    fun `uploads are not resumed by default`() {
+        val settings = FirmwareUpgradeManager.Settings.Builder().build()
+        assertEquals(0, settings.resumeAttempts)
+        assertNull(settings.sessionStore)
+    }
+
+    @Test
+    fun `resume options are kept`() {
+        val store = FileUploadSessionStore(File("sessions"))
+        val settings = FirmwareUpgradeManager.Settings.Builder()
+            .setEstimatedSwapTime(1000)
+            .setResumeAttempts(3)
+            .setSessionStore(store)
+            .build()
+
+        assertEquals(3, settings.resumeAttempts)
+        assertSame(store, settings.sessionStore)
+        assertEquals(1000, settings.estimatedSwapTime)
+    }
+
+    @Test
+    fun `automatic window uploads without dropped requests`() {
+        val image = javaClass.getResource("/slinky-prot-tlv.img")!!.readBytes()
+
+        // Uploads the image and returns the number of requests received by the device.
+        fun upload(settings: FirmwareUpgradeSettings): Int {
+            val device = SimulatedDevice(bufferSize = 2475, bufferCount = 4)
+            val transport = SimulatedTransport(device, latency = 1)
+            val manager = ImageManager(transport)
+            manager.setUploadMtu(498)
+            runBlocking {
+                ImageUploader(
+                    manager, image, 0,
+                    settings.getWindowCapacity(transport),
+                    settings.getMemoryAlignment(transport)
+                ).upload()
+            }
+            assertContentEquals(image, device.getSlot(0, 1).data)
+            return device.requestCount
+        }
+
+        val sequential = upload(FirmwareUpgradeSettings.Builder()
+            .setWindowCapacity(1)
+            .setMemoryAlignment(4)
+            .build())
+        // No request was dropped for lack of buffers and sent again.
+        assertEquals(sequential, upload(FirmwareUpgradeSettings.Builder().build()))
+    }
+}
@@ -0,0 +1,150 @@
+package no.nordicsemi.android.mcumgr.image.suit
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.image.SUITImage
+import no.nordicsemi.android.mcumgr.managers.SUITManager
+import no.nordicsemi.android.mcumgr.sim.SimulatedDevice
+import no.nordicsemi.android.mcumgr.sim.SimulatedTransport
+import no.nordicsemi.android.mcumgr.transfer.CacheUploader
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class SUITEnvelopeTest {
+
+    /** Encodes CBOR items used by SUIT Envelopes. */
+    private class Cbor {
+        private val out = ByteArrayOutputStream()
+
+        fun head(majorType: Int, value: Long) = apply {
+            val type = majorType shl 5
+            when {
+                value < 24 -> out.write(type or value.toInt())
+                value < 0x100 -> { out.write(type or 24); write(value, 1) }
+                value < 0x10000 -> { out.write(type or 25); write(value, 2) }
+                else -> { out.write(type or 26); write(value, 4) }
+            }
+        }
+
+        private fun write(value: Long, size: Int) {
+            for (i in size - 1 downTo 0) out.write((value shr (8 * i)).toInt() and 0xFF)
+        }
+
+        fun int(value: Int) = if (value < 0) head(1, -1L - value) else head(0, value.toLong())
+        fun bytes(value: ByteArray) = apply { head(2, value.size.toLong()); out.write(value) }
+        fun textString(value: String) = apply {
+            val bytes = value.toByteArray()
+            head(3, bytes.size.toLong()); out.write(bytes)
+        }
+        fun array(size: Int) = head(4, size.toLong())
+        fun map(size: Int) = head(5, size.toLong())
+        fun tag(tag: Long) = head(6, tag)
+        fun raw(vararg bytes: Int) = apply { bytes.forEach { out.write(it) } }
+
+        fun toByteArray(): ByteArray = out.toByteArray()
+    }
+
+    private val digest = ByteArray(32) { it.toByte() }
+    private val manifest = Cbor().map(1).int(1).int(1).toByteArray()
+    private val install = Cbor().array(0).toByteArray()
+    private val payload = ByteArray(4096) { (it * 7).toByte() }
+    private val signature = Cbor().tag(18).array(0).toByteArray()
+
+    private fun envelope(
+        digestAlgorithm: Int = -16,
+        extra: Cbor.() -> Unit = {},
+        extraCount: Int = 0
+    ): ByteArray {
+        val suitDigest = Cbor().array(2).int(digestAlgorithm).bytes(digest).toByteArray()
+        val authentication = Cbor().array(2).bytes(suitDigest).bytes(signature).toByteArray()
+        return Cbor()
+            .tag(107)
+            .map(4 + extraCount)
+            // An integrated payload before the manifest, containing the old "82 2F 58 20" prefix.
+            .textString("#first").bytes(byteArrayOf(0x82.toByte(), 0x2F, 0x58, 0x20) + ByteArray(32))
+            .int(2).bytes(authentication)
+            .int(3).bytes(manifest)
+            .int(17).bytes(install)
+            .apply(extra)
+            .toByteArray()
+    }
+
+    @Test
+    fun `sections are indexed without copying`() {
+        val data = envelope(extra = { textString("#application").bytes(payload) }, extraCount = 1)
+        val envelope = SUITEnvelope.parse(data)
+
+        assertEquals(-16, envelope.digestAlgorithm)
+        assertContentEquals(digest, envelope.digest.toByteArray())
+        assertContentEquals(manifest, envelope.manifest.toByteArray())
+        assertEquals(1, envelope.authenticationBlocks.size)
+        assertContentEquals(signature, envelope.authenticationBlocks[0].toByteArray())
+        assertNull(envelope.delegation)
+        assertEquals(setOf(17), envelope.severableMembers.keys)
+        assertContentEquals(install, envelope.severableMembers[17]!!.toByteArray())
+
+        assertEquals(listOf("#first", "#application"), envelope.integratedPayloads.keys.toList())
+        val application = envelope.getIntegratedPayload("#application")!!
+        assertEquals(payload.size, application.length)
+        assertEquals(data.size - payload.size, application.offset)
+        val buffer = application.asByteBuffer()
+        assertTrue(buffer.isReadOnly)
+        assertEquals(payload.size, buffer.remaining())
+        assertEquals(payload[100], buffer.get(100))
+    }
+
+    @Test
+    fun `integrated payload is uploaded to a cache partition`() {
+        val data = envelope(extra = { textString("#application").bytes(payload) }, extraCount = 1)
+        val application = SUITEnvelope.parse(data).getIntegratedPayload("#application")!!
+        val device = SimulatedDevice(bufferSize = 2475)
+        val manager = SUITManager(SimulatedTransport(device))
+        manager.setUploadMtu(498)
+
+        runBlocking { CacheUploader(manager, 2, application.asUploadSource()).upload() }
+
+        assertContentEquals(payload, device.getCachePartition(2))
+    }
+
+    @Test
+    fun `image hash is the root manifest digest`() {
+        val image = SUITImage.fromBytes(envelope())
+        assertContentEquals(digest, image.hash)
+        assertContentEquals(digest, SUITImage.getHash(envelope()))
+    }
+
+    @Test
+    fun `unknown members are skipped`() {
+        val data = envelope(extra = {
+            // Unknown key with a nested value with indefinite length.
+            int(99).raw(0x9F, 0x01, 0x5F, 0x41, 0x00, 0xFF, 0xFF)
+        }, extraCount = 1)
+        val envelope = SUITEnvelope.parse(data)
+        assertEquals(setOf(17), envelope.severableMembers.keys)
+    }
+
+    @Test
+    fun `other digest algorithms are supported`() {
+        val envelope = SUITEnvelope.parse(envelope(digestAlgorithm = -44))
+        assertEquals(-44, envelope.digestAlgorithm)
+    }
+
+    @Test
+    fun `invalid envelopes are rejected`() {
+        val data = envelope()
+        // Missing tag.
+        assertFailsWith<McuMgrException> { SUITEnvelope.parse(data.copyOfRange(2, data.size)) }
+        // Truncated.
+        assertFailsWith<McuMgrException> { SUITEnvelope.parse(data.copyOf(data.size - 1)) }
+        // Missing manifest.
+        val noManifest = Cbor().tag(107).map(1).int(2).bytes(Cbor().array(0).toByteArray()).toByteArray()
+        assertFailsWith<McuMgrException> { SUITEnvelope.parse(noManifest) }
+        // Not an envelope.
+        assertFailsWith<McuMgrException> { SUITImage.fromBytes(byteArrayOf(0x50, 0x4B, 0x03, 0x04)) }
+    }
+}
@@ -1,17 +1,24 @@
 package no.nordicsemi.android.mcumgr.response;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
+import no.nordicsemi.android.mcumgr.McuMgrHeader;
 import no.nordicsemi.android.mcumgr.McuMgrScheme;
 import no.nordicsemi.android.mcumgr.response.img.McuMgrImageStateResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse;
+import no.nordicsemi.android.mcumgr.util.CBOR;
 
 public class McuMgrResponseTest {
 
@@ -258,6 +265,60 @@ public class McuMgrResponseTest {
         assertEquals(0, response.splitStatus);
     }
 
+    @Test
+    public void buildResponse_header_and_payload_from_packet() throws IOException {
+        // {"off": 512}
+        final byte[] data = {(byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) 0x07, (byte) 0x00, (byte) 0x01, (byte) 0x2A, (byte) 0x01,
+                (byte) 0xA1, (byte) 0x63, (byte) 0x6F, (byte) 0x66, (byte) 0x66, (byte) 0x19, (byte) 0x02, (byte) 0x00};
+
+        McuMgrImageUploadResponse response = McuMgrResponse.buildResponse(McuMgrScheme.BLE, data, McuMgrImageUploadResponse.class);
+        assertEquals(512, response.off);
+        assertSame(data, response.getBytes());
+
+        final McuMgrHeader header = response.getHeader();
+        assertNotNull(header);
+        assertEquals(3, header.getOp());
+        assertEquals(7, header.getLen());
+        assertEquals(1, header.getGroupId());
+        assertEquals(42, header.getSequenceNum());
+        assertEquals(1, header.getCommandId());
+
+        assertArrayEquals(Arrays.copyOfRange(data, McuMgrHeader.HEADER_LENGTH, data.length), response.getPayload());
+    }
+
+    @Test
+    public void buildResponse_packet_in_buffer() throws IOException {
+        final byte[] data = {(byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) 0x07, (byte) 0x00, (byte) 0x01, (byte) 0x2A, (byte) 0x01,
+                (byte) 0xA1, (byte) 0x63, (byte) 0x6F, (byte) 0x66, (byte) 0x66, (byte) 0x19, (byte) 0x02, (byte) 0x00};
+        final byte[] buffer = Arrays.copyOf(data, 64);
+
+        McuMgrImageUploadResponse response = McuMgrResponse.buildResponse(McuMgrScheme.BLE, buffer, data.length, McuMgrImageUploadResponse.class);
+        // The buffer may be reused, the response keeps a copy of the packet.
+        Arrays.fill(buffer, (byte) 0);
+        assertEquals(512, response.off);
+        assertArrayEquals(data, response.getBytes());
+        assertEquals(42, response.getHeader().getSequenceNum());
+    }
+
+    @Test
+    public void buildResponseFromReusedBuffer_keeps_fields() throws IOException {
+        // {"off": 0, "len": 3, "data": h'010203'}
+        final byte[] data = {(byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x14, (byte) 0x00, (byte) 0x08, (byte) 0x2A, (byte) 0x00,
+                (byte) 0xA3, (byte) 0x63, (byte) 0x6F, (byte) 0x66, (byte) 0x66, (byte) 0x00,
+                (byte) 0x63, (byte) 0x6C, (byte) 0x65, (byte) 0x6E, (byte) 0x03,
+                (byte) 0x64, (byte) 0x64, (byte) 0x61, (byte) 0x74, (byte) 0x61, (byte) 0x43, (byte) 0x01, (byte) 0x02, (byte) 0x03};
+        final byte[] buffer = Arrays.copyOf(data, 64);
+
+        DownloadResponse response = McuMgrResponse.buildResponseFromReusedBuffer(McuMgrScheme.BLE, buffer, data.length, DownloadResponse.class);
+        Arrays.fill(buffer, (byte) 0);
+        assertEquals(3, response.len);
+        assertArrayEquals(new byte[] {1, 2, 3}, response.data);
+        assertEquals(42, response.getHeader().getSequenceNum());
+        assertNull(response.getBytes());
+        assertNull(response.getPayload());
+        assertEquals(CBOR.toString(data, McuMgrHeader.HEADER_LENGTH), response.toString());
+    }
+
     @Test
     public void getExpectedLength_full() throws IOException {
         final byte[] data = {(byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x79, (byte) 0x00, (byte) 0x01, (byte) 0x00, (byte) 0x00,
@@ -0,0 +1,88 @@
+package no.nordicsemi.android.mcumgr.response;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import no.nordicsemi.android.mcumgr.McuMgrScheme;
+import no.nordicsemi.android.mcumgr.response.fs.McuMgrFsDownloadResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageStateResponse;
+
+public class TransferResponseDecoderTest {
+
+    @Test
+    public void decode_download() throws IOException {
+        // {"off": 0, "data": h'01020304', "len": 1000}
+        final byte[] data = {(byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x18, (byte) 0x00, (byte) 0x08, (byte) 0x00, (byte) 0x00,
+                (byte) 0xBF,
+                (byte) 0x63, (byte) 0x6F, (byte) 0x66, (byte) 0x66, (byte) 0x00, // "off": 0
+                (byte) 0x64, (byte) 0x64, (byte) 0x61, (byte) 0x74, (byte) 0x61, // "data"
+                (byte) 0x44, (byte) 0x01, (byte) 0x02, (byte) 0x03, (byte) 0x04,
+                (byte) 0x63, (byte) 0x6C, (byte) 0x65, (byte) 0x6E, (byte) 0x19, (byte) 0x03, (byte) 0xE8, // "len": 1000
+                (byte) 0xFF};
+
+        final McuMgrFsDownloadResponse response = TransferResponseDecoder.decode(data, 8, data.length - 8, McuMgrFsDownloadResponse.class);
+        assertNotNull(response);
+        assertEquals(0, response.rc);
+        assertEquals(0, response.off);
+        assertEquals(1000, response.len);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, response.data);
+
+        final McuMgrFsDownloadResponse built = McuMgrResponse.buildResponse(McuMgrScheme.BLE, data, McuMgrFsDownloadResponse.class);
+        assertEquals(1000, built.len);
+        assertArrayEquals(response.data, built.data);
+    }
+
+    @Test
+    public void decode_upload_match() {
+        // {"rc": 0, "off": 70000, "match": false}
+        final byte[] data = {(byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) 0x15, (byte) 0x00, (byte) 0x01, (byte) 0x00, (byte) 0x01,
+                (byte) 0xA3,
+                (byte) 0x62, (byte) 0x72, (byte) 0x63, (byte) 0x00, // "rc": 0
+                (byte) 0x63, (byte) 0x6F, (byte) 0x66, (byte) 0x66, // "off"
+                (byte) 0x1A, (byte) 0x00, (byte) 0x01, (byte) 0x11, (byte) 0x70,
+                (byte) 0x65, (byte) 0x6D, (byte) 0x61, (byte) 0x74, (byte) 0x63, (byte) 0x68, (byte) 0xF4}; // "match": false
+
+        final McuMgrImageUploadResponse response = TransferResponseDecoder.decode(data, 8, data.length - 8, McuMgrImageUploadResponse.class);
+        assertNotNull(response);
+        assertEquals(70000, response.off);
+        assertEquals(Boolean.FALSE, response.match);
+    }
+
+    @Test
+    public void decode_group_error() {
+        // {"ret": {"group": 8, "rc": 2}} as sent by NCS 2.4.
+        final byte[] data = {(byte) 0x03, (byte) 0x08, (byte) 0x00, (byte) 0x13, (byte) 0x00, (byte) 0x08, (byte) 0x00, (byte) 0x00,
+                (byte) 0xBF,
+                (byte) 0x63, (byte) 0x72, (byte) 0x65, (byte) 0x74, (byte) 0xBF, // "ret": {
+                (byte) 0x65, (byte) 0x67, (byte) 0x72, (byte) 0x6F, (byte) 0x75, (byte) 0x70, (byte) 0x08, // "group": 8
+                (byte) 0x62, (byte) 0x72, (byte) 0x63, (byte) 0x02, // "rc": 2
+                (byte) 0xFF, (byte) 0xFF};
+
+        final UploadResponse response = TransferResponseDecoder.decode(data, 8, data.length - 8, UploadResponse.class);
+        assertNotNull(response);
+        assertFalse(response.isSuccess());
+        assertNotNull(response.groupReturnCode);
+        assertEquals(8, response.groupReturnCode.group);
+        assertEquals(2, response.groupReturnCode.rc);
+    }
+
+    @Test
+    public void decode_unsupported() {
+        // {"off": 0, "data": [1]} - an array is not supported.
+        final byte[] data = {(byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x0D, (byte) 0x00, (byte) 0x08, (byte) 0x00, (byte) 0x00,
+                (byte) 0xA2,
+                (byte) 0x63, (byte) 0x6F, (byte) 0x66, (byte) 0x66, (byte) 0x00,
+                (byte) 0x64, (byte) 0x64, (byte) 0x61, (byte) 0x74, (byte) 0x61, (byte) 0x81, (byte) 0x01};
+
+        assertNull(TransferResponseDecoder.decode(data, 8, data.length - 8, McuMgrFsDownloadResponse.class));
+        assertNull(TransferResponseDecoder.decode(data, 8, data.length - 8, McuMgrImageStateResponse.class));
+    }
+}
@@ -0,0 +1,148 @@
+package no.nordicsemi.android.mcumgr.response.log;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader;
+import no.nordicsemi.android.mcumgr.McuMgrScheme;
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
+import no.nordicsemi.android.mcumgr.util.CBOR;
+
+public class LogEntryReaderTest {
+
+    private static Map<String, Object> entry(Object index, String msg) {
+        final Map<String, Object> entry = new HashMap<>();
+        entry.put("index", index);
+        entry.put("ts", 1000L);
+        entry.put("level", McuMgrLogResponse.Entry.LOG_LEVEL_INFO);
+        entry.put("type", McuMgrLogResponse.Entry.LOG_ENTRY_TYPE_STRING);
+        entry.put("msg", msg.getBytes());
+        return entry;
+    }
+
+    private static Map<String, Object> log(String name, int type, List<?> entries) {
+        // Devices send the name and type before the entries.
+        final Map<String, Object> log = new LinkedHashMap<>();
+        log.put("name", name);
+        log.put("type", type);
+        log.put("entries", entries);
+        return log;
+    }
+
+    private static LogEntryReader reader(Map<String, Object> payload) throws IOException {
+        final byte[] data = CBOR.toBytes(payload);
+        final byte[] header = McuMgrHeader.build(1, 1, 0, data.length, 4, 0, 1);
+        final byte[] packet = Arrays.copyOf(header, header.length + data.length);
+        System.arraycopy(data, 0, packet, header.length, data.length);
+        final McuMgrResponse response =
+                McuMgrResponse.buildResponse(McuMgrScheme.BLE, packet, McuMgrResponse.class);
+        return LogEntryReader.of(response);
+    }
+
+    @Test
+    public void entries_are_read_one_by_one() throws IOException {
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put("next_index", 3);
+        payload.put("logs", Arrays.asList(
+                log("log", McuMgrLogResponse.LogResult.LOG_TYPE_MEMORY,
+                        Arrays.asList(entry(1L, "first"), entry(2L, "second"))),
+                log("other", McuMgrLogResponse.LogResult.LOG_TYPE_STORAGE,
+                        Collections.singletonList(entry(7L, "third")))
+        ));
+
+        try (LogEntryReader reader = reader(payload)) {
+            assertTrue(reader.getResponse().isSuccess());
+            assertNull(reader.nextEntry());
+
+            assertTrue(reader.nextLog());
+            assertEquals("log", reader.getLogName());
+            assertEquals(McuMgrLogResponse.LogResult.LOG_TYPE_MEMORY, reader.getLogType());
+            McuMgrLogResponse.Entry entry = reader.nextEntry();
+            assertNotNull(entry);
+            assertEquals(1L, entry.index);
+            assertArrayEquals("first".getBytes(), entry.msg);
+            entry = reader.nextEntry();
+            assertNotNull(entry);
+            assertEquals(2L, entry.index);
+            assertNull(reader.nextEntry());
+
+            assertTrue(reader.nextLog());
+            assertEquals("other", reader.getLogName());
+            entry = reader.nextEntry();
+            assertNotNull(entry);
+            assertEquals(7L, entry.index);
+            assertEquals("third", entry.getMessageString());
+            assertNull(reader.nextEntry());
+
+            assertFalse(reader.nextLog());
+            assertNull(reader.nextEntry());
+        }
+    }
+
+    @Test
+    public void remaining_entries_are_skipped() throws IOException {
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put("logs", Arrays.asList(
+                log("log", 0, Arrays.asList(entry(1L, "a"), entry(2L, "b"), entry(3L, "c"))),
+                log("other", 0, Collections.singletonList(entry(4L, "d")))
+        ));
+
+        try (LogEntryReader reader = reader(payload)) {
+            assertTrue(reader.nextLog());
+            assertNotNull(reader.nextEntry());
+            assertTrue(reader.nextLog());
+            assertEquals("other", reader.getLogName());
+            final McuMgrLogResponse.Entry entry = reader.nextEntry();
+            assertNotNull(entry);
+            assertEquals(4L, entry.index);
+        }
+    }
+
+    @Test
+    public void response_without_logs() throws IOException {
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put("next_index", 0);
+        try (LogEntryReader reader = reader(payload)) {
+            assertFalse(reader.nextLog());
+            assertNull(reader.nextEntry());
+        }
+    }
+
+    @Test
+    public void falls_back_to_jackson_from_the_same_entry() throws IOException {
+        // Jackson coerces the string index into a number, the streaming decoder does not.
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put("logs", Collections.singletonList(
+                log("log", 0, Arrays.asList(entry(1L, "a"), entry("2", "b"), entry(3L, "c")))
+        ));
+
+        try (LogEntryReader reader = reader(payload)) {
+            assertTrue(reader.nextLog());
+            McuMgrLogResponse.Entry entry = reader.nextEntry();
+            assertNotNull(entry);
+            assertEquals(1L, entry.index);
+            entry = reader.nextEntry();
+            assertNotNull(entry);
+            assertEquals(2L, entry.index);
+            entry = reader.nextEntry();
+            assertNotNull(entry);
+            assertEquals(3L, entry.index);
+            assertNull(reader.nextEntry());
+            assertFalse(reader.nextLog());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeoutOrNull
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class CongestionWindowTest {
+
+    private val size = MutableStateFlow(0)
+
+    @Test
+    fun `fixed window allows capacity requests in flight`() = runBlocking {
+        val window = CongestionWindow(3, adaptive = false, size)
+        repeat(3) { window.acquire() }
+        assertNull(withTimeoutOrNull(50) { window.acquire() })
+
+        window.onLoss(0)
+        assertEquals(3, size.value)
+        window.release()
+        window.acquire()
+        Unit
+    }
+
+    @Test
+    fun `adaptive window grows by one per window of acknowledgements`() = runBlocking {
+        val window = CongestionWindow(4, adaptive = true, size)
+        assertEquals(1, size.value)
+
+        // Window of 1: one acknowledgement.
+        ack(window, 1)
+        assertEquals(2, size.value)
+        // Window of 2: two acknowledgements.
+        ack(window, 1)
+        assertEquals(2, size.value)
+        ack(window, 1)
+        assertEquals(3, size.value)
+        ack(window, 10)
+        // Capped by the capacity.
+        assertEquals(4, size.value)
+    }
+
+    @Test
+    fun `adaptive window is halved once per loss event`() = runBlocking {
+        val window = CongestionWindow(8, adaptive = true, size)
+        ack(window, 30)
+        assertEquals(8, size.value)
+
+        val sequences = List(8) { window.acquire() }
+        // The first lost chunk causes unexpected offsets for all following ones.
+        sequences.forEach { window.onLoss(it) }
+        assertEquals(4, size.value)
+
+        // A loss of a chunk sent after the decrease is a new event.
+        sequences.forEach { window.release() }
+        lose(window)
+        assertEquals(2, size.value)
+        lose(window)
+        lose(window)
+        assertEquals(1, size.value)
+    }
+
+    private suspend fun lose(window: CongestionWindow) {
+        window.onLoss(window.acquire())
+        window.release()
+    }
+
+    private suspend fun ack(window: CongestionWindow, count: Int) {
+        repeat(count) {
+            window.acquire()
+            window.onAck()
+            window.release()
+        }
+    }
+}
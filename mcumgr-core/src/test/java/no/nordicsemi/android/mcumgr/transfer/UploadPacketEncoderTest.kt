@@ -0,0 +1,52 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+
+class UploadPacketEncoderTest {
+
+    @Test
+    fun `encoded packet has valid header and payload`() {
+        val data = ByteArray(300) { it.toByte() }
+        val sha = ByteArray(32) { 0x55 }
+        val encoder = UploadPacketEncoder(1, 1)
+
+        val packet = encoder.encode(ByteArrayUploadSource(data), 10, 200, 0, data.size) { writer ->
+            writer.put("image", 1)
+            writer.put("sha", sha)
+        }
+
+        val header = McuMgrHeader.fromBytes(packet)
+        assertEquals(2, header.op)
+        assertEquals(1, header.groupId)
+        assertEquals(1, header.commandId)
+        assertEquals(packet.size - McuMgrHeader.HEADER_LENGTH, header.len)
+
+        val payload = packet.copyOfRange(McuMgrHeader.HEADER_LENGTH, packet.size)
+        val map = CBOR.toObjectMap(payload)
+        assertContentEquals(data.copyOfRange(10, 210), map["data"] as ByteArray)
+        assertEquals(0, map["off"])
+        assertEquals(data.size, map["len"])
+        assertEquals(1, map["image"])
+        assertContentEquals(sha, map["sha"] as ByteArray)
+    }
+
+    @Test
+    fun `length is omitted when not given`() {
+        val encoder = UploadPacketEncoder(8, 0)
+
+        val packet = encoder.encode(ByteArrayUploadSource(ByteArray(16)), 0, 16, 70000, -1) { writer ->
+            writer.put("name", "/lfs/file.bin")
+        }
+
+        val payload = packet.copyOfRange(McuMgrHeader.HEADER_LENGTH, packet.size)
+        val map = CBOR.toObjectMap(payload)
+        assertEquals(70000, map["off"])
+        assertEquals("/lfs/file.bin", map["name"])
+        assertFalse(map.containsKey("len"))
+    }
+}
@@ -0,0 +1,272 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.FsManager
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.mock.McuMgrHandler
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.response.UploadResponse
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class UploadSessionTest {
+
+    private val data = ByteArray(300_000) { (it * 7).toByte() }
+
+    @Test
+    fun `sessions are saved in files`() {
+        val directory = Files.createTempDirectory("sessions").toFile()
+        try {
+            val store = FileUploadSessionStore(directory)
+            val session = UploadSession("fs/lfs/a b.bin", 1000, "00ff", 512, 498, 4)
+            assertNull(store.load(session.key))
+
+            store.save(session)
+            store.save(session.copy(offset = 768))
+            assertEquals(session.copy(offset = 768), FileUploadSessionStore(directory).load(session.key))
+            assertNull(store.load("fs/lfs/a_b.bin"))
+
+            store.remove(session.key)
+            assertNull(store.load(session.key))
+
+            // A damaged file is ignored.
+            File(directory, "image_0.properties").writeText("key=image/0\nsize=")
+            assertNull(store.load("image/0"))
+        } finally {
+            directory.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun `image upload resumes from the device offset after a disconnection`() {
+        val device = ImageDevice(disconnectAt = 100_000)
+        var connects = 0
+        val transport = object : McuMgrTransport by MockBleMcuMgrTransport(device) {
+            override fun connect(callback: McuMgrTransport.ConnectionCallback?) {
+                connects++
+                device.connected = true
+                callback?.onConnected()
+            }
+        }
+        val manager = ImageManager(transport)
+        manager.setUploadMtu(498)
+        val uploader = ImageUploader(manager, data, 0, windowCapacity = 4).apply {
+            resumeAttempts = 1
+            resumeDelay = 0
+        }
+
+        runBlocking { uploader.upload() }
+
+        assertEquals(1, connects)
+        assertContentEquals(data, device.received)
+        // Only the chunks lost in the disconnection were sent again.
+        assertTrue(device.bytesSent < data.size + 10_000, "Sent ${device.bytesSent} bytes")
+    }
+
+    @Test
+    fun `file upload resumes at the saved offset`() {
+        val directory = Files.createTempDirectory("sessions").toFile()
+        try {
+            val store = FileUploadSessionStore(directory)
+            val device = FileDevice()
+            val manager = FsManager(MockBleMcuMgrTransport(device))
+            manager.setUploadMtu(498)
+
+            // The first upload is interrupted, the transport error is not retried.
+            device.failAt = 150_000
+            val first = FileUploader(manager, "/lfs/image.bin", data, windowCapacity = 1)
+            first.sessionStore = store
+            runCatching { runBlocking { first.upload() } }
+                .onSuccess { error("The upload should have failed") }
+            val session = assertNotNull(store.load("fs/lfs/image.bin"))
+            assertTrue(session.offset in 64 * 1024 until 150_000 + 498)
+
+            // The next upload, like one in a new process, continues from the saved offset.
+            device.failAt = null
+            device.offsets.clear()
+            val second = FileUploader(manager, "/lfs/image.bin", data, windowCapacity = 1)
+            second.sessionStore = store
+            runBlocking { second.upload() }
+
+            assertEquals(session.offset, device.offsets.first())
+            assertContentEquals(data, device.file)
+            assertNull(store.load("fs/lfs/image.bin"))
+
+            // A device which lost the file rejects the offset, the upload starts again.
+            store.save(session)
+            device.file = ByteArray(0)
+            device.offsets.clear()
+            val third = FileUploader(manager, "/lfs/image.bin", data, windowCapacity = 1)
+            third.sessionStore = store
+            runBlocking { third.upload() }
+
+            assertEquals(listOf(session.offset, 0), device.offsets.take(2))
+            assertContentEquals(data, device.file)
+
+            // A session saved with another MTU is not resumed, and does not change the MTU.
+            store.save(session.copy(mtu = 100))
+            device.offsets.clear()
+            val fourth = FileUploader(manager, "/lfs/image.bin", data, windowCapacity = 1)
+            fourth.sessionStore = store
+            runBlocking { fourth.upload() }
+
+            assertEquals(0, device.offsets.first())
+            assertEquals(498, fourth.mtu)
+            assertContentEquals(data, device.file)
+        } finally {
+            directory.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun `device error after resuming fails without restarting the upload`() {
+        val directory = Files.createTempDirectory("sessions").toFile()
+        try {
+            val store = FileUploadSessionStore(directory)
+            val device = FileDevice()
+            val manager = FsManager(MockBleMcuMgrTransport(device))
+            manager.setUploadMtu(498)
+
+            device.failAt = 150_000
+            val first = FileUploader(manager, "/lfs/image.bin", data, windowCapacity = 1)
+            first.sessionStore = store
+            runCatching { runBlocking { first.upload() } }
+                .onSuccess { error("The upload should have failed") }
+            val session = assertNotNull(store.load("fs/lfs/image.bin"))
+
+            // The device accepts the resumed upload, but runs out of space later.
+            device.failAt = null
+            device.errorAt = 200_000
+            device.offsets.clear()
+            val second = FileUploader(manager, "/lfs/image.bin", data, windowCapacity = 1)
+            second.sessionStore = store
+            runCatching { runBlocking { second.upload() } }
+                .onSuccess { error("The upload should have failed") }
+
+            assertEquals(session.offset, device.offsets.first())
+            assertFalse(0 in device.offsets)
+        } finally {
+            directory.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun `sessions are saved off the uploading thread`() {
+        val saves = mutableListOf<Pair<Int, Thread>>()
+        val store = object : UploadSessionStore {
+            override fun load(key: String): UploadSession? = null
+
+            override fun save(session: UploadSession) {
+                synchronized(saves) { saves.add(session.offset to Thread.currentThread()) }
+            }
+
+            override fun remove(key: String) {}
+        }
+        val device = FileDevice()
+        val manager = FsManager(MockBleMcuMgrTransport(device))
+        manager.setUploadMtu(498)
+        val uploader = FileUploader(manager, "/lfs/image.bin", data, windowCapacity = 1)
+        uploader.sessionStore = store
+
+        runBlocking { uploader.upload() }
+
+        assertContentEquals(data, device.file)
+        assertTrue(saves.isNotEmpty())
+        assertTrue(saves.none { it.second == Thread.currentThread() })
+        assertEquals(saves.map { it.first }.sorted(), saves.map { it.first })
+    }
+
+    /** Keeps the upload of an image with the same SHA-256, like MCUboot's img_mgmt. */
+    private inner class ImageDevice(private val disconnectAt: Int) : McuMgrHandler {
+        val received = ByteArray(data.size)
+        var offset = 0
+        var bytesSent = 0
+        var connected = true
+        private var sha: ByteArray? = null
+        private var disconnected = false
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            if (!disconnected && offset >= disconnectAt) {
+                disconnected = true
+                connected = false
+            }
+            if (!connected) {
+                throw McuMgrException("Disconnected")
+            }
+            val map = CBOR.toObjectMap(payload)
+            val off = map["off"] as Int
+            val chunk = map["data"] as ByteArray
+            bytesSent += chunk.size
+            if (off == 0) {
+                val sha = map["sha"] as ByteArray
+                if (!sha.contentEquals(this.sha)) {
+                    this.sha = sha
+                    offset = 0
+                }
+            }
+            if (off == offset) {
+                chunk.copyInto(received, off)
+                offset = off + chunk.size
+            }
+            return McuMgrImageUploadResponse().apply {
+                this.off = offset
+                this.rc = 0
+            } as T
+        }
+    }
+
+    /** Accepts writes at the end of the file only, like Zephyr's fs_mgmt. */
+    private inner class FileDevice : McuMgrHandler {
+        var file = ByteArray(0)
+        var failAt: Int? = null
+        var errorAt: Int? = null
+        val offsets = mutableListOf<Int>()
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val map = CBOR.toObjectMap(payload)
+            val off = map["off"] as Int
+            val chunk = map["data"] as ByteArray
+            assertEquals(off == 0, map.containsKey("len"))
+            offsets.add(off)
+            failAt?.let { if (off >= it) throw McuMgrException("Disconnected") }
+
+            val response = UploadResponse()
+            if (errorAt?.let { off >= it } == true) {
+                response.rc = 2 // ENOMEM
+                return response as T
+            }
+            if (off == 0) {
+                file = chunk
+            } else if (off == file.size) {
+                file += chunk
+            } else {
+                response.rc = 3 // EINVAL
+                return response as T
+            }
+            response.off = file.size
+            response.rc = 0
+            return response as T
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.mock.McuMgrHandler
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.InputStream
+import java.security.MessageDigest
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertIs
+
+class UploadSourceTest {
+
+    private val data = ByteArray(200_000) { (it * 31).toByte() }
+
+    @Test
+    fun `range of an array is read and digested`() {
+        val source = ByteArrayUploadSource(data, 1000, 5000)
+        assertEquals(5000, source.size)
+
+        val buffer = ByteArray(100)
+        source.read(4900, buffer, 0, 100)
+        assertContentEquals(data.copyOfRange(5900, 6000), buffer)
+
+        val range = data.copyOfRange(1000, 6000)
+        assertContentEquals(MessageDigest.getInstance("SHA-256").digest(range), source.sha256())
+        // The digest of the range is not taken for the digest of the whole array.
+        assertContentEquals(MessageDigest.getInstance("SHA-256").digest(data), ByteArrayUploadSource(data).sha256())
+
+        assertFailsWith<IllegalArgumentException> { ByteArrayUploadSource(data, 1000, data.size) }
+    }
+
+    @Test
+    fun `mapped file is read at any offset`() {
+        val file = File.createTempFile("image", ".bin")
+        try {
+            file.writeBytes(data)
+            val source = MappedFileUploadSource(file)
+            assertEquals(data.size, source.size)
+
+            val buffer = ByteArray(1000)
+            source.read(150_000, buffer, 0, 1000)
+            assertContentEquals(data.copyOfRange(150_000, 151_000), buffer)
+            source.read(10, buffer, 500, 100)
+            assertContentEquals(data.copyOfRange(10, 110), buffer.copyOfRange(500, 600))
+        } finally {
+            file.delete()
+        }
+    }
+
+    @Test
+    fun `stream is opened again only to read backwards`() {
+        var opened = 0
+        val source = StreamUploadSource(data.size) {
+            opened++
+            ByteArrayInputStream(data)
+        }
+        val buffer = ByteArray(100)
+
+        source.read(0, buffer, 0, 100)
+        source.read(100, buffer, 0, 100)
+        source.read(5_000, buffer, 0, 100)
+        assertEquals(1, opened)
+        assertContentEquals(data.copyOfRange(5_000, 5_100), buffer)
+
+        // A chunk sent again.
+        source.read(200, buffer, 0, 100)
+        assertEquals(2, opened)
+        assertContentEquals(data.copyOfRange(200, 300), buffer)
+    }
+
+    @Test
+    fun `truncated stream fails and is opened again`() {
+        var opened = 0
+        val source = StreamUploadSource(data.size) {
+            opened++
+            ByteArrayInputStream(data, 0, 1000)
+        }
+        val buffer = ByteArray(100)
+
+        assertFailsWith<EOFException> { source.read(950, buffer, 0, 100) }
+        source.read(900, buffer, 0, 100)
+        assertEquals(2, opened)
+    }
+
+    @Test
+    fun `image is uploaded from a stream`() {
+        val received = ByteArray(data.size)
+        var sha: ByteArray? = null
+        val handler = object : McuMgrHandler {
+            override fun <T : McuMgrResponse> handle(
+                header: McuMgrHeader,
+                payload: ByteArray,
+                responseType: Class<T>
+            ): T {
+                val map = CBOR.toObjectMap(payload)
+                val off = map["off"] as Int
+                val chunk = map["data"] as ByteArray
+                if (off == 0) {
+                    sha = map["sha"] as ByteArray
+                }
+                chunk.copyInto(received, off)
+                return McuMgrImageUploadResponse()
+                    .apply {
+                        this.off = off + chunk.size
+                        this.rc = 0
+                    } as T
+            }
+        }
+        val manager = ImageManager(MockBleMcuMgrTransport(handler))
+        val source = StreamUploadSource(data.size) { SlowInputStream(data) }
+
+        runBlocking { ImageUploader(manager, source, 0, windowCapacity = 3).upload() }
+
+        assertContentEquals(data, received)
+        assertContentEquals(MessageDigest.getInstance("SHA-256").digest(data), sha)
+    }
+
+    @Test
+    fun `image upload fails when the digest can't be computed`() {
+        var requests = 0
+        val handler = object : McuMgrHandler {
+            override fun <T : McuMgrResponse> handle(
+                header: McuMgrHeader,
+                payload: ByteArray,
+                responseType: Class<T>
+            ): T {
+                requests++
+                return McuMgrImageUploadResponse().apply { rc = 0 } as T
+            }
+        }
+        val manager = ImageManager(MockBleMcuMgrTransport(handler))
+        // The first chunk can be read, but the stream ends before the digest is computed.
+        val source = StreamUploadSource(data.size) { ByteArrayInputStream(data, 0, 1000) }
+
+        val e = assertFailsWith<McuMgrException> {
+            runBlocking { ImageUploader(manager, source, 0).upload() }
+        }
+        assertIs<EOFException>(e.cause)
+        // The first packet is not sent without the "sha".
+        assertEquals(0, requests)
+    }
+
+    /** A stream returning fewer bytes than requested, like streams of content providers. */
+    private class SlowInputStream(data: ByteArray) : InputStream() {
+        private val stream = ByteArrayInputStream(data)
+
+        override fun read(): Int = stream.read()
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int =
+            stream.read(b, off, minOf(len, 17))
+
+        override fun skip(n: Long): Long = 0
+    }
+}
@@ -1,15 +1,25 @@
 package no.nordicsemi.android.mcumgr.transfer
 
+import com.sun.management.ThreadMXBean
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrTransport
 import no.nordicsemi.android.mcumgr.managers.ImageManager
 import no.nordicsemi.android.mcumgr.mock.McuMgrHandler
 import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse
 import no.nordicsemi.android.mcumgr.response.img.McuMgrImageUploadResponse
+import no.nordicsemi.android.mcumgr.sim.SimulatedDevice
+import no.nordicsemi.android.mcumgr.sim.SimulatedTransport
 import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Assume.assumeTrue
 import org.junit.Test
+import java.lang.management.ManagementFactory
+import kotlin.test.assertContentEquals
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
 import kotlin.test.assertFalse
 import kotlin.test.assertTrue
 
@@ -80,5 +90,130 @@ internal class UploaderTest {
         assertEquals(data.size, received)
     }
 
-}
+    @Test
+    fun `transport is notified when upload starts and finishes`() {
+        val events = mutableListOf<String>()
+        var rc = 0
+        val handler = object : McuMgrHandler {
+            override fun <T : McuMgrResponse> handle(
+                header: McuMgrHeader,
+                payload: ByteArray,
+                responseType: Class<T>
+            ): T {
+                events.add("request")
+                return McuMgrImageUploadResponse()
+                    .apply {
+                        this.off = 100
+                        this.rc = rc
+                    } as T
+            }
+        }
+        val transport = object : McuMgrTransport by MockBleMcuMgrTransport(handler) {
+            override fun onTransferStarted() {
+                events.add("started")
+            }
+
+            override fun onTransferFinished() {
+                events.add("finished")
+            }
+        }
+        val uploader = ImageUploader(ImageManager(transport), ByteArray(100), 0)
+
+        runBlocking { uploader.upload() }
+        assertEquals(listOf("started", "request", "finished"), events)
+
+        // The transport is notified also when the upload fails.
+        events.clear()
+        rc = 1
+        assertFailsWith<ErrorResponseException> { runBlocking { uploader.upload() } }
+        assertEquals("started", events.first())
+        assertEquals("finished", events.last())
+        assertEquals(1, events.count { it == "finished" })
+    }
+
+    @Test
+    fun `window is derived from the buffer count by default`() {
+        val data = ByteArray(10_000) { it.toByte() }
+        val device = SimulatedDevice(bufferCount = 4)
+        val manager = ImageManager(SimulatedTransport(device))
+        manager.setUploadMtu(250)
+        val uploader = ImageUploader(manager, data, 0)
+
+        runBlocking { uploader.upload() }
+
+        // One buffer is left for responses.
+        assertEquals(3, uploader.windowSize.value)
+        assertContentEquals(data, device.getSlot(0, 1).data)
+    }
+
+    @Test
+    fun `adaptive window recovers from lost packets`() {
+        val device = SimulatedDevice(bufferSize = 2475, bufferCount = 5)
+        val transport = SimulatedTransport(device, mtu = 498, latency = 1, jitter = 2, lossRate = 0.02, seed = 7)
+        val manager = ImageManager(transport)
+        manager.setUploadMtu(498)
+        val image = javaClass.getResource("/slinky-prot-tlv.img")!!.readBytes()
+        val uploader = object : ImageUploader(manager, image, 0, windowCapacity = 4) {
+            // Short timeouts, so that lost packets do not slow down the test.
+            override fun getTimeout(chunk: Chunk): Long = 200
+        }
+        uploader.adaptiveWindow = true
+        val sizes = mutableListOf<Int>()
+
+        runBlocking {
+            val collector = launch(Dispatchers.Unconfined) {
+                uploader.windowSize.collect { sizes.add(it) }
+            }
+            uploader.upload()
+            collector.cancel()
+        }
 
+        assertContentEquals(image, device.getSlot(0, 1).data)
+        // The window starts with 1 packet.
+        val start = sizes.indexOf(1)
+        assertTrue(start >= 0, "Window did not start with 1: $sizes")
+        val full = start + sizes.subList(start, sizes.size).indexOf(4)
+        assertTrue(full > start, "Window did not grow: $sizes")
+        // Halved after a loss, and grown again.
+        val halved = sizes.subList(full, sizes.size).indexOfFirst { it < 4 }
+        assertTrue(halved > 0, "Window did not shrink: $sizes")
+        assertTrue(sizes.subList(full + halved, sizes.size).contains(4), "Window did not recover: $sizes")
+    }
+
+    @Test
+    fun `chunks are not copied until encoded`() {
+        val threads = ManagementFactory.getThreadMXBean() as? ThreadMXBean
+        assumeTrue(threads?.isThreadAllocatedMemorySupported == true)
+        threads!!.isThreadAllocatedMemoryEnabled = true
+        val thread = Thread.currentThread().id
+
+        val data = ByteArray(1024 * 1024) { it.toByte() }
+        val im = ImageManager(MockBleMcuMgrTransport(null))
+        im.setUploadMtu(498)
+        val uploader = ImageUploader(im, data, 0, memoryAlignment = 4)
+
+        fun encodeAll(): Pair<Int, Long> {
+            var chunks = 0
+            var packetBytes = 0L
+            var chunk = uploader.newChunk(0)
+            while (true) {
+                chunks++
+                packetBytes += uploader.preparePacket(chunk).size
+                if (chunk.isLast) break
+                chunk = uploader.newChunk(chunk.end)
+            }
+            return chunks to packetBytes
+        }
+        // Warm up, also calculates the SHA-256 sent in the first packet.
+        encodeAll()
+
+        val before = threads.getThreadAllocatedBytes(thread)
+        val (chunks, packetBytes) = encodeAll()
+        val allocated = threads.getThreadAllocatedBytes(thread) - before
+
+        // Apart from the packets, only small objects are allocated per chunk. Copying the chunk
+        // before encoding it would double the allocated memory.
+        val overhead = allocated - packetBytes
+        assertTrue(overhead < chunks * 128L, "Allocated $overhead bytes over $packetBytes bytes of packets for $chunks chunks")
+    }
+}
@@ -0,0 +1,84 @@
+package no.nordicsemi.android.mcumgr.transport
+
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertIs
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+class McuMgrTransactionTableTest {
+
+    private val table = McuMgrTransactionTable()
+
+    private class Result : McuMgrCallback<McuMgrEchoResponse> {
+        var response: McuMgrEchoResponse? = null
+        var error: McuMgrException? = null
+
+        override fun onResponse(response: McuMgrEchoResponse) {
+            this.response = response
+        }
+
+        override fun onError(error: McuMgrException) {
+            this.error = error
+        }
+    }
+
+    private fun newTransaction(result: Result, timeout: Long = 1000) = McuMgrTransaction(
+        McuManager.buildPacket(McuMgrScheme.BLE, 2, 0, 0, 0, 0, mapOf("d" to "Hello")),
+        timeout, McuMgrScheme.BLE, McuMgrEchoResponse::class.java, result
+    )
+
+    private fun response(sequenceNumber: Int, echo: String) =
+        McuManager.buildPacket(McuMgrScheme.BLE, 3, 0, 0, sequenceNumber, 0, mapOf("r" to echo))
+
+    @Test
+    fun `responses are matched by sequence number`() {
+        val first = Result()
+        val second = Result()
+        table.add(newTransaction(first))
+        table.add(newTransaction(second))
+
+        table.onResponse(response(1, "second"))
+        table.onResponse(response(0, "first"))
+        // A duplicate response is ignored.
+        table.onResponse(response(0, "again"))
+
+        assertEquals("first", first.response?.r)
+        assertEquals("second", second.response?.r)
+    }
+
+    @Test
+    fun `transaction with the same sequence number is overwritten`() {
+        val first = Result()
+        val overwritten = newTransaction(first)
+        table.add(overwritten)
+        repeat(McuMgrTransactionTable.SIZE - 1) { table.add(newTransaction(Result())) }
+
+        assertNull(first.error)
+        assertSame(overwritten, table.add(newTransaction(Result())))
+        assertIs<McuMgrException>(first.error)
+    }
+
+    @Test
+    fun `expired transactions fail`() {
+        val short = Result()
+        val long = Result()
+        table.add(newTransaction(short).apply { deadline = 100 })
+        table.add(newTransaction(long).apply { deadline = 300 })
+
+        val expired = mutableListOf<McuMgrTransaction<*>>()
+        assertEquals(200, table.expire(100) { expired.add(it) })
+
+        assertIs<McuMgrTimeoutException>(short.error)
+        assertNull(long.error)
+        assertEquals(1, expired.size)
+        assertEquals(Long.MAX_VALUE, table.expire(300))
+        assertIs<McuMgrTimeoutException>(long.error)
+    }
+}
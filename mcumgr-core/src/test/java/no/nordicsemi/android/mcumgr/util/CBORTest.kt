@@ -0,0 +1,31 @@
+package no.nordicsemi.android.mcumgr.util
+
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import org.junit.Test
+import kotlin.test.assertEquals
+
+class CBORTest {
+
+    @Test
+    fun `maps are encoded with definite length`() {
+        val bytes = CBOR.toBytes(mapOf("off" to 0, "data" to byteArrayOf(1, 2, 3)))
+        // A2 - map(2), instead of BF...FF - map(*).
+        assertEquals(0xA2, bytes[0].toInt() and 0xFF)
+    }
+
+    @Test
+    fun `shared codec decodes repeatedly`() {
+        val payload = CBOR.toBytes(mapOf("r" to "Hello!"))
+        repeat(3) {
+            assertEquals("Hello!", CBOR.toObject(payload, McuMgrEchoResponse::class.java).r)
+        }
+    }
+
+    @Test
+    fun `decode with offset`() {
+        val payload = CBOR.toBytes(mapOf("r" to "Hello!"))
+        val packet = ByteArray(8) + payload
+        val response = CBOR.toObject(packet, 8, payload.size, McuMgrEchoResponse::class.java)
+        assertEquals("Hello!", response.r)
+    }
+}
@@ -0,0 +1,59 @@
+package no.nordicsemi.android.mcumgr.util
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import org.junit.Test
+import java.security.MessageDigest
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertIs
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class DigestCacheTest {
+
+    @Test
+    fun `digest is computed once per array`() {
+        val data = ByteArray(100_000) { it.toByte() }
+
+        val first = DigestCache.sha256(data)
+        assertContentEquals(MessageDigest.getInstance("SHA-256").digest(data), first)
+        assertSame(first, DigestCache.sha256(data))
+    }
+
+    @Test
+    fun `prefetched digest is reused`() {
+        val key = Any()
+        val computed = AtomicInteger()
+        val started = CountDownLatch(1)
+        val digest = byteArrayOf(1, 2, 3)
+
+        DigestCache.prefetch(key) {
+            started.countDown()
+            computed.incrementAndGet()
+            digest
+        }
+        assertTrue(started.await(1, TimeUnit.SECONDS))
+
+        val result = DigestCache.sha256(key) {
+            computed.incrementAndGet()
+            byteArrayOf()
+        }
+        assertSame(digest, result)
+        assertEquals(1, computed.get())
+    }
+
+    @Test
+    fun `failed digest is computed again`() {
+        val key = Any()
+
+        val e = assertFailsWith<McuMgrException> {
+            DigestCache.sha256(key) { throw IllegalStateException("Read error") }
+        }
+        assertIs<IllegalStateException>(e.cause)
+        assertContentEquals(byteArrayOf(1), DigestCache.sha256(key) { byteArrayOf(1) })
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Nordic Semiconductor ASA, 2021-present
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.jetbrains.kotlin.gradle.dsl.JvmTarget
+
+plugins {
+    alias(libs.plugins.nordic.library)
+    alias(libs.plugins.nordic.kotlin.android)
+    alias(libs.plugins.nordic.nexus.android)
+}
+
+group = "no.nordicsemi.android"
+
+nordicNexusPublishing {
+    POM_ARTIFACT_ID = "mcumgr-serial"
+    POM_NAME = "Mcu Manager Serial Transport"
+
+    POM_DESCRIPTION = "An SMP over serial (UART, USB CDC ACM) transport implementation for the Mcu Manager library."
+    POM_URL = "https://github.com/NordicSemiconductor/Android-nRF-Connect-Device-Manager.git"
+    POM_SCM_URL = "https://github.com/NordicSemiconductor/Android-nRF-Connect-Device-Manager.git"
+    POM_SCM_CONNECTION = "scm:git@github.com:NordicSemiconductor/Android-nRF-Connect-Device-Manager.git"
+    POM_SCM_DEV_CONNECTION = "scm:git@github.com:NordicSemiconductor/Android-nRF-Connect-Device-Manager.git"
+}
+
+android {
+    namespace = "no.nordicsemi.android.mcumgr.serial"
+
+    compileOptions {
+        // for now and foreseeable future we intentionally set the build system to emit bytecode that is compatible with
+        // java11 so as to ensure that we don't break the "classic xamarin (mono)" toolchain for C# android-java-bindings
+        // which employs an outdated version of r8 that can only handle java11 bytecode
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    kotlin {
+        compilerOptions {
+            // for now and foreseeable future we intentionally set the build system to emit bytecode that is compatible with
+            // java11 so as to ensure that we don't break the "classic xamarin (mono)" toolchain for C# android-java-bindings
+            // which employs an outdated version of r8 that can only handle java11 bytecode
+            jvmTarget = JvmTarget.JVM_11
+        }
+    }
+
+    sourceSets {
+        // Test images used by the upload tests.
+        getByName("test").resources.srcDir("../mcumgr-core/src/test/resources")
+    }
+}
+
+dependencies {
+    // Import mcumgr-core
+    api(project(":mcumgr-core"))
+
+    // Logging using SLF4J. Specify binding in the application.
+    implementation(libs.slf4j)
+
+    // Test
+    testImplementation(libs.kotlin.test)
+    testImplementation(project(":mcumgr-sim"))
+    // Tests use ImageUploader, which is a suspending function.
+    testImplementation(libs.kotlinx.coroutines.core)
+}
@@ -0,0 +1,220 @@
+package no.nordicsemi.android.mcumgr.serial
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.capture.PacketCapture
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.transport.McuMgrConnectionTransport
+import no.nordicsemi.android.mcumgr.transport.McuMgrTransaction
+import no.nordicsemi.android.mcumgr.transport.McuMgrTransactionTable
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/** Longer lines are console output, and are skipped. */
+private const val MAX_LINE_LENGTH = 512
+
+/**
+ * SMP over serial transport, for devices using the Zephyr UART or shell transport
+ * (CONFIG_MCUMGR_TRANSPORT_UART, CONFIG_MCUMGR_TRANSPORT_SHELL), connected over a UART,
+ * USB CDC ACM or a pseudo-terminal.
+ *
+ * Packets use the mcumgr serial framing: each SMP packet, with its length and CRC16,
+ * is encoded with Base64 and split into lines starting with 0x06 0x09 (first frame) or
+ * 0x04 0x14 (following frames). Other lines, like console output of the device, are ignored.
+ * The SMP packet itself is framed as over Bluetooth LE, hence the [McuMgrScheme.BLE] scheme.
+ *
+ * Requests are written by a writer thread, in the order they were sent, and responses are
+ * read by a reader thread and matched to requests using the sequence number, so multiple
+ * requests may be in flight. The writer thread also checks timeouts, which start when the
+ * request has been written. Callbacks are called on those threads, unless an executor is given.
+ *
+ * The port is opened by [connect], or with the first request, and closed by [release].
+ *
+ * @property port The serial port to the device.
+ * @param callbackExecutor The executor to call callbacks on, or null to call them on
+ * the reader or writer thread.
+ * @param maxFrameLength The maximum length of a single line, including markers and
+ * the newline. Must fit in the line buffer of the device; 127 in Zephyr.
+ */
+class McuMgrSerialTransport @JvmOverloads constructor(
+    val port: SerialPort,
+    callbackExecutor: Executor? = null,
+    private val maxFrameLength: Int = MAX_FRAME_LENGTH,
+) : McuMgrConnectionTransport(callbackExecutor) {
+
+    companion object {
+        /** The default value of CONFIG_MCUMGR_TRANSPORT_UART_MTU in Zephyr. */
+        const val DEFAULT_MTU = 256
+
+        private val LOG = LoggerFactory.getLogger(McuMgrSerialTransport::class.java)
+    }
+
+    init {
+        require(maxFrameLength in 7..MAX_LINE_LENGTH) { "Invalid frame length: $maxFrameLength" }
+    }
+
+    /**
+     * The maximum length of an SMP request, in bytes. Longer requests fail with
+     * [InsufficientMtuException].
+     *
+     * This should be set to the size of the buffer the device reassembles received frames into
+     * (CONFIG_MCUMGR_TRANSPORT_UART_MTU), or to the buffer size reported in McuMgrParams.
+     */
+    @Volatile
+    var mtu: Int = DEFAULT_MTU
+        set(value) {
+            require(value in McuMgrHeader.HEADER_LENGTH..MAX_PACKET_LENGTH) { "Invalid MTU: $value" }
+            field = value
+        }
+
+    override val maxPacketLength: Int
+        get() = mtu
+
+    /**
+     * An open port with its reader and writer threads.
+     *
+     * Transactions are added using [enqueue]. The sequence number is assigned on the writer
+     * thread; the table of transactions is shared with the reader thread.
+     */
+    private inner class Connection : McuMgrConnectionTransport.Connection {
+        private val queue = LinkedBlockingQueue<McuMgrTransaction<*>>()
+        private val transactions = McuMgrTransactionTable()
+        private val reader = Thread(::read, "McuMgrSerialTransport-reader").apply { isDaemon = true }
+        private val writer = Thread(::write, "McuMgrSerialTransport-writer").apply { isDaemon = true }
+        @Volatile
+        private var closed = false
+        @Volatile
+        private var reason = McuMgrException("Transport released")
+
+        override fun start() {
+            reader.start()
+            writer.start()
+        }
+
+        override fun enqueue(transaction: McuMgrTransaction<*>) {
+            queue.add(transaction)
+            // If the connection has been closed meanwhile, the transaction may have been
+            // added after the remaining ones were failed.
+            if (closed && queue.remove(transaction)) {
+                transaction.onError(reason)
+            }
+        }
+
+        override fun close() {
+            if (closed) return
+            closed = true
+            // Unblocks the reader.
+            port.close()
+            writer.interrupt()
+        }
+
+        private fun close(reason: McuMgrException) {
+            if (closed) return
+            this.reason = reason
+            close()
+        }
+
+        private fun write() {
+            try {
+                while (!closed) {
+                    val timeout = transactions.expire(now())
+                    val transaction = queue.poll(timeout, TimeUnit.MILLISECONDS) ?: continue
+                    if (closed) {
+                        transaction.onError(reason)
+                        break
+                    }
+                    send(transaction)
+                }
+            } catch (e: InterruptedException) {
+                // Closed.
+            } catch (e: IOException) {
+                LOG.error("Serial transport failed", e)
+                close(McuMgrException(e))
+            } finally {
+                close()
+                failAll(reason)
+                onClosed(this)
+            }
+        }
+
+        private fun send(transaction: McuMgrTransaction<*>) {
+            transactions.add(transaction)
+            val frames = encodeSerialPacket(transaction.packet, maxFrameLength)
+            port.write(frames)
+            packetCapture?.record(PacketCapture.OUTGOING, transaction.packet)
+            // The time needed to write the request does not count.
+            transaction.deadline = now() + transaction.timeout
+        }
+
+        private fun read() {
+            val decoder = SerialFrameDecoder()
+            val buffer = ByteArray(1024)
+            val line = ByteArray(MAX_LINE_LENGTH)
+            var length = 0
+            var skipping = false
+            try {
+                while (!closed) {
+                    val count = port.read(buffer)
+                    if (count < 0) {
+                        close(McuMgrException("Serial port closed"))
+                        break
+                    }
+                    for (i in 0 until count) {
+                        val b = buffer[i]
+                        if (b == '\n'.code.toByte()) {
+                            if (!skipping) {
+                                decoder.decodeLine(line, 0, length)?.let { receive(it) }
+                            }
+                            length = 0
+                            skipping = false
+                        } else if (length < line.size) {
+                            line[length++] = b
+                        } else {
+                            skipping = true
+                        }
+                    }
+                }
+            } catch (e: IOException) {
+                if (!closed) {
+                    LOG.error("Serial transport failed", e)
+                    close(McuMgrException(e))
+                }
+            }
+        }
+
+        private fun receive(packet: ByteArray) {
+            packetCapture?.record(PacketCapture.INCOMING, packet)
+            transactions.onResponse(packet)
+        }
+
+        private fun failAll(reason: McuMgrException) {
+            transactions.failAll(reason)
+            while (true) {
+                queue.poll()?.onError(reason) ?: break
+            }
+        }
+    }
+
+    /**
+     * Optional capture of sent and received SMP packets.
+     *
+     * Packets are recorded without the serial framing. The capture can be saved using
+     * [PacketCapture.writeTo] and decoded offline using
+     * [no.nordicsemi.android.mcumgr.capture.CaptureDecoder].
+     */
+    @Volatile
+    var packetCapture: PacketCapture? = null
+
+    override fun getScheme(): McuMgrScheme = McuMgrScheme.BLE
+
+    override fun openConnection(): McuMgrConnectionTransport.Connection {
+        port.open()
+        return Connection()
+    }
+
+    private fun now(): Long = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
+}
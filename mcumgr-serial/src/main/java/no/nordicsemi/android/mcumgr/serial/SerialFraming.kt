@@ -0,0 +1,189 @@
+package no.nordicsemi.android.mcumgr.serial
+
+import java.io.ByteArrayOutputStream
+
+/** The first frame of a packet starts with this marker. */
+private const val START_1: Byte = 0x06
+private const val START_2: Byte = 0x09
+/** Following frames of a packet start with this marker. */
+private const val CONTINUATION_1: Byte = 0x04
+private const val CONTINUATION_2: Byte = 0x14
+private const val NEWLINE: Byte = '\n'.code.toByte()
+
+/** The maximum length of a frame, including markers and the newline, in Zephyr. */
+internal const val MAX_FRAME_LENGTH = 127
+/** The maximum length of an SMP packet, limited by the 16-bit length field. */
+internal const val MAX_PACKET_LENGTH = 0xFFFF - 2
+
+private val ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+    .toByteArray(Charsets.US_ASCII)
+private val DECODE = IntArray(128) { -1 }.apply {
+    ALPHABET.forEachIndexed { i, c -> this[c.toInt()] = i }
+}
+
+/**
+ * Calculates CRC16-CCITT (XMODEM, polynomial 0x1021, initial value 0),
+ * known as crc16_itu_t in Zephyr.
+ */
+internal fun crc16(data: ByteArray, offset: Int = 0, length: Int = data.size - offset): Int {
+    var crc = 0
+    for (i in offset until offset + length) {
+        crc = crc xor ((data[i].toInt() and 0xFF) shl 8)
+        repeat(8) {
+            crc = if (crc and 0x8000 != 0) (crc shl 1) xor 0x1021 else crc shl 1
+        }
+    }
+    return crc and 0xFFFF
+}
+
+/**
+ * Encodes an SMP packet using the mcumgr serial (console) framing.
+ *
+ * The packet is prefixed with its length and followed by CRC16, both big-endian.
+ * This is encoded with Base64 and split into frames of at most [maxFrameLength] bytes.
+ * The first frame starts with 0x06 0x09, the following ones with 0x04 0x14, and each
+ * ends with a newline. Every frame holds a multiple of 3 bytes, except the last one,
+ * so each can be decoded on its own.
+ *
+ * @return All frames of the packet.
+ */
+internal fun encodeSerialPacket(packet: ByteArray, maxFrameLength: Int = MAX_FRAME_LENGTH): ByteArray {
+    val bytesPerFrame = (maxFrameLength - 3) / 4 * 3
+    require(bytesPerFrame > 0) { "Frame too short" }
+
+    val crc = crc16(packet)
+    val raw = ByteArray(packet.size + 4)
+    val length = packet.size + 2
+    raw[0] = (length shr 8).toByte()
+    raw[1] = length.toByte()
+    packet.copyInto(raw, 2)
+    raw[raw.size - 2] = (crc shr 8).toByte()
+    raw[raw.size - 1] = crc.toByte()
+
+    val frames = (raw.size + bytesPerFrame - 1) / bytesPerFrame
+    // Markers and a newline for each frame, and the Base64 data.
+    val output = ByteArray(frames * 3 + (raw.size + 2) / 3 * 4)
+    var position = 0
+    var offset = 0
+    while (offset < raw.size) {
+        output[position++] = if (offset == 0) START_1 else CONTINUATION_1
+        output[position++] = if (offset == 0) START_2 else CONTINUATION_2
+        val count = minOf(bytesPerFrame, raw.size - offset)
+        position = base64Encode(raw, offset, count, output, position)
+        output[position++] = NEWLINE
+        offset += count
+    }
+    return output.copyOf(position)
+}
+
+/**
+ * Encodes [length] bytes of [data] from [offset] into [output] at [position], with padding.
+ *
+ * @return The position after the last written character.
+ */
+private fun base64Encode(data: ByteArray, offset: Int, length: Int, output: ByteArray, position: Int): Int {
+    var i = offset
+    var o = position
+    val end = offset + length
+    while (i < end) {
+        val b0 = data[i].toInt() and 0xFF
+        val b1 = if (i + 1 < end) data[i + 1].toInt() and 0xFF else 0
+        val b2 = if (i + 2 < end) data[i + 2].toInt() and 0xFF else 0
+        output[o++] = ALPHABET[b0 shr 2]
+        output[o++] = ALPHABET[(b0 and 0x03) shl 4 or (b1 shr 4)]
+        output[o++] = if (i + 1 < end) ALPHABET[(b1 and 0x0F) shl 2 or (b2 shr 6)] else '='.code.toByte()
+        output[o++] = if (i + 2 < end) ALPHABET[b2 and 0x3F] else '='.code.toByte()
+        i += 3
+    }
+    return o
+}
+
+/**
+ * Decodes SMP packets from lines received over a serial link.
+ *
+ * Lines which are not mcumgr frames, like console output of the device, are ignored,
+ * as are packets with an invalid length or CRC. This class is not thread safe.
+ *
+ * @param maxPacketLength The maximum length of a packet. Longer packets are dropped.
+ */
+internal class SerialFrameDecoder(private val maxPacketLength: Int = MAX_PACKET_LENGTH) {
+    /** The packet being received: length, data and CRC, or null, if none. */
+    private var packet: ByteArrayOutputStream? = null
+
+    /**
+     * Decodes a single line, without the trailing newline.
+     *
+     * @return The SMP packet, if this was its last frame, or null.
+     */
+    fun decodeLine(line: ByteArray, offset: Int, length: Int): ByteArray? {
+        var end = offset + length
+        // Tolerate CRLF line endings.
+        if (end > offset && line[end - 1] == '\r'.code.toByte()) end--
+        if (end - offset < 2) {
+            return null
+        }
+        val m1 = line[offset]
+        val m2 = line[offset + 1]
+        val current = when {
+            m1 == START_1 && m2 == START_2 -> ByteArrayOutputStream().also { packet = it }
+            m1 == CONTINUATION_1 && m2 == CONTINUATION_2 -> packet ?: return null
+            else -> return null
+        }
+        if (!base64Decode(line, offset + 2, end, current)) {
+            packet = null
+            return null
+        }
+        if (current.size() < 2) {
+            return null
+        }
+        val raw = current.toByteArray()
+        val expected = ((raw[0].toInt() and 0xFF) shl 8 or (raw[1].toInt() and 0xFF)) + 2
+        if (expected < 4 || expected - 4 > maxPacketLength || raw.size > expected) {
+            packet = null
+            return null
+        }
+        if (raw.size < expected) {
+            return null
+        }
+        packet = null
+        // CRC over the data and the CRC is 0 for a valid packet.
+        if (crc16(raw, 2, raw.size - 2) != 0) {
+            return null
+        }
+        return raw.copyOfRange(2, raw.size - 2)
+    }
+
+    /**
+     * Decodes Base64 characters from [start] to [end] and writes the bytes to [output].
+     *
+     * @return False if the data is not valid Base64.
+     */
+    private fun base64Decode(data: ByteArray, start: Int, end: Int, output: ByteArrayOutputStream): Boolean {
+        if ((end - start) % 4 != 0) {
+            return false
+        }
+        var i = start
+        while (i < end) {
+            val c0 = sextet(data[i])
+            val c1 = sextet(data[i + 1])
+            if (c0 < 0 || c1 < 0) return false
+            output.write(c0 shl 2 or (c1 shr 4))
+            if (data[i + 2] == '='.code.toByte()) {
+                return i + 4 == end && data[i + 3] == '='.code.toByte()
+            }
+            val c2 = sextet(data[i + 2])
+            if (c2 < 0) return false
+            output.write((c1 and 0x0F) shl 4 or (c2 shr 2))
+            if (data[i + 3] == '='.code.toByte()) {
+                return i + 4 == end
+            }
+            val c3 = sextet(data[i + 3])
+            if (c3 < 0) return false
+            output.write((c2 and 0x03) shl 6 or c3)
+            i += 4
+        }
+        return true
+    }
+
+    private fun sextet(c: Byte): Int = if (c < 0) -1 else DECODE[c.toInt()]
+}
@@ -0,0 +1,120 @@
+package no.nordicsemi.android.mcumgr.serial
+
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * A byte stream to a device, for example a UART, a USB CDC ACM port or a pseudo-terminal.
+ *
+ * Implement this interface to use [McuMgrSerialTransport] with a USB serial library.
+ * The port must be configured (baud rate, raw mode, etc.) before it is opened.
+ */
+interface SerialPort {
+
+    /**
+     * Opens the port. Called before the first [read] or [write], and again after [close]
+     * when the transport is used again.
+     */
+    @Throws(IOException::class)
+    fun open()
+
+    /**
+     * Reads bytes into the given buffer, blocking until at least one byte is available.
+     *
+     * This method is called only from the reader thread of the transport.
+     *
+     * @return The number of bytes read, or -1 if the port was closed.
+     */
+    @Throws(IOException::class)
+    fun read(buffer: ByteArray): Int
+
+    /**
+     * Writes all given bytes.
+     *
+     * This method is called only from the writer thread of the transport.
+     */
+    @Throws(IOException::class)
+    fun write(data: ByteArray)
+
+    /**
+     * Closes the port. A pending [read] must return -1 or throw an [IOException].
+     */
+    fun close()
+}
+
+/** Delay between reads returning no data, in milliseconds, see [FileSerialPort]. */
+private const val EMPTY_READ_DELAY = 5L
+
+/**
+ * A [SerialPort] reading and writing a character device, like `/dev/ttyACM0` or the slave side
+ * of a pseudo-terminal.
+ *
+ * The device is used as it is; set the baud rate and the raw mode using `stty` before opening it.
+ * Closing the port interrupts a pending read, as the file is accessed using a [FileChannel].
+ * The device is opened twice, for reading and for writing, as a single channel does not allow
+ * writing while a read is blocked.
+ *
+ * A terminal in raw mode with VMIN set to 0 returns from a read with no data instead of
+ * blocking. As the terminal settings can't be read from Java, such reads are retried after
+ * a short sleep, rather than spinning. Set VMIN to 1 (`stty min 1`) for the reads to block.
+ *
+ * @property path The path to the device.
+ */
+class FileSerialPort(val path: String) : SerialPort {
+    @Volatile
+    private var input: FileChannel? = null
+    @Volatile
+    private var output: FileChannel? = null
+
+    override fun open() {
+        val input = FileInputStream(path).channel
+        try {
+            // Append mode, as a character device can't be truncated.
+            output = FileOutputStream(path, true).channel
+        } catch (e: IOException) {
+            input.close()
+            throw e
+        }
+        this.input = input
+    }
+
+    override fun read(buffer: ByteArray): Int {
+        val channel = input ?: return -1
+        val target = ByteBuffer.wrap(buffer)
+        while (true) {
+            val count = channel.read(target)
+            if (count != 0) return count
+            // VMIN is 0, back off instead of spinning until data is available.
+            try {
+                Thread.sleep(EMPTY_READ_DELAY)
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                throw InterruptedIOException("Read interrupted")
+            }
+        }
+    }
+
+    override fun write(data: ByteArray) {
+        val channel = output ?: throw IOException("Port closed")
+        val source = ByteBuffer.wrap(data)
+        while (source.hasRemaining()) {
+            channel.write(source)
+        }
+    }
+
+    override fun close() {
+        listOf(input, output).forEach {
+            try {
+                it?.close()
+            } catch (e: IOException) {
+                // Ignore
+            }
+        }
+        input = null
+        output = null
+    }
+}
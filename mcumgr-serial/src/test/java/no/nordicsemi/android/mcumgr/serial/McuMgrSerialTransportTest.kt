@@ -0,0 +1,317 @@
+package no.nordicsemi.android.mcumgr.serial
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import no.nordicsemi.android.mcumgr.sim.SimulatedDevice
+import no.nordicsemi.android.mcumgr.transfer.ImageUploader
+import org.junit.After
+import org.junit.Assume
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertIs
+import kotlin.test.assertTrue
+
+class McuMgrSerialTransportTest {
+
+    /** An in-memory byte stream, which may be written from any thread. */
+    private class Pipe {
+        private val chunks = LinkedBlockingQueue<ByteArray>()
+        private var current = ByteArray(0)
+        private var position = 0
+
+        /** Discards unread data, including the end of the stream. */
+        fun clear() {
+            chunks.clear()
+            current = ByteArray(0)
+            position = 0
+        }
+
+        val input = object : InputStream() {
+            override fun read(): Int {
+                val b = ByteArray(1)
+                return if (read(b, 0, 1) < 0) -1 else b[0].toInt() and 0xFF
+            }
+
+            override fun read(b: ByteArray, off: Int, len: Int): Int {
+                if (position == current.size) {
+                    current = chunks.take()
+                    position = 0
+                    // An empty chunk marks the end of the stream.
+                    if (current.isEmpty()) return -1
+                }
+                val count = minOf(len, current.size - position)
+                current.copyInto(b, off, position, position + count)
+                position += count
+                return count
+            }
+        }
+
+        val output = object : OutputStream() {
+            override fun write(b: Int) = write(byteArrayOf(b.toByte()), 0, 1)
+
+            override fun write(b: ByteArray, off: Int, len: Int) {
+                if (len > 0) chunks.add(b.copyOfRange(off, off + len))
+            }
+
+            override fun close() {
+                chunks.add(ByteArray(0))
+            }
+        }
+    }
+
+    /** A [SerialPort] connected to a [StandInDevice] in memory. */
+    private class MemoryPort : SerialPort {
+        val toDevice = Pipe()
+        val fromDevice = Pipe()
+
+        // The reader may have been closed before reading the end of the stream.
+        override fun open() = fromDevice.clear()
+        override fun read(buffer: ByteArray): Int = fromDevice.input.read(buffer)
+        override fun write(data: ByteArray) = toDevice.output.write(data)
+        override fun close() = fromDevice.output.close()
+    }
+
+    /**
+     * A stand-in for a device with the UART transport, serving a [SimulatedDevice].
+     *
+     * Console output is written before each response, and must be ignored by the transport.
+     * Received requests are given to [filter], which returns the requests to handle now.
+     */
+    private class StandInDevice(
+        val device: SimulatedDevice,
+        private val input: InputStream,
+        private val output: OutputStream,
+    ) {
+        @Volatile
+        var filter: (ByteArray) -> List<ByteArray> = { listOf(it) }
+
+        init {
+            thread(isDaemon = true) {
+                val decoder = SerialFrameDecoder()
+                val line = ByteArray(1024)
+                var length = 0
+                try {
+                    while (true) {
+                        val b = input.read()
+                        if (b < 0) break
+                        if (b != '\n'.code) {
+                            line[length++] = b.toByte()
+                            continue
+                        }
+                        val request = decoder.decodeLine(line, 0, length)
+                        length = 0
+                        request ?: continue
+                        for (packet in filter(request)) {
+                            val response = device.handle(packet) ?: continue
+                            output.write("[00:00:01.000,000] <inf> smp: request handled\n".toByteArray())
+                            output.write(encodeSerialPacket(response))
+                            output.flush()
+                        }
+                    }
+                } catch (e: IOException) {
+                    // Closed.
+                }
+            }
+        }
+    }
+
+    private val port = MemoryPort()
+    private val standIn = StandInDevice(
+        SimulatedDevice(bufferSize = 1024, bufferCount = 2),
+        port.toDevice.input, port.fromDevice.output
+    )
+    private val transport = McuMgrSerialTransport(port)
+
+    @After
+    fun tearDown() {
+        transport.release()
+        port.toDevice.output.close()
+    }
+
+    @Test
+    fun `echo is received`() {
+        val manager = DefaultManager(transport)
+        assertEquals("Hello", manager.echo("Hello").r)
+        assertEquals(1, standIn.device.requestCount)
+    }
+
+    @Test
+    fun `image is uploaded with a window of requests`() {
+        transport.mtu = 1024
+        val manager = ImageManager(transport)
+        manager.setUploadMtu(transport.mtu)
+        val image = javaClass.getResource("/slinky-prot-tlv.img")!!.readBytes()
+
+        runBlocking { ImageUploader(manager, image, 0, windowCapacity = 2).upload() }
+
+        assertContentEquals(image, standIn.device.getSlot(0, 1).data)
+    }
+
+    @Test
+    fun `responses received out of order are matched`() {
+        // Hold the first request and handle it after the second one.
+        val held = LinkedBlockingQueue<ByteArray>()
+        standIn.filter = { request ->
+            if (held.isEmpty()) {
+                held.add(request)
+                emptyList()
+            } else {
+                listOf(request, held.take())
+            }
+        }
+        val manager = DefaultManager(transport)
+        val results = LinkedBlockingQueue<String>()
+        val latch = CountDownLatch(2)
+        val callback = { expected: String ->
+            object : McuMgrCallback<McuMgrEchoResponse> {
+                override fun onResponse(response: McuMgrEchoResponse) {
+                    results.add("$expected=${response.r}")
+                    latch.countDown()
+                }
+
+                override fun onError(e: McuMgrException) {
+                    results.add("$expected: $e")
+                    latch.countDown()
+                }
+            }
+        }
+        manager.echo("first", callback("first"))
+        manager.echo("second", callback("second"))
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf("second=second", "first=first"), results.toList())
+    }
+
+    @Test
+    fun `request times out when no response is received`() {
+        standIn.filter = { emptyList() }
+        val start = System.nanoTime()
+        val error = assertFailsWith<McuMgrException> {
+            transport.send(newEchoRequest(), 200, McuMgrEchoResponse::class.java)
+        }
+        assertIs<McuMgrTimeoutException>(error)
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200))
+    }
+
+    @Test
+    fun `request longer than MTU fails`() {
+        val manager = DefaultManager(transport)
+        val error = assertFailsWith<InsufficientMtuException> {
+            manager.echo("x".repeat(300))
+        }
+        assertEquals(McuMgrSerialTransport.DEFAULT_MTU, error.mtu)
+    }
+
+    @Test
+    fun `release fails outstanding requests and notifies observers`() {
+        standIn.filter = { emptyList() }
+        val disconnected = CountDownLatch(1)
+        transport.addObserver(object : McuMgrTransport.ConnectionObserver {
+            override fun onConnected() {}
+            override fun onDisconnected() = disconnected.countDown()
+        })
+        val error = LinkedBlockingQueue<McuMgrException>()
+        DefaultManager(transport).echo("Hello", object : McuMgrCallback<McuMgrEchoResponse> {
+            override fun onResponse(response: McuMgrEchoResponse) {}
+            override fun onError(e: McuMgrException) {
+                error.add(e)
+            }
+        })
+        transport.release()
+
+        assertTrue(disconnected.await(1, TimeUnit.SECONDS))
+        val e = error.poll(1, TimeUnit.SECONDS)
+        assertIs<McuMgrException>(e)
+        assertTrue(e !is McuMgrTimeoutException)
+
+        // The port is opened again with the next request.
+        standIn.filter = { listOf(it) }
+        assertEquals("Again", DefaultManager(transport).echo("Again").r)
+    }
+
+    @Test
+    fun `image is uploaded over a pseudo-terminal pair`() = uploadOverPseudoTerminal(vmin = 1)
+
+    @Test
+    fun `image is uploaded over a pseudo-terminal with non-blocking reads`() =
+        uploadOverPseudoTerminal(vmin = 0)
+
+    private fun uploadOverPseudoTerminal(vmin: Int) {
+        Assume.assumeTrue(File("/dev/ptmx").exists())
+        // Opens a pseudo-terminal in raw mode, prints the path of the slave side and relays
+        // the master side to standard input and output, which are served by the stand-in.
+        val script = """
+            import os, pty, select, termios, tty
+            master, slave = pty.openpty()
+            tty.setraw(slave)
+            attributes = termios.tcgetattr(slave)
+            attributes[6][termios.VMIN] = $vmin
+            attributes[6][termios.VTIME] = 0
+            termios.tcsetattr(slave, termios.TCSANOW, attributes)
+            os.write(1, (os.ttyname(slave) + "\n").encode())
+            while True:
+                ready = select.select([master, 0], [], [])[0]
+                if master in ready:
+                    os.write(1, os.read(master, 4096))
+                if 0 in ready:
+                    data = os.read(0, 4096)
+                    if not data:
+                        break
+                    os.write(master, data)
+        """.trimIndent()
+        val process = try {
+            ProcessBuilder("python3", "-c", script).start()
+        } catch (e: IOException) {
+            Assume.assumeNoException(e)
+            return
+        }
+        try {
+            val path = StringBuilder()
+            while (true) {
+                val c = process.inputStream.read()
+                if (c < 0 || c == '\n'.code) break
+                path.append(c.toChar())
+            }
+            Assume.assumeTrue(path.startsWith("/dev/"))
+            val device = SimulatedDevice(bufferSize = 1024, bufferCount = 2)
+            StandInDevice(device, process.inputStream, process.outputStream)
+            val transport = McuMgrSerialTransport(FileSerialPort(path.toString()))
+            try {
+                transport.mtu = 1024
+                assertEquals("Hello", DefaultManager(transport).echo("Hello").r)
+
+                val manager = ImageManager(transport)
+                manager.setUploadMtu(transport.mtu)
+                val image = javaClass.getResource("/slinky-prot-tlv.img")!!.readBytes()
+                runBlocking { ImageUploader(manager, image, 0, windowCapacity = 2).upload() }
+                assertContentEquals(image, device.getSlot(0, 1).data)
+            } finally {
+                transport.release()
+            }
+        } finally {
+            process.destroy()
+        }
+    }
+}
+
+private fun newEchoRequest(): ByteArray =
+    McuManager.buildPacket(McuMgrScheme.BLE, 2, 0, 0, 0, 0, mapOf("d" to "Hello"))
@@ -0,0 +1,130 @@
+package no.nordicsemi.android.mcumgr.serial
+
+import org.junit.Test
+import kotlin.random.Random
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class SerialFramingTest {
+
+    /** Splits the encoded frames into lines, without the newlines. */
+    private fun ByteArray.lines(): List<ByteArray> {
+        val lines = mutableListOf<ByteArray>()
+        var start = 0
+        for (i in indices) {
+            if (this[i] == '\n'.code.toByte()) {
+                lines.add(copyOfRange(start, i))
+                start = i + 1
+            }
+        }
+        assertEquals(size, start, "Frames must end with a newline")
+        return lines
+    }
+
+    private fun SerialFrameDecoder.decode(lines: List<ByteArray>): List<ByteArray> =
+        lines.mapNotNull { decodeLine(it, 0, it.size) }
+
+    @Test
+    fun `crc matches the CCITT XMODEM check value`() {
+        assertEquals(0x31C3, crc16("123456789".toByteArray()))
+    }
+
+    @Test
+    fun `short packet is encoded in a single frame`() {
+        // A header-only request: read, group 0, sequence number 0, command 0 (echo).
+        val packet = byteArrayOf(0, 0, 0, 0, 0, 0, 0, 0)
+        val lines = encodeSerialPacket(packet).lines()
+
+        assertEquals(1, lines.size)
+        val line = lines[0]
+        assertEquals(0x06, line[0].toInt())
+        assertEquals(0x09, line[1].toInt())
+        // Length (10), 8 bytes of packet and CRC16 of the packet (0x0000) in Base64.
+        assertEquals("AAoAAAAAAAAAAAAA", String(line, 2, line.size - 2))
+    }
+
+    @Test
+    fun `long packet is split into frames that fit the line buffer`() {
+        val packet = Random(1).nextBytes(1000)
+        val lines = encodeSerialPacket(packet).lines()
+
+        assertTrue(lines.size > 1)
+        assertEquals(0x06, lines[0][0].toInt())
+        assertEquals(0x09, lines[0][1].toInt())
+        lines.drop(1).forEach {
+            assertEquals(0x04, it[0].toInt())
+            assertEquals(0x14, it[1].toInt())
+        }
+        // Including the newline.
+        lines.forEach { assertTrue(it.size + 1 <= MAX_FRAME_LENGTH) }
+
+        val decoded = SerialFrameDecoder().decode(lines)
+        assertEquals(1, decoded.size)
+        assertContentEquals(packet, decoded[0])
+    }
+
+    @Test
+    fun `packets of all lengths are decoded`() {
+        val decoder = SerialFrameDecoder()
+        for (length in 1..300) {
+            val packet = Random(length).nextBytes(length)
+            val decoded = decoder.decode(encodeSerialPacket(packet, maxFrameLength = 31).lines())
+            assertEquals(1, decoded.size)
+            assertContentEquals(packet, decoded[0])
+        }
+    }
+
+    @Test
+    fun `console output between frames is ignored`() {
+        val packet = Random(2).nextBytes(200)
+        val lines = encodeSerialPacket(packet).lines().toMutableList()
+        lines.add(0, "uart:~$ ".toByteArray())
+        lines.add(2, "[00:00:01.000,000] <inf> main: Hello\r".toByteArray())
+        lines.add(ByteArray(0))
+
+        val decoded = SerialFrameDecoder().decode(lines)
+        assertEquals(1, decoded.size)
+        assertContentEquals(packet, decoded[0])
+    }
+
+    @Test
+    fun `CRLF line endings are accepted`() {
+        val packet = Random(3).nextBytes(100)
+        val lines = encodeSerialPacket(packet).lines().map { it + '\r'.code.toByte() }
+
+        val decoded = SerialFrameDecoder().decode(lines)
+        assertContentEquals(packet, decoded.single())
+    }
+
+    @Test
+    fun `packet with invalid CRC is dropped`() {
+        val packet = Random(4).nextBytes(20)
+        val line = encodeSerialPacket(packet).lines().single()
+        // Change one bit of the packet data.
+        line[10] = if (line[10] == 'A'.code.toByte()) 'B'.code.toByte() else 'A'.code.toByte()
+
+        assertNull(SerialFrameDecoder().decodeLine(line, 0, line.size))
+    }
+
+    @Test
+    fun `continuation without a start frame is ignored`() {
+        val packet = Random(5).nextBytes(200)
+        val lines = encodeSerialPacket(packet).lines()
+        val decoder = SerialFrameDecoder()
+
+        assertTrue(decoder.decode(lines.drop(1)).isEmpty())
+        // A new packet is then received correctly.
+        assertContentEquals(packet, decoder.decode(lines).single())
+    }
+
+    @Test
+    fun `truncated packet is dropped when a new one starts`() {
+        val first = Random(6).nextBytes(200)
+        val second = Random(7).nextBytes(200)
+        val lines = encodeSerialPacket(first).lines().dropLast(1) + encodeSerialPacket(second).lines()
+
+        assertContentEquals(second, SerialFrameDecoder().decode(lines).single())
+    }
+}
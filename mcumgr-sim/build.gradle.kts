@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) Nordic Semiconductor ASA, 2021-present
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+// An in-process simulated SMP device and transport, used by the tests of the library modules
+// and by the benchmarks. Add it as a testImplementation dependency.
+// This module is not published.
+
+import org.jetbrains.kotlin.gradle.dsl.JvmTarget
+
+plugins {
+    alias(libs.plugins.nordic.library)
+    alias(libs.plugins.nordic.kotlin.android)
+}
+
+group = "no.nordicsemi.android"
+
+android {
+    namespace = "no.nordicsemi.android.mcumgr.sim"
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    kotlin {
+        compilerOptions {
+            jvmTarget = JvmTarget.JVM_11
+        }
+    }
+
+    sourceSets {
+        // Test images used by the upload tests.
+        getByName("test").resources.srcDir("../mcumgr-core/src/test/resources")
+    }
+}
+
+dependencies {
+    // Import mcumgr-core
+    api(project(":mcumgr-core"))
+
+    // Test
+    testImplementation(libs.kotlin.test)
+    // Tests use ImageUploader, which is a suspending function.
+    testImplementation(libs.kotlinx.coroutines.core)
+}
@@ -0,0 +1,88 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+import java.security.MessageDigest
+import java.util.zip.CRC32
+
+/**
+ * The File System group.
+ */
+internal class FsGroup(private val device: SimulatedDevice) : SimulatedGroup(GROUP_FS) {
+    val files = mutableMapOf<String, ByteArray>()
+    private val upload = UploadTarget()
+    private var uploadName: String? = null
+
+    override fun handle(request: Request): Reply = when (request.header.commandId) {
+        ID_FILE -> if (request.isWrite) upload(request) else download(request)
+        ID_STAT -> Reply(mapOf("len" to file(request).size))
+        ID_HASH_CHECKSUM -> checksum(request)
+        ID_SUPPORTED -> Reply(mapOf("types" to mapOf(
+            "crc32" to mapOf("format" to 0, "size" to 4),
+            "sha256" to mapOf("format" to 1, "size" to 32),
+        )))
+        ID_CLOSE -> Reply(emptyMap())
+        else -> notSupported()
+    }
+
+    private fun file(request: Request): ByteArray =
+        files[request.requireString("name")] ?: throw SmpError(McuMgrErrorCode.NO_ENTRY)
+
+    private fun upload(request: Request): Reply {
+        val name = request.requireString("name")
+        if (request.int("off") == 0) {
+            uploadName = name
+        } else if (name != uploadName) {
+            throw SmpError(McuMgrErrorCode.BAD_STATE)
+        }
+        upload.write(request)
+        if (upload.isComplete) {
+            files[name] = upload.data!!
+        }
+        return Reply(mapOf("off" to upload.offset))
+    }
+
+    private fun download(request: Request): Reply {
+        val file = file(request)
+        val off = request.requireInt("off")
+        if (off > file.size) {
+            throw SmpError(McuMgrErrorCode.IN_VALUE)
+        }
+        // The data, with the header and the rest of the response, must fit into the buffer.
+        val length = minOf(file.size - off, device.bufferSize - RESPONSE_OVERHEAD)
+        val response = mutableMapOf<String, Any>(
+            "off" to off,
+            "data" to file.copyOfRange(off, off + length),
+        )
+        if (off == 0) {
+            response["len"] = file.size
+        }
+        return Reply(response)
+    }
+
+    private fun checksum(request: Request): Reply {
+        val file = file(request)
+        val type = request.string("type") ?: "crc32"
+        val off = request.int("off") ?: 0
+        val len = minOf(request.int("len") ?: file.size, file.size - off)
+        if (off < 0 || len < 0) {
+            throw SmpError(McuMgrErrorCode.IN_VALUE)
+        }
+        val output: Any = when (type) {
+            "crc32" -> CRC32().apply { update(file, off, len) }.value
+            "sha256" -> MessageDigest.getInstance("SHA-256").apply { update(file, off, len) }.digest()
+            else -> notSupported()
+        }
+        return Reply(mapOf("type" to type, "off" to off, "len" to len, "output" to output))
+    }
+
+    private companion object {
+        const val ID_FILE = 0
+        const val ID_STAT = 1
+        const val ID_HASH_CHECKSUM = 2
+        const val ID_SUPPORTED = 3
+        const val ID_CLOSE = 4
+
+        /** Header and the encoded "off", "len" and the data length. */
+        const val RESPONSE_OVERHEAD = 32
+    }
+}
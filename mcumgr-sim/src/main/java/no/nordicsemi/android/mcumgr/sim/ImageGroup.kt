@@ -0,0 +1,177 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.image.McuMgrImage
+import java.security.MessageDigest
+
+/**
+ * The Image group, emulating MCUboot with swap using move.
+ *
+ * Each image has a primary slot, with the running image, and a secondary slot, to which new
+ * images are uploaded. A new image is swapped into the primary slot on reset, if marked as
+ * pending. Unless confirmed, the swap is reverted on the following reset.
+ */
+internal class ImageGroup(
+    private val device: SimulatedDevice,
+    imageCount: Int,
+    private val slotSize: Int,
+) : SimulatedGroup(GROUP_IMAGE) {
+    val slots: List<List<ImageSlot>> = List(imageCount) { image ->
+        listOf(ImageSlot(image, 0), ImageSlot(image, 1))
+    }
+    private val upload = UploadTarget()
+    private var uploadImage = 0
+
+    init {
+        // The factory images.
+        for ((image, slots) in slots.withIndex()) {
+            slots[0].apply {
+                hash = sha256("factory-$image".toByteArray())
+                version = "1.0.0"
+                isConfirmed = true
+                isActive = true
+            }
+        }
+    }
+
+    override fun handle(request: Request): Reply = when (request.header.commandId) {
+        ID_STATE -> if (request.isWrite) setState(request) else Reply(state())
+        ID_UPLOAD -> upload(request)
+        ID_ERASE -> erase(request)
+        ID_SLOT_INFO -> Reply(mapOf("images" to slots.map { (primary, secondary) ->
+            mapOf(
+                "image" to primary.image,
+                "slots" to listOf(
+                    mapOf("slot" to 0, "size" to slotSize),
+                    mapOf("slot" to 1, "size" to slotSize, "upload_image_id" to secondary.image),
+                ),
+                "max_image_size" to slotSize,
+            )
+        }))
+        else -> notSupported()
+    }
+
+    override fun onReset() {
+        for ((primary, secondary) in slots) {
+            when {
+                secondary.isPending -> {
+                    val permanent = secondary.isPermanent
+                    primary.swapWith(secondary)
+                    primary.isConfirmed = permanent
+                    secondary.isConfirmed = true
+                }
+                // Revert the image which was not confirmed after the test swap.
+                !primary.isConfirmed && !secondary.isEmpty -> {
+                    primary.swapWith(secondary)
+                    primary.isConfirmed = true
+                    secondary.isConfirmed = false
+                }
+                else -> continue
+            }
+            primary.isActive = true
+            primary.isPending = false
+            primary.isPermanent = false
+            secondary.isActive = false
+            secondary.isPending = false
+            secondary.isPermanent = false
+        }
+    }
+
+    private fun state(): Map<String, Any> = mapOf(
+        "images" to slots.flatten().filterNot { it.isEmpty }.map { slot ->
+            mapOf(
+                "image" to slot.image,
+                "slot" to slot.slot,
+                "version" to slot.version!!,
+                "hash" to slot.hash!!,
+                "bootable" to true,
+                "pending" to slot.isPending,
+                "confirmed" to slot.isConfirmed,
+                "active" to slot.isActive,
+                "permanent" to slot.isPermanent,
+            )
+        },
+        "splitStatus" to 0,
+    )
+
+    private fun setState(request: Request): Reply {
+        val confirm = request.boolean("confirm") ?: false
+        val hash = request.bytes("hash")
+        if (hash == null) {
+            if (!confirm) {
+                throw SmpError(McuMgrErrorCode.IN_VALUE)
+            }
+            // Confirm the running image.
+            slots[0][0].isConfirmed = true
+            return Reply(state())
+        }
+        val slot = slots.flatten().firstOrNull { it.hash.contentEquals(hash) }
+            ?: throw SmpError(McuMgrErrorCode.NO_ENTRY)
+        if (slot.isActive) {
+            if (!confirm) {
+                throw SmpError(McuMgrErrorCode.BAD_STATE)
+            }
+            slot.isConfirmed = true
+        } else {
+            slot.isPending = true
+            slot.isPermanent = confirm
+        }
+        return Reply(state())
+    }
+
+    private fun upload(request: Request): Reply {
+        if (request.int("off") == 0) {
+            val image = request.int("image") ?: 0
+            if (image !in slots.indices) {
+                throw SmpError(McuMgrErrorCode.IN_VALUE)
+            }
+            if (slots[image][1].isPending) {
+                throw SmpError(McuMgrErrorCode.BAD_STATE)
+            }
+            uploadImage = image
+        }
+        val started = upload.write(request, slotSize)
+        val target = slots[uploadImage][1]
+        if (started) {
+            target.clear()
+        }
+        val response = mutableMapOf<String, Any>("off" to upload.offset)
+        if (upload.isComplete && target.isEmpty) {
+            val data = upload.data!!
+            target.data = data
+            try {
+                val image = McuMgrImage.fromBytes(data)
+                target.hash = image.hash
+                target.version = image.header.version.let { "${it.major}.${it.minor}.${it.revision}" }
+            } catch (e: McuMgrException) {
+                target.hash = sha256(data)
+                target.version = "0.0.0"
+            }
+            upload.sha?.let { response["match"] = it.contentEquals(sha256(data)) }
+        }
+        // Erasing the slot is done when the first chunk is received.
+        return Reply(response, delay = if (started) device.eraseDelay else 0)
+    }
+
+    private fun erase(request: Request): Reply {
+        val slotNumber = request.int("slot") ?: 1
+        val slot = slots.getOrNull(slotNumber / 2)?.get(slotNumber % 2)
+            ?: throw SmpError(McuMgrErrorCode.IN_VALUE)
+        if (slot.isActive || slot.isPending) {
+            throw SmpError(McuMgrErrorCode.BAD_STATE)
+        }
+        slot.clear()
+        upload.clear()
+        return Reply(emptyMap(), delay = device.eraseDelay)
+    }
+
+    private companion object {
+        const val ID_STATE = 0
+        const val ID_UPLOAD = 1
+        const val ID_ERASE = 5
+        const val ID_SLOT_INFO = 6
+
+        fun sha256(data: ByteArray): ByteArray = MessageDigest.getInstance("SHA-256").digest(data)
+    }
+}
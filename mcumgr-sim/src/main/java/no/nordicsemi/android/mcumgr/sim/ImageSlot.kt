@@ -0,0 +1,56 @@
+package no.nordicsemi.android.mcumgr.sim
+
+/**
+ * State of an image slot of the [SimulatedDevice], as reported by the Image State command.
+ *
+ * @property image The image number.
+ * @property slot The slot number, 0 for the primary slot and 1 for the secondary slot.
+ */
+class ImageSlot internal constructor(
+    val image: Int,
+    val slot: Int,
+) {
+    /** The image data, or null if the slot is empty or contains the factory image. */
+    var data: ByteArray? = null
+        internal set
+    /** The image hash, or null if the slot is empty. */
+    var hash: ByteArray? = null
+        internal set
+    /** The image version. */
+    var version: String? = null
+        internal set
+    var isPending = false
+        internal set
+    var isConfirmed = false
+        internal set
+    var isActive = false
+        internal set
+    var isPermanent = false
+        internal set
+
+    val isEmpty: Boolean
+        get() = hash == null
+
+    internal fun clear() {
+        data = null
+        hash = null
+        version = null
+        isPending = false
+        isConfirmed = false
+        isActive = false
+        isPermanent = false
+    }
+
+    /**
+     * Swaps the content of the slot with the other one, leaving the flags to the caller.
+     */
+    internal fun swapWith(other: ImageSlot) {
+        data = other.data.also { other.data = data }
+        hash = other.hash.also { other.hash = hash }
+        version = other.version.also { other.version = version }
+    }
+
+    override fun toString(): String =
+        "ImageSlot(image=$image, slot=$slot, version=$version, pending=$isPending, " +
+                "confirmed=$isConfirmed, active=$isActive, permanent=$isPermanent)"
+}
@@ -0,0 +1,92 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+
+/**
+ * The Log group.
+ */
+internal class LogGroup(private val device: SimulatedDevice) : SimulatedGroup(GROUP_LOGS) {
+
+    private class Entry(
+        val index: Long,
+        val timestamp: Long,
+        val level: Int,
+        val module: Int,
+        val message: ByteArray,
+    )
+
+    private val logs = linkedMapOf<String, MutableList<Entry>>()
+    private val modules = linkedMapOf<String, Int>()
+    private var nextIndex = 0L
+
+    fun append(log: String, module: String, level: Int, message: String, timestamp: Long) {
+        val moduleId = modules.getOrPut(module) { modules.size }
+        logs.getOrPut(log) { mutableListOf() }
+            .add(Entry(nextIndex++, timestamp, level, moduleId, message.toByteArray()))
+    }
+
+    override fun handle(request: Request): Reply = when (request.header.commandId) {
+        ID_READ -> read(request)
+        ID_CLEAR -> {
+            logs.values.forEach { it.clear() }
+            Reply(emptyMap())
+        }
+        ID_MODULE_LIST -> Reply(mapOf("module_map" to modules))
+        ID_LEVEL_LIST -> Reply(mapOf("level_map" to LEVELS))
+        ID_LOGS_LIST -> Reply(mapOf("log_list" to logs.keys.toList()))
+        else -> notSupported()
+    }
+
+    private fun read(request: Request): Reply {
+        val name = request.string("log_name")
+        val index = request.long("index") ?: 0
+        val timestamp = request.long("ts") ?: 0
+        if (name != null && name !in logs) {
+            throw SmpError(McuMgrErrorCode.NO_ENTRY)
+        }
+        // Like in Zephyr, entries are returned until the buffer is full. The client should
+        // continue from the returned next index.
+        var space = device.bufferSize - RESPONSE_OVERHEAD
+        var next = nextIndex
+        var full = false
+        val result = mutableListOf<Map<String, Any>>()
+        for ((log, entries) in logs) {
+            if (name != null && log != name) continue
+            val list = mutableListOf<Map<String, Any>>()
+            for (entry in entries) {
+                if (entry.index < index || entry.timestamp < timestamp) continue
+                space -= entry.message.size + ENTRY_OVERHEAD
+                if (space < 0 && (list.isNotEmpty() || result.isNotEmpty())) {
+                    next = entry.index
+                    full = true
+                    break
+                }
+                list.add(mapOf(
+                    "msg" to entry.message,
+                    "ts" to entry.timestamp,
+                    "level" to entry.level,
+                    "index" to entry.index,
+                    "module" to entry.module,
+                    "type" to "str",
+                ))
+            }
+            result.add(mapOf("name" to log, "type" to LOG_TYPE_MEMORY, "entries" to list))
+            if (full) break
+        }
+        return Reply(mapOf("next_index" to next, "logs" to result))
+    }
+
+    private companion object {
+        const val ID_READ = 0
+        const val ID_CLEAR = 1
+        const val ID_MODULE_LIST = 3
+        const val ID_LEVEL_LIST = 4
+        const val ID_LOGS_LIST = 5
+
+        const val LOG_TYPE_MEMORY = 1
+        const val RESPONSE_OVERHEAD = 64
+        const val ENTRY_OVERHEAD = 48
+
+        val LEVELS = mapOf("DEBUG" to 0, "INFO" to 1, "WARN" to 2, "ERROR" to 3, "CRITICAL" to 4)
+    }
+}
@@ -0,0 +1,60 @@
+package no.nordicsemi.android.mcumgr.sim
+
+/**
+ * The OS (default) group.
+ */
+internal class OsGroup(private val device: SimulatedDevice) : SimulatedGroup(GROUP_DEFAULT) {
+    private var dateTime = "1970-01-01T00:00:00"
+
+    override fun handle(request: Request): Reply = when (request.header.commandId) {
+        ID_ECHO -> Reply(mapOf("r" to (request.string("d") ?: "")))
+        ID_TASKSTATS -> Reply(mapOf("tasks" to mapOf(
+            "main" to mapOf("prio" to 0, "tid" to 1, "state" to 1, "stkuse" to 512, "stksiz" to 2048),
+            "idle" to mapOf("prio" to 15, "tid" to 2, "state" to 1, "stkuse" to 64, "stksiz" to 320),
+        )))
+        ID_MPSTATS -> Reply(mapOf("pools" to emptyMap<String, Any>()))
+        ID_DATETIME -> if (request.isWrite) {
+            dateTime = request.requireString("datetime")
+            Reply(emptyMap())
+        } else {
+            Reply(mapOf("datetime" to dateTime))
+        }
+        ID_RESET -> Reply(emptyMap(), reset = true)
+        ID_MCUMGR_PARAMS -> Reply(mapOf(
+            "buf_size" to device.bufferSize,
+            "buf_count" to device.bufferCount,
+        ))
+        ID_APP_INFO -> Reply(mapOf("output" to appInfo(request.string("format") ?: "s")))
+        ID_BOOTLOADER_INFO -> when (request.string("query")) {
+            null -> Reply(mapOf("bootloader" to "MCUboot"))
+            // Swap using move, without downgrade prevention.
+            "mode" -> Reply(mapOf("mode" to 3, "no-downgrade" to false))
+            else -> notSupported()
+        }
+        else -> notSupported()
+    }
+
+    private fun appInfo(format: String): String = format
+        .mapNotNull { field ->
+            when (field) {
+                's', 'a' -> "Zephyr"
+                'n' -> "simulator"
+                'r' -> "3.7.0"
+                'm' -> "posix"
+                'o' -> "Zephyr"
+                else -> null
+            }
+        }
+        .joinToString(" ")
+
+    private companion object {
+        const val ID_ECHO = 0
+        const val ID_TASKSTATS = 2
+        const val ID_MPSTATS = 3
+        const val ID_DATETIME = 4
+        const val ID_RESET = 5
+        const val ID_MCUMGR_PARAMS = 6
+        const val ID_APP_INFO = 7
+        const val ID_BOOTLOADER_INFO = 8
+    }
+}
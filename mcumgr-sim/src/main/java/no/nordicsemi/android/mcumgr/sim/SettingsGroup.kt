@@ -0,0 +1,37 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+
+/**
+ * The Settings (config) group.
+ */
+internal class SettingsGroup : SimulatedGroup(GROUP_SETTINGS) {
+    val settings = linkedMapOf<String, ByteArray>()
+
+    override fun handle(request: Request): Reply = when (request.header.commandId) {
+        ID_READ_WRITE -> if (request.isWrite) {
+            settings[request.requireString("name")] = request.requireBytes("val")
+            Reply(emptyMap())
+        } else {
+            val value = settings[request.requireString("name")]
+                ?: throw SmpError(McuMgrErrorCode.NO_ENTRY)
+            val maxSize = request.int("max_size") ?: value.size
+            Reply(mapOf("val" to value.copyOf(minOf(maxSize, value.size))))
+        }
+        ID_DELETE -> {
+            settings.remove(request.requireString("name"))
+                ?: throw SmpError(McuMgrErrorCode.NO_ENTRY)
+            Reply(emptyMap())
+        }
+        // Settings are stored in memory, so commit, load and save have no effect.
+        ID_COMMIT, ID_LOAD_SAVE -> Reply(emptyMap())
+        else -> notSupported()
+    }
+
+    private companion object {
+        const val ID_READ_WRITE = 0
+        const val ID_DELETE = 1
+        const val ID_COMMIT = 2
+        const val ID_LOAD_SAVE = 3
+    }
+}
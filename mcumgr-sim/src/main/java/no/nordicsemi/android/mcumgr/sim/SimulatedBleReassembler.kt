@@ -0,0 +1,80 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+
+/**
+ * Device-side reassembly of SMP packets from Bluetooth LE writes, done by the SMP server
+ * before the packets are handled by a [SimulatedDevice].
+ *
+ * A packet longer than a single write is reassembled using the length from its header, as in
+ * the Zephyr Bluetooth transport. A write may also contain multiple whole packets, packed by
+ * the client; those are split at packet boundaries. Each packet takes one of the SMP buffers
+ * of the device until it is handled, so packets beyond [SimulatedDevice.bufferCount] in
+ * a single write are dropped, as are packets longer than [SimulatedDevice.bufferSize].
+ *
+ * This class is not thread safe.
+ */
+class SimulatedBleReassembler(private val device: SimulatedDevice) {
+    /** The packet being reassembled, or null if waiting for the first write of a packet. */
+    private var packet: ByteArray? = null
+    private var receivedLength = 0
+
+    /** Number of packets dropped since the reassembler was created. */
+    var droppedCount = 0
+        private set
+
+    /**
+     * Adds the write to the current packet.
+     *
+     * @return The packets completed by this write, in order.
+     */
+    fun accept(write: ByteArray): List<ByteArray> {
+        val packets = mutableListOf<ByteArray>()
+        var offset = 0
+        while (offset < write.size) {
+            val current = packet
+            if (current != null) {
+                val count = minOf(current.size - receivedLength, write.size - offset)
+                System.arraycopy(write, offset, current, receivedLength, count)
+                receivedLength += count
+                offset += count
+                if (receivedLength == current.size) {
+                    packet = null
+                    complete(current, packets)
+                }
+                continue
+            }
+            if (write.size - offset < McuMgrHeader.HEADER_LENGTH) {
+                // The header must not be split.
+                droppedCount++
+                break
+            }
+            val length = McuMgrHeader.HEADER_LENGTH +
+                    ((write[offset + 2].toInt() and 0xFF) shl 8 or (write[offset + 3].toInt() and 0xFF))
+            if (length > device.bufferSize) {
+                // The packet would not fit into a buffer. The rest of the write can't be parsed.
+                droppedCount++
+                break
+            }
+            if (write.size - offset >= length) {
+                complete(write.copyOfRange(offset, offset + length), packets)
+                offset += length
+            } else {
+                val buffer = ByteArray(length)
+                receivedLength = write.size - offset
+                System.arraycopy(write, offset, buffer, 0, receivedLength)
+                packet = buffer
+                offset = write.size
+            }
+        }
+        return packets
+    }
+
+    private fun complete(packet: ByteArray, packets: MutableList<ByteArray>) {
+        if (packets.size == device.bufferCount) {
+            droppedCount++
+            return
+        }
+        packets.add(packet)
+    }
+}
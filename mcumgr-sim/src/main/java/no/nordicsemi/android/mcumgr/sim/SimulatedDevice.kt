@@ -0,0 +1,176 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.image.suit.SUITEnvelope
+import no.nordicsemi.android.mcumgr.util.CBOR
+import java.io.IOException
+
+/**
+ * An in-process SMP server, emulating a Zephyr device with MCUboot.
+ *
+ * The device implements the OS, Image, Statistics, Settings, Log, File System and SUIT groups.
+ * Requests are handled in order, one at a time. Use [SimulatedTransport] to communicate with
+ * the device using managers from this library.
+ *
+ * @property bufferSize The size of the SMP buffer, in bytes, as reported in McuMgrParams.
+ * Larger requests are dropped.
+ * @property bufferCount The number of SMP buffers, as reported in McuMgrParams.
+ * Requests received when all buffers are in use are dropped.
+ * @property eraseDelay Time needed to erase a slot before an upload, in milliseconds.
+ * @param imageCount The number of images, each with a primary and a secondary slot.
+ * @param slotSize The size of each slot, in bytes.
+ */
+class SimulatedDevice @JvmOverloads constructor(
+    val bufferSize: Int = 384,
+    val bufferCount: Int = 4,
+    val eraseDelay: Long = 0,
+    imageCount: Int = 1,
+    slotSize: Int = 0x70000,
+) {
+    /** The result of handling a single request. */
+    internal class Result(val response: ByteArray, val delay: Long, val reset: Boolean)
+
+    private val os = OsGroup(this)
+    private val image = ImageGroup(this, imageCount, slotSize)
+    private val stats = StatsGroup()
+    private val settings = SettingsGroup()
+    private val log = LogGroup(this)
+    private val fs = FsGroup(this)
+    private val suit = SuitGroup(this)
+    private val groups = listOf(os, image, stats, settings, log, fs, suit).associateBy { it.groupId }
+
+    /** Number of requests handled since the device was created. */
+    @get:Synchronized
+    var requestCount = 0
+        private set
+
+    /** Number of times the device was reset. */
+    @get:Synchronized
+    var resetCount = 0
+        private set
+
+    init {
+        require(bufferSize > McuMgrHeader.HEADER_LENGTH) { "Buffer too small" }
+        require(bufferCount > 0) { "At least one buffer is required" }
+        require(imageCount > 0) { "At least one image is required" }
+    }
+
+    /**
+     * Returns the state of the given slot.
+     *
+     * @param image The image number.
+     * @param slot 0 for the primary slot, 1 for the secondary slot.
+     */
+    @Synchronized
+    fun getSlot(image: Int, slot: Int): ImageSlot = this.image.slots[image][slot]
+
+    @Synchronized
+    fun putFile(name: String, data: ByteArray) {
+        fs.files[name] = data
+    }
+
+    @Synchronized
+    fun getFile(name: String): ByteArray? = fs.files[name]
+
+    @Synchronized
+    fun putStatistics(group: String, fields: Map<String, Long>) {
+        stats.groups[group] = fields
+    }
+
+    @Synchronized
+    fun putSetting(name: String, value: ByteArray) {
+        settings.settings[name] = value
+    }
+
+    @Synchronized
+    fun getSetting(name: String): ByteArray? = settings.settings[name]
+
+    /**
+     * Appends an entry to the log.
+     *
+     * @param level The log level, from 0 (debug) to 4 (critical).
+     */
+    @JvmOverloads
+    @Synchronized
+    fun log(
+        message: String,
+        level: Int = 1,
+        module: String = "main",
+        log: String = "log",
+        timestamp: Long = 0,
+    ) = this.log.append(log, module, level, message, timestamp)
+
+    /** The last installed SUIT envelope. */
+    @get:Synchronized
+    val suitEnvelope: SUITEnvelope?
+        get() = suit.installed
+
+    /** Returns the data uploaded to the SUIT cache partition with given ID. */
+    @Synchronized
+    fun getCachePartition(id: Int): ByteArray? = suit.cachePartitions[id]
+
+    /**
+     * Resets the device. Pending images are swapped, as MCUboot would do.
+     */
+    @Synchronized
+    fun reset() {
+        resetCount++
+        groups.values.forEach { it.onReset() }
+    }
+
+    /**
+     * Handles a single SMP packet and returns the response right away, ignoring the time
+     * needed to handle it. If the request resets the device, the device is reset before
+     * this method returns.
+     *
+     * This allows serving the device over other links, for example a local UDP socket.
+     *
+     * @return The response, or null if the packet was invalid and no response should be sent.
+     */
+    @Synchronized
+    fun handle(packet: ByteArray): ByteArray? {
+        val result = process(packet) ?: return null
+        if (result.reset) {
+            reset()
+        }
+        return result.response
+    }
+
+    /**
+     * Handles a single SMP packet.
+     *
+     * @return The result, or null if the packet was invalid and no response should be sent.
+     */
+    @Synchronized
+    internal fun process(packet: ByteArray): Result? {
+        if (packet.size < McuMgrHeader.HEADER_LENGTH) {
+            return null
+        }
+        val header = McuMgrHeader.fromBytes(packet)
+        if (header.op != OP_READ && header.op != OP_WRITE) {
+            return null
+        }
+        requestCount++
+
+        val reply = try {
+            val payload = if (packet.size > McuMgrHeader.HEADER_LENGTH) {
+                CBOR.toObjectMap(packet.copyOfRange(McuMgrHeader.HEADER_LENGTH, packet.size))
+            } else {
+                emptyMap()
+            }
+            val group = groups[header.groupId] ?: throw SmpError(McuMgrErrorCode.NOT_SUPPORTED)
+            group.handle(Request(header, payload))
+        } catch (e: SmpError) {
+            Reply(mapOf("rc" to e.code.value()))
+        } catch (e: IOException) {
+            Reply(mapOf("rc" to McuMgrErrorCode.IN_VALUE.value()))
+        }
+        val payload = CBOR.toBytes(reply.payload)
+        val response = McuMgrHeader.build(
+            header.version, header.op + 1, header.flags, payload.size,
+            header.groupId, header.sequenceNum, header.commandId
+        ) + payload
+        return Result(response, reply.delay, reply.reset)
+    }
+}
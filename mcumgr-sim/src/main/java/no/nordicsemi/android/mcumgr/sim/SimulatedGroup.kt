@@ -0,0 +1,145 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+
+internal const val OP_READ = 0
+internal const val OP_WRITE = 2
+
+// Group IDs, the same as in McuManager.
+internal const val GROUP_DEFAULT = 0
+internal const val GROUP_IMAGE = 1
+internal const val GROUP_STATS = 2
+internal const val GROUP_SETTINGS = 3
+internal const val GROUP_LOGS = 4
+internal const val GROUP_FS = 8
+internal const val GROUP_SUIT = 66
+
+/**
+ * A decoded request received by the [SimulatedDevice].
+ */
+internal class Request(
+    val header: McuMgrHeader,
+    private val payload: Map<String, Any?>,
+) {
+    val isWrite: Boolean
+        get() = header.op == OP_WRITE
+
+    operator fun contains(key: String) = payload.containsKey(key)
+
+    fun int(key: String): Int? = (payload[key] as? Number)?.toInt()
+    fun long(key: String): Long? = (payload[key] as? Number)?.toLong()
+    fun boolean(key: String): Boolean? = payload[key] as? Boolean
+    fun string(key: String): String? = payload[key] as? String
+    fun bytes(key: String): ByteArray? = payload[key] as? ByteArray
+
+    fun requireInt(key: String): Int = int(key) ?: throw SmpError(McuMgrErrorCode.IN_VALUE)
+    fun requireString(key: String): String = string(key) ?: throw SmpError(McuMgrErrorCode.IN_VALUE)
+    fun requireBytes(key: String): ByteArray = bytes(key) ?: throw SmpError(McuMgrErrorCode.IN_VALUE)
+}
+
+/**
+ * A reply to a [Request].
+ *
+ * @property payload The response payload.
+ * @property delay Time needed to process the request in milliseconds, e.g. to erase flash.
+ * @property reset Whether the device resets after sending the response.
+ */
+internal class Reply(
+    val payload: Map<String, Any>,
+    val delay: Long = 0,
+    val reset: Boolean = false,
+)
+
+/**
+ * Thrown by a group to respond with an error code.
+ */
+internal class SmpError(val code: McuMgrErrorCode) : Exception(code.toString())
+
+/**
+ * A command group of the [SimulatedDevice].
+ */
+internal abstract class SimulatedGroup(val groupId: Int) {
+
+    /**
+     * Handles the request.
+     *
+     * @throws SmpError to respond with an error code.
+     */
+    abstract fun handle(request: Request): Reply
+
+    /**
+     * Called when the device resets.
+     */
+    open fun onReset() {
+        // Empty default implementation.
+    }
+
+    protected fun notSupported(): Nothing = throw SmpError(McuMgrErrorCode.NOT_SUPPORTED)
+}
+
+/**
+ * Receives data uploaded in chunks, as implemented by Zephyr for image, file and SUIT uploads.
+ *
+ * The first chunk, with offset 0, contains the total length. Following chunks must continue
+ * at the current offset; otherwise, the current offset is returned, so that the client can
+ * resend the missing data.
+ */
+internal class UploadTarget {
+    var data: ByteArray? = null
+        private set
+    var offset = 0
+        private set
+    /** The "sha" parameter of the first chunk, if any. */
+    var sha: ByteArray? = null
+        private set
+
+    val isComplete: Boolean
+        get() = data?.let { offset == it.size } ?: false
+
+    /**
+     * Writes the chunk.
+     *
+     * @param maxLength the maximum length of the data.
+     * @return True, if a new upload was started by this request.
+     */
+    fun write(request: Request, maxLength: Int = Int.MAX_VALUE): Boolean {
+        val off = request.requireInt("off")
+        val chunk = request.requireBytes("data")
+        var started = false
+        if (off == 0) {
+            val len = request.requireInt("len")
+            if (len < 0 || len > maxLength) {
+                throw SmpError(McuMgrErrorCode.NO_MEMORY)
+            }
+            val sha = request.bytes("sha")
+            // Resume an upload of the same data.
+            val resume = sha != null && this.sha.contentEquals(sha) &&
+                    data?.size == len && offset > 0 && !isComplete
+            if (resume) {
+                return false
+            }
+            data = ByteArray(len)
+            offset = 0
+            this.sha = sha
+            started = true
+        }
+        val data = data ?: throw SmpError(McuMgrErrorCode.BAD_STATE)
+        if (off != offset) {
+            // Out of order chunk, the current offset will be returned.
+            return started
+        }
+        if (off + chunk.size > data.size) {
+            throw SmpError(McuMgrErrorCode.IN_VALUE)
+        }
+        chunk.copyInto(data, off)
+        offset += chunk.size
+        return started
+    }
+
+    fun clear() {
+        data = null
+        offset = 0
+        sha = null
+    }
+}
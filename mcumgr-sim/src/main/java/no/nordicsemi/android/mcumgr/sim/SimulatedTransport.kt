@@ -0,0 +1,210 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.transport.AbstractMcuMgrTransport
+import no.nordicsemi.android.mcumgr.transport.McuMgrTransaction
+import java.util.Random
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import kotlin.math.max
+
+/**
+ * A transport connected to a [SimulatedDevice], with a configurable link.
+ *
+ * The link and the device run on a single thread. Loss, jitter and reordering of a request and
+ * its response are drawn from a random generator with the given seed when the request is sent,
+ * so a test sending requests in the same order gets the same results on every run.
+ *
+ * Like on a real device, requests longer than the SMP buffer, or received when all buffers
+ * are in use, are dropped and time out.
+ *
+ * @property device The simulated device.
+ * @param mtu The maximum length of a packet, in bytes.
+ * Longer packets fail with [InsufficientMtuException].
+ * @param latency One-way delay of each packet, in milliseconds.
+ * @param jitter Maximum random delay added to [latency], in milliseconds.
+ * @param lossRate Probability, from 0 to 1, of a packet being lost, in each direction.
+ * @param reorderRate Probability, from 0 to 1, of a response being delayed,
+ * so that it is received after responses to following requests.
+ * @param seed Seed of the random generator.
+ */
+class SimulatedTransport @JvmOverloads constructor(
+    val device: SimulatedDevice,
+    private val mtu: Int = 498,
+    private val latency: Long = 0,
+    private val jitter: Long = 0,
+    private val lossRate: Double = 0.0,
+    private val reorderRate: Double = 0.0,
+    seed: Long = 0,
+) : AbstractMcuMgrTransport() {
+
+    /** Fate of a request and its response. */
+    private class Link(
+        val requestLost: Boolean,
+        val requestDelay: Long,
+        val responseLost: Boolean,
+        val responseDelay: Long,
+    )
+
+    /** A transaction, with the fate of its request and response. */
+    private inner class Pending(
+        private val transaction: McuMgrTransaction<*>,
+        val link: Link,
+    ) {
+        var timeout: ScheduledFuture<*>? = null
+
+        fun onResponse(data: ByteArray) {
+            if (!pending.remove(this)) return
+            timeout?.cancel(false)
+            transaction.onResponse(data)
+        }
+
+        fun onError(e: McuMgrException) {
+            if (!pending.remove(this)) return
+            timeout?.cancel(false)
+            transaction.onError(e)
+        }
+    }
+
+    private val executor = Executors.newSingleThreadScheduledExecutor { runnable ->
+        Thread(runnable, "SimulatedTransport").apply { isDaemon = true }
+    }
+    private val random = Random(seed)
+
+    // The following fields are accessed only on the executor thread.
+    private val pending = mutableSetOf<Pending>()
+    private var connected = false
+    /** Incremented on each disconnection, to ignore events from a previous connection. */
+    private var connection = 0
+    /** Number of requests received by the device, for which the response was not sent yet. */
+    private var buffersInUse = 0
+    /** Time, in milliseconds, at which the device will finish handling previous requests. */
+    private var deviceFreeAt = 0L
+
+    init {
+        require(lossRate in 0.0..1.0) { "Invalid loss rate" }
+        require(reorderRate in 0.0..1.0) { "Invalid reorder rate" }
+    }
+
+    override fun getScheme(): McuMgrScheme = McuMgrScheme.BLE
+
+    /** The simulated link knows the parameters of the device, as if read when connected. */
+    override fun getSmpBufferCount(): Int = device.bufferCount
+
+    override fun getSmpBufferSize(): Int = device.bufferSize
+
+    override fun <T : McuMgrResponse> send(
+        payload: ByteArray,
+        timeout: Long,
+        responseType: Class<T>,
+        callback: McuMgrCallback<T>
+    ) {
+        executor.execute {
+            if (payload.size > mtu) {
+                callback.onError(InsufficientMtuException(payload.size, mtu))
+                return@execute
+            }
+            setConnected()
+
+            val transaction = Pending(McuMgrTransaction(payload, timeout, scheme, responseType, callback), link())
+            pending.add(transaction)
+            transaction.timeout = executor.schedule({
+                transaction.onError(McuMgrTimeoutException())
+            }, timeout, TimeUnit.MILLISECONDS)
+
+            if (transaction.link.requestLost) return@execute
+            executor.schedule({ receive(payload, transaction) },
+                transaction.link.requestDelay, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    /**
+     * Called when the request arrives at the device.
+     */
+    private fun receive(packet: ByteArray, transaction: Pending) {
+        // The device may have been disconnected in the meantime.
+        if (!connected) return
+        // No buffer for the request. Zephyr would drop the packet.
+        if (packet.size > device.bufferSize || buffersInUse == device.bufferCount) return
+
+        val result = device.process(packet) ?: return
+        buffersInUse++
+        val now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
+        deviceFreeAt = max(now, deviceFreeAt) + result.delay
+        val connection = connection
+        executor.schedule({
+            if (connection == this.connection) {
+                buffersInUse--
+                respond(result, transaction)
+            }
+        }, deviceFreeAt - now, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * Called when the device has handled the request and sends the response.
+     */
+    private fun respond(result: SimulatedDevice.Result, transaction: Pending) {
+        if (result.reset) {
+            // The device resets right after sending the response. The response is delivered
+            // before the disconnection, so the rest of the link is skipped.
+            transaction.onResponse(result.response)
+            device.reset()
+            setDisconnected(McuMgrException("Device reset"))
+            return
+        }
+        if (transaction.link.responseLost) return
+        executor.schedule({ transaction.onResponse(result.response) },
+            transaction.link.responseDelay, TimeUnit.MILLISECONDS)
+    }
+
+    private fun link(): Link {
+        val requestLost = isLost()
+        val requestDelay = delay()
+        val responseLost = isLost()
+        var responseDelay = delay()
+        // A delayed response is received after responses to following requests.
+        if (reorderRate > 0 && random.nextDouble() < reorderRate) {
+            responseDelay += 2 * (latency + jitter) + 1
+        }
+        return Link(requestLost, requestDelay, responseLost, responseDelay)
+    }
+
+    private fun isLost() = lossRate > 0 && random.nextDouble() < lossRate
+
+    private fun delay() = latency + if (jitter > 0) (random.nextDouble() * jitter).toLong() else 0
+
+    private fun setConnected() {
+        if (!connected) {
+            connected = true
+            notifyConnected()
+        }
+    }
+
+    private fun setDisconnected(reason: McuMgrException) {
+        if (connected) {
+            connected = false
+            connection++
+            buffersInUse = 0
+            pending.toList().forEach { it.onError(reason) }
+            notifyDisconnected()
+        }
+    }
+
+    override fun connect(callback: McuMgrTransport.ConnectionCallback?) {
+        executor.execute {
+            setConnected()
+            callback?.onConnected()
+        }
+    }
+
+    override fun release() {
+        executor.execute { setDisconnected(McuMgrException("Transport released")) }
+    }
+}
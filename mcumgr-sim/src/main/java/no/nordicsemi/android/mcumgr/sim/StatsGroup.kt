@@ -0,0 +1,25 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+
+/**
+ * The Statistics group.
+ */
+internal class StatsGroup : SimulatedGroup(GROUP_STATS) {
+    val groups = linkedMapOf<String, Map<String, Long>>()
+
+    override fun handle(request: Request): Reply = when (request.header.commandId) {
+        ID_READ -> {
+            val name = request.requireString("name")
+            val fields = groups[name] ?: throw SmpError(McuMgrErrorCode.NO_ENTRY)
+            Reply(mapOf("name" to name, "fields" to fields))
+        }
+        ID_LIST -> Reply(mapOf("stat_list" to groups.keys.toList()))
+        else -> notSupported()
+    }
+
+    private companion object {
+        const val ID_READ = 0
+        const val ID_LIST = 1
+    }
+}
@@ -0,0 +1,134 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.image.suit.SUITEnvelope
+
+/**
+ * The SUIT group, emulating an nRF54H20 application with a root and a local manifest.
+ *
+ * A complete envelope is installed right away, unless the installation is deferred. The device
+ * resets after installing it. The device does not request any missing images.
+ */
+internal class SuitGroup(private val device: SimulatedDevice) : SimulatedGroup(GROUP_SUIT) {
+
+    private class Manifest(val role: Int) {
+        var digest: ByteArray? = null
+        var digestAlgorithm = SHA_256
+        var sequenceNumber = 0
+    }
+
+    private val manifests = listOf(Manifest(ROLE_APP_ROOT), Manifest(ROLE_APP_LOCAL_1))
+    private val envelope = UploadTarget()
+    private var candidate: SUITEnvelope? = null
+    private val cache = UploadTarget()
+    /** The partition of the cache upload, sent in the first chunk only. */
+    private var cacheTarget = 0
+    val cachePartitions = mutableMapOf<Int, ByteArray>()
+    var installed: SUITEnvelope? = null
+        private set
+
+    override fun handle(request: Request): Reply = when (request.header.commandId) {
+        ID_MANIFEST_LIST -> Reply(mapOf("manifests" to manifests.map { mapOf("role" to it.role) }))
+        ID_MANIFEST_STATE -> {
+            val role = request.requireInt("role")
+            val manifest = manifests.firstOrNull { it.role == role }
+                ?: throw SmpError(McuMgrErrorCode.NO_ENTRY)
+            val state = mutableMapOf<String, Any>(
+                "class_id" to ByteArray(16),
+                "vendor_id" to NORDIC_VENDOR_ID,
+                "sequence_number" to manifest.sequenceNumber,
+                "semantic_version" to listOf(1, 0, manifest.sequenceNumber),
+            )
+            manifest.digest?.let {
+                state["digest"] = it
+                state["digest_algorithm"] = manifest.digestAlgorithm
+                state["signature_check"] = SIGNATURE_CHECK_AUTHENTICATED
+            }
+            Reply(state)
+        }
+        ID_ENVELOPE_UPLOAD -> uploadEnvelope(request)
+        // No images are requested.
+        ID_MISSING_IMAGE_STATE -> Reply(emptyMap())
+        ID_MISSING_IMAGE_UPLOAD -> throw SmpError(McuMgrErrorCode.BAD_STATE)
+        ID_CACHE_RAW_UPLOAD -> {
+            if (request.int("off") == 0) {
+                cacheTarget = request.requireInt("target_id")
+                cachePartitions.remove(cacheTarget)
+            }
+            val started = cache.write(request)
+            if (cache.isComplete) {
+                cachePartitions[cacheTarget] = cache.data!!
+            }
+            Reply(mapOf("off" to cache.offset), delay = if (started) device.eraseDelay else 0)
+        }
+        ID_CLEANUP -> {
+            envelope.clear()
+            cache.clear()
+            cachePartitions.clear()
+            candidate = null
+            Reply(emptyMap())
+        }
+        else -> notSupported()
+    }
+
+    private fun uploadEnvelope(request: Request): Reply {
+        // Begin deferred install.
+        if (request.int("off") == 0 && request.int("len") == 0 && request.bytes("data") == null) {
+            val envelope = candidate ?: throw SmpError(McuMgrErrorCode.BAD_STATE)
+            install(envelope)
+            return Reply(mapOf("off" to 0), reset = true)
+        }
+        val started = envelope.write(request)
+        if (started) {
+            candidate = null
+        }
+        val response = mapOf("off" to envelope.offset)
+        if (!envelope.isComplete || candidate != null) {
+            return Reply(response, delay = if (started) device.eraseDelay else 0)
+        }
+        val parsed = try {
+            SUITEnvelope.parse(envelope.data!!)
+        } catch (e: McuMgrException) {
+            envelope.clear()
+            throw SmpError(McuMgrErrorCode.IN_VALUE)
+        }
+        candidate = parsed
+        if (request.boolean("defer_install") == true) {
+            return Reply(response)
+        }
+        install(parsed)
+        return Reply(response, reset = true)
+    }
+
+    private fun install(envelope: SUITEnvelope) {
+        manifests[0].apply {
+            digest = envelope.digest.toByteArray()
+            digestAlgorithm = envelope.digestAlgorithm
+            sequenceNumber++
+        }
+        installed = envelope
+        candidate = null
+        this.envelope.clear()
+    }
+
+    private companion object {
+        const val ID_MANIFEST_LIST = 0
+        const val ID_MANIFEST_STATE = 1
+        const val ID_ENVELOPE_UPLOAD = 2
+        const val ID_MISSING_IMAGE_STATE = 3
+        const val ID_MISSING_IMAGE_UPLOAD = 4
+        const val ID_CACHE_RAW_UPLOAD = 5
+        const val ID_CLEANUP = 6
+
+        const val ROLE_APP_ROOT = 0x20
+        const val ROLE_APP_LOCAL_1 = 0x22
+        const val SHA_256 = -16
+        const val SIGNATURE_CHECK_AUTHENTICATED = 4
+
+        val NORDIC_VENDOR_ID = byteArrayOf(
+            0x76, 0x17, 0xda.toByte(), 0xa5.toByte(), 0x71, 0xfd.toByte(), 0x5a, 0x85.toByte(),
+            0x8f.toByte(), 0x94.toByte(), 0xe2.toByte(), 0x8d.toByte(), 0x73, 0x5c, 0xe9.toByte(), 0xf4.toByte()
+        )
+    }
+}
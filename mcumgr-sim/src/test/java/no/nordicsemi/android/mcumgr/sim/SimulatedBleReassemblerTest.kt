@@ -0,0 +1,71 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import org.junit.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class SimulatedBleReassemblerTest {
+
+    private val device = SimulatedDevice(bufferSize = 256, bufferCount = 3)
+    private val reassembler = SimulatedBleReassembler(device)
+
+    @Test
+    fun `packet in a single write is passed on`() {
+        val packet = echo(0, "Hello")
+        val packets = reassembler.accept(packet)
+        assertContentEquals(packet, packets.single())
+    }
+
+    @Test
+    fun `packet split into multiple writes is reassembled`() {
+        val packet = echo(0, "x".repeat(200))
+        val writes = packet.toList().chunked(64).map { it.toByteArray() }
+
+        val packets = writes.flatMap { reassembler.accept(it) }
+        assertContentEquals(packet, packets.single())
+    }
+
+    @Test
+    fun `packed write is split into packets`() {
+        val packets = (0 until 3).map { echo(it, "Hello $it") }
+
+        val received = reassembler.accept(packets.reduce(ByteArray::plus))
+        assertEquals(3, received.size)
+        packets.zip(received).forEach { (expected, actual) -> assertContentEquals(expected, actual) }
+    }
+
+    @Test
+    fun `packets beyond the buffer count are dropped`() {
+        val packets = (0 until 4).map { echo(it, "Hello $it") }
+
+        val received = reassembler.accept(packets.reduce(ByteArray::plus))
+        assertEquals(3, received.size)
+        assertEquals(1, reassembler.droppedCount)
+    }
+
+    @Test
+    fun `packet longer than the buffer is dropped`() {
+        val packet = echo(0, "x".repeat(300))
+
+        assertTrue(reassembler.accept(packet).isEmpty())
+        assertEquals(1, reassembler.droppedCount)
+        // Following packets are received.
+        assertEquals(1, reassembler.accept(echo(1, "Hello")).size)
+    }
+
+    @Test
+    fun `split packets are handled by the device`() {
+        val packets = (0 until 3).map { echo(it, "Hello $it") }
+
+        val responses = reassembler.accept(packets.reduce(ByteArray::plus)).map { device.handle(it)!! }
+        // Sequence numbers are kept.
+        assertEquals(listOf(0, 1, 2), responses.map { it[6].toInt() })
+        assertEquals(3, device.requestCount)
+    }
+
+    private fun echo(sequenceNumber: Int, text: String): ByteArray =
+        McuManager.buildPacket(McuMgrScheme.BLE, 2, 0, 0, sequenceNumber, 0, mapOf("d" to text))
+}
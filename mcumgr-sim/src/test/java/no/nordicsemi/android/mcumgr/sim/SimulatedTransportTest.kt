@@ -0,0 +1,134 @@
+package no.nordicsemi.android.mcumgr.sim
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.managers.FsManager
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import no.nordicsemi.android.mcumgr.transfer.ImageUploader
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class SimulatedTransportTest {
+
+    @Test
+    fun `echo and params are handled`() {
+        val device = SimulatedDevice(bufferSize = 1024, bufferCount = 2)
+        val manager = DefaultManager(SimulatedTransport(device))
+
+        assertEquals("Hello", manager.echo("Hello").r)
+        val params = manager.params()
+        assertEquals(1024, params.bufSize)
+        assertEquals(2, params.bufCount)
+    }
+
+    @Test
+    fun `uploaded image is swapped on reset`() {
+        val device = SimulatedDevice(bufferSize = 2475, bufferCount = 4)
+        val transport = SimulatedTransport(device, mtu = 498, latency = 1, jitter = 2)
+        val manager = ImageManager(transport)
+        manager.setUploadMtu(498)
+        val image = javaClass.getResource("/slinky-prot-tlv.img")!!.readBytes()
+
+        runBlocking { ImageUploader(manager, image, 0, windowCapacity = 3).upload() }
+
+        val secondary = device.getSlot(0, 1)
+        assertContentEquals(image, secondary.data)
+        val state = manager.list()
+        assertEquals(2, state.images.size)
+        assertContentEquals(secondary.hash, state.images[1].hash)
+
+        manager.test(secondary.hash!!)
+        assertTrue(device.getSlot(0, 1).isPending)
+
+        val disconnected = CountDownLatch(1)
+        transport.addObserver(object : McuMgrTransport.ConnectionObserver {
+            override fun onConnected() {}
+            override fun onDisconnected() = disconnected.countDown()
+        })
+        DefaultManager(transport).reset()
+        assertTrue(disconnected.await(1, TimeUnit.SECONDS))
+        assertEquals(1, device.resetCount)
+
+        val primary = device.getSlot(0, 0)
+        assertContentEquals(image, primary.data)
+        assertTrue(primary.isActive)
+        assertFalse(primary.isConfirmed)
+
+        // Not confirmed, so the swap is reverted on the next reset.
+        device.reset()
+        assertTrue(device.getSlot(0, 0).isConfirmed)
+        assertContentEquals(image, device.getSlot(0, 1).data)
+    }
+
+    @Test
+    fun `file is downloaded in chunks`() {
+        val device = SimulatedDevice(bufferSize = 128)
+        val file = ByteArray(1000) { it.toByte() }
+        device.putFile("/lfs/file", file)
+        val manager = FsManager(SimulatedTransport(device))
+
+        val first = manager.download("/lfs/file", 0)
+        assertEquals(file.size, first.len)
+        assertTrue(first.data.size < 128)
+        assertContentEquals(file.copyOf(first.data.size), first.data)
+        assertEquals(file.size, manager.status("/lfs/file").len)
+    }
+
+    @Test
+    fun `errors are returned as return codes`() {
+        val device = SimulatedDevice()
+        val manager = FsManager(SimulatedTransport(device))
+
+        val error = assertFailsWith<McuMgrErrorException> { manager.status("/lfs/missing") }
+        assertEquals(5, error.code.value())
+    }
+
+    @Test
+    fun `packets longer than MTU are rejected`() {
+        val manager = DefaultManager(SimulatedTransport(SimulatedDevice(), mtu = 32))
+        assertFailsWith<InsufficientMtuException> { manager.echo("x".repeat(64)) }
+    }
+
+    @Test
+    fun `requests longer than the buffer time out`() {
+        val transport = SimulatedTransport(SimulatedDevice(bufferSize = 64), mtu = 498)
+        assertFailsWith<McuMgrTimeoutException> {
+            transport.send(echo("x".repeat(100)), 100, McuMgrEchoResponse::class.java)
+        }
+    }
+
+    @Test
+    fun `lost packets are reproducible`() {
+        fun run(seed: Long): List<Boolean> {
+            val transport = SimulatedTransport(SimulatedDevice(), lossRate = 0.3, seed = seed)
+            return List(20) {
+                try {
+                    transport.send(echo("$it"), 100, McuMgrEchoResponse::class.java)
+                    true
+                } catch (e: McuMgrTimeoutException) {
+                    false
+                }
+            }
+        }
+        val first = run(42)
+        assertEquals(first, run(42))
+        assertTrue(first.contains(true))
+        assertTrue(first.contains(false))
+    }
+
+    private fun echo(text: String): ByteArray =
+        McuManager.buildPacket(McuMgrScheme.BLE, 2, 0, 0, 0, 0, mapOf("d" to text))
+}
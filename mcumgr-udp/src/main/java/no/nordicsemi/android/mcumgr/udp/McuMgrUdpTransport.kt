@@ -0,0 +1,239 @@
+package no.nordicsemi.android.mcumgr.udp
+
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.capture.PacketCapture
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.transport.McuMgrConnectionTransport
+import no.nordicsemi.android.mcumgr.transport.McuMgrTransaction
+import no.nordicsemi.android.mcumgr.transport.McuMgrTransactionTable
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.net.InetSocketAddress
+import java.net.PortUnreachableException
+import java.nio.ByteBuffer
+import java.nio.channels.DatagramChannel
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+private const val MAX_DATAGRAM_LENGTH = 65_507
+
+/**
+ * SMP over UDP transport, for devices using the Zephyr UDP transport
+ * (CONFIG_MCUMGR_TRANSPORT_UDP), over Ethernet, Wi-Fi or Thread.
+ *
+ * Each SMP packet is sent in a single datagram, with the same framing as over Bluetooth LE,
+ * hence the [McuMgrScheme.BLE] scheme. Responses are matched to requests using the sequence
+ * number, so multiple requests may be in flight, which allows windowed uploads.
+ *
+ * The socket is served by a single I/O thread, using a non-blocking [DatagramChannel].
+ * The same thread checks the timeouts of all requests. Callbacks are called on that thread,
+ * unless an executor is given.
+ *
+ * UDP is connectionless, so the transport is connected when its socket is open. The socket is
+ * opened by [connect], or with the first request, and closed by [release].
+ *
+ * @property address The address of the device.
+ * @param callbackExecutor The executor to call callbacks on, or null to call them on
+ * the I/O thread.
+ * @param maxPacketLength The maximum length of a request, in bytes. Should be equal to
+ * CONFIG_MCUMGR_TRANSPORT_UDP_MTU of the device. Longer requests fail with
+ * [InsufficientMtuException].
+ */
+class McuMgrUdpTransport @JvmOverloads constructor(
+    val address: InetSocketAddress,
+    callbackExecutor: Executor? = null,
+    override val maxPacketLength: Int = DEFAULT_MTU,
+) : McuMgrConnectionTransport(callbackExecutor) {
+
+    companion object {
+        /** The default SMP port in Zephyr. */
+        const val DEFAULT_PORT = 1337
+
+        /** The default value of CONFIG_MCUMGR_TRANSPORT_UDP_MTU in Zephyr. */
+        const val DEFAULT_MTU = 1024
+
+        private val LOG = LoggerFactory.getLogger(McuMgrUdpTransport::class.java)
+    }
+
+    /**
+     * An open socket and its I/O thread.
+     *
+     * Transactions are added using [enqueue]. All other members are accessed only
+     * on the I/O thread.
+     */
+    private inner class Connection(
+        private val channel: DatagramChannel,
+        private val selector: Selector,
+    ) : McuMgrConnectionTransport.Connection, Runnable {
+        private val queue = ConcurrentLinkedQueue<McuMgrTransaction<*>>()
+        private val key = channel.register(selector, SelectionKey.OP_READ)
+        private val thread = Thread(this, "McuMgrUdpTransport").apply { isDaemon = true }
+        @Volatile
+        private var closed = false
+
+        private val transactions = McuMgrTransactionTable()
+        /** Requests which were not sent yet, as the socket send buffer was full. */
+        private val unsent = ArrayDeque<McuMgrTransaction<*>>()
+        // One byte longer than any datagram, so that a response never fills the whole array
+        // and is copied when building the response.
+        private val buffer = ByteBuffer.allocate(MAX_DATAGRAM_LENGTH + 1)
+
+        override fun start() = thread.start()
+
+        override fun enqueue(transaction: McuMgrTransaction<*>) {
+            queue.add(transaction)
+            // If the connection has been closed meanwhile, the transaction may have been
+            // added after the remaining ones were failed.
+            if (closed && queue.remove(transaction)) {
+                transaction.onError(McuMgrException("Transport released"))
+                return
+            }
+            selector.wakeup()
+        }
+
+        override fun close() {
+            closed = true
+            selector.wakeup()
+        }
+
+        override fun run() {
+            var reason = McuMgrException("Transport released")
+            try {
+                while (!closed) {
+                    val now = now()
+                    startQueued(now)
+                    val timeout = transactions.expire(now) { unsent.remove(it) }
+                    // Wait indefinitely if no request is waiting for a response.
+                    val selected = selector.select(if (timeout == Long.MAX_VALUE) 0 else timeout)
+                    if (closed) break
+                    if (selected > 0) {
+                        if (key.isReadable) {
+                            receive()
+                        }
+                        if (key.isWritable) {
+                            flush()
+                        }
+                        selector.selectedKeys().clear()
+                    }
+                }
+            } catch (e: IOException) {
+                LOG.error("UDP transport failed", e)
+                reason = McuMgrException(e)
+            } finally {
+                closeQuietly()
+                failAll(reason)
+                onClosed(this)
+            }
+        }
+
+        /**
+         * Assigns sequence numbers to queued requests and sends them.
+         */
+        private fun startQueued(now: Long) {
+            while (true) {
+                val transaction = queue.poll() ?: break
+                transaction.deadline = now + transaction.timeout
+                transactions.add(transaction)?.let { unsent.remove(it) }
+                unsent.addLast(transaction)
+            }
+            flush()
+        }
+
+        /**
+         * Sends requests until the socket send buffer is full.
+         */
+        private fun flush() {
+            while (unsent.isNotEmpty()) {
+                val transaction = unsent.first()
+                // A datagram is sent in whole, or not at all.
+                if (channel.write(ByteBuffer.wrap(transaction.packet)) == 0) {
+                    break
+                }
+                packetCapture?.record(PacketCapture.OUTGOING, transaction.packet)
+                unsent.removeFirst()
+            }
+            val ops = if (unsent.isEmpty()) SelectionKey.OP_READ
+            else SelectionKey.OP_READ or SelectionKey.OP_WRITE
+            if (key.interestOps() != ops) {
+                key.interestOps(ops)
+            }
+        }
+
+        /**
+         * Reads all received datagrams and matches them to requests.
+         */
+        private fun receive() {
+            while (true) {
+                buffer.clear()
+                val length = try {
+                    channel.read(buffer)
+                } catch (e: PortUnreachableException) {
+                    // Nothing listens on the port. Fail the requests instead of letting
+                    // them time out.
+                    failAll(McuMgrException(e))
+                    return
+                }
+                if (length <= 0) {
+                    return
+                }
+                val data = buffer.array()
+                packetCapture?.record(PacketCapture.INCOMING, data, 0, length)
+                transactions.onResponse(data, length)
+            }
+        }
+
+        private fun failAll(reason: McuMgrException) {
+            unsent.clear()
+            transactions.failAll(reason)
+            if (closed) {
+                while (true) {
+                    queue.poll()?.onError(reason) ?: break
+                }
+            }
+        }
+
+        private fun closeQuietly() {
+            closed = true
+            try {
+                selector.close()
+                channel.close()
+            } catch (e: IOException) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Optional capture of sent and received SMP packets.
+     *
+     * Recording is cheap, as packets are not parsed, and may be left enabled. The capture can
+     * be saved using [PacketCapture.writeTo] and decoded offline using
+     * [no.nordicsemi.android.mcumgr.capture.CaptureDecoder].
+     */
+    @Volatile
+    var packetCapture: PacketCapture? = null
+
+    override fun getScheme(): McuMgrScheme = McuMgrScheme.BLE
+
+    override fun openConnection(): McuMgrConnectionTransport.Connection {
+        val channel = DatagramChannel.open()
+        try {
+            if (address.isUnresolved) {
+                throw IOException("Unresolved address: $address")
+            }
+            // Connecting a datagram socket only filters datagrams from other addresses.
+            channel.connect(address)
+            channel.configureBlocking(false)
+            return Connection(channel, Selector.open())
+        } catch (e: IOException) {
+            channel.close()
+            throw e
+        }
+    }
+
+    private fun now(): Long = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
+}
@@ -0,0 +1,180 @@
+package no.nordicsemi.android.mcumgr.udp
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import no.nordicsemi.android.mcumgr.sim.SimulatedDevice
+import no.nordicsemi.android.mcumgr.transfer.ImageUploader
+import org.junit.After
+import org.junit.Test
+import java.net.DatagramPacket
+import java.net.DatagramSocket
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.SocketException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertIs
+import kotlin.test.assertTrue
+
+class McuMgrUdpTransportTest {
+
+    /**
+     * A local stand-in for a device with the UDP transport, serving a [SimulatedDevice].
+     *
+     * Received requests are given to [filter], which returns the requests to handle now.
+     * By default, all requests are handled in order.
+     */
+    private class StandInServer(val device: SimulatedDevice) {
+        private val socket = DatagramSocket(0, InetAddress.getLoopbackAddress())
+        val address = InetSocketAddress(InetAddress.getLoopbackAddress(), socket.localPort)
+
+        @Volatile
+        var filter: (ByteArray) -> List<ByteArray> = { listOf(it) }
+
+        init {
+            thread(isDaemon = true) {
+                val buffer = ByteArray(65_535)
+                while (true) {
+                    val datagram = DatagramPacket(buffer, buffer.size)
+                    try {
+                        socket.receive(datagram)
+                    } catch (e: SocketException) {
+                        break
+                    }
+                    val request = buffer.copyOf(datagram.length)
+                    for (packet in filter(request)) {
+                        val response = device.handle(packet) ?: continue
+                        socket.send(DatagramPacket(response, response.size, datagram.socketAddress))
+                    }
+                }
+            }
+        }
+
+        fun close() = socket.close()
+    }
+
+    private val server = StandInServer(SimulatedDevice(bufferSize = 2048, bufferCount = 4))
+    private val transport = McuMgrUdpTransport(server.address)
+
+    @After
+    fun tearDown() {
+        transport.release()
+        server.close()
+    }
+
+    @Test
+    fun `echo is received`() {
+        val manager = DefaultManager(transport)
+        assertEquals("Hello", manager.echo("Hello").r)
+        assertEquals(1, server.device.requestCount)
+    }
+
+    @Test
+    fun `image is uploaded with a window of requests`() {
+        val manager = ImageManager(transport)
+        manager.setUploadMtu(McuMgrUdpTransport.DEFAULT_MTU)
+        val image = javaClass.getResource("/slinky-prot-tlv.img")!!.readBytes()
+
+        runBlocking { ImageUploader(manager, image, 0, windowCapacity = 4).upload() }
+
+        assertContentEquals(image, server.device.getSlot(0, 1).data)
+    }
+
+    @Test
+    fun `responses received out of order are matched`() {
+        // Hold the first request and handle it after the second one.
+        val held = LinkedBlockingQueue<ByteArray>()
+        server.filter = { request ->
+            if (held.isEmpty()) {
+                held.add(request)
+                emptyList()
+            } else {
+                listOf(request, held.take())
+            }
+        }
+        val manager = DefaultManager(transport)
+        val results = LinkedBlockingQueue<String>()
+        val latch = CountDownLatch(2)
+        val callback = { expected: String ->
+            object : McuMgrCallback<McuMgrEchoResponse> {
+                override fun onResponse(response: McuMgrEchoResponse) {
+                    results.add("$expected=${response.r}")
+                    latch.countDown()
+                }
+
+                override fun onError(e: McuMgrException) {
+                    results.add("$expected: $e")
+                    latch.countDown()
+                }
+            }
+        }
+        manager.echo("first", callback("first"))
+        manager.echo("second", callback("second"))
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf("second=second", "first=first"), results.toList())
+    }
+
+    @Test
+    fun `request times out when no response is received`() {
+        server.filter = { emptyList() }
+        val start = System.nanoTime()
+        val error = assertFailsWith<McuMgrException> {
+            transport.send(newEchoRequest(), 200, McuMgrEchoResponse::class.java)
+        }
+        assertIs<McuMgrTimeoutException>(error)
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200))
+    }
+
+    @Test
+    fun `request longer than MTU fails`() {
+        val manager = DefaultManager(transport)
+        assertFailsWith<InsufficientMtuException> {
+            manager.echo("x".repeat(2000))
+        }
+    }
+
+    @Test
+    fun `release fails outstanding requests and notifies observers`() {
+        server.filter = { emptyList() }
+        val disconnected = CountDownLatch(1)
+        transport.addObserver(object : McuMgrTransport.ConnectionObserver {
+            override fun onConnected() {}
+            override fun onDisconnected() = disconnected.countDown()
+        })
+        val error = LinkedBlockingQueue<McuMgrException>()
+        DefaultManager(transport).echo("Hello", object : McuMgrCallback<McuMgrEchoResponse> {
+            override fun onResponse(response: McuMgrEchoResponse) {}
+            override fun onError(e: McuMgrException) {
+                error.add(e)
+            }
+        })
+        transport.release()
+
+        assertTrue(disconnected.await(1, TimeUnit.SECONDS))
+        val e = error.poll(1, TimeUnit.SECONDS)
+        assertIs<McuMgrException>(e)
+        assertTrue(e !is McuMgrTimeoutException)
+
+        // The socket is opened again with the next request.
+        server.filter = { listOf(it) }
+        assertEquals("Again", DefaultManager(transport).echo("Again").r)
+    }
+}
+
+private fun newEchoRequest(): ByteArray =
+    McuManager.buildPacket(McuMgrScheme.BLE, 2, 0, 0, 0, 0, mapOf("d" to "Hello"))
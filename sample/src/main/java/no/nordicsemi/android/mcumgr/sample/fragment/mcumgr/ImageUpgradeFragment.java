@@ -384,12 +384,12 @@ public class ImageUpgradeFragment extends FileBrowserFragment implements Injecta
                 }
 
                 for (final TargetImage binary: zip.getBinaries().getImages()) {
-                    final byte[] hash = binary.image.getHash();
+                    final byte[] hash = binary.getHash();
                     hashBuilder
                             .append(StringUtils.toHex(hash))
                             .append("\n");
                     sizeBuilder
-                            .append(getString(R.string.image_upgrade_size_value, binary.image.getData().length));
+                            .append(getString(R.string.image_upgrade_size_value, binary.source.getSize()));
                     switch (binary.imageIndex) {
                         case 0 -> sizeBuilder.append(" (app core");
                         case 1 -> sizeBuilder.append(" (net core");
@@ -423,7 +423,9 @@ public class ImageUpgradeFragment extends FileBrowserFragment implements Injecta
             final ZipPackage zip = new ZipPackage(data);
             final TargetImage binary = zip.getBinaries().getImages().get(index);
             requiresModeSelection = false;
-            setFileContent(binary.image.getData());
+            final byte[] content = new byte[binary.source.getSize()];
+            binary.source.read(0, content, 0, content.length);
+            setFileContent(content);
         } catch (final Exception e) {
             onFileLoadingFailed(R.string.image_error_file_not_valid);
         }